@@ -77,6 +77,9 @@ public class Ecore extends JavaPlugin {
     private WorldEditManager worldEditManager;
     private com.excrele.ecore.managers.RegionManager regionManager;
     private ChunkManager chunkManager;
+    private com.excrele.ecore.managers.ProfilingManager profilingManager;
+    private com.excrele.ecore.placeholders.PlaceholderEngine placeholderEngine;
+    private com.excrele.ecore.managers.ExpiryManager expiryManager;
     private com.excrele.ecore.managers.StaffModeManager staffModeManager;
     private com.excrele.ecore.managers.WorldManager worldManager;
     private com.excrele.ecore.managers.PortalManager portalManager;
@@ -148,6 +151,9 @@ public class Ecore extends JavaPlugin {
     public void onEnable() {
         // Initialize managers
         configManager = new ConfigManager(this);
+        profilingManager = new com.excrele.ecore.managers.ProfilingManager(this);
+        placeholderEngine = new com.excrele.ecore.placeholders.PlaceholderEngine(this);
+        expiryManager = new com.excrele.ecore.managers.ExpiryManager(this);
         economyManager = new EconomyManager(this);
         discordManager = new DiscordManager(this);
         shopManager = new ShopManager(this);
@@ -420,6 +426,7 @@ public class Ecore extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new SitListener(), this);
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerChangedWorldListener(this), this);
+        getServer().getPluginManager().registerEvents(placeholderEngine, this);
         getServer().getPluginManager().registerEvents(new PlayerBedEnterListener(this), this);
         getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.PlayerMoveListener(this), this);
         getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.CommandSpyListener(this), this);
@@ -437,6 +444,9 @@ public class Ecore extends JavaPlugin {
             getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.RegionListener(this), this);
         }
         
+        // Register claim activity listener
+        getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.ClaimListener(this), this);
+        
         // Register job listener
         getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.JobListener(this), this);
         
@@ -456,6 +466,9 @@ public class Ecore extends JavaPlugin {
         // Register combat back to the roots listener
         getServer().getPluginManager().registerEvents(new com.excrele.ecore.listeners.CombatBackToRootsListener(this), this);
 
+        // Wrap the listeners registered above if profiling should run from startup
+        profilingManager.startIfConfigured();
+
         // Register PlaceholderAPI expansion if available
         if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
             new com.excrele.ecore.placeholders.EcorePlaceholders(this).register();
@@ -496,6 +509,9 @@ public class Ecore extends JavaPlugin {
         if (tabListManager != null) {
             tabListManager.shutdown();
         }
+        if (hologramManager != null) {
+            hologramManager.shutdown();
+        }
         if (jobManager != null) {
             jobManager.shutdown();
         }
@@ -520,6 +536,18 @@ public class Ecore extends JavaPlugin {
         if (eventManager != null) {
             eventManager.shutdown();
         }
+        if (economyManager != null) {
+            economyManager.shutdown();
+        }
+        if (chunkManager != null) {
+            chunkManager.shutdown();
+        }
+        if (statisticsManager != null) {
+            statisticsManager.shutdown();
+        }
+        if (expiryManager != null) {
+            expiryManager.shutdown();
+        }
         // Shutdown Discord bot
         if (discordManager != null) {
             discordManager.shutdownBot();
@@ -659,6 +687,18 @@ public class Ecore extends JavaPlugin {
         return chunkManager;
     }
 
+    public com.excrele.ecore.managers.ProfilingManager getProfilingManager() {
+        return profilingManager;
+    }
+
+    public com.excrele.ecore.placeholders.PlaceholderEngine getPlaceholderEngine() {
+        return placeholderEngine;
+    }
+
+    public com.excrele.ecore.managers.ExpiryManager getExpiryManager() {
+        return expiryManager;
+    }
+
     public com.excrele.ecore.managers.StaffModeManager getStaffModeManager() {
         return staffModeManager;
     }
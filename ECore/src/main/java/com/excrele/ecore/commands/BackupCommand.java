@@ -88,7 +88,8 @@ public class BackupCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.GOLD + "=== Available Backups ===");
         for (int i = 0; i < backups.size(); i++) {
             File backup = backups.get(i);
-            String size = formatFileSize(backup.length());
+            // A snapshot file only lists its chunks, so its own size means nothing
+            String size = backup.getName().endsWith(".snapshot") ? "incremental" : formatFileSize(backup.length());
             String date = dateFormat.format(new java.util.Date(backup.lastModified()));
             sender.sendMessage(ChatColor.YELLOW + String.valueOf(i + 1) + ". " + ChatColor.WHITE + backup.getName() + 
                 ChatColor.GRAY + " (" + size + ", " + date + ")");
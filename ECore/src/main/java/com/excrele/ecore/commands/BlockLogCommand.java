@@ -1,6 +1,7 @@
 package com.excrele.ecore.commands;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.database.BlockLogWriter;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -73,6 +74,12 @@ public class BlockLogCommand implements CommandExecutor, TabCompleter {
             case "purge":
                 handlePurge(player, args);
                 break;
+            case "status":
+                handleStatus(player);
+                break;
+            case "migrate":
+                handleMigrate(player);
+                break;
             case "reload":
                 handleReload(player);
                 break;
@@ -246,6 +253,39 @@ public class BlockLogCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.GREEN + "Purging logs older than " + days + " days...");
     }
 
+    private void handleStatus(Player player) {
+        if (!player.hasPermission("ecore.blocklog.status")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to view logging status!");
+            return;
+        }
+
+        BlockLogWriter writer = plugin.getBlockLogManager().getDatabase().getWriter();
+        if (writer == null) {
+            player.sendMessage(ChatColor.RED + "Block logging database is not available.");
+            return;
+        }
+
+        player.sendMessage(ChatColor.GOLD + "=== Block Log Write Queue ===");
+        player.sendMessage(ChatColor.YELLOW + "Queued: " + ChatColor.WHITE + writer.getQueueSize() + "/" + writer.getCapacity()
+                + ChatColor.GRAY + " (peak " + writer.getHighWaterMark() + ")");
+        player.sendMessage(ChatColor.YELLOW + "Written: " + ChatColor.WHITE + writer.getWrittenCount()
+                + ChatColor.YELLOW + " of " + ChatColor.WHITE + writer.getEnqueuedCount() + " queued");
+        player.sendMessage(ChatColor.YELLOW + "Dropped: " + ChatColor.WHITE + writer.getDroppedCount()
+                + ChatColor.YELLOW + " Failed: " + ChatColor.WHITE + writer.getFailedCount());
+        player.sendMessage(ChatColor.YELLOW + "Flushes: " + ChatColor.WHITE + writer.getFlushCount()
+                + ChatColor.GRAY + " (last " + writer.getLastFlushSize() + " rows in "
+                + String.format("%.2f", writer.getLastFlushMillis()) + "ms)");
+    }
+
+    private void handleMigrate(Player player) {
+        if (!player.hasPermission("ecore.blocklog.migrate")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to migrate logs!");
+            return;
+        }
+
+        plugin.getBlockLogManager().migrateToCompactStorage(player);
+    }
+
     private void handleReload(Player player) {
         if (!player.hasPermission("ecore.blocklog.reload")) {
             player.sendMessage(ChatColor.RED + "You don't have permission to reload!");
@@ -286,6 +326,8 @@ public class BlockLogCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.YELLOW + "/blocklog pos2 - Set position 2 for area selection");
         player.sendMessage(ChatColor.YELLOW + "/blocklog inventory <player> [time] - Rollback inventory");
         player.sendMessage(ChatColor.YELLOW + "/blocklog purge [days] - Purge old logs");
+        player.sendMessage(ChatColor.YELLOW + "/blocklog status - View write queue status");
+        player.sendMessage(ChatColor.YELLOW + "/blocklog migrate - Convert logs to compact storage");
     }
 
     private long parseTimeRange(String timeStr) {
@@ -319,7 +361,7 @@ public class BlockLogCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("lookup", "rollback", "restore", "inspect", "inventory", "purge", "reload", "pos1", "pos2")
+            return Arrays.asList("lookup", "rollback", "restore", "inspect", "inventory", "purge", "status", "migrate", "reload", "pos1", "pos2")
                     .stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
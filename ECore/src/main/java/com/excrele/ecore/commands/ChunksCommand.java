@@ -1,6 +1,7 @@
 package com.excrele.ecore.commands;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.managers.ChunkPregenerator;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.command.Command;
@@ -70,8 +71,9 @@ public class ChunksCommand implements CommandExecutor {
                 player.sendMessage(ChatColor.RED + "Radius must be at least 1!");
                 return true;
             }
-            if (radius > 1000) {
-                player.sendMessage(ChatColor.RED + "Radius cannot exceed 1000 chunks!");
+            int maxRadius = plugin.getConfigManager().getConfig().getInt("chunk-pregeneration.max-radius", 2000);
+            if (radius > maxRadius) {
+                player.sendMessage(ChatColor.RED + "Radius cannot exceed " + maxRadius + " chunks!");
                 return true;
             }
         } catch (NumberFormatException e) {
@@ -87,6 +89,10 @@ public class ChunksCommand implements CommandExecutor {
             player.sendMessage(ChatColor.YELLOW + "Use /chunks cancel to cancel it first.");
             return true;
         }
+        if (plugin.getChunkManager().getJob(world) != null) {
+            player.sendMessage(ChatColor.RED + "Chunks are already being generated in this world!");
+            return true;
+        }
         
         // Calculate estimated chunks
         double estimatedChunks = Math.PI * radius * radius;
@@ -131,8 +137,16 @@ public class ChunksCommand implements CommandExecutor {
         
         Player player = (Player) sender;
         
-        if (plugin.getChunkManager().isGenerating(player.getUniqueId())) {
-            player.sendMessage(ChatColor.YELLOW + "You have an active chunk generation in progress.");
+        ChunkPregenerator job = plugin.getChunkManager().getJob(player.getUniqueId());
+        if (job == null) {
+            job = plugin.getChunkManager().getJob(player.getWorld());
+        }
+        if (job != null) {
+            player.sendMessage(ChatColor.YELLOW + plugin.getChunkManager().formatProgress(job));
+            player.sendMessage(ChatColor.GRAY + "Mode: " + (job.isAsync() ? "async, " + job.getInFlight() + " in flight" : "main thread"));
+            if (job.getFailed() > 0) {
+                player.sendMessage(ChatColor.RED + "Failed: " + job.getFailed() + " chunks");
+            }
             player.sendMessage(ChatColor.GRAY + "Use /chunks cancel to cancel it.");
         } else {
             player.sendMessage(ChatColor.GREEN + "No active chunk generation.");
@@ -145,7 +159,7 @@ public class ChunksCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.GOLD + "=== Chunk Generation Commands ===");
         sender.sendMessage(ChatColor.YELLOW + "/chunks generate <radius> - Generate chunks in radius from spawn");
         sender.sendMessage(ChatColor.YELLOW + "/chunks cancel - Cancel your active chunk generation");
-        sender.sendMessage(ChatColor.YELLOW + "/chunks status - Check if you have active chunk generation");
+        sender.sendMessage(ChatColor.YELLOW + "/chunks status - Show chunk generation progress");
         sender.sendMessage(ChatColor.GRAY + "Example: /chunks generate 50");
     }
 }
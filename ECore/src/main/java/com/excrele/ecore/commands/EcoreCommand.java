@@ -1,11 +1,17 @@
 package com.excrele.ecore.commands;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.managers.ProfilingManager;
+import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 public class EcoreCommand implements CommandExecutor {
     private final Ecore plugin;
 
@@ -15,6 +21,11 @@ public class EcoreCommand implements CommandExecutor {
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("profile")) {
+            handleProfile(sender, args);
+            return true;
+        }
+
         if (!(sender instanceof Player)) {
             sender.sendMessage("This command can only be used by players!");
             return true;
@@ -23,7 +34,7 @@ public class EcoreCommand implements CommandExecutor {
         Player player = (Player) sender;
 
         if (args.length == 0) {
-            player.sendMessage("Usage: /ecore [reload|staff|home]");
+            player.sendMessage("Usage: /ecore [reload|staff|home|profile]");
             return true;
         }
 
@@ -58,4 +69,69 @@ public class EcoreCommand implements CommandExecutor {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    private void handleProfile(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("ecore.profile")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission!");
+            return;
+        }
+
+        ProfilingManager profiler = plugin.getProfilingManager();
+        String action = args.length > 1 ? args[1].toLowerCase() : "report";
+        switch (action) {
+            case "start":
+            case "on":
+                profiler.enable();
+                sender.sendMessage(ChatColor.GREEN + "Profiling started.");
+                break;
+            case "stop":
+            case "off":
+                profiler.disable();
+                sender.sendMessage(ChatColor.YELLOW + "Profiling stopped. Use /ecore profile report to view the results.");
+                break;
+            case "reset":
+                profiler.reset();
+                sender.sendMessage(ChatColor.GREEN + "Profiling data cleared.");
+                break;
+            case "report":
+                int limit = 10;
+                if (args.length > 2) {
+                    try {
+                        limit = Math.max(1, Integer.parseInt(args[2]));
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "Invalid number: " + args[2]);
+                        return;
+                    }
+                }
+                List<ProfilingManager.Section> sections = profiler.getSections(limit);
+                double ticks = profiler.getElapsedMillis() / 50.0;
+                sender.sendMessage(ChatColor.GOLD + "=== ECore Profile ===");
+                sender.sendMessage(ChatColor.GRAY + String.format("%.1fs profiled, %s", profiler.getElapsedMillis() / 1000.0,
+                    profiler.isEnabled() ? "running" : "stopped"));
+                if (sections.isEmpty()) {
+                    sender.sendMessage(ChatColor.GRAY + "No data yet." + (profiler.isEnabled() ? "" : " Use /ecore profile start."));
+                }
+                for (ProfilingManager.Section section : sections) {
+                    sender.sendMessage(ChatColor.YELLOW + section.name + ChatColor.GRAY + String.format(
+                        ": %.3f ms/tick, %d calls, %.1fus avg, %.2fms max",
+                        section.totalNanos / 1_000_000.0 / ticks, section.calls, section.getAverageMicros(),
+                        section.maxNanos / 1_000_000.0));
+                }
+                break;
+            case "export":
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                    try {
+                        File file = profiler.exportReport();
+                        plugin.getServer().getScheduler().runTask(plugin, () ->
+                            sender.sendMessage(ChatColor.GREEN + "Profile exported to profiles/" + file.getName()));
+                    } catch (IOException e) {
+                        plugin.getServer().getScheduler().runTask(plugin, () ->
+                            sender.sendMessage(ChatColor.RED + "Failed to export profile: " + e.getMessage()));
+                    }
+                });
+                break;
+            default:
+                sender.sendMessage(ChatColor.RED + "Usage: /ecore profile <start|stop|reset|report [count]|export>");
+        }
+    }
+}
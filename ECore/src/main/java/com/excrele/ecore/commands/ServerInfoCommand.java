@@ -13,6 +13,7 @@ import org.bukkit.command.TabCompleter;
 
 import com.excrele.ecore.Ecore;
 import com.excrele.ecore.managers.PerformanceManager;
+import com.excrele.ecore.managers.TickTimeSampler;
 
 public class ServerInfoCommand implements CommandExecutor, TabCompleter {
     private final Ecore plugin;
@@ -77,6 +78,7 @@ public class ServerInfoCommand implements CommandExecutor, TabCompleter {
         
         // Performance
         sender.sendMessage(ChatColor.GRAY + "TPS: " + plugin.getServerInfoManager().getTPSFormatted());
+        sender.sendMessage(ChatColor.GRAY + "Tick (1m): " + plugin.getServerInfoManager().getTickTimesFormatted(TickTimeSampler.Window.ONE_MINUTE));
         sender.sendMessage(ChatColor.GRAY + "Memory: " + plugin.getServerInfoManager().getMemoryFormatted());
         sender.sendMessage(ChatColor.GRAY + "Uptime: " + ChatColor.WHITE + plugin.getServerInfoManager().getUptime());
         
@@ -131,6 +133,12 @@ public class ServerInfoCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GOLD + "═══════════════════════════════════════");
         
         sender.sendMessage(ChatColor.GRAY + "TPS: " + plugin.getServerInfoManager().getTPSFormatted());
+        sender.sendMessage(ChatColor.GRAY + "Tick times:");
+        for (TickTimeSampler.Summary summary : stats.tickTimes.values()) {
+            sender.sendMessage(ChatColor.GRAY + "  " + summary.window.getLabel() + ": "
+                + plugin.getServerInfoManager().getTickTimesFormatted(summary)
+                + ChatColor.DARK_GRAY + " (" + summary.samples + " ticks)");
+        }
         
         if (stats.memoryInfo != null) {
             double usedMB = stats.memoryInfo.getUsedMemory() / (1024.0 * 1024.0);
@@ -153,6 +161,16 @@ public class ServerInfoCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GRAY + "  Other: " + ChatColor.WHITE + stats.other);
         sender.sendMessage(ChatColor.GRAY + "  Players: " + ChatColor.WHITE + stats.onlinePlayers + " / " + stats.maxPlayers);
         sender.sendMessage(ChatColor.GRAY + "Loaded Chunks: " + ChatColor.WHITE + stats.totalChunks);
+
+        if (plugin.getDiscordManager() != null && plugin.getDiscordManager().getJDA() != null) {
+            com.excrele.ecore.managers.DiscordMessageQueue queue = plugin.getDiscordManager().getMessageQueue();
+            sender.sendMessage("");
+            sender.sendMessage(ChatColor.GRAY + "Discord queue: " + ChatColor.WHITE + queue.getQueueSize() + " waiting "
+                + ChatColor.DARK_GRAY + queue.getBacklog());
+            sender.sendMessage(ChatColor.GRAY + "  Sent: " + ChatColor.WHITE + queue.getSentMessages() + " messages in "
+                + queue.getSentRequests() + " requests" + ChatColor.GRAY + ", retried: " + ChatColor.WHITE + queue.getRetries()
+                + ChatColor.GRAY + ", dropped: " + ChatColor.WHITE + queue.getDroppedMessages());
+        }
         
         sender.sendMessage(ChatColor.GOLD + "═══════════════════════════════════════");
     }
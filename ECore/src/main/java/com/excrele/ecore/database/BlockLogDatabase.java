@@ -10,7 +10,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -31,9 +33,15 @@ import com.excrele.ecore.Ecore;
  * Handles all database operations for block and inventory logging.
  */
 public class BlockLogDatabase {
+    private static final Comparator<BlockLogEntry> NEWEST_FIRST = Comparator.comparingLong((BlockLogEntry entry) -> entry.time).reversed();
+
     private final Ecore plugin;
     private Connection connection;
     private final String databaseType;
+    private BlockLogWriter writer;
+    private CompactBlockLogStore compactStore;
+    private BlockLogPartitions partitions;
+    private volatile boolean legacyRows; // Compact mode only: block_logs still holds unmigrated rows
 
     public BlockLogDatabase(Ecore plugin) {
         this.plugin = plugin;
@@ -59,21 +67,63 @@ public class BlockLogDatabase {
                 // SQLite (default)
                 String dbPath = plugin.getDataFolder().getAbsolutePath() + "/blocklog.db";
                 connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+                
+                // WAL lets lookups run while the writer thread commits batches
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA journal_mode=WAL");
+                    stmt.execute("PRAGMA synchronous=NORMAL");
+                }
             }
 
-            createTables();
+            String granularity = plugin.getConfigManager().getConfig().getString("block-logging.partitioning", "none");
+            partitions = new BlockLogPartitions(connection, granularity,
+                    Arrays.asList("block_logs", "container_logs", "inventory_logs", "inventory_snapshots", CompactBlockLogStore.LOG_TABLE),
+                    this::createPartition);
+            
+            createTables("");
+            startWriter();
+            
+            if (plugin.getConfigManager().getConfig().getString("block-logging.storage-mode", "standard").equalsIgnoreCase("compact")) {
+                compactStore = new CompactBlockLogStore(plugin, connection, writer, partitions);
+                compactStore.initialize();
+            }
+            partitions.load();
+            if (compactStore != null) {
+                legacyRows = hasLegacyRows();
+            }
             plugin.getLogger().info("Block logging database initialized (" + databaseType + ")");
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to initialize block logging database", e);
         }
     }
 
+    /**
+     * Starts the write-behind queue used for all log inserts.
+     */
+    private void startWriter() {
+        int capacity = plugin.getConfigManager().getConfig().getInt("block-logging.write-queue.capacity", 65536);
+        int flushSize = plugin.getConfigManager().getConfig().getInt("block-logging.write-queue.flush-size", 2000);
+        long flushInterval = plugin.getConfigManager().getConfig().getLong("block-logging.write-queue.flush-interval-ms", 500L);
+        boolean blockWhenFull = plugin.getConfigManager().getConfig().getBoolean("block-logging.write-queue.block-when-full", false);
+        long maxWait = plugin.getConfigManager().getConfig().getLong("block-logging.write-queue.max-wait-ms", 50L);
+        
+        writer = new BlockLogWriter(plugin, connection, capacity, flushSize, flushInterval, blockWhenFull, maxWait);
+        writer.start();
+    }
+
     /**
      * Creates all necessary tables if they don't exist.
+     *
+     * @param suffix The partition suffix, or an empty string for the base tables
      */
-    private void createTables() throws SQLException {
+    private void createTables(String suffix) throws SQLException {
+        String blockLogs = "block_logs" + suffix;
+        String containerLogs = "container_logs" + suffix;
+        String inventoryLogs = "inventory_logs" + suffix;
+        String inventorySnapshots = "inventory_snapshots" + suffix;
+        
         // Block logs table
-        String blockLogsTable = "CREATE TABLE IF NOT EXISTS block_logs (" +
+        String blockLogsTable = "CREATE TABLE IF NOT EXISTS " + blockLogs + " (" +
                 "id INTEGER PRIMARY KEY " + (databaseType.equals("mysql") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + "," +
                 "time BIGINT NOT NULL," +
                 "player_uuid VARCHAR(36) NOT NULL," +
@@ -88,7 +138,7 @@ public class BlockLogDatabase {
                 ")";
         
         // Container logs table
-        String containerLogsTable = "CREATE TABLE IF NOT EXISTS container_logs (" +
+        String containerLogsTable = "CREATE TABLE IF NOT EXISTS " + containerLogs + " (" +
                 "id INTEGER PRIMARY KEY " + (databaseType.equals("mysql") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + "," +
                 "time BIGINT NOT NULL," +
                 "player_uuid VARCHAR(36) NOT NULL," +
@@ -105,7 +155,7 @@ public class BlockLogDatabase {
                 ")";
         
         // Inventory logs table
-        String inventoryLogsTable = "CREATE TABLE IF NOT EXISTS inventory_logs (" +
+        String inventoryLogsTable = "CREATE TABLE IF NOT EXISTS " + inventoryLogs + " (" +
                 "id INTEGER PRIMARY KEY " + (databaseType.equals("mysql") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + "," +
                 "time BIGINT NOT NULL," +
                 "player_uuid VARCHAR(36) NOT NULL," +
@@ -119,7 +169,7 @@ public class BlockLogDatabase {
                 ")";
         
         // Inventory snapshots table (for rollback)
-        String inventorySnapshotsTable = "CREATE TABLE IF NOT EXISTS inventory_snapshots (" +
+        String inventorySnapshotsTable = "CREATE TABLE IF NOT EXISTS " + inventorySnapshots + " (" +
                 "id INTEGER PRIMARY KEY " + (databaseType.equals("mysql") ? "AUTO_INCREMENT" : "AUTOINCREMENT") + "," +
                 "time BIGINT NOT NULL," +
                 "player_uuid VARCHAR(36) NOT NULL," +
@@ -134,15 +184,38 @@ public class BlockLogDatabase {
             stmt.execute(inventorySnapshotsTable);
             
             // Create indexes for better query performance
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_block_logs_time ON block_logs(time)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_block_logs_player ON block_logs(player_uuid)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_block_logs_location ON block_logs(world, x, y, z)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_container_logs_time ON container_logs(time)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_container_logs_player ON container_logs(player_uuid)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_inventory_logs_time ON inventory_logs(time)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_inventory_logs_player ON inventory_logs(player_uuid)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_inventory_snapshots_time ON inventory_snapshots(time)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_inventory_snapshots_player ON inventory_snapshots(player_uuid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + blockLogs + "_time ON " + blockLogs + "(time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + blockLogs + "_player ON " + blockLogs + "(player_uuid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + blockLogs + "_location ON " + blockLogs + "(world, x, y, z)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + containerLogs + "_time ON " + containerLogs + "(time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + containerLogs + "_player ON " + containerLogs + "(player_uuid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + inventoryLogs + "_time ON " + inventoryLogs + "(time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + inventoryLogs + "_player ON " + inventoryLogs + "(player_uuid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + inventorySnapshots + "_time ON " + inventorySnapshots + "(time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + inventorySnapshots + "_player ON " + inventorySnapshots + "(player_uuid)");
+        }
+    }
+
+    /**
+     * Creates every table of a time partition.
+     */
+    private void createPartition(String suffix) throws SQLException {
+        createTables(suffix);
+        if (compactStore != null) {
+            compactStore.createLogTable(suffix);
+        }
+    }
+
+    /**
+     * Creates upcoming partitions ahead of time so logging never waits on DDL.
+     */
+    public void maintainPartitions() {
+        if (partitions == null) return;
+        
+        try {
+            partitions.maintain();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to create block log partitions", e);
         }
     }
 
@@ -150,99 +223,83 @@ public class BlockLogDatabase {
      * Logs a block action (place, break, etc.)
      */
     public void logBlockAction(UUID playerUuid, String playerName, String action, Location location, Material material, String data) {
-        if (connection == null) return;
+        if (writer == null) return;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (PreparedStatement stmt = connection.prepareStatement(
-                    "INSERT INTO block_logs (time, player_uuid, player_name, action, world, x, y, z, material, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, playerUuid.toString());
-                stmt.setString(3, playerName);
-                stmt.setString(4, action);
-                stmt.setString(5, location.getWorld().getName());
-                stmt.setInt(6, location.getBlockX());
-                stmt.setInt(7, location.getBlockY());
-                stmt.setInt(8, location.getBlockZ());
-                stmt.setString(9, material != null ? material.name() : null);
-                stmt.setString(10, data);
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to log block action", e);
-            }
-        });
+        long time = System.currentTimeMillis();
+        if (compactStore != null) {
+            compactStore.log(time, playerUuid, playerName, action, location.getWorld().getName(),
+                    location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                    material != null ? material.name() : null, data);
+            return;
+        }
+        
+        writer.enqueue("INSERT INTO " + partitions.tableFor("block_logs", time) + " (time, player_uuid, player_name, action, world, x, y, z, material, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                time,
+                playerUuid.toString(),
+                playerName,
+                action,
+                location.getWorld().getName(),
+                location.getBlockX(),
+                location.getBlockY(),
+                location.getBlockZ(),
+                material != null ? material.name() : null,
+                data);
     }
 
     /**
      * Logs a container action (open, take, place, etc.)
      */
     public void logContainerAction(UUID playerUuid, String playerName, String action, Location location, int slot, ItemStack item) {
-        if (connection == null) return;
+        if (writer == null) return;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (PreparedStatement stmt = connection.prepareStatement(
-                    "INSERT INTO container_logs (time, player_uuid, player_name, action, world, x, y, z, slot, item_type, item_amount, item_data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, playerUuid.toString());
-                stmt.setString(3, playerName);
-                stmt.setString(4, action);
-                stmt.setString(5, location.getWorld().getName());
-                stmt.setInt(6, location.getBlockX());
-                stmt.setInt(7, location.getBlockY());
-                stmt.setInt(8, location.getBlockZ());
-                stmt.setInt(9, slot);
-                stmt.setString(10, item != null ? item.getType().name() : null);
-                stmt.setInt(11, item != null ? item.getAmount() : 0);
-                stmt.setString(12, item != null ? serializeItemStack(item) : null);
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to log container action", e);
-            }
-        });
+        // Serialize now, the ItemStack may change before the writer thread gets to it
+        long time = System.currentTimeMillis();
+        writer.enqueue("INSERT INTO " + partitions.tableFor("container_logs", time) + " (time, player_uuid, player_name, action, world, x, y, z, slot, item_type, item_amount, item_data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                time,
+                playerUuid.toString(),
+                playerName,
+                action,
+                location.getWorld().getName(),
+                location.getBlockX(),
+                location.getBlockY(),
+                location.getBlockZ(),
+                slot,
+                item != null ? item.getType().name() : null,
+                item != null ? item.getAmount() : 0,
+                item != null ? serializeItemStack(item) : null);
     }
 
     /**
      * Logs an inventory action (take, place, drop, etc.)
      */
     public void logInventoryAction(UUID playerUuid, String playerName, String action, int slot, ItemStack item, String inventoryType) {
-        if (connection == null) return;
+        if (writer == null) return;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (PreparedStatement stmt = connection.prepareStatement(
-                    "INSERT INTO inventory_logs (time, player_uuid, player_name, action, slot, item_type, item_amount, item_data, inventory_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, playerUuid.toString());
-                stmt.setString(3, playerName);
-                stmt.setString(4, action);
-                stmt.setInt(5, slot);
-                stmt.setString(6, item != null ? item.getType().name() : null);
-                stmt.setInt(7, item != null ? item.getAmount() : 0);
-                stmt.setString(8, item != null ? serializeItemStack(item) : null);
-                stmt.setString(9, inventoryType);
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to log inventory action", e);
-            }
-        });
+        long time = System.currentTimeMillis();
+        writer.enqueue("INSERT INTO " + partitions.tableFor("inventory_logs", time) + " (time, player_uuid, player_name, action, slot, item_type, item_amount, item_data, inventory_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                time,
+                playerUuid.toString(),
+                playerName,
+                action,
+                slot,
+                item != null ? item.getType().name() : null,
+                item != null ? item.getAmount() : 0,
+                item != null ? serializeItemStack(item) : null,
+                inventoryType);
     }
 
     /**
      * Saves an inventory snapshot for rollback purposes.
      */
     public void saveInventorySnapshot(UUID playerUuid, String playerName, String inventoryData) {
-        if (connection == null) return;
+        if (writer == null) return;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (PreparedStatement stmt = connection.prepareStatement(
-                    "INSERT INTO inventory_snapshots (time, player_uuid, player_name, inventory_data) VALUES (?, ?, ?, ?)")) {
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, playerUuid.toString());
-                stmt.setString(3, playerName);
-                stmt.setString(4, inventoryData);
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to save inventory snapshot", e);
-            }
-        });
+        long time = System.currentTimeMillis();
+        writer.enqueue("INSERT INTO " + partitions.tableFor("inventory_snapshots", time) + " (time, player_uuid, player_name, inventory_data) VALUES (?, ?, ?, ?)",
+                time,
+                playerUuid.toString(),
+                playerName,
+                inventoryData);
     }
 
     /**
@@ -252,33 +309,32 @@ public class BlockLogDatabase {
         List<BlockLogEntry> logs = new ArrayList<>();
         if (connection == null) return logs;
         
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT * FROM block_logs WHERE world = ? AND x = ? AND y = ? AND z = ? AND time >= ? ORDER BY time DESC")) {
-            stmt.setString(1, location.getWorld().getName());
-            stmt.setInt(2, location.getBlockX());
-            stmt.setInt(3, location.getBlockY());
-            stmt.setInt(4, location.getBlockZ());
-            stmt.setLong(5, System.currentTimeMillis() - timeRange);
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                logs.add(new BlockLogEntry(
-                        rs.getLong("time"),
-                        UUID.fromString(rs.getString("player_uuid")),
-                        rs.getString("player_name"),
-                        rs.getString("action"),
-                        rs.getString("world"),
-                        rs.getInt("x"),
-                        rs.getInt("y"),
-                        rs.getInt("z"),
-                        rs.getString("material"),
-                        rs.getString("data")
-                ));
+        long since = System.currentTimeMillis() - timeRange;
+        if (compactStore != null) {
+            logs.addAll(compactStore.getBlockLogs(location.getWorld().getName(), location.getBlockX(),
+                    location.getBlockY(), location.getBlockZ(), since));
+            if (!legacyRows) return logs;
+        }
+        
+        // Partitions come newest first, so appending keeps the time DESC order
+        for (String table : partitions.tablesFor("block_logs", since)) {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE world = ? AND x = ? AND y = ? AND z = ? AND time >= ? ORDER BY time DESC")) {
+                stmt.setString(1, location.getWorld().getName());
+                stmt.setInt(2, location.getBlockX());
+                stmt.setInt(3, location.getBlockY());
+                stmt.setInt(4, location.getBlockZ());
+                stmt.setLong(5, since);
+                readBlockLogEntries(stmt, logs);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to get block logs", e);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get block logs", e);
         }
         
+        if (compactStore != null) {
+            // Unmigrated rows are interleaved with the compact ones
+            logs.sort(NEWEST_FIRST);
+        }
         return logs;
     }
 
@@ -289,13 +345,57 @@ public class BlockLogDatabase {
         List<BlockLogEntry> logs = new ArrayList<>();
         if (connection == null) return logs;
         
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT * FROM block_logs WHERE player_uuid = ? AND time >= ? ORDER BY time DESC LIMIT ?")) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.setLong(2, System.currentTimeMillis() - timeRange);
-            stmt.setInt(3, limit);
-            
-            ResultSet rs = stmt.executeQuery();
+        long since = System.currentTimeMillis() - timeRange;
+        if (compactStore == null) {
+            readPlayerBlockLogs(playerUuid, since, limit, logs);
+            return logs;
+        }
+        
+        logs.addAll(compactStore.getPlayerBlockLogs(playerUuid, since, limit));
+        if (!legacyRows) return logs;
+        
+        // Both sources are newest first; keep the newest rows of the two
+        List<BlockLogEntry> legacy = new ArrayList<>();
+        readPlayerBlockLogs(playerUuid, since, limit, legacy);
+        logs.addAll(legacy);
+        logs.sort(NEWEST_FIRST);
+        return logs.size() > limit ? new ArrayList<>(logs.subList(0, limit)) : logs;
+    }
+
+    /**
+     * Reads a player's rows from the block_logs tables, newest first.
+     */
+    private void readPlayerBlockLogs(UUID playerUuid, long since, int limit, List<BlockLogEntry> logs) {
+        for (String table : partitions.tablesFor("block_logs", since)) {
+            if (logs.size() >= limit) break;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE player_uuid = ? AND time >= ? ORDER BY time DESC LIMIT ?")) {
+                stmt.setString(1, playerUuid.toString());
+                stmt.setLong(2, since);
+                stmt.setInt(3, limit - logs.size());
+                readBlockLogEntries(stmt, logs);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to get player block logs", e);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any block_logs table still holds rows that were written before
+     * compact storage was enabled. Lookups include them until they are migrated.
+     */
+    private boolean hasLegacyRows() throws SQLException {
+        for (String table : partitions.tablesFor("block_logs", Long.MIN_VALUE)) {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+
+    private void readBlockLogEntries(PreparedStatement stmt, List<BlockLogEntry> logs) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
                 logs.add(new BlockLogEntry(
                         rs.getLong("time"),
@@ -310,11 +410,7 @@ public class BlockLogDatabase {
                         rs.getString("data")
                 ));
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get player block logs", e);
         }
-        
-        return logs;
     }
 
     /**
@@ -324,23 +420,28 @@ public class BlockLogDatabase {
         List<InventorySnapshot> snapshots = new ArrayList<>();
         if (connection == null) return snapshots;
         
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT * FROM inventory_snapshots WHERE player_uuid = ? AND time >= ? ORDER BY time DESC LIMIT ?")) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.setLong(2, System.currentTimeMillis() - timeRange);
-            stmt.setInt(3, limit);
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                snapshots.add(new InventorySnapshot(
-                        rs.getLong("time"),
-                        UUID.fromString(rs.getString("player_uuid")),
-                        rs.getString("player_name"),
-                        rs.getString("inventory_data")
-                ));
+        long since = System.currentTimeMillis() - timeRange;
+        for (String table : partitions.tablesFor("inventory_snapshots", since)) {
+            if (snapshots.size() >= limit) break;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE player_uuid = ? AND time >= ? ORDER BY time DESC LIMIT ?")) {
+                stmt.setString(1, playerUuid.toString());
+                stmt.setLong(2, since);
+                stmt.setInt(3, limit - snapshots.size());
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        snapshots.add(new InventorySnapshot(
+                                rs.getLong("time"),
+                                UUID.fromString(rs.getString("player_uuid")),
+                                rs.getString("player_name"),
+                                rs.getString("inventory_data")
+                        ));
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to get inventory snapshots", e);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get inventory snapshots", e);
         }
         
         return snapshots;
@@ -348,6 +449,8 @@ public class BlockLogDatabase {
 
     /**
      * Purges old logs based on retention days.
+     * Whole partitions that ended before the cutoff are dropped; rows in the
+     * unpartitioned base tables are deleted individually.
      */
     public void purgeOldLogs(int retentionDays) {
         if (connection == null) return;
@@ -355,25 +458,93 @@ public class BlockLogDatabase {
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             long cutoffTime = System.currentTimeMillis() - (retentionDays * 24L * 60L * 60L * 1000L);
             
-            try (Statement stmt = connection.createStatement()) {
-                int blockLogsDeleted = stmt.executeUpdate("DELETE FROM block_logs WHERE time < " + cutoffTime);
-                int containerLogsDeleted = stmt.executeUpdate("DELETE FROM container_logs WHERE time < " + cutoffTime);
-                int inventoryLogsDeleted = stmt.executeUpdate("DELETE FROM inventory_logs WHERE time < " + cutoffTime);
-                int snapshotsDeleted = stmt.executeUpdate("DELETE FROM inventory_snapshots WHERE time < " + cutoffTime);
-                
-                plugin.getLogger().info("Purged old logs: " + blockLogsDeleted + " block logs, " + 
-                        containerLogsDeleted + " container logs, " + inventoryLogsDeleted + " inventory logs, " +
-                        snapshotsDeleted + " snapshots");
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to purge old logs", e);
+            // Keep the purge out of the writer's open transaction
+            synchronized (connection) {
+                try (Statement stmt = connection.createStatement()) {
+                    int partitionsDropped = partitions.dropBefore(cutoffTime);
+                    int blockLogsDeleted = purgeBaseTable(stmt, "block_logs", cutoffTime);
+                    int containerLogsDeleted = purgeBaseTable(stmt, "container_logs", cutoffTime);
+                    int inventoryLogsDeleted = purgeBaseTable(stmt, "inventory_logs", cutoffTime);
+                    int snapshotsDeleted = purgeBaseTable(stmt, "inventory_snapshots", cutoffTime);
+                    if (compactStore != null) {
+                        blockLogsDeleted += purgeBaseTable(stmt, CompactBlockLogStore.LOG_TABLE, cutoffTime);
+                    }
+                    
+                    plugin.getLogger().info("Purged old logs: " + partitionsDropped + " partitions, " + blockLogsDeleted + " block logs, " + 
+                            containerLogsDeleted + " container logs, " + inventoryLogsDeleted + " inventory logs, " +
+                            snapshotsDeleted + " snapshots");
+                } catch (SQLException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to purge old logs", e);
+                }
             }
         });
     }
 
     /**
-     * Closes the database connection.
+     * Deletes expired rows from an unpartitioned base table.
+     * With partitioning the base tables only hold rows from before it was enabled, or
+     * rows written while their partition did not exist yet, so the delete is skipped
+     * unless an index lookup finds an expired row.
+     */
+    private int purgeBaseTable(Statement stmt, String table, long cutoffTime) throws SQLException {
+        if (partitions.isEnabled()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " WHERE time < " + cutoffTime + " LIMIT 1")) {
+                if (!rs.next()) return 0;
+            }
+        }
+        return stmt.executeUpdate("DELETE FROM " + table + " WHERE time < " + cutoffTime);
+    }
+
+    /**
+     * Moves legacy block_logs rows into the compact storage format.
+     * Must not be called from the main thread.
+     *
+     * @return The number of migrated rows, or -1 if compact storage is not enabled
+     */
+    public long migrateToCompact() throws SQLException {
+        if (compactStore == null) return -1;
+        
+        long migrated = compactStore.migrateLegacyRows();
+        legacyRows = false;
+        if (!databaseType.equals("mysql")) {
+            // Reclaim the space freed by the legacy rows
+            synchronized (connection) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("VACUUM");
+                }
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * Checks if block logs are stored in the compact format.
+     */
+    public boolean isCompactStorage() {
+        return compactStore != null;
+    }
+
+    /**
+     * Gets the time partitions, or null if the database failed to initialize.
+     */
+    public BlockLogPartitions getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Gets the write-behind queue, or null if the database failed to initialize.
+     */
+    public BlockLogWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Flushes pending writes and closes the database connection.
      */
     public void close() {
+        if (writer != null) {
+            writer.shutdown();
+        }
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
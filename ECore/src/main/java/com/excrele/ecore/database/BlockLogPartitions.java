@@ -0,0 +1,228 @@
+package com.excrele.ecore.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Time partitioning for the block logging tables.
+ * Each day or week gets its own set of tables (for example {@code block_logs_p20261012}),
+ * so retention can drop whole partitions instead of deleting rows, and time-bounded
+ * lookups only touch the partitions that overlap the requested range.
+ * The unsuffixed base tables are kept as a legacy partition that holds rows written
+ * before partitioning was enabled.
+ */
+public class BlockLogPartitions {
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Connection connection;
+    private final int periodDays;
+    private final List<String> baseTables;
+    private final PartitionCreator creator;
+    private final ConcurrentSkipListSet<Long> periods;
+    private volatile CurrentPartition current;
+
+    /**
+     * Creates every table belonging to one partition.
+     */
+    public interface PartitionCreator {
+        void create(String suffix) throws SQLException;
+    }
+
+    /**
+     * @param connection The block logging connection
+     * @param granularity "day", "week" or anything else to disable partitioning
+     * @param baseTables The base names of all partitioned tables
+     * @param creator Creates the tables for a partition suffix
+     */
+    public BlockLogPartitions(Connection connection, String granularity, List<String> baseTables, PartitionCreator creator) {
+        this.connection = connection;
+        if (granularity.equalsIgnoreCase("day")) {
+            this.periodDays = 1;
+        } else if (granularity.equalsIgnoreCase("week")) {
+            this.periodDays = 7;
+        } else {
+            this.periodDays = 0;
+        }
+        this.baseTables = new ArrayList<>(baseTables);
+        this.creator = creator;
+        this.periods = new ConcurrentSkipListSet<>();
+    }
+
+    public boolean isEnabled() {
+        return periodDays > 0;
+    }
+
+    /**
+     * Discovers existing partitions and makes sure the current and next ones exist.
+     */
+    public void load() throws SQLException {
+        if (!isEnabled()) return;
+
+        DatabaseMetaData meta = connection.getMetaData();
+        for (String base : baseTables) {
+            try (ResultSet rs = meta.getTables(null, null, base + "_p%", new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    Long period = parsePeriod(base, rs.getString("TABLE_NAME"));
+                    if (period != null) {
+                        periods.add(period);
+                    }
+                }
+            }
+        }
+
+        // Tables added in a later version (or a storage mode switch) may be missing from old partitions
+        for (long period : periods) {
+            creator.create(suffix(period));
+        }
+        maintain();
+    }
+
+    /**
+     * Creates the partitions for the current and the next period ahead of time,
+     * so the logging path never has to run DDL.
+     */
+    public void maintain() throws SQLException {
+        if (!isEnabled()) return;
+        long now = System.currentTimeMillis();
+        ensure(periodStart(now));
+        ensure(periodStart(now + periodDays * DAY_MILLIS));
+    }
+
+    /**
+     * Gets the table a row with the given time should be written to.
+     * Partitions are only created by {@link #maintain()}; if the partition does not
+     * exist yet, the row goes to the base table so the logging path never runs DDL.
+     */
+    public String tableFor(String base, long time) {
+        if (!isEnabled()) return base;
+
+        long period = periodStart(time);
+        CurrentPartition cached = current;
+        if (cached != null && cached.period == period) {
+            return base + cached.suffix;
+        }
+        if (!periods.contains(period)) return base;
+
+        String suffix = suffix(period);
+        if (cached == null || period > cached.period) {
+            current = new CurrentPartition(period, suffix);
+        }
+        return base + suffix;
+    }
+
+    /**
+     * Gets every table that may hold rows newer than the given time, newest partition first.
+     * The legacy base table is always last.
+     */
+    public List<String> tablesFor(String base, long since) {
+        List<String> tables = new ArrayList<>();
+        if (isEnabled()) {
+            for (long period : periods.descendingSet()) {
+                if (periodEnd(period) <= since) break;
+                tables.add(base + suffix(period));
+            }
+        }
+        tables.add(base);
+        return tables;
+    }
+
+    /**
+     * Drops every partition that ends before the cutoff time.
+     *
+     * @return The number of dropped partitions
+     */
+    public int dropBefore(long cutoffTime) throws SQLException {
+        if (!isEnabled()) return 0;
+
+        int dropped = 0;
+        for (long period : periods) {
+            if (periodEnd(period) > cutoffTime) break;
+
+            String suffix = suffix(period);
+            synchronized (connection) {
+                try (Statement stmt = connection.createStatement()) {
+                    for (String base : baseTables) {
+                        stmt.execute("DROP TABLE IF EXISTS " + base + suffix);
+                    }
+                }
+            }
+            periods.remove(period);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Gets the number of existing partitions.
+     */
+    public int getPartitionCount() {
+        return periods.size();
+    }
+
+    private String ensure(long period) throws SQLException {
+        String suffix = suffix(period);
+        if (periods.contains(period)) return suffix;
+
+        synchronized (connection) {
+            if (!periods.contains(period)) {
+                creator.create(suffix);
+                periods.add(period);
+            }
+        }
+        return suffix;
+    }
+
+    /**
+     * Gets the first epoch day of the period containing the given time.
+     * Weeks start on Monday (epoch day 0 was a Thursday).
+     */
+    private long periodStart(long time) {
+        long epochDay = Math.floorDiv(time, DAY_MILLIS);
+        if (periodDays == 7) {
+            return Math.floorDiv(epochDay + 3, 7) * 7 - 3;
+        }
+        return Math.floorDiv(epochDay, periodDays) * periodDays;
+    }
+
+    private long periodEnd(long period) {
+        return (period + periodDays) * DAY_MILLIS;
+    }
+
+    private String suffix(long period) {
+        return "_p" + LocalDate.ofEpochDay(period).format(SUFFIX_FORMAT);
+    }
+
+    private Long parsePeriod(String base, String tableName) {
+        String prefix = base + "_p";
+        if (tableName == null || !tableName.startsWith(prefix)) return null;
+
+        String date = tableName.substring(prefix.length());
+        if (date.length() != 8) return null;
+        for (int i = 0; i < date.length(); i++) {
+            if (!Character.isDigit(date.charAt(i))) return null;
+        }
+        return LocalDate.parse(date, SUFFIX_FORMAT).toEpochDay();
+    }
+
+    /**
+     * The partition most rows are currently written to.
+     */
+    private static class CurrentPartition {
+        final long period;
+        final String suffix;
+
+        CurrentPartition(long period, String suffix) {
+            this.period = period;
+            this.suffix = suffix;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.excrele.ecore.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import com.excrele.ecore.Ecore;
+
+/**
+ * Write-behind pipeline for block logging inserts.
+ * Log rows are buffered in a bounded ring buffer and drained by a single writer
+ * thread into reusable JDBC batches, committing one transaction per flush.
+ * Rows that log rows depend on, such as dictionary entries, go through a separate
+ * unbounded queue that is never dropped and is committed before each batch.
+ */
+public class BlockLogWriter implements Runnable {
+    private static final int MAX_CACHED_STATEMENTS = 32;
+    private static final long RETRY_DELAY_MILLIS = 1000L;
+
+    private final Ecore plugin;
+    private final Connection connection;
+    private final BlockingQueue<PendingInsert> queue;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final boolean blockWhenFull;
+    private final long maxWaitMillis;
+    private final Map<String, PreparedStatement> statements;
+    private final List<PendingInsert> batch;
+    private final Queue<PendingInsert> required;
+    private final List<PendingInsert> requiredBacklog; // Taken from required, not yet committed
+    private final Thread thread;
+    private volatile boolean running;
+
+    // Backpressure metrics
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile int highWaterMark;
+    private volatile long lastFlushNanos;
+    private volatile int lastFlushSize;
+
+    public BlockLogWriter(Ecore plugin, Connection connection, int capacity, int flushSize,
+                          long flushIntervalMillis, boolean blockWhenFull, long maxWaitMillis) {
+        this.plugin = plugin;
+        this.connection = connection;
+        this.capacity = Math.max(1, capacity);
+        this.flushSize = Math.max(1, Math.min(flushSize, this.capacity));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, flushIntervalMillis));
+        this.blockWhenFull = blockWhenFull;
+        this.maxWaitMillis = Math.max(0L, maxWaitMillis);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.statements = new HashMap<>();
+        this.batch = new ArrayList<>(this.flushSize);
+        this.required = new ConcurrentLinkedQueue<>();
+        this.requiredBacklog = new ArrayList<>();
+        this.thread = new Thread(this, "Ecore-BlockLogWriter");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Queues an insert for the writer thread.
+     * When the buffer is full the row is either dropped or the caller waits up to
+     * the configured time for space and then drops it, depending on the backpressure policy.
+     * Rows are logged from the main thread, so the wait is always bounded.
+     *
+     * @param sql The insert statement
+     * @param params The statement parameters, in order
+     * @return true if the row was queued
+     */
+    public boolean enqueue(String sql, Object... params) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        PendingInsert insert = new PendingInsert(sql, params);
+        boolean queued;
+        if (blockWhenFull) {
+            try {
+                queued = queue.offer(insert, maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(insert);
+        }
+
+        if (!queued) {
+            if (dropped.incrementAndGet() % 1000 == 1) {
+                plugin.getLogger().warning("Block log write queue is full (" + capacity
+                        + " rows), dropping log entries. Dropped so far: " + dropped.get());
+            }
+            return false;
+        }
+
+        enqueued.incrementAndGet();
+        int size = queue.size();
+        if (size > highWaterMark) {
+            highWaterMark = size;
+        }
+        return true;
+    }
+
+    /**
+     * Queues a row that later log rows depend on, such as a dictionary entry.
+     * These rows are never dropped: every flush commits them before its log rows,
+     * and a flush that cannot write them is retried until it can.
+     */
+    public void enqueueRequired(String sql, Object... params) {
+        required.add(new PendingInsert(sql, params));
+    }
+
+    private boolean hasRequiredRows() {
+        return !required.isEmpty() || !requiredBacklog.isEmpty();
+    }
+
+    @Override
+    public void run() {
+        while (running || !queue.isEmpty() || !batch.isEmpty() || hasRequiredRows()) {
+            try {
+                if (batch.isEmpty()) {
+                    PendingInsert first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                    }
+                }
+
+                // Let the batch fill up until it is full or the flush interval elapses
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (!batch.isEmpty() && batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    if (batch.size() >= flushSize || !running) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested; drain whatever is left below
+                running = false;
+                queue.drainTo(batch, flushSize - batch.size());
+            }
+
+            if (batch.isEmpty() && !hasRequiredRows()) continue;
+            if (flush(batch)) {
+                batch.clear();
+            } else if (!running) {
+                plugin.getLogger().warning("Block log database is unavailable, " + (batch.size() + requiredBacklog.size()
+                        + required.size() + queue.size()) + " rows were not written");
+                break;
+            } else {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+        closeStatements();
+    }
+
+    /**
+     * Writes one batch of rows inside a single transaction.
+     * If the transaction fails the batch is split in half and each half is retried,
+     * so a bad row only costs itself instead of the whole batch.
+     *
+     * @return false if the required rows could not be written, in which case the log
+     *         rows are kept for the next attempt
+     */
+    private boolean flush(List<PendingInsert> rows) {
+        long start = System.nanoTime();
+        synchronized (connection) {
+            PendingInsert row;
+            while ((row = required.poll()) != null) {
+                requiredBacklog.add(row);
+            }
+            if (!requiredBacklog.isEmpty()) {
+                try {
+                    writeBatch(requiredBacklog);
+                    written.addAndGet(requiredBacklog.size());
+                    requiredBacklog.clear();
+                } catch (SQLException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to write " + requiredBacklog.size()
+                            + " block log dictionary rows, retrying", e);
+                    return false;
+                }
+            }
+            if (rows.isEmpty()) return true;
+
+            SQLException[] firstError = new SQLException[1];
+            long failedBefore = failed.get();
+            writeSplitting(rows, firstError);
+            long lost = failed.get() - failedBefore;
+            if (lost > 0) {
+                plugin.getLogger().log(Level.WARNING, "Dropped " + lost + " of " + rows.size()
+                        + " block log rows that could not be written", firstError[0]);
+            }
+        }
+        flushes.incrementAndGet();
+        lastFlushSize = rows.size();
+        lastFlushNanos = System.nanoTime() - start;
+        return true;
+    }
+
+    private void writeSplitting(List<PendingInsert> rows, SQLException[] firstError) {
+        try {
+            writeBatch(rows);
+            written.addAndGet(rows.size());
+        } catch (SQLException e) {
+            if (firstError[0] == null) {
+                firstError[0] = e;
+            }
+            if (rows.size() == 1) {
+                failed.incrementAndGet();
+                return;
+            }
+            int middle = rows.size() / 2;
+            writeSplitting(rows.subList(0, middle), firstError);
+            writeSplitting(rows.subList(middle, rows.size()), firstError);
+        }
+    }
+
+    /**
+     * Writes rows in one transaction, rolling it back if any row fails. Caller holds the connection lock.
+     */
+    private void writeBatch(List<PendingInsert> rows) throws SQLException {
+        Set<PreparedStatement> used = new LinkedHashSet<>();
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            for (PendingInsert row : rows) {
+                PreparedStatement stmt = getStatement(row.sql);
+                for (int i = 0; i < row.params.length; i++) {
+                    stmt.setObject(i + 1, row.params[i]);
+                }
+                stmt.addBatch();
+                used.add(stmt);
+            }
+            for (PreparedStatement stmt : used) {
+                stmt.executeBatch();
+            }
+            connection.commit();
+            retainStatements(used);
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // Connection is unusable; nothing left to undo
+            }
+            // Statements may hold rows of the failed batch, prepare them again
+            closeStatements();
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to restore auto-commit on block log database", e);
+            }
+        }
+    }
+
+    private PreparedStatement getStatement(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Closes cached statements that were not part of the last flush once the cache grows,
+     * e.g. inserts into time partitions that are no longer written to.
+     */
+    private void retainStatements(Set<PreparedStatement> used) {
+        if (statements.size() <= MAX_CACHED_STATEMENTS) return;
+
+        Iterator<PreparedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            PreparedStatement stmt = iterator.next();
+            if (!used.contains(stmt)) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                    // Already closed
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+                // Already closed
+            }
+        }
+        statements.clear();
+    }
+
+    /**
+     * Stops accepting rows, flushes everything still queued and waits for the writer thread.
+     */
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            plugin.getLogger().warning("Block log writer did not finish in time, " + queue.size() + " rows were not written");
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    /**
+     * A single queued insert.
+     */
+    private static class PendingInsert {
+        final String sql;
+        final Object[] params;
+
+        PendingInsert(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+}
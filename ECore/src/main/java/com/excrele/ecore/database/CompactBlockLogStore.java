@@ -0,0 +1,416 @@
+package com.excrele.ecore.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import com.excrele.ecore.Ecore;
+
+/**
+ * Compact storage format for block logs.
+ * Players, worlds, actions, materials and block data are interned into small
+ * dictionary tables, and each log row only stores integer ids plus a packed
+ * chunk-major position key.
+ */
+public class CompactBlockLogStore {
+    public static final String LOG_TABLE = "block_logs_compact";
+    private static final String INSERT_COLUMNS =
+            " (time, player_id, action_id, world_id, pos, material_id, data_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final int MIGRATION_BATCH_SIZE = 10000;
+
+    private final Ecore plugin;
+    private final Connection connection;
+    private final BlockLogWriter writer;
+    private final BlockLogPartitions partitions;
+    private final Dictionary players;
+    private final Dictionary worlds;
+    private final Dictionary actions;
+    private final Dictionary materials;
+    private final Dictionary blockData;
+    private final Map<Integer, String> playerNames;
+
+    public CompactBlockLogStore(Ecore plugin, Connection connection, BlockLogWriter writer, BlockLogPartitions partitions) {
+        this.plugin = plugin;
+        this.connection = connection;
+        this.writer = writer;
+        this.partitions = partitions;
+        this.players = new Dictionary("bl_players");
+        this.worlds = new Dictionary("bl_worlds");
+        this.actions = new Dictionary("bl_actions");
+        this.materials = new Dictionary("bl_materials");
+        this.blockData = new Dictionary("bl_block_data");
+        this.playerNames = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates the compact tables and loads all dictionaries into memory.
+     */
+    public void initialize() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (Dictionary dictionary : new Dictionary[]{worlds, actions, materials, blockData}) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + dictionary.table + " (" +
+                        "id INTEGER PRIMARY KEY," +
+                        "value TEXT NOT NULL" +
+                        ")");
+            }
+            stmt.execute("CREATE TABLE IF NOT EXISTS bl_players (" +
+                    "id INTEGER PRIMARY KEY," +
+                    "value VARCHAR(36) NOT NULL," +
+                    "name VARCHAR(16)" +
+                    ")");
+        }
+        createLogTable("");
+
+        for (Dictionary dictionary : new Dictionary[]{worlds, actions, materials, blockData}) {
+            dictionary.load();
+        }
+        players.load();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM bl_players")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name != null) {
+                    playerNames.put(rs.getInt("id"), name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a compact log table and its indexes.
+     *
+     * @param suffix The partition suffix, or an empty string for the base table
+     */
+    public void createLogTable(String suffix) throws SQLException {
+        String table = LOG_TABLE + suffix;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                    "time BIGINT NOT NULL," +
+                    "player_id INTEGER NOT NULL," +
+                    "action_id INTEGER NOT NULL," +
+                    "world_id INTEGER NOT NULL," +
+                    "pos BIGINT NOT NULL," +
+                    "material_id INTEGER," +
+                    "data_id INTEGER" +
+                    ")");
+
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_time ON " + table + "(time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_player ON " + table + "(player_id, time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_pos ON " + table + "(world_id, pos, time)");
+        }
+    }
+
+    /**
+     * Queues a block log row in compact form.
+     */
+    public void log(long time, UUID playerUuid, String playerName, String action, String world,
+                    int x, int y, int z, String material, String data) {
+        writer.enqueue("INSERT INTO " + partitions.tableFor(LOG_TABLE, time) + INSERT_COLUMNS,
+                time,
+                internPlayer(playerUuid, playerName),
+                actions.intern(action),
+                worlds.intern(world),
+                packPosition(x, y, z),
+                material != null ? materials.intern(material) : null,
+                data != null ? blockData.intern(data) : null);
+    }
+
+    /**
+     * Gets block logs for a single block position.
+     */
+    public List<BlockLogDatabase.BlockLogEntry> getBlockLogs(String world, int x, int y, int z, long since) {
+        List<BlockLogDatabase.BlockLogEntry> logs = new ArrayList<>();
+        Integer worldId = worlds.lookup(world);
+        if (worldId == null) return logs;
+
+        long pos = packPosition(x, y, z);
+        for (String table : partitions.tablesFor(LOG_TABLE, since)) {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE world_id = ? AND pos = ? AND time >= ? ORDER BY time DESC")) {
+                stmt.setInt(1, worldId);
+                stmt.setLong(2, pos);
+                stmt.setLong(3, since);
+                readEntries(stmt, logs);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to get block logs", e);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Gets block logs for a single player.
+     */
+    public List<BlockLogDatabase.BlockLogEntry> getPlayerBlockLogs(UUID playerUuid, long since, int limit) {
+        List<BlockLogDatabase.BlockLogEntry> logs = new ArrayList<>();
+        Integer playerId = players.lookup(playerUuid.toString());
+        if (playerId == null) return logs;
+
+        for (String table : partitions.tablesFor(LOG_TABLE, since)) {
+            if (logs.size() >= limit) break;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE player_id = ? AND time >= ? ORDER BY time DESC LIMIT ?")) {
+                stmt.setInt(1, playerId);
+                stmt.setLong(2, since);
+                stmt.setInt(3, limit - logs.size());
+                readEntries(stmt, logs);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to get player block logs", e);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Moves all rows from the legacy block_logs tables into the compact tables.
+     * Each partition is migrated into the compact partition of the same period.
+     *
+     * @return The number of migrated rows
+     */
+    public long migrateLegacyRows() throws SQLException {
+        long migrated = 0;
+        for (String source : partitions.tablesFor("block_logs", Long.MIN_VALUE)) {
+            String target = LOG_TABLE + source.substring("block_logs".length());
+            migrated += migrateTable(source, target);
+        }
+        return migrated;
+    }
+
+    /**
+     * Rows are copied and deleted in chunks, one transaction per chunk, so an
+     * interrupted migration can simply be started again.
+     */
+    private long migrateTable(String source, String target) throws SQLException {
+        long migrated = 0;
+        while (true) {
+            int moved = 0;
+            synchronized (connection) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement select = connection.prepareStatement(
+                             "SELECT * FROM " + source + " ORDER BY id LIMIT " + MIGRATION_BATCH_SIZE);
+                     PreparedStatement insert = connection.prepareStatement("INSERT INTO " + target + INSERT_COLUMNS);
+                     PreparedStatement delete = connection.prepareStatement("DELETE FROM " + source + " WHERE id <= ?")) {
+                    long lastId = -1;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            String material = rs.getString("material");
+                            String data = rs.getString("data");
+                            insert.setLong(1, rs.getLong("time"));
+                            insert.setInt(2, internPlayer(UUID.fromString(rs.getString("player_uuid")), rs.getString("player_name")));
+                            insert.setInt(3, actions.intern(rs.getString("action")));
+                            insert.setInt(4, worlds.intern(rs.getString("world")));
+                            insert.setLong(5, packPosition(rs.getInt("x"), rs.getInt("y"), rs.getInt("z")));
+                            insert.setObject(6, material != null ? materials.intern(material) : null);
+                            insert.setObject(7, data != null ? blockData.intern(data) : null);
+                            insert.addBatch();
+                            lastId = rs.getLong("id");
+                            moved++;
+                        }
+                    }
+                    if (moved > 0) {
+                        // Dictionary rows queued by intern() must exist before the chunk is committed
+                        writeDictionaryRows();
+                        insert.executeBatch();
+                        delete.setLong(1, lastId);
+                        delete.executeUpdate();
+                    }
+                    connection.commit();
+                    commitDictionaryRows();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    requeueDictionaryRows();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+            if (moved == 0) break;
+            migrated += moved;
+        }
+        return migrated;
+    }
+
+    /**
+     * Writes dictionary rows that were interned during a migration chunk
+     * directly instead of waiting for the write-behind queue.
+     */
+    private void writeDictionaryRows() throws SQLException {
+        for (Dictionary dictionary : new Dictionary[]{players, worlds, actions, materials, blockData}) {
+            dictionary.flushPending();
+        }
+    }
+
+    private void commitDictionaryRows() {
+        for (Dictionary dictionary : new Dictionary[]{players, worlds, actions, materials, blockData}) {
+            dictionary.clearPending();
+        }
+    }
+
+    /**
+     * Hands the dictionary rows of a rolled back chunk to the writer. Their ids stay assigned,
+     * since rows logged meanwhile may already use them.
+     */
+    private void requeueDictionaryRows() {
+        for (Dictionary dictionary : new Dictionary[]{players, worlds, actions, materials, blockData}) {
+            dictionary.requeuePending();
+        }
+    }
+
+    private int internPlayer(UUID uuid, String name) {
+        int id = players.intern(uuid.toString());
+        String knownName = playerNames.get(id);
+        if (name != null && !name.equals(knownName)) {
+            playerNames.put(id, name);
+            writer.enqueue("UPDATE bl_players SET name = ? WHERE id = ?", name, id);
+        }
+        return id;
+    }
+
+    private void readEntries(PreparedStatement stmt, List<BlockLogDatabase.BlockLogEntry> logs) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int playerId = rs.getInt("player_id");
+                long pos = rs.getLong("pos");
+                int materialId = rs.getInt("material_id");
+                boolean hasMaterial = !rs.wasNull();
+                int dataId = rs.getInt("data_id");
+                boolean hasData = !rs.wasNull();
+                String uuid = players.value(playerId);
+                if (uuid == null) continue;
+
+                logs.add(new BlockLogDatabase.BlockLogEntry(
+                        rs.getLong("time"),
+                        UUID.fromString(uuid),
+                        playerNames.getOrDefault(playerId, "Unknown"),
+                        actions.value(rs.getInt("action_id")),
+                        worlds.value(rs.getInt("world_id")),
+                        unpackX(pos),
+                        unpackY(pos),
+                        unpackZ(pos),
+                        hasMaterial ? materials.value(materialId) : null,
+                        hasData ? blockData.value(dataId) : null
+                ));
+            }
+        }
+    }
+
+    /**
+     * Packs a block position into a chunk-major long key:
+     * 22 bits chunk X, 22 bits chunk Z, 12 bits Y, 4 bits local X, 4 bits local Z.
+     * Blocks in the same chunk section sort next to each other in the position index.
+     */
+    public static long packPosition(int x, int y, int z) {
+        return ((long) (x >> 4) & 0x3FFFFFL) << 42
+                | ((long) (z >> 4) & 0x3FFFFFL) << 20
+                | ((long) y & 0xFFFL) << 8
+                | (long) (x & 0xF) << 4
+                | (long) (z & 0xF);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 42) << 4 | (int) (key >> 4 & 0xF);
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key << 44 >> 52);
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key << 22 >> 42) << 4 | (int) (key & 0xF);
+    }
+
+    /**
+     * An interned string dictionary backed by a table of (id, value) rows.
+     * Ids are assigned in memory so logging never has to wait on the database;
+     * the dictionary row itself goes through the writer's required queue, which is
+     * never dropped and is committed before any log row that references it.
+     */
+    private class Dictionary {
+        private final String table;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+        private final List<Object[]> pending = new ArrayList<>();
+        private int nextId = 1;
+
+        Dictionary(String table) {
+            this.table = table;
+        }
+
+        void load() throws SQLException {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, value FROM " + table)) {
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    String value = rs.getString("value");
+                    ids.put(value, id);
+                    values.put(id, value);
+                    nextId = Math.max(nextId, id + 1);
+                }
+            }
+        }
+
+        Integer lookup(String value) {
+            return ids.get(value);
+        }
+
+        String value(int id) {
+            return values.get(id);
+        }
+
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) return id;
+
+                id = nextId++;
+                values.put(id, value);
+                ids.put(value, id);
+                if (Thread.holdsLock(connection)) {
+                    // Called from a migration chunk, written with that chunk's transaction
+                    pending.add(new Object[]{id, value});
+                } else {
+                    writer.enqueueRequired("INSERT INTO " + table + " (id, value) VALUES (?, ?)", id, value);
+                }
+                return id;
+            }
+        }
+
+        synchronized void flushPending() throws SQLException {
+            if (pending.isEmpty()) return;
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + table + " (id, value) VALUES (?, ?)")) {
+                for (Object[] row : pending) {
+                    stmt.setInt(1, (Integer) row[0]);
+                    stmt.setString(2, (String) row[1]);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        /**
+         * Forgets the pending rows once the chunk that wrote them has committed.
+         */
+        synchronized void clearPending() {
+            pending.clear();
+        }
+
+        synchronized void requeuePending() {
+            for (Object[] row : pending) {
+                writer.enqueueRequired("INSERT INTO " + table + " (id, value) VALUES (?, ?)", row[0], row[1]);
+            }
+            pending.clear();
+        }
+    }
+}
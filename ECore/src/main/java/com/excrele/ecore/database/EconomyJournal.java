@@ -0,0 +1,350 @@
+package com.excrele.ecore.database;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal for economy mutations.
+ * Every balance change and transaction is appended as a checksummed record by a
+ * single writer thread, which fsyncs once per batch. After a snapshot has been
+ * written, {@link #compact(long)} drops every record the snapshot already covers.
+ *
+ * <p>Records carry a sequence number so recovery can replay exactly the
+ * mutations that happened after the last snapshot. A record torn by a crash
+ * fails its checksum and ends the replay.
+ *
+ * <p>The queue is bounded. Records are never dropped while the writer runs, so a
+ * full queue makes the caller wait until the writer catches up.
+ */
+public class EconomyJournal implements Runnable {
+    public static final byte BALANCE = 1;
+    public static final byte TRANSACTION = 2;
+
+    private static final int MAX_BATCH = 4096;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+
+    private final File file;
+    private final Logger logger;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private FileOutputStream out;
+    private volatile boolean running;
+    private volatile boolean backlogWarned;
+
+    /**
+     * Receives the records read back from the journal.
+     */
+    public interface RecordHandler {
+        void balance(long sequence, UUID uuid, double balance);
+
+        void transaction(long sequence, UUID uuid, String type, double amount, String description, long timestamp);
+    }
+
+    public EconomyJournal(File file, Logger logger, long flushIntervalMillis, int capacity) {
+        this.file = file;
+        this.logger = logger;
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+        this.queue = new LinkedBlockingQueue<>(Math.max(MAX_BATCH, capacity));
+        this.thread = new Thread(this, "Ecore-EconomyJournal");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Replays every intact record, then truncates anything after the last intact one.
+     *
+     * @return The highest sequence number found, or 0 if the journal is empty
+     */
+    public long replay(RecordHandler handler) throws IOException {
+        if (!file.exists()) {
+            return 0L;
+        }
+
+        long highest = 0L;
+        long validLength = 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] buffer = new byte[256];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                try {
+                    in.readFully(buffer, 0, length);
+                    crc.reset();
+                    crc.update(buffer, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long sequence = readRecord(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)), handler);
+                highest = Math.max(highest, sequence);
+                validLength += 4L + length + 4L;
+            }
+        }
+
+        if (validLength < file.length()) {
+            logger.warning("Economy journal has a damaged tail, discarding " + (file.length() - validLength) + " bytes");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return highest;
+    }
+
+    private long readRecord(DataInputStream in, RecordHandler handler) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        UUID uuid = new UUID(in.readLong(), in.readLong());
+        if (type == BALANCE) {
+            handler.balance(sequence, uuid, in.readDouble());
+        } else if (type == TRANSACTION) {
+            String txType = in.readUTF();
+            double amount = in.readDouble();
+            String description = in.readUTF();
+            long timestamp = in.readLong();
+            handler.transaction(sequence, uuid, txType, amount, description, timestamp);
+        }
+        return sequence;
+    }
+
+    /**
+     * Opens the journal for appending and starts the writer thread.
+     */
+    public void start() throws IOException {
+        out = new FileOutputStream(file, true);
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Queues a balance record.
+     */
+    public void appendBalance(long sequence, UUID uuid, double balance) {
+        enqueue(encode(BALANCE, sequence, uuid, data -> data.writeDouble(balance)));
+    }
+
+    /**
+     * Queues a transaction record.
+     */
+    public void appendTransaction(long sequence, UUID uuid, String type, double amount, String description, long timestamp) {
+        enqueue(encode(TRANSACTION, sequence, uuid, data -> {
+            data.writeUTF(type);
+            data.writeDouble(amount);
+            data.writeUTF(description);
+            data.writeLong(timestamp);
+        }));
+    }
+
+    /**
+     * Requests that every record with a sequence number up to and including
+     * the given one is dropped, once a snapshot covering them is durable.
+     */
+    public void compact(long snapshotSequence) {
+        enqueue(new Compaction(snapshotSequence));
+    }
+
+    private void enqueue(Object item) {
+        if (queue.offer(item)) return;
+        if (!running) {
+            if (!backlogWarned) {
+                backlogWarned = true;
+                logger.warning("Economy journal is not running and its queue is full, records are not being written");
+            }
+            return;
+        }
+        if (!backlogWarned) {
+            backlogWarned = true;
+            logger.warning("Economy journal queue is full, waiting for the writer to catch up");
+        }
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.severe("Interrupted while waiting for the economy journal, a record was not written");
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Object> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Group everything queued during the interval into one fsync
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            queue.drainTo(batch, MAX_BATCH);
+            write(batch);
+            batch.clear();
+            if (backlogWarned && queue.isEmpty()) {
+                backlogWarned = false;
+            }
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close economy journal", e);
+        }
+    }
+
+    private void write(List<Object> batch) {
+        try {
+            boolean dirty = false;
+            for (Object item : batch) {
+                if (item instanceof byte[]) {
+                    out.write((byte[]) item);
+                    dirty = true;
+                } else if (item instanceof Compaction) {
+                    if (dirty) {
+                        out.getFD().sync();
+                        dirty = false;
+                    }
+                    rewrite(((Compaction) item).sequence);
+                }
+            }
+            if (dirty) {
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write economy journal", e);
+        }
+    }
+
+    /**
+     * Rewrites the journal, keeping only records newer than the snapshot.
+     */
+    private void rewrite(long snapshotSequence) throws IOException {
+        out.close();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream rewritten = new FileOutputStream(temp)) {
+                replay(new RecordHandler() {
+                    @Override
+                    public void balance(long sequence, UUID uuid, double balance) {
+                        if (sequence > snapshotSequence) {
+                            writeQuietly(rewritten, encode(BALANCE, sequence, uuid, data -> data.writeDouble(balance)));
+                        }
+                    }
+
+                    @Override
+                    public void transaction(long sequence, UUID uuid, String type, double amount, String description, long timestamp) {
+                        if (sequence > snapshotSequence) {
+                            writeQuietly(rewritten, encode(TRANSACTION, sequence, uuid, data -> {
+                                data.writeUTF(type);
+                                data.writeDouble(amount);
+                                data.writeUTF(description);
+                                data.writeLong(timestamp);
+                            }));
+                        }
+                    }
+                });
+                rewritten.getFD().sync();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            // Keep the full journal, the next compaction will try again
+            temp.delete();
+            throw e instanceof IOException ? (IOException) e : ((UncheckedIOException) e).getCause();
+        } finally {
+            out = new FileOutputStream(file, true);
+        }
+    }
+
+    private void writeQuietly(OutputStream stream, byte[] record) {
+        try {
+            stream.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops accepting records, writes everything still queued and waits for the writer thread.
+     */
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warning("Economy journal did not finish in time, " + queue.size() + " records were not written");
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private interface RecordBody {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    /**
+     * Encodes one record as [length][type, sequence, uuid, body][crc32].
+     */
+    private static byte[] encode(byte type, long sequence, UUID uuid, RecordBody body) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeByte(type);
+            data.writeLong(sequence);
+            data.writeLong(uuid.getMostSignificantBits());
+            data.writeLong(uuid.getLeastSignificantBits());
+            body.write(data);
+            byte[] bytes = payload.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 8);
+            DataOutputStream framed = new DataOutputStream(record);
+            framed.writeInt(bytes.length);
+            framed.write(bytes);
+            framed.writeInt((int) crc.getValue());
+            return record.toByteArray();
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Marker asking the writer to drop records covered by a snapshot.
+     */
+    private static class Compaction {
+        final long sequence;
+
+        Compaction(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.excrele.ecore.listeners;
 
 import com.excrele.ecore.Ecore;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
 
 /**
  * Listener for chat channels system.
@@ -46,5 +53,41 @@ public class ChatChannelListener implements Listener {
         // Cleanup channel membership
         plugin.getChatChannelManager().onPlayerQuit(event.getPlayer());
     }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        // Ranged channels only need block precision
+        if (!sameBlock(event.getFrom(), event.getTo())) {
+            plugin.getChatChannelManager().updatePosition(event.getPlayer(), event.getTo());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (event.getTo() != null) {
+            plugin.getChatChannelManager().updatePosition(event.getPlayer(), event.getTo());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        plugin.getChatChannelManager().updatePosition(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleMove(VehicleMoveEvent event) {
+        // Players riding a vehicle do not fire move events of their own
+        if (sameBlock(event.getFrom(), event.getTo())) return;
+        for (Entity passenger : event.getVehicle().getPassengers()) {
+            if (passenger instanceof Player) {
+                plugin.getChatChannelManager().updatePosition((Player) passenger, event.getTo());
+            }
+        }
+    }
+
+    private boolean sameBlock(Location from, Location to) {
+        return to == null || (from.getWorld() == to.getWorld() && from.getBlockX() == to.getBlockX()
+            && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ());
+    }
 }
 
@@ -0,0 +1,44 @@
+package com.excrele.ecore.listeners;
+
+import com.excrele.ecore.Ecore;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+/**
+ * Listener for claim activity.
+ * Records when owners and members use their claims, so active claims are never auto-unclaimed.
+ */
+public class ClaimListener implements Listener {
+    private final Ecore plugin;
+
+    public ClaimListener(Ecore plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getClaimManager().recordActivity(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        plugin.getClaimManager().recordActivity(event.getPlayer(), event.getBlock().getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        plugin.getClaimManager().recordActivity(event.getPlayer(), event.getBlock().getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        if (event.getClickedBlock() != null) {
+            plugin.getClaimManager().recordActivity(event.getPlayer(), event.getClickedBlock().getChunk());
+        }
+    }
+}
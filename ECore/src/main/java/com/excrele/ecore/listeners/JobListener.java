@@ -12,6 +12,7 @@ import org.bukkit.event.entity.EntityBreedEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.player.PlayerFishEvent;
 import org.bukkit.event.player.PlayerHarvestBlockEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
  * Listener for job-related events.
@@ -29,19 +30,7 @@ public class JobListener implements Listener {
         Player player = event.getPlayer();
         if (player == null) return;
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
-
-        // Check for miner job
-        if (job.getId().equals("miner")) {
-            JobManager.JobAction action = job.getActions().get("mine");
-            if (action != null) {
-                plugin.getJobManager().processJobAction(player, "mine", event.getBlock().getType(), null);
-            }
-        }
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.MINE, event.getBlock().getType(), null);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -49,19 +38,7 @@ public class JobListener implements Listener {
         Player player = event.getPlayer();
         if (player == null) return;
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
-
-        // Check for builder job
-        if (job.getId().equals("builder")) {
-            JobManager.JobAction action = job.getActions().get("build");
-            if (action != null) {
-                plugin.getJobManager().processJobAction(player, "build", event.getBlock().getType(), null);
-            }
-        }
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.BUILD, event.getBlock().getType(), null);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -69,19 +46,7 @@ public class JobListener implements Listener {
         if (event.getEntity().getKiller() == null) return;
         Player player = event.getEntity().getKiller();
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
-
-        // Check for hunter job
-        if (job.getId().equals("hunter")) {
-            JobManager.JobAction action = job.getActions().get("kill");
-            if (action != null) {
-                plugin.getJobManager().processJobAction(player, "kill", null, event.getEntityType());
-            }
-        }
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.KILL, null, event.getEntityType());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -89,19 +54,7 @@ public class JobListener implements Listener {
         Player player = event.getPlayer();
         if (player == null) return;
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
-
-        // Check for farmer job
-        if (job.getId().equals("farmer")) {
-            JobManager.JobAction action = job.getActions().get("harvest");
-            if (action != null) {
-                plugin.getJobManager().processJobAction(player, "harvest", event.getHarvestedBlock().getType(), null);
-            }
-        }
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.HARVEST, event.getHarvestedBlock().getType(), null);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -109,19 +62,7 @@ public class JobListener implements Listener {
         if (!(event.getBreeder() instanceof Player)) return;
         Player player = (Player) event.getBreeder();
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
-
-        // Check for farmer job
-        if (job.getId().equals("farmer")) {
-            JobManager.JobAction action = job.getActions().get("breed");
-            if (action != null) {
-                plugin.getJobManager().processJobAction(player, "breed", null, event.getEntityType());
-            }
-        }
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.BREED, null, event.getEntityType());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -134,20 +75,13 @@ public class JobListener implements Listener {
         Player player = event.getPlayer();
         if (player == null) return;
 
-        JobManager.PlayerJobData data = plugin.getJobManager().getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
-
-        JobManager.JobType job = plugin.getJobManager().getJobType(data.getCurrentJob());
-        if (job == null) return;
+        // Fishing doesn't have material/entity, so pass null
+        plugin.getJobManager().processJobAction(player, JobManager.ActionType.FISH, null, null);
+    }
 
-        // Check for fisher job
-        if (job.getId().equals("fisher")) {
-            JobManager.JobAction action = job.getActions().get("fish");
-            if (action != null) {
-                // Fishing doesn't have material/entity, so pass null
-                plugin.getJobManager().processJobAction(player, "fish", null, null);
-            }
-        }
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // Pay out what the player earned since the last batch before they leave
+        plugin.getJobManager().payout(event.getPlayer().getUniqueId());
     }
 }
-
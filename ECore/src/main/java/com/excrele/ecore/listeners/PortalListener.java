@@ -37,12 +37,14 @@ public class PortalListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
         // Only check if player actually moved to a different block
-        if (event.getFrom().getBlock().equals(event.getTo().getBlock())) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null || (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY()
+                && from.getBlockZ() == to.getBlockZ() && from.getWorld() == to.getWorld())) {
             return;
         }
 
         Player player = event.getPlayer();
-        Location to = event.getTo();
         
         // Check if player is in a portal block
         PortalManager.Portal portal = plugin.getPortalManager().getPortalByBlock(to);
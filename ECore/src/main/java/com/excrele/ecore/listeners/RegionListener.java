@@ -4,6 +4,7 @@ import com.excrele.ecore.Ecore;
 import com.excrele.ecore.managers.RegionFlag;
 import com.excrele.ecore.managers.RegionManager;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -193,5 +194,30 @@ public class RegionListener implements Listener {
             player.sendMessage(ChatColor.RED + "You cannot interact with entities in this region!");
         }
     }
-}
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null) {
+            return;
+        }
+
+        // Cached protection decisions are kept per chunk, drop them once the player leaves it
+        if ((from.getBlockX() >> 4) != (to.getBlockX() >> 4) || (from.getBlockZ() >> 4) != (to.getBlockZ() >> 4)
+                || from.getWorld() != to.getWorld()) {
+            plugin.getRegionManager().invalidateAccessCache(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler
+    public void onPlayerCommandSend(PlayerCommandSendEvent event) {
+        // Sent whenever the server recalculates a player's permissions
+        plugin.getRegionManager().invalidateAccessCache(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getRegionManager().invalidateAccessCache(event.getPlayer().getUniqueId());
+    }
+}
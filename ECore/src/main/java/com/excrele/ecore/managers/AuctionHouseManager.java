@@ -6,7 +6,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -22,14 +21,13 @@ public class AuctionHouseManager {
     private File auctionFile;
     private FileConfiguration auctionConfig;
     private final Map<Integer, Auction> activeAuctions;
-    private final Map<Integer, BukkitTask> expirationTasks;
     private int nextAuctionId;
 
     public AuctionHouseManager(Ecore plugin) {
         this.plugin = plugin;
         this.activeAuctions = new HashMap<>();
-        this.expirationTasks = new HashMap<>();
         initializeAuctionConfig();
+        plugin.getExpiryManager().registerHandler("auction", id -> expireAuction(Integer.parseInt(id)));
         loadAuctions();
     }
 
@@ -277,28 +275,15 @@ public class AuctionHouseManager {
     // Remove an auction
     private void removeAuction(int auctionId) {
         activeAuctions.remove(auctionId);
-        BukkitTask task = expirationTasks.remove(auctionId);
-        if (task != null) {
-            task.cancel();
-        }
+        plugin.getExpiryManager().cancel("auction", String.valueOf(auctionId));
         auctionConfig.set("auctions." + auctionId, null);
         saveAuctions();
     }
 
     // Schedule expiration check for an auction
     private void scheduleExpiration(Auction auction) {
-        long timeUntilExpiration = auction.getExpirationTime() - System.currentTimeMillis();
-        if (timeUntilExpiration <= 0) {
-            // Already expired
-            expireAuction(auction.getId());
-            return;
-        }
-
-        BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            expireAuction(auction.getId());
-        }, timeUntilExpiration / 50); // Convert milliseconds to ticks
-
-        expirationTasks.put(auction.getId(), task);
+        // Auctions that already ran out expire on the expiry manager's first tick
+        plugin.getExpiryManager().schedule("auction", String.valueOf(auction.getId()), auction.getExpirationTime());
     }
 
     // Expire an auction
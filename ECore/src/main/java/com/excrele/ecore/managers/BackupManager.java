@@ -9,6 +9,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -16,11 +17,14 @@ import java.util.zip.ZipOutputStream;
 /**
  * Manages automatic backups of server data.
  * Supports scheduled backups, backup compression, and restoration.
+ * In incremental mode backups are snapshots in an {@link IncrementalBackupStore}, which
+ * only stores what changed since the previous snapshot.
  */
 public class BackupManager {
     private final Ecore plugin;
     private int backupTaskId = -1;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+    private final AtomicBoolean running = new AtomicBoolean(); // One backup or restore at a time
     
     public BackupManager(Ecore plugin) {
         this.plugin = plugin;
@@ -55,12 +59,17 @@ public class BackupManager {
         String timestamp = dateFormat.format(new Date());
         String backupName = "backup_" + timestamp;
         File backupFile = new File(backupFolder, backupName + ".zip");
+        boolean incremental = isIncremental();
         
+        if (!running.compareAndSet(false, true)) {
+            return new BackupResult(false, "A backup or restore is already running");
+        }
         try {
             List<String> filesToBackup = config.getStringList("backup.files");
             List<String> worldsToBackup = config.getStringList("backup.worlds");
             
             if (filesToBackup.isEmpty() && worldsToBackup.isEmpty()) {
+                running.set(false);
                 return new BackupResult(false, "No files or worlds configured for backup");
             }
             
@@ -69,24 +78,107 @@ public class BackupManager {
             // Create backup asynchronously
             Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
                 try {
-                    createZipBackup(backupFile, filesToBackup, worldsToBackup);
-                    
-                    // Clean old backups
-                    cleanOldBackups(backupFolder, config.getInt("backup.max-backups", 10));
+                    if (incremental) {
+                        createIncrementalBackup(backupFolder, backupName, filesToBackup, worldsToBackup);
+                        IncrementalBackupStore store = getStore(backupFolder);
+                        store.prune(config.getInt("backup.max-backups", 10));
+                        if (config.getBoolean("backup.incremental.verify-chunks", false)) {
+                            int damaged = store.verify();
+                            if (damaged > 0) {
+                                plugin.getLogger().warning("Deleted " + damaged + " damaged backup chunks");
+                            }
+                        }
+                    } else {
+                        createZipBackup(backupFile, filesToBackup, worldsToBackup);
+                        
+                        // Clean old backups
+                        cleanOldBackups(backupFolder, config.getInt("backup.max-backups", 10));
+                    }
                     
                     plugin.getLogger().info("Backup created successfully: " + backupName);
                 } catch (Exception e) {
                     plugin.getLogger().log(Level.SEVERE, "Failed to create backup", e);
+                } finally {
+                    running.set(false);
                 }
             });
             
             return new BackupResult(true, "Backup started: " + backupName);
         } catch (Exception e) {
+            running.set(false);
             plugin.getLogger().log(Level.SEVERE, "Failed to create backup", e);
             return new BackupResult(false, "Failed to create backup: " + e.getMessage());
         }
     }
     
+    /**
+     * Checks if backups are incremental snapshots rather than full ZIPs.
+     */
+    public boolean isIncremental() {
+        return "incremental".equalsIgnoreCase(plugin.getConfigManager().getConfig().getString("backup.mode", "zip"));
+    }
+    
+    private IncrementalBackupStore getStore(File backupFolder) {
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        int threads = config.getInt("backup.incremental.threads", 0);
+        return new IncrementalBackupStore(
+            new File(backupFolder, "store"),
+            config.getInt("backup.incremental.chunk-size-kb", 256) * 1024,
+            threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+            config.getInt("backup.incremental.compression-level", 6),
+            plugin.getLogger());
+    }
+    
+    /**
+     * Writes a snapshot of the same files a ZIP backup would hold, storing only what changed.
+     */
+    private void createIncrementalBackup(File backupFolder, String backupName, List<String> filesToBackup, List<String> worldsToBackup) throws IOException {
+        File serverFolder = plugin.getDataFolder().getParentFile().getParentFile();
+        Map<String, File> files = new LinkedHashMap<>(); // Keyed by path, so overlapping entries count once
+        
+        for (String filePath : filesToBackup) {
+            collectFiles(new File(serverFolder, filePath), serverFolder, backupFolder, files);
+        }
+        for (String worldName : worldsToBackup) {
+            World world = Bukkit.getWorld(worldName);
+            File worldFolder = world != null ? world.getWorldFolder() : new File(serverFolder, worldName);
+            collectFiles(worldFolder, serverFolder, backupFolder, files);
+        }
+        collectFiles(plugin.getDataFolder(), serverFolder, backupFolder, files);
+        
+        long start = System.currentTimeMillis();
+        IncrementalBackupStore.SnapshotResult result = getStore(backupFolder).createSnapshot(backupName, files);
+        plugin.getLogger().info(String.format("Snapshot %s: %d files (%.1f MB), %d changed, %d new chunks (%.1f MB) in %.1fs",
+            backupName, result.files, result.totalBytes / (1024.0 * 1024.0), result.changedFiles.get(),
+            result.newObjects.get(), result.newBytes.get() / (1024.0 * 1024.0), (System.currentTimeMillis() - start) / 1000.0));
+    }
+    
+    /**
+     * Adds a file, or every file below a folder, keyed by its path relative to the server folder.
+     */
+    private void collectFiles(File root, File serverFolder, File backupFolder, Map<String, File> files) throws IOException {
+        if (!root.exists()) {
+            return;
+        }
+        Path serverPath = serverFolder.toPath().toAbsolutePath().normalize();
+        Path backupPath = backupFolder.toPath().toAbsolutePath().normalize();
+        try (java.util.stream.Stream<Path> paths = Files.walk(root.toPath())) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next().toAbsolutePath().normalize();
+                String fileName = path.getFileName().toString();
+                if (path.startsWith(backupPath) || fileName.equals("session.lock") || !Files.isRegularFile(path)
+                    || path.toString().contains("temp_restore_")) {
+                    continue;
+                }
+                String relative = path.startsWith(serverPath)
+                    ? serverPath.relativize(path).toString()
+                    : "worlds/" + root.getName() + "/" + root.toPath().toAbsolutePath().normalize().relativize(path);
+                files.put(relative.replace(File.separatorChar, '/'), path.toFile());
+            }
+        }
+    }
+    
     /**
      * Creates a ZIP backup of files and worlds.
      */
@@ -201,14 +293,17 @@ public class BackupManager {
             return new ArrayList<>();
         }
         
-        File[] backups = backupFolder.listFiles((dir, name) -> name.startsWith("backup_") && name.endsWith(".zip"));
-        if (backups == null) {
-            return new ArrayList<>();
+        List<File> backups = new ArrayList<>();
+        File[] zips = backupFolder.listFiles((dir, name) -> name.startsWith("backup_") && name.endsWith(".zip"));
+        if (zips != null) {
+            backups.addAll(Arrays.asList(zips));
         }
+        // Incremental snapshots, each one restorable on its own
+        backups.addAll(getStore(backupFolder).listSnapshots());
         
         // Sort by last modified date (newest first)
-        Arrays.sort(backups, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
-        return Arrays.asList(backups);
+        backups.sort((a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        return backups;
     }
     
     /**
@@ -219,19 +314,29 @@ public class BackupManager {
             return new RestoreResult(false, "Backup file does not exist");
         }
         
+        if (!running.compareAndSet(false, true)) {
+            return new RestoreResult(false, "A backup or restore is already running");
+        }
+        
         plugin.getLogger().warning("Starting backup restoration from: " + backupFile.getName());
         plugin.getLogger().warning("This will overwrite existing files!");
         
         // Run restoration asynchronously
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
-                restoreFromZip(backupFile);
+                if (backupFile.getName().endsWith(IncrementalBackupStore.SNAPSHOT_SUFFIX)) {
+                    restoreFromSnapshot(backupFile);
+                } else {
+                    restoreFromZip(backupFile);
+                }
                 plugin.getLogger().info("Backup restoration completed successfully!");
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     Bukkit.broadcastMessage("§aBackup restoration completed! Server restart recommended.");
                 });
             } catch (Exception e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to restore backup", e);
+            } finally {
+                running.set(false);
             }
         });
         
@@ -277,6 +382,23 @@ public class BackupManager {
         deleteDirectory(tempFolder);
     }
     
+    /**
+     * Restores the files of an incremental snapshot.
+     */
+    private void restoreFromSnapshot(File snapshot) throws IOException {
+        File serverFolder = plugin.getDataFolder().getParentFile().getParentFile();
+        String backupDir = plugin.getConfigManager().getConfig().getString("backup.directory", "backups");
+        File backupFolder = new File(serverFolder, backupDir);
+        
+        // Rebuild into a temporary location first, like ZIP restores
+        File tempFolder = new File(plugin.getDataFolder(), "temp_restore_" + System.currentTimeMillis());
+        tempFolder.mkdirs();
+        getStore(backupFolder).restore(snapshot, tempFolder);
+        
+        moveFiles(tempFolder, serverFolder);
+        deleteDirectory(tempFolder);
+    }
+    
     /**
      * Moves files from source to destination.
      */
@@ -0,0 +1,226 @@
+package com.excrele.ecore.managers;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Balance-ordered index of all positive balances.
+ * Backed by a treap whose nodes track their subtree size, so updates, rank
+ * lookups and fetching the entry at a rank are O(log n), and the top N entries
+ * are O(log n + N). Ties are broken by UUID so the order is stable.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class BalanceLeaderboard {
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private Node root;
+
+    /**
+     * Updates a player's balance. Players with no money are removed from the leaderboard.
+     *
+     * @param uuid The player's UUID
+     * @param balance The new balance
+     */
+    public synchronized void update(UUID uuid, double balance) {
+        Node existing = nodes.get(uuid);
+        if (existing != null) {
+            if (existing.balance == balance) {
+                return;
+            }
+            root = remove(root, existing.balance, uuid);
+            nodes.remove(uuid);
+        }
+        if (balance > 0) {
+            Node node = new Node(uuid, balance);
+            root = insert(root, node);
+            nodes.put(uuid, node);
+        }
+    }
+
+    /**
+     * Gets the highest balances, richest first.
+     *
+     * @param limit The maximum number of entries
+     * @return The top entries
+     */
+    public synchronized List<Map.Entry<UUID, Double>> getTop(int limit) {
+        List<Map.Entry<UUID, Double>> top = new ArrayList<>(Math.min(limit, nodes.size()));
+        collect(root, top, limit);
+        return top;
+    }
+
+    /**
+     * Gets a player's rank.
+     *
+     * @param uuid The player's UUID
+     * @return The 1-based rank, or 0 if the player has no money
+     */
+    public synchronized int getRank(UUID uuid) {
+        Node node = nodes.get(uuid);
+        if (node == null) {
+            return 0;
+        }
+
+        int rank = 1;
+        Node current = root;
+        while (current != null) {
+            int cmp = compare(node.balance, uuid, current.balance, current.uuid);
+            if (cmp < 0) {
+                current = current.left;
+            } else {
+                rank += size(current.left);
+                if (cmp == 0) {
+                    return rank;
+                }
+                rank++;
+                current = current.right;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the entry at a rank.
+     *
+     * @param rank The 1-based rank
+     * @return The entry, or null if there are fewer ranked players
+     */
+    public synchronized Map.Entry<UUID, Double> getEntry(int rank) {
+        if (rank < 1 || rank > size(root)) {
+            return null;
+        }
+
+        int index = rank - 1;
+        Node current = root;
+        while (current != null) {
+            int leftSize = size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index == leftSize) {
+                return new AbstractMap.SimpleImmutableEntry<>(current.uuid, current.balance);
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of ranked players.
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    // Higher balances sort first, ties by UUID
+    private static int compare(double balanceA, UUID uuidA, double balanceB, UUID uuidB) {
+        int cmp = Double.compare(balanceB, balanceA);
+        return cmp != 0 ? cmp : uuidA.compareTo(uuidB);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null) {
+            return node;
+        }
+        if (compare(node.balance, node.uuid, root.balance, root.uuid) < 0) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) {
+                root = rotateRight(root);
+            }
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) {
+                root = rotateLeft(root);
+            }
+        }
+        root.update();
+        return root;
+    }
+
+    private static Node remove(Node root, double balance, UUID uuid) {
+        if (root == null) {
+            return null;
+        }
+        int cmp = compare(balance, uuid, root.balance, root.uuid);
+        if (cmp < 0) {
+            root.left = remove(root.left, balance, uuid);
+        } else if (cmp > 0) {
+            root.right = remove(root.right, balance, uuid);
+        } else {
+            return merge(root.left, root.right);
+        }
+        root.update();
+        return root;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    private static void collect(Node node, List<Map.Entry<UUID, Double>> out, int limit) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        collect(node.left, out, limit);
+        if (out.size() < limit) {
+            out.add(new AbstractMap.SimpleImmutableEntry<>(node.uuid, node.balance));
+            collect(node.right, out, limit);
+        }
+    }
+
+    private static class Node {
+        final UUID uuid;
+        final double balance;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(UUID uuid, double balance) {
+            this.uuid = uuid;
+            this.balance = balance;
+        }
+
+        void update() {
+            size = 1 + BalanceLeaderboard.size(left) + BalanceLeaderboard.size(right);
+        }
+    }
+}
@@ -93,7 +93,7 @@ public class BanManager {
             for (String uuidStr : bansConfig.getConfigurationSection("temporary-bans").getKeys(false)) {
                 UUID uuid = UUID.fromString(uuidStr);
                 long unbanTime = bansConfig.getLong("temporary-bans." + uuidStr);
-                if (unbanTime > System.currentTimeMillis()) {
+                if (unbanTime > 0) {
                     temporaryBans.put(uuid, unbanTime);
                 }
             }
@@ -103,7 +103,7 @@ public class BanManager {
         if (bansConfig.contains("ip-bans")) {
             for (String ip : bansConfig.getConfigurationSection("ip-bans").getKeys(false)) {
                 long unbanTime = bansConfig.getLong("ip-bans." + ip);
-                if (unbanTime > System.currentTimeMillis()) {
+                if (unbanTime > 0) {
                     ipBans.put(ip, unbanTime);
                 }
             }
@@ -127,45 +127,54 @@ public class BanManager {
     }
     
     private void startUnbanTask() {
-        // Check for expired bans every minute
-        plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            long currentTime = System.currentTimeMillis();
-            
-            // Check temporary bans
-            Iterator<Map.Entry<UUID, Long>> tempBanIterator = temporaryBans.entrySet().iterator();
-            while (tempBanIterator.hasNext()) {
-                Map.Entry<UUID, Long> entry = tempBanIterator.next();
-                if (entry.getValue() <= currentTime) {
-                    UUID uuid = entry.getKey();
-                    OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-                    @SuppressWarnings({"deprecation", "rawtypes"})
-                    BanList nameBanList = Bukkit.getBanList(BanList.Type.NAME);
-                    @SuppressWarnings("deprecation")
-                    String playerName = player.getName();
-                    nameBanList.pardon(playerName);
-                    tempBanIterator.remove();
-                    plugin.getLogger().info("Auto-unbanned " + player.getName() + " (temporary ban expired)");
-                }
+        // Temporary bans are lifted by the shared expiry wheel instead of a scan of every ban
+        ExpiryManager expiryManager = plugin.getExpiryManager();
+        expiryManager.registerHandler("ban", new ExpiryManager.Handler() {
+            @Override
+            public void expire(String id) {
+                UUID uuid = UUID.fromString(id);
+                OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+                @SuppressWarnings({"deprecation", "rawtypes"})
+                BanList nameBanList = Bukkit.getBanList(BanList.Type.NAME);
+                @SuppressWarnings("deprecation")
+                String playerName = player.getName();
+                nameBanList.pardon(playerName);
+                temporaryBans.remove(uuid);
+                bansConfig.set("temporary-bans." + id, null);
+                plugin.getLogger().info("Auto-unbanned " + player.getName() + " (temporary ban expired)");
             }
-            
-            // Check IP bans
-            Iterator<Map.Entry<String, Long>> ipBanIterator = ipBans.entrySet().iterator();
-            while (ipBanIterator.hasNext()) {
-                Map.Entry<String, Long> entry = ipBanIterator.next();
-                if (entry.getValue() <= currentTime) {
-                    String ip = entry.getKey();
-                    @SuppressWarnings({"deprecation", "rawtypes"})
-                    BanList ipBanList = Bukkit.getBanList(BanList.Type.IP);
-                    @SuppressWarnings("deprecation")
-                    String ipAddress = ip;
-                    ipBanList.pardon(ipAddress);
-                    ipBanIterator.remove();
-                    plugin.getLogger().info("Auto-unbanned IP " + ip + " (temporary ban expired)");
-                }
+
+            @Override
+            public void afterExpiry() {
+                saveBans();
             }
-            
-            saveBans();
-        }, 0L, 1200L); // Every minute
+        });
+        expiryManager.registerHandler("ip-ban", new ExpiryManager.Handler() {
+            @Override
+            public void expire(String ip) {
+                @SuppressWarnings({"deprecation", "rawtypes"})
+                BanList ipBanList = Bukkit.getBanList(BanList.Type.IP);
+                @SuppressWarnings("deprecation")
+                String ipAddress = ip;
+                ipBanList.pardon(ipAddress);
+                ipBans.remove(ip);
+                bansConfig.set("ip-bans." + ip, null);
+                plugin.getLogger().info("Auto-unbanned IP " + ip + " (temporary ban expired)");
+            }
+
+            @Override
+            public void afterExpiry() {
+                saveBans();
+            }
+        });
+        
+        // Bans that ran out while the server was down are lifted on the first tick
+        for (Map.Entry<UUID, Long> entry : temporaryBans.entrySet()) {
+            expiryManager.schedule("ban", entry.getKey().toString(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : ipBans.entrySet()) {
+            expiryManager.schedule("ip-ban", entry.getKey(), entry.getValue());
+        }
     }
     
     /**
@@ -188,8 +197,11 @@ public class BanManager {
             long unbanTime = System.currentTimeMillis() + (duration * 1000L);
             temporaryBans.put(uuid, unbanTime);
             bansConfig.set("temporary-bans." + uuid.toString(), unbanTime);
+            plugin.getExpiryManager().schedule("ban", uuid.toString(), unbanTime);
         } else {
+            temporaryBans.remove(uuid);
             bansConfig.set("temporary-bans." + uuid.toString(), -1);
+            plugin.getExpiryManager().cancel("ban", uuid.toString());
         }
         
         // Ban the player
@@ -222,8 +234,11 @@ public class BanManager {
                     long unbanTime = System.currentTimeMillis() + (duration * 1000L);
                     ipBans.put(ip, unbanTime);
                     bansConfig.set("ip-bans." + ip, unbanTime);
+                    plugin.getExpiryManager().schedule("ip-ban", ip, unbanTime);
                 } else {
+                    ipBans.remove(ip);
                     bansConfig.set("ip-bans." + ip, -1);
+                    plugin.getExpiryManager().cancel("ip-ban", ip);
                 }
                 Bukkit.getBanList(BanList.Type.IP).addBan(
                     ip,
@@ -289,6 +304,7 @@ public class BanManager {
         // Remove from temporary bans
         temporaryBans.remove(uuid);
         bansConfig.set("temporary-bans." + uuid.toString(), null);
+        plugin.getExpiryManager().cancel("ban", uuid.toString());
         
         // Pardon from ban list
         Bukkit.getBanList(BanList.Type.NAME).pardon(targetPlayer.getName());
@@ -0,0 +1,147 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.PackedIntArray;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The block changes made by one WorldEdit operation, stored compactly for undo/redo.
+ * Each change is a packed position plus palette ids for its old and new state,
+ * which takes around ten bytes per block instead of a Location and two BlockData objects.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class BlockChangeSet {
+    private final World world;
+    private final BlockPalette palette;
+    private final PackedIntArray oldStates;
+    private final PackedIntArray newStates;
+    private long[] positions;
+    private int size;
+
+    public BlockChangeSet(World world) {
+        this(world, new BlockPalette(), new PackedIntArray(), new PackedIntArray(), new long[64], 0);
+    }
+
+    private BlockChangeSet(World world, BlockPalette palette, PackedIntArray oldStates, PackedIntArray newStates,
+                           long[] positions, int size) {
+        this.world = world;
+        this.palette = palette;
+        this.oldStates = oldStates;
+        this.newStates = newStates;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /**
+     * Records a block change.
+     */
+    public void add(int x, int y, int z, BlockData oldData, BlockData newData) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size + (size >> 1));
+        }
+        positions[size++] = pack(x, y, z);
+        oldStates.add(palette.idFor(oldData));
+        newStates.add(palette.idFor(newData));
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the approximate heap used by this change set, in bytes.
+     */
+    public long getMemoryUsage() {
+        return positions.length * 8L + oldStates.getMemoryUsage() + newStates.getMemoryUsage();
+    }
+
+    /**
+     * Creates a cursor that applies this change set.
+     *
+     * @param undo true to restore the old states, false to apply the new states again
+     * @return The cursor
+     */
+    public EditCursor cursor(boolean undo) {
+        PackedIntArray states = undo ? oldStates : newStates;
+        return new EditCursor() {
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                return ++index < size;
+            }
+
+            @Override
+            public World getWorld() {
+                return world;
+            }
+
+            @Override
+            public int getX() {
+                return (int) (positions[index] >> 38);
+            }
+
+            @Override
+            public int getY() {
+                return (int) (positions[index] << 52 >> 52);
+            }
+
+            @Override
+            public int getZ() {
+                return (int) (positions[index] << 26 >> 38);
+            }
+
+            @Override
+            public BlockData getBlockData() {
+                return palette.get(states.get(index));
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+        };
+    }
+
+    // 26 bits x, 26 bits z, 12 bits y, the same layout Minecraft uses for block positions
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        palette.write(out);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(positions[i]);
+        }
+        oldStates.write(out);
+        newStates.write(out);
+    }
+
+    public static BlockChangeSet read(DataInput in, World world) throws IOException {
+        BlockPalette palette = BlockPalette.read(in);
+        int size = in.readInt();
+        long[] positions = new long[Math.max(1, size)];
+        for (int i = 0; i < size; i++) {
+            positions[i] = in.readLong();
+        }
+        PackedIntArray oldStates = PackedIntArray.read(in);
+        PackedIntArray newStates = PackedIntArray.read(in);
+        return new BlockChangeSet(world, palette, oldStates, newStates, positions, size);
+    }
+}
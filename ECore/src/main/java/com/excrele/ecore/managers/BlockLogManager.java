@@ -9,8 +9,10 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 /**
  * Manages block logging operations including block actions, container access, and rollbacks.
@@ -198,6 +200,33 @@ public class BlockLogManager {
         });
     }
 
+    /**
+     * Migrates legacy block logs into the compact storage format.
+     */
+    public void migrateToCompactStorage(Player executor) {
+        if (!database.isCompactStorage()) {
+            executor.sendMessage("§cCompact storage is not enabled. Set block-logging.storage-mode to compact and restart first.");
+            return;
+        }
+
+        executor.sendMessage("§aMigrating block logs to compact storage... This may take a while.");
+        
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                long migrated = database.migrateToCompact();
+                plugin.getLogger().info("Migrated " + migrated + " block logs to compact storage");
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    executor.sendMessage("§aMigration complete! " + migrated + " block logs converted.");
+                });
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to migrate block logs", e);
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    executor.sendMessage("§cMigration failed, see console for details. Run it again to resume.");
+                });
+            }
+        });
+    }
+
     /**
      * Sets the inspector selection for a player.
      */
@@ -301,6 +330,13 @@ public class BlockLogManager {
         int retentionDays = plugin.getConfigManager().getConfig().getInt("block-logging.retention-days", 30);
         long purgeInterval = 24L * 60L * 60L * 20L; // 24 hours in ticks
         
+        // Create upcoming partitions ahead of time (every hour)
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            database.maintainPartitions();
+        }, 20L * 60L * 60L, 20L * 60L * 60L);
+        
+        if (retentionDays <= 0) return; // Keep logs forever
+        
         plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
             database.purgeOldLogs(retentionDays);
         }, purgeInterval, purgeInterval);
@@ -0,0 +1,70 @@
+package com.excrele.ecore.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps each distinct block state of a clipboard or history entry to a small id,
+ * so blocks can be stored as packed ids instead of one BlockData per block.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class BlockPalette {
+    private final List<BlockData> entries = new ArrayList<>();
+    private final Map<BlockData, Integer> ids = new HashMap<>();
+
+    /**
+     * Gets the id of a block state, adding it to the palette if needed.
+     *
+     * @param data The block state
+     * @return The palette id
+     */
+    public int idFor(BlockData data) {
+        Integer id = ids.get(data);
+        if (id == null) {
+            id = entries.size();
+            entries.add(data);
+            ids.put(data, id);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the block state for a palette id.
+     *
+     * @param id The palette id
+     * @return The block state
+     */
+    public BlockData get(int id) {
+        return entries.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(entries.size());
+        for (BlockData data : entries) {
+            out.writeUTF(data.getAsString());
+        }
+    }
+
+    public static BlockPalette read(DataInput in) throws IOException {
+        BlockPalette palette = new BlockPalette();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            palette.idFor(Bukkit.createBlockData(in.readUTF()));
+        }
+        return palette;
+    }
+}
@@ -1,22 +1,30 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages chat channels system with multiple channels, permissions, and range-based local chat.
+ * Channel messages are sent from the async chat thread, so membership is kept in concurrent
+ * maps and ranged channels find nearby members through a chunk grid of player positions.
  */
 public class ChatChannelManager {
     private final Ecore plugin;
     private final Map<String, ChatChannel> channels; // Channel ID -> Channel
     private final Map<UUID, String> playerChannels; // Player UUID -> Current channel ID
     private final Map<UUID, Set<String>> mutedChannels; // Player UUID -> Set of muted channel IDs
-    private final Map<String, Set<UUID>> channelMembers; // Channel ID -> Set of player UUIDs
+    private final Map<String, Map<UUID, Player>> channelMembers; // Channel ID -> Online members
+    private final PlayerPositionIndex positionIndex;
+    private volatile boolean rangedChannels; // Whether any channel has a range, so positions are tracked
     
     /**
      * Represents a chat channel configuration.
@@ -30,6 +38,7 @@ public class ChatChannelManager {
         private final ChatColor color;
         private final boolean defaultChannel;
         private final boolean autoJoin;
+        private final String messagePrefix; // Colored prefix every message starts with
         
         public ChatChannel(String id, String name, String prefix, String permission, 
                           int range, ChatColor color, boolean defaultChannel, boolean autoJoin) {
@@ -41,6 +50,7 @@ public class ChatChannelManager {
             this.color = color;
             this.defaultChannel = defaultChannel;
             this.autoJoin = autoJoin;
+            this.messagePrefix = color + ChatColor.translateAlternateColorCodes('&', prefix) + ChatColor.RESET + " ";
         }
         
         public String getId() { return id; }
@@ -56,9 +66,10 @@ public class ChatChannelManager {
     public ChatChannelManager(Ecore plugin) {
         this.plugin = plugin;
         this.channels = new HashMap<>();
-        this.playerChannels = new HashMap<>();
-        this.mutedChannels = new HashMap<>();
-        this.channelMembers = new HashMap<>();
+        this.playerChannels = new ConcurrentHashMap<>();
+        this.mutedChannels = new ConcurrentHashMap<>();
+        this.channelMembers = new ConcurrentHashMap<>();
+        this.positionIndex = new PlayerPositionIndex();
         loadChannels();
     }
     
@@ -88,7 +99,7 @@ public class ChatChannelManager {
             ChatChannel channel = new ChatChannel(channelId, name, prefix, permission, 
                                                 range, color, defaultChannel, autoJoin);
             channels.put(channelId, channel);
-            channelMembers.put(channelId, new HashSet<>());
+            channelMembers.put(channelId, new ConcurrentHashMap<>());
             
             // Auto-join players to default channel
             if (defaultChannel || autoJoin) {
@@ -100,9 +111,42 @@ public class ChatChannelManager {
             }
         }
         
+        updateRangedChannels();
         plugin.getLogger().info("Loaded " + channels.size() + " chat channels!");
     }
     
+    /**
+     * Starts or stops tracking player positions depending on whether any channel has a range.
+     */
+    private void updateRangedChannels() {
+        boolean ranged = false;
+        for (ChatChannel channel : channels.values()) {
+            if (channel.getRange() >= 0) {
+                ranged = true;
+                break;
+            }
+        }
+        if (ranged && !rangedChannels) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                positionIndex.update(player, player.getLocation());
+            }
+        } else if (!ranged && rangedChannels) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                positionIndex.remove(player.getUniqueId());
+            }
+        }
+        rangedChannels = ranged;
+    }
+    
+    /**
+     * Records a player's position for ranged channels. Called from the main thread on move and teleport.
+     */
+    public void updatePosition(Player player, Location location) {
+        if (rangedChannels) {
+            positionIndex.update(player, location);
+        }
+    }
+    
     /**
      * Gets a channel by ID.
      */
@@ -148,7 +192,7 @@ public class ChatChannelManager {
         
         // Join new channel
         playerChannels.put(player.getUniqueId(), channelId);
-        channelMembers.get(channelId).add(player.getUniqueId());
+        channelMembers.get(channelId).put(player.getUniqueId(), player);
         
         if (sendMessage) {
             player.sendMessage(ChatColor.GREEN + "You joined " + channel.getColor() + channel.getName() + 
@@ -162,7 +206,7 @@ public class ChatChannelManager {
      * Leaves a channel.
      */
     public boolean leaveChannel(Player player, String channelId, boolean sendMessage) {
-        if (!playerChannels.get(player.getUniqueId()).equals(channelId)) {
+        if (!channelId.equals(playerChannels.get(player.getUniqueId()))) {
             return false;
         }
         
@@ -182,7 +226,7 @@ public class ChatChannelManager {
      * Mutes a channel for a player.
      */
     public boolean muteChannel(Player player, String channelId) {
-        mutedChannels.computeIfAbsent(player.getUniqueId(), k -> new HashSet<>()).add(channelId);
+        mutedChannels.computeIfAbsent(player.getUniqueId(), k -> ConcurrentHashMap.newKeySet()).add(channelId);
         ChatChannel channel = channels.get(channelId);
         player.sendMessage(ChatColor.YELLOW + "You muted " + channel.getColor() + channel.getName() + 
                          ChatColor.YELLOW + " channel!");
@@ -218,6 +262,8 @@ public class ChatChannelManager {
     
     /**
      * Sends a message to a channel.
+     * The message is converted to chat components once and the same components are sent to
+     * every recipient. Ranged channels only look at members in the chunks within range.
      */
     public void sendChannelMessage(Player sender, String channelId, String message) {
         ChatChannel channel = channels.get(channelId);
@@ -225,35 +271,36 @@ public class ChatChannelManager {
             return;
         }
         
-        if (!playerChannels.get(sender.getUniqueId()).equals(channelId)) {
+        if (!channelId.equals(playerChannels.get(sender.getUniqueId()))) {
             sender.sendMessage(ChatColor.RED + "You are not in " + channel.getName() + " channel!");
             return;
         }
         
-        String format = channel.getColor() + channel.getPrefix() + ChatColor.RESET + " " + 
-                       sender.getDisplayName() + ChatColor.RESET + ": " + message;
+        BaseComponent[] components = TextComponent.fromLegacyText(channel.messagePrefix +
+                       sender.getDisplayName() + ChatColor.RESET + ": " + message);
+        Map<UUID, Player> members = channelMembers.get(channelId);
         
         if (channel.getRange() == -1) {
             // Global channel - send to all members
-            for (UUID memberUuid : channelMembers.get(channelId)) {
-                Player member = Bukkit.getPlayer(memberUuid);
-                if (member != null && !isChannelMuted(memberUuid, channelId)) {
-                    member.sendMessage(format);
+            for (Map.Entry<UUID, Player> entry : members.entrySet()) {
+                if (!isChannelMuted(entry.getKey(), channelId)) {
+                    entry.getValue().spigot().sendMessage(components);
                 }
             }
         } else {
-            // Range-based channel - send to nearby members
-            for (UUID memberUuid : channelMembers.get(channelId)) {
-                Player member = Bukkit.getPlayer(memberUuid);
-                if (member != null && !isChannelMuted(memberUuid, channelId)) {
-                    if (member.getWorld() == sender.getWorld()) {
-                        double distance = member.getLocation().distance(sender.getLocation());
-                        if (distance <= channel.getRange()) {
-                            member.sendMessage(format);
-                        }
-                    }
-                }
+            // Range-based channel - send to members in the chunks around the sender
+            PlayerPositionIndex.Position origin = positionIndex.getPosition(sender.getUniqueId());
+            if (origin == null) {
+                sender.spigot().sendMessage(components); // Not indexed yet, nobody else is known to be near
+                return;
             }
+            positionIndex.forEachNear(origin.getWorld(), origin.getX(), origin.getY(), origin.getZ(),
+                                      channel.getRange(), position -> {
+                UUID memberUuid = position.getPlayer().getUniqueId();
+                if (members.containsKey(memberUuid) && !isChannelMuted(memberUuid, channelId)) {
+                    position.getPlayer().spigot().sendMessage(components);
+                }
+            });
         }
         
         // Send to Discord if enabled
@@ -275,7 +322,8 @@ public class ChatChannelManager {
         ChatChannel channel = new ChatChannel(channelId, name, prefix, permission, 
                                             range, color, defaultChannel, autoJoin);
         channels.put(channelId, channel);
-        channelMembers.put(channelId, new HashSet<>());
+        channelMembers.put(channelId, new ConcurrentHashMap<>());
+        updateRangedChannels();
         
         // Save to config
         FileConfiguration config = plugin.getConfigManager().getConfig();
@@ -301,12 +349,13 @@ public class ChatChannelManager {
         }
         
         // Remove all members
-        for (UUID memberUuid : channelMembers.get(channelId)) {
+        for (UUID memberUuid : channelMembers.get(channelId).keySet()) {
             playerChannels.remove(memberUuid);
         }
         
         channels.remove(channelId);
         channelMembers.remove(channelId);
+        updateRangedChannels();
         
         // Remove from config
         FileConfiguration config = plugin.getConfigManager().getConfig();
@@ -320,6 +369,8 @@ public class ChatChannelManager {
      * Handles player join - auto-join to default channel.
      */
     public void onPlayerJoin(Player player) {
+        updatePosition(player, player.getLocation());
+        
         // Find default channel
         for (ChatChannel channel : channels.values()) {
             if (channel.isDefaultChannel() || channel.isAutoJoin()) {
@@ -340,6 +391,7 @@ public class ChatChannelManager {
             channelMembers.get(channelId).remove(player.getUniqueId());
         }
         mutedChannels.remove(player.getUniqueId());
+        positionIndex.remove(player.getUniqueId());
     }
 }
 
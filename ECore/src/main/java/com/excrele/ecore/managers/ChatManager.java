@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
@@ -45,9 +46,20 @@ public class ChatManager implements Listener {
         this.plugin = plugin;
         this.lastMessaged = new HashMap<>();
         this.chatCooldowns = new HashMap<>();
-        this.mutedPlayers = new HashMap<>();
+        this.mutedPlayers = new ConcurrentHashMap<>(); // Read by async chat, expired on the main thread
         this.slowModeLastMessage = new HashMap<>();
         initializeMutesConfig();
+        plugin.getExpiryManager().registerHandler("mute", new ExpiryManager.Handler() {
+            @Override
+            public void expire(String id) {
+                expireMute(UUID.fromString(id));
+            }
+
+            @Override
+            public void afterExpiry() {
+                saveMutes();
+            }
+        });
         loadMutes();
         // Load slow mode from config
         this.slowModeSeconds = plugin.getConfig().getInt("chat.slow-mode", 0);
@@ -74,8 +86,10 @@ public class ChatManager implements Listener {
                     try {
                         UUID uuid = UUID.fromString(uuidStr);
                         long expires = mutesConfig.getLong("mutes." + uuidStr + ".expires", 0);
-                        if (expires == 0 || expires > System.currentTimeMillis()) {
-                            mutedPlayers.put(uuid, expires);
+                        mutedPlayers.put(uuid, expires);
+                        if (expires > 0) {
+                            // Mutes that ran out while the server was down expire on the first tick
+                            plugin.getExpiryManager().schedule("mute", uuidStr, expires);
                         }
                     } catch (IllegalArgumentException e) {
                         plugin.getLogger().warning("Invalid UUID in mutes.yml: " + uuidStr);
@@ -320,6 +334,11 @@ public class ChatManager implements Listener {
         mutesConfig.set("mutes." + uuid.toString() + ".expires", expires);
         mutesConfig.set("mutes." + uuid.toString() + ".name", player.getName());
         saveMutes();
+        if (expires > 0) {
+            plugin.getExpiryManager().schedule("mute", uuid.toString(), expires);
+        } else {
+            plugin.getExpiryManager().cancel("mute", uuid.toString());
+        }
         
         if (durationSeconds > 0) {
             player.sendMessage("§cYou have been muted for " + formatTime(durationSeconds * 1000L) + "!");
@@ -333,9 +352,22 @@ public class ChatManager implements Listener {
         mutedPlayers.remove(uuid);
         mutesConfig.set("mutes." + uuid.toString(), null);
         saveMutes();
+        plugin.getExpiryManager().cancel("mute", uuid.toString());
         player.sendMessage("§aYou have been unmuted!");
     }
 
+    /**
+     * Lifts a temporary mute once it runs out. Saving is left to the expiry batch.
+     */
+    private void expireMute(UUID uuid) {
+        mutedPlayers.remove(uuid);
+        mutesConfig.set("mutes." + uuid.toString(), null);
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            player.sendMessage("§aYour mute has expired.");
+        }
+    }
+
     public boolean isMuted(Player player) {
         UUID uuid = player.getUniqueId();
         Long expires = mutedPlayers.get(uuid);
@@ -2,30 +2,48 @@ package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
 import org.bukkit.Bukkit;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.ChatColor;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * Manages chunk pregeneration for the server.
  * Allows administrators to pregenerate chunks in a radius from spawn.
+ * Each world runs at most one {@link ChunkPregenerator}; progress is saved to
+ * pregeneration.yml so unfinished jobs resume after a restart.
  * 
  * @author Excrele
  * @version 1.0
  */
 public class ChunkManager {
+    private static final long UPDATE_INTERVAL = 5000; // Progress message every 5 seconds
+
     private final Ecore plugin;
-    private final List<UUID> activeGenerators; // Track who is currently generating chunks
+    private final Map<String, ChunkPregenerator> jobs; // World name -> running job
+    private final File progressFile;
+    private BukkitTask progressTask;
+    private long lastSave;
+    private long lastUpdate;
     
     public ChunkManager(Ecore plugin) {
         this.plugin = plugin;
-        this.activeGenerators = new ArrayList<>();
+        this.jobs = new HashMap<>();
+        this.progressFile = new File(plugin.getDataFolder(), "pregeneration.yml");
+
+        // Worlds may not all be loaded yet, resume once the server is up
+        if (plugin.getConfigManager().getConfig().getBoolean("chunk-pregeneration.resume-on-startup", true)) {
+            Bukkit.getScheduler().runTask(plugin, this::resumeJobs);
+        }
     }
     
     /**
@@ -37,7 +55,7 @@ public class ChunkManager {
      * @return true if generation started, false if already in progress
      */
     public boolean generateChunks(World world, int radius, UUID playerUUID) {
-        if (activeGenerators.contains(playerUUID)) {
+        if (isGenerating(playerUUID) || jobs.containsKey(world.getName())) {
             return false; // Already generating
         }
         
@@ -46,82 +64,135 @@ public class ChunkManager {
             return false;
         }
         
-        activeGenerators.add(playerUUID);
-        
-        // Calculate all chunks to generate
         int spawnChunkX = spawnLocation.getBlockX() >> 4; // Divide by 16
         int spawnChunkZ = spawnLocation.getBlockZ() >> 4;
+        ChunkPregenerator job = new ChunkPregenerator(plugin, this, world, spawnChunkX, spawnChunkZ, radius,
+            playerUUID, 0L, 0L, 0L);
+        startJob(job);
         
-        List<ChunkCoords> chunksToGenerate = new ArrayList<>();
-        for (int x = -radius; x <= radius; x++) {
-            for (int z = -radius; z <= radius; z++) {
-                // Check if chunk is within radius (circular, not square)
-                double distance = Math.sqrt(x * x + z * z);
-                if (distance <= radius) {
-                    chunksToGenerate.add(new ChunkCoords(spawnChunkX + x, spawnChunkZ + z));
-                }
+        sendMessage(playerUUID, ChatColor.YELLOW + "Total chunks to generate: " + job.getTotalChunks());
+        if (!job.isAsync()) {
+            sendMessage(playerUUID, ChatColor.GRAY + "Async chunk loading is not available, generating on the main thread.");
+        }
+        return true;
+    }
+
+    private void startJob(ChunkPregenerator job) {
+        jobs.put(job.getWorld().getName(), job);
+        job.start();
+        saveProgress();
+        if (progressTask == null) {
+            progressTask = Bukkit.getScheduler().runTaskTimer(plugin, this::reportProgress, 20L, 20L);
+        }
+    }
+
+    /**
+     * Sends progress updates to job initiators and periodically saves progress.
+     */
+    private void reportProgress() {
+        if (jobs.isEmpty()) {
+            progressTask.cancel();
+            progressTask = null;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long saveInterval = plugin.getConfigManager().getConfig().getLong("chunk-pregeneration.save-interval-seconds", 30L) * 1000L;
+        if (now - lastSave >= saveInterval) {
+            saveProgress();
+        }
+        if (now - lastUpdate >= UPDATE_INTERVAL) {
+            lastUpdate = now;
+            for (ChunkPregenerator job : jobs.values()) {
+                sendMessage(job.getInitiator(), ChatColor.YELLOW + formatProgress(job));
             }
         }
+    }
         
-        final int totalChunks = chunksToGenerate.size();
-        final int[] generated = {0};
-        final int[] failed = {0};
+    /**
+     * Formats a one-line progress summary for a job.
+     *
+     * @param job The job
+     * @return The summary
+     */
+    public String formatProgress(ChunkPregenerator job) {
+        double progress = job.getTotalChunks() > 0 ? (double) job.getGenerated() / job.getTotalChunks() * 100 : 100.0;
+        return String.format("%s: %.1f%% (%d/%d chunks, %.1f chunks/s, window %d)",
+            job.getWorld().getName(), progress, job.getGenerated(), job.getTotalChunks(), job.getRate(), job.getWindow());
+    }
         
-        // Send initial message
-        sendMessage(playerUUID, ChatColor.GREEN + "Starting chunk generation...");
-        sendMessage(playerUUID, ChatColor.YELLOW + "Total chunks to generate: " + totalChunks);
-        sendMessage(playerUUID, ChatColor.GRAY + "This may take a while. Progress updates will be sent periodically.");
+    /**
+     * Called by a job once every chunk has been handled.
+     *
+     * @param job The finished job
+     */
+    void onFinished(ChunkPregenerator job) {
+        jobs.remove(job.getWorld().getName());
+        saveProgress();
+        sendMessage(job.getInitiator(), ChatColor.GREEN + "Chunk generation completed!");
+        sendMessage(job.getInitiator(), ChatColor.YELLOW + "Generated: " + job.getGenerated() + " chunks");
+        if (job.getFailed() > 0) {
+            sendMessage(job.getInitiator(), ChatColor.RED + "Failed: " + job.getFailed() + " chunks");
+        }
+        plugin.getLogger().info("Chunk pregeneration of " + job.getWorld().getName() + " completed ("
+            + job.getGenerated() + " chunks, " + job.getFailed() + " failed)");
+    }
         
-        // Generate chunks on main thread in batches to avoid lag
-        new BukkitRunnable() {
-            private int index = 0;
-            private long lastUpdate = System.currentTimeMillis();
-            private final long UPDATE_INTERVAL = 5000; // Update every 5 seconds
+    /**
+     * Resumes jobs saved in pregeneration.yml.
+     */
+    private void resumeJobs() {
+        if (!progressFile.exists()) {
+            return;
+        }
+        FileConfiguration progress = YamlConfiguration.loadConfiguration(progressFile);
+        ConfigurationSection section = progress.getConfigurationSection("jobs");
+        if (section == null) {
+            return;
+        }
             
-            @Override
-            public void run() {
-                if (index >= chunksToGenerate.size()) {
-                    // Finished
-                    sendMessage(playerUUID, ChatColor.GREEN + "Chunk generation completed!");
-                    sendMessage(playerUUID, ChatColor.YELLOW + "Generated: " + generated[0] + " chunks");
-                    if (failed[0] > 0) {
-                        sendMessage(playerUUID, ChatColor.RED + "Failed: " + failed[0] + " chunks");
-                    }
-                    activeGenerators.remove(playerUUID);
-                    cancel();
-                    return;
-                }
-                
-                // Generate chunks in batches to avoid lag (chunk generation must be on main thread)
-                int batchSize = 5; // Generate 5 chunks per tick to avoid server lag
-                for (int i = 0; i < batchSize && index < chunksToGenerate.size(); i++) {
-                    ChunkCoords coords = chunksToGenerate.get(index);
-                    index++;
-                    
-                    try {
-                        Chunk chunk = world.getChunkAt(coords.x, coords.z);
-                        if (!chunk.isLoaded()) {
-                            chunk.load(true); // Force load and generate
-                        }
-                        generated[0]++;
-                    } catch (Exception e) {
-                        plugin.getLogger().warning("Failed to generate chunk at " + coords.x + ", " + coords.z + ": " + e.getMessage());
-                        failed[0]++;
-                    }
-                }
-                
-                // Send progress update periodically
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - lastUpdate >= UPDATE_INTERVAL) {
-                    double progress = (double) index / totalChunks * 100;
-                    sendMessage(playerUUID, ChatColor.YELLOW + String.format("Progress: %.1f%% (%d/%d chunks)", 
-                        progress, index, totalChunks));
-                    lastUpdate = currentTime;
-                }
+        for (String worldName : section.getKeys(false)) {
+            ConfigurationSection entry = section.getConfigurationSection(worldName);
+            World world = Bukkit.getWorld(worldName);
+            if (entry == null || world == null || jobs.containsKey(worldName)) {
+                continue;
             }
-        }.runTaskTimer(plugin, 0L, 1L); // Run every tick on main thread
-        
-        return true;
+            UUID initiator;
+            try {
+                initiator = UUID.fromString(entry.getString("initiator", ""));
+            } catch (IllegalArgumentException e) {
+                initiator = new UUID(0L, 0L);
+            }
+            ChunkPregenerator job = new ChunkPregenerator(plugin, this, world,
+                entry.getInt("center-x"), entry.getInt("center-z"), entry.getInt("radius"), initiator,
+                entry.getLong("next-index"), entry.getLong("generated"), entry.getLong("failed"));
+            startJob(job);
+            plugin.getLogger().info("Resumed chunk pregeneration of " + worldName + " at "
+                + job.getGenerated() + "/" + job.getTotalChunks() + " chunks");
+        }
+    }
+                
+    /**
+     * Writes the resume point of every running job to pregeneration.yml.
+     */
+    private void saveProgress() {
+        lastSave = System.currentTimeMillis();
+        FileConfiguration progress = new YamlConfiguration();
+        for (ChunkPregenerator job : jobs.values()) {
+            String path = "jobs." + job.getWorld().getName();
+            progress.set(path + ".center-x", job.getCenterX());
+            progress.set(path + ".center-z", job.getCenterZ());
+            progress.set(path + ".radius", job.getRadius());
+            progress.set(path + ".next-index", job.getResumeIndex());
+            progress.set(path + ".generated", job.getGenerated());
+            progress.set(path + ".failed", job.getFailed());
+            progress.set(path + ".initiator", job.getInitiator().toString());
+        }
+        try {
+            progress.save(progressFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save chunk pregeneration progress: " + e.getMessage());
+        }
     }
     
     /**
@@ -149,7 +220,32 @@ public class ChunkManager {
      * @return true if generating, false otherwise
      */
     public boolean isGenerating(UUID playerUUID) {
-        return activeGenerators.contains(playerUUID);
+        return getJob(playerUUID) != null;
+    }
+
+    /**
+     * Gets the job started by a player.
+     *
+     * @param playerUUID The player's UUID
+     * @return The job, or null if the player has none running
+     */
+    public ChunkPregenerator getJob(UUID playerUUID) {
+        for (ChunkPregenerator job : jobs.values()) {
+            if (job.getInitiator().equals(playerUUID)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the job running in a world.
+     *
+     * @param world The world
+     * @return The job, or null if the world has none running
+     */
+    public ChunkPregenerator getJob(World world) {
+        return jobs.get(world.getName());
     }
     
     /**
@@ -159,11 +255,32 @@ public class ChunkManager {
      * @return true if cancelled, false if not generating
      */
     public boolean cancelGeneration(UUID playerUUID) {
-        if (activeGenerators.remove(playerUUID)) {
-            sendMessage(playerUUID, ChatColor.YELLOW + "Chunk generation cancelled.");
-            return true;
+        ChunkPregenerator job = getJob(playerUUID);
+        if (job == null) {
+            return false;
+        }
+        job.stop();
+        jobs.remove(job.getWorld().getName());
+        saveProgress();
+        sendMessage(playerUUID, ChatColor.YELLOW + "Chunk generation cancelled.");
+        return true;
+    }
+
+    /**
+     * Stops all jobs and saves their progress so they resume on the next start.
+     */
+    public void shutdown() {
+        for (ChunkPregenerator job : jobs.values()) {
+            job.stop();
+        }
+        if (!jobs.isEmpty()) {
+            saveProgress();
+        }
+        jobs.clear();
+        if (progressTask != null) {
+            progressTask.cancel();
+            progressTask = null;
         }
-        return false;
     }
     
     /**
@@ -178,18 +295,4 @@ public class ChunkManager {
             player.sendMessage(message);
         }
     }
-    
-    /**
-     * Helper class to store chunk coordinates.
-     */
-    private static class ChunkCoords {
-        final int x;
-        final int z;
-        
-        ChunkCoords(int x, int z) {
-            this.x = x;
-            this.z = z;
-        }
-    }
 }
-
@@ -0,0 +1,305 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.Ecore;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.lang.reflect.Method;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Pregenerates the chunks within a circular radius of a center chunk.
+ * Chunks are visited along a square spiral from the center outwards, which keeps
+ * consecutive requests in the same region files. On servers that support async
+ * chunk loading (Paper), a window of chunk loads is kept in flight; otherwise chunks
+ * are loaded on the main thread until a per-tick time budget is used up. The window
+ * or budget shrinks while TPS is low and grows back once the server keeps up.
+ *
+ * <p>Progress is tracked as the spiral index below which every chunk is done, so a
+ * stopped job can be resumed from that index.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class ChunkPregenerator extends BukkitRunnable {
+    private static final Method GET_CHUNK_AT_ASYNC = findAsyncMethod();
+    private static final int TPS_WINDOW_TICKS = 100; // The TPS figure averages the last 100 ticks
+
+    private final Ecore plugin;
+    private final ChunkManager manager;
+    private final World world;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final UUID initiator;
+    private final long totalChunks;
+    private final long lastIndex;
+
+    // Tuning
+    private final int maxInFlight;
+    private final long syncBudgetNanos;
+    private final double targetTps;
+
+    // Progress, only touched on the main thread
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long nextIndex;
+    private long generated;
+    private long failed;
+    private double window;
+    private long ticks;
+    private long lastDecreaseTick;
+    private long startedAt;
+    private long startedGenerated;
+    private boolean finished;
+
+    /**
+     * @param startIndex The spiral index to resume from, 0 for a new job
+     * @param generated Chunks already generated by an earlier run of this job
+     * @param failed Chunks that failed in an earlier run of this job
+     */
+    public ChunkPregenerator(Ecore plugin, ChunkManager manager, World world, int centerX, int centerZ, int radius,
+                             UUID initiator, long startIndex, long generated, long failed) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.world = world;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.initiator = initiator;
+        this.totalChunks = countChunks(radius);
+        this.lastIndex = (2L * radius + 1) * (2L * radius + 1) - 1;
+        this.nextIndex = startIndex;
+        this.generated = generated;
+        this.failed = failed;
+
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        this.maxInFlight = Math.max(1, config.getInt("chunk-pregeneration.max-in-flight", 32));
+        this.syncBudgetNanos = (long) (config.getDouble("chunk-pregeneration.sync-budget-ms", 15.0) * 1_000_000L);
+        this.targetTps = config.getDouble("chunk-pregeneration.target-tps", 18.5);
+        this.window = Math.max(1, maxInFlight / 4);
+        this.lastDecreaseTick = -2L * TPS_WINDOW_TICKS;
+    }
+
+    private static Method findAsyncMethod() {
+        try {
+            return World.class.getMethod("getChunkAtAsync", int.class, int.class, boolean.class);
+        } catch (NoSuchMethodException e) {
+            return null; // Not available on this server, fall back to main-thread loading
+        }
+    }
+
+    /**
+     * Starts the job.
+     */
+    public void start() {
+        startedAt = System.currentTimeMillis();
+        startedGenerated = generated;
+        runTaskTimer(plugin, 1L, 1L);
+    }
+
+    @Override
+    public void run() {
+        if (finished) {
+            return;
+        }
+        long profile = plugin.getProfilingManager().start();
+        adaptWindow();
+
+        if (GET_CHUNK_AT_ASYNC != null) {
+            // Chunks that already exist are skipped without using the window, so bound the tick by time too
+            long deadline = System.nanoTime() + syncBudgetNanos;
+            while (inFlight.size() < (int) window && nextIndex <= lastIndex && System.nanoTime() < deadline) {
+                long index = nextIndex++;
+                if (inRadius(index)) {
+                    requestAsync(index);
+                }
+            }
+        } else {
+            long deadline = System.nanoTime() + (long) (syncBudgetNanos * (window / maxInFlight));
+            while (nextIndex <= lastIndex && System.nanoTime() < deadline) {
+                long index = nextIndex++;
+                if (inRadius(index)) {
+                    loadSync(index);
+                }
+            }
+        }
+
+        if (nextIndex > lastIndex && inFlight.isEmpty()) {
+            finish();
+        }
+        plugin.getProfilingManager().stop("ChunkPregenerator.tick", profile);
+    }
+
+    /**
+     * Grows the window while the server keeps up and halves it when TPS drops.
+     * Adjusts once per TPS window, since the TPS figure is an average over that many ticks.
+     * After a decrease, the next window still holds the ticks measured before it, so
+     * TPS is not acted on again until a full window has passed.
+     */
+    private void adaptWindow() {
+        ticks++;
+        if (ticks % TPS_WINDOW_TICKS != 0) {
+            return;
+        }
+        double tps = plugin.getServerInfoManager() != null ? plugin.getServerInfoManager().getTPS() : 20.0;
+        if (tps < targetTps) {
+            if (ticks - lastDecreaseTick >= 2L * TPS_WINDOW_TICKS) {
+                window = Math.max(1.0, window / 2.0);
+                lastDecreaseTick = ticks;
+            }
+        } else {
+            window = Math.min(maxInFlight, window + Math.max(1.0, maxInFlight / 8.0));
+        }
+    }
+
+    private void requestAsync(long index) {
+        int x = spiralX(index);
+        int z = spiralZ(index);
+        if (world.isChunkGenerated(x, z)) {
+            generated++;
+            return;
+        }
+        inFlight.add(index);
+        try {
+            CompletableFuture<?> future = (CompletableFuture<?>) GET_CHUNK_AT_ASYNC.invoke(world, x, z, true);
+            future.whenComplete((chunk, error) -> {
+                // Completion may arrive off the main thread, hand it back
+                if (plugin.getServer().isPrimaryThread()) {
+                    complete(index, x, z, error);
+                } else if (plugin.isEnabled()) {
+                    plugin.getServer().getScheduler().runTask(plugin, () -> complete(index, x, z, error));
+                }
+            });
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            complete(index, x, z, e);
+        }
+    }
+
+    private void loadSync(long index) {
+        int x = spiralX(index);
+        int z = spiralZ(index);
+        try {
+            if (!world.isChunkGenerated(x, z)) {
+                world.loadChunk(x, z, true);
+                world.unloadChunkRequest(x, z);
+            }
+            generated++;
+        } catch (RuntimeException e) {
+            failed++;
+            plugin.getLogger().warning("Failed to generate chunk at " + x + ", " + z + ": " + e.getMessage());
+        }
+    }
+
+    private void complete(long index, int x, int z, Throwable error) {
+        inFlight.remove(index);
+        if (error != null) {
+            failed++;
+            plugin.getLogger().log(Level.WARNING, "Failed to generate chunk at " + x + ", " + z, error);
+        } else {
+            generated++;
+            // Nothing holds the chunk, let the server unload it again
+            world.unloadChunkRequest(x, z);
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        cancel();
+        manager.onFinished(this);
+    }
+
+    /**
+     * Stops the job. Chunks still loading finish in the background.
+     */
+    public void stop() {
+        finished = true;
+        if (!isCancelled()) {
+            cancel();
+        }
+    }
+
+    /**
+     * Gets the spiral index below which every chunk has been handled.
+     * Resuming from here never skips a chunk.
+     */
+    public long getResumeIndex() {
+        return inFlight.isEmpty() ? nextIndex : inFlight.first();
+    }
+
+    // Square spiral: index 0 is the center, ring r (r >= 1) holds 8r chunks starting at (2r-1)^2
+    private int ring(long index) {
+        if (index == 0) return 0;
+        long root = (long) Math.sqrt((double) index);
+        int r = (int) ((root + 1) / 2);
+        while ((2L * r + 1) * (2L * r + 1) <= index) r++;
+        while (r > 0 && (2L * r - 1) * (2L * r - 1) > index) r--;
+        return r;
+    }
+
+    private int spiralX(long index) {
+        int r = ring(index);
+        if (r == 0) return centerX;
+        long i = index - (2L * r - 1) * (2L * r - 1);
+        int side = (int) (i / (2L * r));
+        int t = (int) (i % (2L * r));
+        switch (side) {
+            case 0: return centerX + r;
+            case 1: return centerX + r - 1 - t;
+            case 2: return centerX - r;
+            default: return centerX - r + 1 + t;
+        }
+    }
+
+    private int spiralZ(long index) {
+        int r = ring(index);
+        if (r == 0) return centerZ;
+        long i = index - (2L * r - 1) * (2L * r - 1);
+        int side = (int) (i / (2L * r));
+        int t = (int) (i % (2L * r));
+        switch (side) {
+            case 0: return centerZ - r + 1 + t;
+            case 1: return centerZ + r;
+            case 2: return centerZ + r - 1 - t;
+            default: return centerZ - r;
+        }
+    }
+
+    private boolean inRadius(long index) {
+        long dx = spiralX(index) - centerX;
+        long dz = spiralZ(index) - centerZ;
+        return dx * dx + dz * dz <= (long) radius * radius;
+    }
+
+    private static long countChunks(int radius) {
+        long count = 0;
+        long r2 = (long) radius * radius;
+        for (long x = -radius; x <= radius; x++) {
+            count += 2 * (long) Math.sqrt((double) (r2 - x * x)) + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the chunks generated per second since this run started.
+     */
+    public double getRate() {
+        long elapsed = System.currentTimeMillis() - startedAt;
+        return elapsed > 0 ? (generated - startedGenerated) * 1000.0 / elapsed : 0.0;
+    }
+
+    public World getWorld() { return world; }
+    public int getCenterX() { return centerX; }
+    public int getCenterZ() { return centerZ; }
+    public int getRadius() { return radius; }
+    public UUID getInitiator() { return initiator; }
+    public long getTotalChunks() { return totalChunks; }
+    public long getGenerated() { return generated; }
+    public long getFailed() { return failed; }
+    public int getInFlight() { return inFlight.size(); }
+    public int getWindow() { return (int) window; }
+    public boolean isAsync() { return GET_CHUNK_AT_ASYNC != null; }
+}
@@ -1,6 +1,7 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.utils.LongHashMap;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -8,7 +9,6 @@ import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -21,18 +21,24 @@ import java.util.logging.Level;
  * Supports claim limits, visualization, permissions, sharing, taxes, auto-unclaim, flags, inheritance, auctions
  */
 public class ClaimManager {
+    private static final long ACTIVITY_SAVE_INTERVAL = 3600000L; // Activity is recorded at most hourly per claim
+    
     private final Ecore plugin;
     private File claimsFile;
     private FileConfiguration claimsConfig;
-    private final Map<String, Map<String, Claim>> claimsByWorld; // world name -> chunk key -> claim
+    private final Map<String, LongHashMap<Claim>> claimsByWorld; // world name -> packed chunk -> claim
+    private final Map<UUID, LongHashMap<Claim>> claimsByWorldId; // Resolved from claimsByWorld on first lookup
     private final Map<UUID, Integer> playerClaimCounts; // Player UUID -> claim count
-    private BukkitTask autoUnclaimTask;
+    private final Map<UUID, Set<Claim>> claimsByPlayer; // Owner or member UUID -> claims
+    private long inactivityThreshold;
     private boolean enabled;
     
     public ClaimManager(Ecore plugin) {
         this.plugin = plugin;
         this.claimsByWorld = new HashMap<>();
+        this.claimsByWorldId = new HashMap<>();
         this.playerClaimCounts = new HashMap<>();
+        this.claimsByPlayer = new HashMap<>();
         this.enabled = plugin.getConfig().getBoolean("claims.enabled", true);
         initializeConfig();
         if (enabled) {
@@ -57,7 +63,7 @@ public class ClaimManager {
         if (!claimsConfig.contains("claims")) return;
         
         for (String worldName : claimsConfig.getConfigurationSection("claims").getKeys(false)) {
-            Map<String, Claim> worldClaims = new HashMap<>();
+            LongHashMap<Claim> worldClaims = getWorldClaims(worldName);
             
             for (String chunkKey : claimsConfig.getConfigurationSection("claims." + worldName).getKeys(false)) {
                 String path = "claims." + worldName + "." + chunkKey;
@@ -69,17 +75,20 @@ public class ClaimManager {
                 double salePrice = claimsConfig.getDouble(path + ".sale-price", 0.0);
                 
                 // Load permissions
-                Map<String, Boolean> permissions = new HashMap<>();
+                Map<String, Boolean> permissions = null; // Left null while empty, most claims have none
                 if (claimsConfig.contains(path + ".permissions")) {
+                    permissions = new HashMap<>();
                     for (String perm : claimsConfig.getConfigurationSection(path + ".permissions").getKeys(false)) {
                         permissions.put(perm, claimsConfig.getBoolean(path + ".permissions." + perm));
                     }
                 }
                 
                 // Load members
-                Set<UUID> members = new HashSet<>();
-                if (claimsConfig.contains(path + ".members")) {
-                    for (String uuidStr : claimsConfig.getStringList(path + ".members")) {
+                Set<UUID> members = null;
+                List<String> memberStrs = claimsConfig.getStringList(path + ".members");
+                if (!memberStrs.isEmpty()) {
+                    members = new HashSet<>();
+                    for (String uuidStr : memberStrs) {
                         try {
                             members.add(UUID.fromString(uuidStr));
                         } catch (IllegalArgumentException e) {
@@ -89,8 +98,9 @@ public class ClaimManager {
                 }
                 
                 // Load flags
-                Map<String, Boolean> flags = new HashMap<>();
+                Map<String, Boolean> flags = null;
                 if (claimsConfig.contains(path + ".flags")) {
+                    flags = new HashMap<>();
                     for (String flag : claimsConfig.getConfigurationSection(path + ".flags").getKeys(false)) {
                         flags.put(flag, claimsConfig.getBoolean(path + ".flags." + flag));
                     }
@@ -102,13 +112,59 @@ public class ClaimManager {
                 
                 Claim claim = new Claim(worldName, chunkX, chunkZ, owner, claimedAt, lastActivity, tax, 
                                        forSale, salePrice, permissions, members, flags);
-                worldClaims.put(chunkKey, claim);
+                worldClaims.put(LongHashMap.pack(chunkX, chunkZ), claim);
+                indexClaim(claim);
                 
                 // Update player claim count
                 playerClaimCounts.put(owner, playerClaimCounts.getOrDefault(owner, 0) + 1);
             }
-            
-            claimsByWorld.put(worldName, worldClaims);
+        }
+    }
+    
+    /**
+     * Gets the claims of a world by name, creating the world's map if needed.
+     */
+    private LongHashMap<Claim> getWorldClaims(String worldName) {
+        return claimsByWorld.computeIfAbsent(worldName, name -> new LongHashMap<>());
+    }
+    
+    /**
+     * Gets the claims of a world without allocating once the world has been seen.
+     * World maps are never removed, so the cached mapping stays valid.
+     */
+    private LongHashMap<Claim> getWorldClaims(World world) {
+        LongHashMap<Claim> worldClaims = claimsByWorldId.get(world.getUID());
+        if (worldClaims == null) {
+            worldClaims = getWorldClaims(world.getName());
+            claimsByWorldId.put(world.getUID(), worldClaims);
+        }
+        return worldClaims;
+    }
+    
+    /**
+     * Adds a claim to the index of its owner and members.
+     */
+    private void indexClaim(Claim claim) {
+        claimsByPlayer.computeIfAbsent(claim.getOwner(), k -> new HashSet<>()).add(claim);
+        for (UUID member : claim.getMembers()) {
+            claimsByPlayer.computeIfAbsent(member, k -> new HashSet<>()).add(claim);
+        }
+    }
+    
+    /**
+     * Removes a claim from the index of its owner and members.
+     */
+    private void unindexClaim(Claim claim) {
+        unindexClaim(claim, claim.getOwner());
+        for (UUID member : claim.getMembers()) {
+            unindexClaim(claim, member);
+        }
+    }
+    
+    private void unindexClaim(Claim claim, UUID uuid) {
+        Set<Claim> claims = claimsByPlayer.get(uuid);
+        if (claims != null && claims.remove(claim) && claims.isEmpty()) {
+            claimsByPlayer.remove(uuid);
         }
     }
     
@@ -123,11 +179,11 @@ public class ClaimManager {
         
         UUID uuid = player.getUniqueId();
         String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
+        long chunkKey = LongHashMap.pack(chunk.getX(), chunk.getZ());
         
         // Check if already claimed
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims != null && worldClaims.containsKey(chunkKey)) {
+        LongHashMap<Claim> worldClaims = getWorldClaims(chunk.getWorld());
+        if (worldClaims.containsKey(chunkKey)) {
             player.sendMessage(org.bukkit.ChatColor.RED + "This chunk is already claimed!");
             return false;
         }
@@ -142,13 +198,14 @@ public class ClaimManager {
         
         // Create claim
         Claim claim = new Claim(worldName, chunk.getX(), chunk.getZ(), uuid, System.currentTimeMillis(), 
-                               System.currentTimeMillis(), 0.0, false, 0.0, new HashMap<>(), new HashSet<>(), new HashMap<>());
+                               System.currentTimeMillis(), 0.0, false, 0.0, null, null, null);
         
-        worldClaims = claimsByWorld.computeIfAbsent(worldName, k -> new HashMap<>());
         worldClaims.put(chunkKey, claim);
+        indexClaim(claim);
         playerClaimCounts.put(uuid, currentClaims + 1);
         
-        saveClaim(worldName, chunkKey, claim);
+        saveClaim(claim);
+        scheduleAutoUnclaim(claim);
         
         player.sendMessage(org.bukkit.ChatColor.GREEN + "Chunk claimed successfully!");
         visualizeClaim(player, claim);
@@ -162,11 +219,8 @@ public class ClaimManager {
     public boolean unclaimChunk(Player player, Chunk chunk) {
         if (!enabled) return false;
         
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims == null) return false;
+        LongHashMap<Claim> worldClaims = getWorldClaims(chunk.getWorld());
+        long chunkKey = LongHashMap.pack(chunk.getX(), chunk.getZ());
         
         Claim claim = worldClaims.get(chunkKey);
         if (claim == null) return false;
@@ -177,13 +231,12 @@ public class ClaimManager {
         }
         
         worldClaims.remove(chunkKey);
-        if (worldClaims.isEmpty()) {
-            claimsByWorld.remove(worldName);
-        }
+        unindexClaim(claim);
         
         playerClaimCounts.put(claim.getOwner(), playerClaimCounts.getOrDefault(claim.getOwner(), 1) - 1);
+        plugin.getExpiryManager().cancel("claim", getExpiryId(claim));
         
-        claimsConfig.set("claims." + worldName + "." + chunkKey, null);
+        claimsConfig.set(getPath(claim), null);
         saveConfig();
         
         player.sendMessage(org.bukkit.ChatColor.GREEN + "Chunk unclaimed!");
@@ -196,13 +249,7 @@ public class ClaimManager {
     public boolean canPerformAction(Player player, Chunk chunk, String action) {
         if (!enabled) return true; // If disabled, allow all actions
         
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims == null) return true; // No claims in world
-        
-        Claim claim = worldClaims.get(chunkKey);
+        Claim claim = getClaim(chunk);
         if (claim == null) return true; // Chunk not claimed
         
         UUID uuid = player.getUniqueId();
@@ -262,20 +309,15 @@ public class ClaimManager {
     public boolean shareClaim(Player owner, Chunk chunk, UUID memberUuid, String permission) {
         if (!enabled) return false;
         
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims == null) return false;
-        
-        Claim claim = worldClaims.get(chunkKey);
+        Claim claim = getClaim(chunk);
         if (claim == null || !claim.getOwner().equals(owner.getUniqueId())) {
             return false;
         }
         
         claim.addMember(memberUuid);
+        claimsByPlayer.computeIfAbsent(memberUuid, k -> new HashSet<>()).add(claim);
         claim.setPermission(permission, true);
-        saveClaim(worldName, chunkKey, claim);
+        saveClaim(claim);
         
         return true;
     }
@@ -286,20 +328,14 @@ public class ClaimManager {
     public boolean setClaimForSale(Player player, Chunk chunk, double price) {
         if (!enabled) return false;
         
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims == null) return false;
-        
-        Claim claim = worldClaims.get(chunkKey);
+        Claim claim = getClaim(chunk);
         if (claim == null || !claim.getOwner().equals(player.getUniqueId())) {
             return false;
         }
         
         claim.setForSale(true);
         claim.setSalePrice(price);
-        saveClaim(worldName, chunkKey, claim);
+        saveClaim(claim);
         
         return true;
     }
@@ -310,13 +346,7 @@ public class ClaimManager {
     public boolean buyClaim(Player buyer, Chunk chunk) {
         if (!enabled) return false;
         
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        if (worldClaims == null) return false;
-        
-        Claim claim = worldClaims.get(chunkKey);
+        Claim claim = getClaim(chunk);
         if (claim == null || !claim.isForSale()) {
             return false;
         }
@@ -334,37 +364,147 @@ public class ClaimManager {
         playerClaimCounts.put(oldOwner, playerClaimCounts.getOrDefault(oldOwner, 1) - 1);
         playerClaimCounts.put(buyer.getUniqueId(), playerClaimCounts.getOrDefault(buyer.getUniqueId(), 0) + 1);
         
+        unindexClaim(claim);
         claim.setOwner(buyer.getUniqueId());
+        indexClaim(claim);
         claim.setForSale(false);
         claim.setSalePrice(0.0);
-        saveClaim(worldName, chunkKey, claim);
+        claim.updateActivity();
+        saveClaim(claim);
+        scheduleAutoUnclaim(claim);
         
         return true;
     }
     
     private void startAutoUnclaimTask() {
-        long checkInterval = plugin.getConfig().getLong("claims.auto-unclaim-check-interval", 86400000L); // 24 hours
-        long inactivityThreshold = plugin.getConfig().getLong("claims.inactivity-threshold", 2592000000L); // 30 days
-        
-        autoUnclaimTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            long currentTime = System.currentTimeMillis();
-            for (Map<String, Claim> worldClaims : claimsByWorld.values()) {
-                for (Claim claim : worldClaims.values()) {
-                    if (currentTime - claim.getLastActivity() > inactivityThreshold) {
-                        // Auto-unclaim
-                        String chunkKey = claim.getChunkX() + "," + claim.getChunkZ();
-                        worldClaims.remove(chunkKey);
-                        playerClaimCounts.put(claim.getOwner(), playerClaimCounts.getOrDefault(claim.getOwner(), 1) - 1);
-                        claimsConfig.set("claims." + claim.getWorldName() + "." + chunkKey, null);
-                    }
+        if (plugin.getConfig().isSet("claims.auto-unclaim-check-interval")) {
+            plugin.getLogger().warning("claims.auto-unclaim-check-interval is no longer used: each claim is now "
+                + "unclaimed as soon as it passes claims.inactivity-threshold");
+        }
+        if (!plugin.getConfig().getBoolean("claims.auto-unclaim-enabled", false)) {
+            inactivityThreshold = 0L;
+            return;
+        }
+        inactivityThreshold = plugin.getConfig().getLong("claims.inactivity-threshold", 2592000000L); // 30 days
+        if (inactivityThreshold <= 0) return;
+        
+        // Each claim is unclaimed by the shared expiry wheel once it has been inactive too long
+        plugin.getExpiryManager().registerHandler("claim", new ExpiryManager.Handler() {
+            @Override
+            public void expire(String id) {
+                int separator = id.indexOf('/');
+                int comma = id.indexOf(',', separator);
+                LongHashMap<Claim> worldClaims = claimsByWorld.get(id.substring(0, separator));
+                long chunkKey = LongHashMap.pack(Integer.parseInt(id.substring(separator + 1, comma)),
+                    Integer.parseInt(id.substring(comma + 1)));
+                Claim claim = worldClaims != null ? worldClaims.get(chunkKey) : null;
+                if (claim == null) {
+                    return;
                 }
+                // Claims saved before activity was recorded only carry their creation time,
+                // so the last time the owner or a member played counts as activity too
+                long lastSeen = getLastSeen(claim);
+                if (System.currentTimeMillis() - lastSeen <= inactivityThreshold) {
+                    claim.setLastActivity(lastSeen);
+                    writeClaim(claim);
+                    scheduleAutoUnclaim(claim);
+                    return;
+                }
+                // Auto-unclaim
+                worldClaims.remove(chunkKey);
+                unindexClaim(claim);
+                playerClaimCounts.put(claim.getOwner(), playerClaimCounts.getOrDefault(claim.getOwner(), 1) - 1);
+                claimsConfig.set(getPath(claim), null);
+            }
+
+            @Override
+            public void afterExpiry() {
+                saveConfig();
             }
-            saveConfig();
-        }, 0L, checkInterval / 50);
+        });
+        for (LongHashMap<Claim> worldClaims : claimsByWorld.values()) {
+            worldClaims.forEach((chunkKey, claim) -> scheduleAutoUnclaim(claim));
+        }
+    }
+    
+    private void scheduleAutoUnclaim(Claim claim) {
+        if (inactivityThreshold <= 0) return;
+        plugin.getExpiryManager().schedule("claim", getExpiryId(claim), claim.getLastActivity() + inactivityThreshold);
+    }
+    
+    /**
+     * Gets the latest of a claim's recorded activity and the last time its owner or a member played.
+     */
+    private long getLastSeen(Claim claim) {
+        long lastSeen = Math.max(claim.getLastActivity(), getLastPlayed(claim.getOwner()));
+        for (UUID member : claim.getMembers()) {
+            lastSeen = Math.max(lastSeen, getLastPlayed(member));
+        }
+        return lastSeen;
+    }
+    
+    private long getLastPlayed(UUID uuid) {
+        if (Bukkit.getPlayer(uuid) != null) {
+            return System.currentTimeMillis();
+        }
+        return Bukkit.getOfflinePlayer(uuid).getLastPlayed();
+    }
+    
+    private boolean isOwnerOrMember(Claim claim, UUID uuid) {
+        return claim.getOwner().equals(uuid) || claim.getMembers().contains(uuid);
+    }
+    
+    /**
+     * Records that a player was active in a chunk, keeping the claim there from being
+     * auto-unclaimed if the player owns it or is a member.
+     * Activity is only written to claims.yml in memory and saved with the next save of the
+     * file; if that never happens before a crash, the owner's last played time still counts.
+     */
+    public void recordActivity(Player player, Chunk chunk) {
+        if (!enabled || inactivityThreshold <= 0) return;
+        Claim claim = getClaim(chunk);
+        if (claim == null || !isOwnerOrMember(claim, player.getUniqueId())) return;
+        touchClaim(claim, System.currentTimeMillis());
+    }
+    
+    /**
+     * Records activity on every claim a joining player owns or is a member of.
+     */
+    public void recordActivity(Player player) {
+        if (!enabled || inactivityThreshold <= 0) return;
+        Set<Claim> claims = claimsByPlayer.get(player.getUniqueId());
+        if (claims == null) return;
+        long now = System.currentTimeMillis();
+        for (Claim claim : claims) {
+            touchClaim(claim, now);
+        }
+    }
+    
+    private void touchClaim(Claim claim, long now) {
+        if (now - claim.getLastActivity() < ACTIVITY_SAVE_INTERVAL) return;
+        claim.setLastActivity(now);
+        writeClaim(claim);
+        scheduleAutoUnclaim(claim);
+    }
+    
+    private String getExpiryId(Claim claim) {
+        return claim.getWorldName() + "/" + claim.getChunkX() + "," + claim.getChunkZ();
     }
     
-    private void saveClaim(String worldName, String chunkKey, Claim claim) {
-        String path = "claims." + worldName + "." + chunkKey;
+    private String getPath(Claim claim) {
+        return "claims." + claim.getWorldName() + "." + claim.getChunkX() + "," + claim.getChunkZ();
+    }
+    
+    private void saveClaim(Claim claim) {
+        writeClaim(claim);
+        saveConfig();
+    }
+    
+    /**
+     * Writes a claim into claims.yml in memory, without saving the file.
+     */
+    private void writeClaim(Claim claim) {
+        String path = getPath(claim);
         claimsConfig.set(path + ".owner", claim.getOwner().toString());
         claimsConfig.set(path + ".claimed-at", claim.getClaimedAt());
         claimsConfig.set(path + ".last-activity", claim.getLastActivity());
@@ -388,8 +528,6 @@ public class ClaimManager {
         for (Map.Entry<String, Boolean> entry : claim.getFlags().entrySet()) {
             claimsConfig.set(path + ".flags." + entry.getKey(), entry.getValue());
         }
-        
-        saveConfig();
     }
     
     private void saveConfig() {
@@ -401,10 +539,7 @@ public class ClaimManager {
     }
     
     public Claim getClaim(Chunk chunk) {
-        String worldName = chunk.getWorld().getName();
-        String chunkKey = chunk.getX() + "," + chunk.getZ();
-        Map<String, Claim> worldClaims = claimsByWorld.get(worldName);
-        return worldClaims != null ? worldClaims.get(chunkKey) : null;
+        return getWorldClaims(chunk.getWorld()).get(LongHashMap.pack(chunk.getX(), chunk.getZ()));
     }
     
     public boolean isEnabled() {
@@ -412,9 +547,6 @@ public class ClaimManager {
     }
     
     public void shutdown() {
-        if (autoUnclaimTask != null) {
-            autoUnclaimTask.cancel();
-        }
         saveConfig();
     }
     
@@ -453,14 +585,22 @@ public class ClaimManager {
         }
         
         public void addMember(UUID uuid) {
+            if (members == null) {
+                members = new HashSet<>();
+            }
             members.add(uuid);
         }
         
         public void removeMember(UUID uuid) {
-            members.remove(uuid);
+            if (members != null) {
+                members.remove(uuid);
+            }
         }
         
         public void setPermission(String permission, boolean allowed) {
+            if (permissions == null) {
+                permissions = new HashMap<>();
+            }
             permissions.put(permission, allowed);
         }
         
@@ -468,6 +608,10 @@ public class ClaimManager {
             this.lastActivity = System.currentTimeMillis();
         }
         
+        public void setLastActivity(long lastActivity) {
+            this.lastActivity = lastActivity;
+        }
+        
         // Getters and setters
         public String getWorldName() { return worldName; }
         public int getChunkX() { return chunkX; }
@@ -482,9 +626,10 @@ public class ClaimManager {
         public void setForSale(boolean forSale) { this.forSale = forSale; }
         public double getSalePrice() { return salePrice; }
         public void setSalePrice(double salePrice) { this.salePrice = salePrice; }
-        public Map<String, Boolean> getPermissions() { return permissions; }
-        public Set<UUID> getMembers() { return members; }
-        public Map<String, Boolean> getFlags() { return flags; }
+        // Collections are only allocated once something is added, so these may be read-only empties
+        public Map<String, Boolean> getPermissions() { return permissions != null ? permissions : Collections.emptyMap(); }
+        public Set<UUID> getMembers() { return members != null ? members : Collections.emptySet(); }
+        public Map<String, Boolean> getFlags() { return flags != null ? flags : Collections.emptyMap(); }
     }
 }
 
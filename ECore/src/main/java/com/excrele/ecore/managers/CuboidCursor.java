@@ -0,0 +1,164 @@
+package com.excrele.ecore.managers;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Visits the blocks of a cuboid (or its walls or faces) chunk by chunk.
+ * All positions in one chunk are visited before moving to the next, so each
+ * chunk is loaded once per operation. No objects are allocated while walking.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class CuboidCursor implements EditCursor {
+
+    /**
+     * Which blocks of the cuboid are visited.
+     */
+    public enum Shape {
+        /** Every block */
+        FILL,
+        /** The four vertical faces */
+        WALLS,
+        /** All six faces */
+        HOLLOW
+    }
+
+    private static final int COLUMN_NONE = 0;
+    private static final int COLUMN_ALL = 1;
+    private static final int COLUMN_ENDS = 2;
+
+    private final World world;
+    private final Shape shape;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final int maxChunkX, minChunkZ, maxChunkZ;
+
+    private int chunkX, chunkZ;
+    private int chunkMinX, chunkMaxX, chunkMinZ, chunkMaxZ;
+    private int x, y, z;
+    private int column;
+    private boolean done;
+
+    public CuboidCursor(WorldEditManager.Selection selection, Shape shape) {
+        this.world = selection.getWorld();
+        this.shape = shape;
+        this.minX = selection.getMin().getBlockX();
+        this.minY = selection.getMin().getBlockY();
+        this.minZ = selection.getMin().getBlockZ();
+        this.maxX = selection.getMax().getBlockX();
+        this.maxY = selection.getMax().getBlockY();
+        this.maxZ = selection.getMax().getBlockZ();
+        this.maxChunkX = maxX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.maxChunkZ = maxZ >> 4;
+
+        this.chunkX = minX >> 4;
+        this.chunkZ = minChunkZ;
+        enterChunk();
+        this.z = chunkMinZ - 1; // First call to next() moves to the first column
+        this.column = COLUMN_NONE;
+    }
+
+    @Override
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        if (column == COLUMN_ALL && y < maxY) {
+            y++;
+            return true;
+        }
+        if (column == COLUMN_ENDS && y == minY && maxY != minY) {
+            y = maxY;
+            return true;
+        }
+        return nextColumn();
+    }
+
+    private boolean nextColumn() {
+        while (true) {
+            if (++z > chunkMaxZ) {
+                z = chunkMinZ;
+                if (++x > chunkMaxX) {
+                    if (++chunkZ > maxChunkZ) {
+                        chunkZ = minChunkZ;
+                        if (++chunkX > maxChunkX) {
+                            done = true;
+                            return false;
+                        }
+                    }
+                    enterChunk();
+                    z = chunkMinZ;
+                }
+            }
+
+            column = columnType(x, z);
+            if (column != COLUMN_NONE) {
+                y = minY;
+                return true;
+            }
+        }
+    }
+
+    private void enterChunk() {
+        chunkMinX = Math.max(minX, chunkX << 4);
+        chunkMaxX = Math.min(maxX, (chunkX << 4) | 15);
+        chunkMinZ = Math.max(minZ, chunkZ << 4);
+        chunkMaxZ = Math.min(maxZ, (chunkZ << 4) | 15);
+        x = chunkMinX;
+    }
+
+    private int columnType(int x, int z) {
+        if (shape == Shape.FILL) {
+            return COLUMN_ALL;
+        }
+        boolean edge = x == minX || x == maxX || z == minZ || z == maxZ;
+        if (edge) {
+            return COLUMN_ALL;
+        }
+        return shape == Shape.HOLLOW ? COLUMN_ENDS : COLUMN_NONE;
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public int getX() {
+        return x;
+    }
+
+    @Override
+    public int getY() {
+        return y;
+    }
+
+    @Override
+    public int getZ() {
+        return z;
+    }
+
+    @Override
+    public BlockData getBlockData() {
+        return null;
+    }
+
+    @Override
+    public long size() {
+        long width = maxX - minX + 1L;
+        long height = maxY - minY + 1L;
+        long length = maxZ - minZ + 1L;
+        if (shape == Shape.FILL) {
+            return width * height * length;
+        }
+        long interiorColumns = Math.max(0L, width - 2) * Math.max(0L, length - 2);
+        long edgeColumns = width * length - interiorColumns;
+        if (shape == Shape.WALLS) {
+            return edgeColumns * height;
+        }
+        return edgeColumns * height + interiorColumns * (height > 1 ? 2 : 1);
+    }
+}
@@ -20,6 +20,7 @@ import java.awt.Color;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -44,6 +45,7 @@ public class DiscordManager {
     private final Map<String, Long> rateLimitMap; // User ID -> Last message time
     private final List<Pattern> filteredWords;
     private int statusUpdateTaskId = -1;
+    private int queueTaskId = -1;
 
     public DiscordManager(Ecore plugin) {
         this.plugin = plugin;
@@ -96,6 +98,9 @@ public class DiscordManager {
             
             // Start scheduled reports
             startScheduledReports();
+
+            // Start sending queued messages
+            startMessageQueue();
             
             plugin.getLogger().info("Discord bot connected successfully as " + jda.getSelfUser().getName());
         } catch (InterruptedException e) {
@@ -156,10 +161,8 @@ public class DiscordManager {
             if (config.getBoolean("discord.use-webhooks", false)) {
                 sendViaWebhook(channel, playerName, formatted);
             } else {
-                channel.sendMessage(formatted).queue(
-                    null,
-                    error -> messageQueue.queueMessage(channelId, formatted)
-                );
+                // Merged with other chat lines and paced by the queue
+                messageQueue.queueMessage(channelId, formatted);
             }
         } catch (Exception e) {
             plugin.getLogger().warning("Failed to send chat to Discord: " + e.getMessage());
@@ -383,16 +386,13 @@ public class DiscordManager {
         if (config.getBoolean("discord.use-rich-embeds", true)) {
             try {
                 MessageEmbed embed = createStaffLogEmbed(logType, playerName, action, target, details);
-                channel.sendMessageEmbeds(embed).queue(
-                    null,
-                    error -> messageQueue.queueEmbed(channelId, embed)
-                );
+                messageQueue.queueEmbed(channelId, embed);
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send staff log embed: " + e.getMessage());
-                sendPlainStaffLog(channel, logType, playerName, action, target, details);
+                sendPlainStaffLog(channelId, logType, playerName, action, target, details);
             }
         } else {
-            sendPlainStaffLog(channel, logType, playerName, action, target, details);
+            sendPlainStaffLog(channelId, logType, playerName, action, target, details);
         }
     }
 
@@ -492,7 +492,7 @@ public class DiscordManager {
         return embed.build();
     }
 
-    private void sendPlainStaffLog(TextChannel channel, String logType, String playerName, String action, String target, String details) {
+    private void sendPlainStaffLog(String channelId, String logType, String playerName, String action, String target, String details) {
         String message;
         switch (logType.toLowerCase()) {
             case "shop-log":
@@ -516,11 +516,7 @@ public class DiscordManager {
                         playerName, action, target, details);
         }
 
-        try {
-            channel.sendMessage(message).queue();
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to send staff log: " + e.getMessage());
-        }
+        messageQueue.queueMessage(channelId, message);
     }
 
     /**
@@ -571,14 +567,14 @@ public class DiscordManager {
                 embed.setTimestamp(Instant.now());
                 embed.setFooter("Ecore Plugin", null);
                 
-                channel.sendMessageEmbeds(embed.build()).queue();
+                messageQueue.queueEmbed(channelId, embed.build());
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send player join notification: " + e.getMessage());
             }
         } else {
             try {
-                channel.sendMessage("✅ **" + player.getName() + "** joined the server! (" + 
-                    Bukkit.getOnlinePlayers().size() + " online)").queue();
+                messageQueue.queueMessage(channelId, "✅ **" + player.getName() + "** joined the server! (" + 
+                    Bukkit.getOnlinePlayers().size() + " online)");
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send player join notification: " + e.getMessage());
             }
@@ -623,14 +619,14 @@ public class DiscordManager {
                 embed.setTimestamp(Instant.now());
                 embed.setFooter("Ecore Plugin", null);
                 
-                channel.sendMessageEmbeds(embed.build()).queue();
+                messageQueue.queueEmbed(channelId, embed.build());
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send player leave notification: " + e.getMessage());
             }
         } else {
             try {
-                channel.sendMessage("❌ **" + player.getName() + "** left the server. (" + 
-                    Bukkit.getOnlinePlayers().size() + " online)").queue();
+                messageQueue.queueMessage(channelId, "❌ **" + player.getName() + "** left the server. (" + 
+                    Bukkit.getOnlinePlayers().size() + " online)");
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send player leave notification: " + e.getMessage());
             }
@@ -655,7 +651,7 @@ public class DiscordManager {
             try {
                 MessageEmbed embed = createStaffLogEmbed("achievement-log", player.getName(), 
                     achievementName, "", description);
-                channel.sendMessageEmbeds(embed).queue();
+                messageQueue.queueEmbed(channelId, embed);
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send achievement notification: " + e.getMessage());
             }
@@ -685,7 +681,7 @@ public class DiscordManager {
             try {
                 MessageEmbed embed = createStaffLogEmbed("economy-log", playerName, action, 
                     String.format("%.2f", amount), details);
-                channel.sendMessageEmbeds(embed).queue();
+                messageQueue.queueEmbed(channelId, embed);
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to send economy transaction log: " + e.getMessage());
             }
@@ -778,6 +774,54 @@ public class DiscordManager {
         }
     }
 
+    /**
+     * Starts the task that sends queued messages as the rate limits allow.
+     */
+    private void startMessageQueue() {
+        messageQueue.setSink(new ChannelSink());
+        long interval = Math.max(1L, config.getLong("discord.queue.send-interval-ticks", 10L));
+        queueTaskId = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+            messageQueue::pump, interval, interval).getTaskId();
+    }
+
+    public DiscordMessageQueue getMessageQueue() {
+        return messageQueue;
+    }
+
+    /**
+     * Sends queued messages through the bot.
+     */
+    private class ChannelSink implements DiscordMessageQueue.Sink {
+        @Override
+        public boolean sendText(String channelId, String text, Runnable onSuccess, Consumer<Throwable> onFailure) {
+            TextChannel channel = findChannel(channelId);
+            if (channel == null) {
+                return false;
+            }
+            channel.sendMessage(text).queue(message -> onSuccess.run(), onFailure);
+            return true;
+        }
+
+        @Override
+        public boolean sendEmbeds(String channelId, List<MessageEmbed> embeds, Runnable onSuccess, Consumer<Throwable> onFailure) {
+            TextChannel channel = findChannel(channelId);
+            if (channel == null) {
+                return false;
+            }
+            channel.sendMessageEmbeds(embeds).queue(message -> onSuccess.run(), onFailure);
+            return true;
+        }
+
+        private TextChannel findChannel(String channelId) {
+            // Checked on every send, so no warning here unlike getChannel
+            if (jda == null || jda.getStatus() != JDA.Status.CONNECTED) {
+                return null;
+            }
+            TextChannel channel = jda.getTextChannelById(channelId);
+            return channel != null && channel.canTalk() ? channel : null;
+        }
+    }
+
     private TextChannel getChannel(String channelId) {
         if (channelId == null || channelId.isEmpty() || channelId.equals("INSERT_CHANNEL_ID")) {
             return null;
@@ -803,17 +847,16 @@ public class DiscordManager {
         if (statusUpdateTaskId != -1) {
             plugin.getServer().getScheduler().cancelTask(statusUpdateTaskId);
         }
+        if (queueTaskId != -1) {
+            plugin.getServer().getScheduler().cancelTask(queueTaskId);
+        }
         
         if (jda != null) {
+            // Send what is still queued, merged into as few messages as possible
+            messageQueue.flush();
+
             sendServerStopNotification();
             
-            // Process message queue before shutdown
-            String channelId = config.getString("discord.channel-id");
-            TextChannel channel = getChannel(channelId);
-            if (channel != null) {
-                messageQueue.processQueue(channel);
-            }
-            
             try {
                 jda.shutdown();
                 plugin.getLogger().info("Discord bot shut down successfully.");
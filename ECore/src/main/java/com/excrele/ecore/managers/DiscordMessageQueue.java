@@ -1,85 +1,324 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
-import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.bukkit.configuration.file.FileConfiguration;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Message queue system for Discord messages with retry logic.
- * Queues messages during Discord outages and sends them when reconnected.
+ * Outbound pipeline for Discord messages.
+ * Every channel has its own queue. Consecutive text messages are merged into one send
+ * up to Discord's 2000 character limit and consecutive embeds into one send of up to
+ * 10 embeds. Each channel sends one request at a time, paced by a local token bucket
+ * so bursts of chat or alerts stay below Discord's rate limits, and a shared bucket
+ * caps the bot as a whole. Messages wait in the queue while Discord is unreachable;
+ * the queue holds at most discord.queue.max-messages, dropping the oldest beyond that.
+ *
+ * <p>The queue only talks to Discord through a {@link Sink}, so it can be driven by a stub.
  */
 public class DiscordMessageQueue {
-    private final Ecore plugin;
-    private final ConcurrentLinkedQueue<QueuedMessage> messageQueue;
-    private final int maxRetries = 3;
-    private final long retryDelay = 5000; // 5 seconds
+    static final int MAX_CONTENT_LENGTH = 2000; // Discord's per-message text limit
+    static final int MAX_EMBEDS = 10; // Embeds per message
+    static final int MAX_EMBED_LENGTH = 6000; // Combined embed text per message
+
+    private final Logger logger;
+    private final LongSupplier clock; // Nanoseconds
+    private final Map<String, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final TokenBucket globalBucket;
+    private final int channelBurst;
+    private final double channelPerSecond;
+    private final int maxMessages;
+    private final int maxRetries;
+    private final long retryDelayNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile Sink sink;
+
+    // Metrics
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong sentRequests = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
 
     public DiscordMessageQueue(Ecore plugin) {
-        this.plugin = plugin;
-        this.messageQueue = new ConcurrentLinkedQueue<>();
+        this(plugin.getLogger(), System::nanoTime, plugin.getConfigManager().getDiscordConfig());
+    }
+
+    DiscordMessageQueue(Logger logger, LongSupplier clock, FileConfiguration config) {
+        this(logger, clock,
+            config.getInt("discord.queue.channel-burst", 5),
+            config.getDouble("discord.queue.channel-per-second", 1.0),
+            config.getInt("discord.queue.global-burst", 50),
+            config.getDouble("discord.queue.global-per-second", 40.0),
+            config.getInt("discord.queue.max-messages", 1000),
+            config.getInt("discord.queue.max-retries", 3),
+            config.getLong("discord.queue.retry-delay-ms", 5000L));
+    }
+
+    DiscordMessageQueue(Logger logger, LongSupplier clock, int channelBurst, double channelPerSecond,
+                        int globalBurst, double globalPerSecond, int maxMessages, int maxRetries, long retryDelayMillis) {
+        this.logger = logger;
+        this.clock = clock;
+        this.channelBurst = Math.max(1, channelBurst);
+        this.channelPerSecond = channelPerSecond;
+        this.globalBucket = new TokenBucket(Math.max(1, globalBurst), globalPerSecond, clock.getAsLong());
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxRetries = maxRetries;
+        this.retryDelayNanos = retryDelayMillis * 1_000_000L;
+    }
+
+    /**
+     * Sends messages somewhere, normally to Discord through JDA.
+     * Callbacks may run on any thread.
+     */
+    public interface Sink {
+        /**
+         * Sends one text message.
+         *
+         * @return false if the channel cannot be reached right now, the message then stays queued
+         */
+        boolean sendText(String channelId, String text, Runnable onSuccess, Consumer<Throwable> onFailure);
+
+        /**
+         * Sends up to 10 embeds as one message.
+         *
+         * @return false if the channel cannot be reached right now, the embeds then stay queued
+         */
+        boolean sendEmbeds(String channelId, List<MessageEmbed> embeds, Runnable onSuccess, Consumer<Throwable> onFailure);
+    }
+
+    /**
+     * Sets where messages are sent, or null while Discord is not connected.
+     */
+    public void setSink(Sink sink) {
+        this.sink = sink;
     }
 
     /**
      * Queues a plain text message to be sent.
+     * Messages longer than Discord allows are split.
      */
     public void queueMessage(String channelId, String message) {
-        messageQueue.offer(new QueuedMessage(channelId, message, null, 0));
+        if (channelId == null || message == null || message.isEmpty()) {
+            return;
+        }
+        for (int start = 0; start < message.length(); start += MAX_CONTENT_LENGTH) {
+            offer(new QueuedMessage(channelId, message.substring(start, Math.min(message.length(), start + MAX_CONTENT_LENGTH)), null));
+        }
     }
 
     /**
      * Queues an embed message to be sent.
      */
     public void queueEmbed(String channelId, MessageEmbed embed) {
-        messageQueue.offer(new QueuedMessage(channelId, null, embed, 0));
+        if (channelId == null || embed == null) {
+            return;
+        }
+        offer(new QueuedMessage(channelId, null, embed));
+    }
+
+    private void offer(QueuedMessage message) {
+        ChannelQueue channel = channels.computeIfAbsent(message.channelId, ChannelQueue::new);
+        synchronized (channel) {
+            channel.pending.addLast(message);
+        }
+        queued.incrementAndGet();
+        trim();
+    }
+
+    /**
+     * Drops messages until the queue is within its cap. Must not be called while holding a channel lock.
+     */
+    private void trim() {
+        while (queued.get() > maxMessages && dropOldest()) {
+            // Keep dropping
+        }
+    }
+
+    private boolean dropOldest() {
+        // Drop from the longest backlog so one busy channel cannot starve the rest
+        ChannelQueue longest = null;
+        int longestSize = 0;
+        for (ChannelQueue channel : channels.values()) {
+            int size = channel.size();
+            if (size > longestSize) {
+                longest = channel;
+                longestSize = size;
+            }
+        }
+        if (longest == null) {
+            return false;
+        }
+        synchronized (longest) {
+            if (longest.pending.pollFirst() == null) {
+                return true; // Emptied meanwhile, look again
+            }
+        }
+        queued.decrementAndGet();
+        if (dropped.incrementAndGet() % 100 == 1) {
+            logger.warning("Discord message queue is full (" + maxMessages + "), dropping the oldest messages. Dropped so far: " + dropped.get());
+        }
+        return true;
     }
 
     /**
-     * Processes the message queue and sends all queued messages.
+     * Sends what the rate limits allow right now. Called regularly from an async task.
      */
-    public void processQueue(TextChannel channel) {
-        if (channel == null) return;
-        
-        while (!messageQueue.isEmpty()) {
-            QueuedMessage queued = messageQueue.poll();
-            if (queued == null) break;
+    public void pump() {
+        Sink current = sink;
+        if (current == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (ChannelQueue channel : channels.values()) {
+            sendNext(current, channel, now, false);
+        }
+    }
 
-            if (!queued.getChannelId().equals(channel.getId())) {
-                // Wrong channel, put it back
-                messageQueue.offer(queued);
-                continue;
+    /**
+     * Sends everything queued, ignoring the local rate limits. Used on shutdown.
+     */
+    public void flush() {
+        Sink current = sink;
+        if (current == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (ChannelQueue channel : channels.values()) {
+            // Bounded, so batches that keep failing are not resent forever
+            int attempts = channel.size();
+            while (attempts-- > 0 && sendNext(current, channel, now, true)) {
+                // Keep merging and sending until the channel is empty
             }
+        }
+    }
 
-            try {
-                if (queued.getEmbed() != null) {
-                    channel.sendMessageEmbeds(queued.getEmbed()).queue(
-                        null,
-                        error -> handleSendError(queued, error)
-                    );
-                } else if (queued.getMessage() != null) {
-                    channel.sendMessage(queued.getMessage()).queue(
-                        null,
-                        error -> handleSendError(queued, error)
-                    );
+    /**
+     * Takes the next batch of a channel and sends it.
+     *
+     * @return true if a batch was handed to the sink
+     */
+    private boolean sendNext(Sink current, ChannelQueue channel, long now, boolean force) {
+        Batch batch;
+        synchronized (channel) {
+            if (channel.pending.isEmpty() || (!force && (channel.inFlight || now < channel.blockedUntil))) {
+                return false;
+            }
+            if (!force) {
+                if (!channel.bucket.tryAcquire(now)) {
+                    return false;
+                }
+                if (!globalBucket.tryAcquire(now)) {
+                    channel.bucket.release(); // Nothing was sent, so the channel keeps its token
+                    return false;
                 }
-            } catch (Exception e) {
-                handleSendError(queued, e);
             }
+            batch = takeBatch(channel);
+            channel.inFlight = !force;
+        }
+
+        Runnable onSuccess = () -> completed(channel, batch);
+        Consumer<Throwable> onFailure = error -> failed(channel, batch, error);
+        boolean accepted;
+        try {
+            accepted = batch.isEmbeds()
+                ? current.sendEmbeds(channel.channelId, batch.embeds(), onSuccess, onFailure)
+                : current.sendText(channel.channelId, batch.text(), onSuccess, onFailure);
+        } catch (RuntimeException e) {
+            failed(channel, batch, e);
+            return false;
+        }
+        if (!accepted) {
+            // Channel not reachable, put the batch back untouched
+            synchronized (channel) {
+                requeue(channel, batch);
+                channel.inFlight = false;
+            }
+            trim();
+            return false;
         }
+        return true;
     }
 
-    private void handleSendError(QueuedMessage queued, Throwable error) {
-        queued.incrementRetries();
-        if (queued.getRetries() < maxRetries) {
-            // Retry after delay
-            plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-                messageQueue.offer(queued);
-            }, retryDelay / 50); // Convert to ticks
+    /**
+     * Removes the longest run of messages of the same kind from the head of the queue
+     * that fits in one Discord message.
+     */
+    private Batch takeBatch(ChannelQueue channel) {
+        Deque<QueuedMessage> pending = channel.pending;
+        List<QueuedMessage> messages = new ArrayList<>();
+        QueuedMessage first = pending.pollFirst();
+        messages.add(first);
+        if (first.embed != null) {
+            int length = first.embed.getLength();
+            while (messages.size() < MAX_EMBEDS && pending.peekFirst() != null && pending.peekFirst().embed != null
+                && length + pending.peekFirst().embed.getLength() <= MAX_EMBED_LENGTH) {
+                QueuedMessage next = pending.pollFirst();
+                length += next.embed.getLength();
+                messages.add(next);
+            }
         } else {
-            plugin.getLogger().log(Level.WARNING, 
-                "Failed to send queued Discord message after " + maxRetries + " retries: " + error.getMessage());
+            int length = first.message.length();
+            while (pending.peekFirst() != null && pending.peekFirst().message != null
+                && length + 1 + pending.peekFirst().message.length() <= MAX_CONTENT_LENGTH) {
+                QueuedMessage next = pending.pollFirst();
+                length += 1 + next.message.length();
+                messages.add(next);
+            }
+        }
+        queued.addAndGet(-messages.size());
+        return new Batch(messages);
+    }
+
+    private void requeue(ChannelQueue channel, Batch batch) {
+        for (int i = batch.messages.size() - 1; i >= 0; i--) {
+            channel.pending.addFirst(batch.messages.get(i));
+        }
+        queued.addAndGet(batch.messages.size());
+    }
+
+    private void completed(ChannelQueue channel, Batch batch) {
+        sentRequests.incrementAndGet();
+        sentMessages.addAndGet(batch.messages.size());
+        synchronized (channel) {
+            channel.inFlight = false;
+        }
+    }
+
+    private void failed(ChannelQueue channel, Batch batch, Throwable error) {
+        requeueFailed(channel, batch, error);
+        trim();
+    }
+
+    private void requeueFailed(ChannelQueue channel, Batch batch, Throwable error) {
+        synchronized (channel) {
+            channel.inFlight = false;
+            if (++batch.retries > maxRetries) {
+                logger.log(Level.WARNING, "Failed to send " + batch.messages.size() + " queued Discord message(s) after "
+                    + maxRetries + " retries: " + error.getMessage());
+                dropped.addAndGet(batch.messages.size());
+                return;
+            }
+            retries.incrementAndGet();
+            // Back off, and keep the batch at the head so the channel stays in order
+            channel.blockedUntil = clock.getAsLong() + retryDelayNanos * batch.retries;
+            for (QueuedMessage message : batch.messages) {
+                message.retries = batch.retries;
+            }
+            requeue(channel, batch);
         }
     }
 
@@ -87,34 +326,173 @@ public class DiscordMessageQueue {
      * Gets the current queue size.
      */
     public int getQueueSize() {
-        return messageQueue.size();
+        return Math.max(0, queued.get());
+    }
+
+    /**
+     * Gets the number of queued messages per channel, largest first.
+     */
+    public Map<String, Integer> getBacklog() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (ChannelQueue channel : channels.values()) {
+            int size = channel.size();
+            if (size > 0) {
+                entries.add(Map.entry(channel.channelId, size));
+            }
+        }
+        entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+        Map<String, Integer> backlog = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            backlog.put(entry.getKey(), entry.getValue());
+        }
+        return backlog;
+    }
+
+    /**
+     * Gets the number of messages delivered since startup.
+     */
+    public long getSentMessages() {
+        return sentMessages.get();
+    }
+
+    /**
+     * Gets the number of Discord requests used to deliver them.
+     */
+    public long getSentRequests() {
+        return sentRequests.get();
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue was full or retries ran out.
+     */
+    public long getDroppedMessages() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of failed sends that were retried.
+     */
+    public long getRetries() {
+        return retries.get();
     }
 
     /**
      * Clears the message queue.
      */
     public void clearQueue() {
-        messageQueue.clear();
+        for (ChannelQueue channel : channels.values()) {
+            synchronized (channel) {
+                queued.addAndGet(-channel.pending.size());
+                channel.pending.clear();
+            }
+        }
+    }
+
+    /**
+     * Messages waiting for one channel.
+     */
+    private class ChannelQueue {
+        final String channelId;
+        final Deque<QueuedMessage> pending = new ArrayDeque<>();
+        final TokenBucket bucket;
+        boolean inFlight;
+        long blockedUntil;
+
+        ChannelQueue(String channelId) {
+            this.channelId = channelId;
+            this.bucket = new TokenBucket(channelBurst, channelPerSecond, clock.getAsLong());
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+    }
+
+    /**
+     * A token bucket: holds up to capacity tokens and refills at a fixed rate.
+     */
+    static class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double perSecond, long now) {
+            this.capacity = capacity;
+            this.perNano = perSecond / 1_000_000_000.0;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * perNano);
+                lastRefill = now;
+            }
+            if (tokens < 1.0) {
+                return false;
+            }
+            tokens -= 1.0;
+            return true;
+        }
+
+        /**
+         * Gives back a token taken by {@link #tryAcquire(long)} that went unused.
+         */
+        synchronized void release() {
+            tokens = Math.min(capacity, tokens + 1.0);
+        }
+    }
+
+    /**
+     * Messages merged into one send.
+     */
+    private static class Batch {
+        final List<QueuedMessage> messages;
+        int retries;
+
+        Batch(List<QueuedMessage> messages) {
+            this.messages = messages;
+            this.retries = messages.get(0).retries;
+        }
+
+        boolean isEmbeds() {
+            return messages.get(0).embed != null;
+        }
+
+        String text() {
+            if (messages.size() == 1) {
+                return messages.get(0).message;
+            }
+            StringBuilder text = new StringBuilder();
+            for (QueuedMessage message : messages) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(message.message);
+            }
+            return text.toString();
+        }
+
+        List<MessageEmbed> embeds() {
+            List<MessageEmbed> embeds = new ArrayList<>(messages.size());
+            for (QueuedMessage message : messages) {
+                embeds.add(message.embed);
+            }
+            return embeds;
+        }
     }
 
     private static class QueuedMessage {
-        private final String channelId;
-        private final String message;
-        private final MessageEmbed embed;
-        private int retries;
+        final String channelId;
+        final String message;
+        final MessageEmbed embed;
+        int retries;
 
-        public QueuedMessage(String channelId, String message, MessageEmbed embed, int retries) {
+        QueuedMessage(String channelId, String message, MessageEmbed embed) {
             this.channelId = channelId;
             this.message = message;
             this.embed = embed;
-            this.retries = retries;
         }
-
-        public String getChannelId() { return channelId; }
-        public String getMessage() { return message; }
-        public MessageEmbed getEmbed() { return embed; }
-        public int getRetries() { return retries; }
-        public void incrementRetries() { retries++; }
     }
 }
-
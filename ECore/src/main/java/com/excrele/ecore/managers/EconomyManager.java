@@ -1,62 +1,247 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.database.EconomyJournal;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-// Manages the self-contained economy system
+// Manages the self-contained economy system.
+// Balances live in an in-memory ledger; every change is appended to economy.journal
+// off the main thread and economy.yml is rewritten as a periodic snapshot.
 public class EconomyManager {
+    private static final int MAX_TRANSACTIONS = 1000;
+
     private final Ecore plugin;
     private final File economyFile;
-    private final YamlConfiguration economyConfig;
-    private final List<Transaction> transactionHistory;
+    private final Map<UUID, Account> ledger;
+    private final Deque<Transaction> transactionHistory;
+    private final BalanceLeaderboard leaderboard;
+    private final Object ledgerLock = new Object();
+    private final EconomyJournal journal;
+    private long sequence; // guarded by ledgerLock
+    private volatile long snapshotSequence;
+    private BukkitTask snapshotTask;
 
     public EconomyManager(Ecore plugin) {
         this.plugin = plugin;
-        this.transactionHistory = new ArrayList<>();
+        this.ledger = new ConcurrentHashMap<>();
+        this.transactionHistory = new ArrayDeque<>();
+        this.leaderboard = new BalanceLeaderboard();
         // Initialize economy.yml
         economyFile = new File(plugin.getDataFolder(), "economy.yml");
         if (!economyFile.exists()) {
             plugin.saveResource("economy.yml", false);
         }
-        economyConfig = YamlConfiguration.loadConfiguration(economyFile);
+        journal = new EconomyJournal(new File(plugin.getDataFolder(), "economy.journal"), plugin.getLogger(),
+                plugin.getConfig().getLong("economy.journal.flush-interval-ms", 200L),
+                plugin.getConfig().getInt("economy.journal.max-queued-records", 65536));
+        loadEconomy();
+        for (Map.Entry<UUID, Account> entry : ledger.entrySet()) {
+            leaderboard.update(entry.getKey(), entry.getValue().balance);
+        }
+        try {
+            journal.start();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open economy.journal: " + e.getMessage());
+        }
+        startSnapshotTask();
     }
 
-    // Save economy data
-    private void saveEconomy() {
+    // Load the last snapshot and replay the journal written after it
+    private void loadEconomy() {
+        YamlConfiguration economyConfig = YamlConfiguration.loadConfiguration(economyFile);
+        if (economyConfig.contains("players")) {
+            for (String uuidStr : economyConfig.getConfigurationSection("players").getKeys(false)) {
+                try {
+                    UUID uuid = UUID.fromString(uuidStr);
+                    ledger.put(uuid, new Account(economyConfig.getDouble("players." + uuidStr + ".balance", 0.0)));
+                } catch (IllegalArgumentException e) {
+                    // Invalid UUID, skip
+                }
+            }
+        }
+        for (Map<?, ?> map : economyConfig.getMapList("transactions")) {
+            try {
+                transactionHistory.add(new Transaction(UUID.fromString(String.valueOf(map.get("uuid"))),
+                        String.valueOf(map.get("type")), ((Number) map.get("amount")).doubleValue(),
+                        String.valueOf(map.get("description")), ((Number) map.get("timestamp")).longValue()));
+            } catch (RuntimeException e) {
+                // Malformed entry, skip
+            }
+        }
+
+        long snapshot = economyConfig.getLong("journal-sequence", 0L);
+        long highest;
+        int[] replayed = new int[1];
         try {
-            economyConfig.save(economyFile);
+            highest = journal.replay(new EconomyJournal.RecordHandler() {
+                @Override
+                public void balance(long seq, UUID uuid, double balance) {
+                    if (seq > snapshot) {
+                        ledger.computeIfAbsent(uuid, k -> new Account(0.0)).balance = balance;
+                        replayed[0]++;
+                    }
+                }
+
+                @Override
+                public void transaction(long seq, UUID uuid, String type, double amount, String description, long timestamp) {
+                    if (seq > snapshot) {
+                        addToHistory(new Transaction(uuid, type, amount, description, timestamp));
+                        replayed[0]++;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read economy.journal: " + e.getMessage());
+            highest = 0L;
+        }
+
+        sequence = Math.max(snapshot, highest);
+        snapshotSequence = snapshot;
+        if (replayed[0] > 0) {
+            plugin.getLogger().info("Recovered " + replayed[0] + " economy changes from economy.journal");
+            // Fold the recovered changes into a fresh snapshot before appending again
+            if (writeSnapshot()) {
+                new File(plugin.getDataFolder(), "economy.journal").delete();
+            }
+        }
+    }
+
+    private void startSnapshotTask() {
+        long interval = Math.max(1L, plugin.getConfig().getLong("economy.journal.snapshot-interval-seconds", 300L)) * 20L;
+        snapshotTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            long profile = plugin.getProfilingManager().start();
+            long covered = snapshotSequence;
+            if (writeSnapshot() && snapshotSequence > covered) {
+                journal.compact(snapshotSequence);
+            }
+            plugin.getProfilingManager().stop("EconomyManager.snapshot", profile);
+        }, interval, interval);
+    }
+
+    // Write a compacted snapshot of the ledger to economy.yml, returns false on failure
+    private synchronized boolean writeSnapshot() {
+        Map<UUID, Double> balances = new HashMap<>();
+        List<Transaction> transactions;
+        long covered;
+        synchronized (ledgerLock) {
+            covered = sequence;
+            if (covered == snapshotSequence && economyFile.exists()) {
+                return true; // Nothing changed since the last snapshot
+            }
+            for (Map.Entry<UUID, Account> entry : ledger.entrySet()) {
+                balances.put(entry.getKey(), entry.getValue().balance);
+            }
+            transactions = new ArrayList<>(transactionHistory);
+        }
+
+        YamlConfiguration snapshot = new YamlConfiguration();
+        snapshot.set("journal-sequence", covered);
+        for (Map.Entry<UUID, Double> entry : balances.entrySet()) {
+            snapshot.set("players." + entry.getKey().toString() + ".balance", entry.getValue());
+        }
+        List<Map<String, Object>> serialized = new ArrayList<>();
+        for (Transaction t : transactions) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("uuid", t.getUuid().toString());
+            map.put("type", t.getType());
+            map.put("amount", t.getAmount());
+            map.put("description", t.getDescription());
+            map.put("timestamp", t.getTimestamp());
+            serialized.add(map);
+        }
+        snapshot.set("transactions", serialized);
+
+        File temp = new File(plugin.getDataFolder(), "economy.yml.tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(snapshot.saveToString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), economyFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save economy.yml: " + e.getMessage());
+            return false;
+        }
+        snapshotSequence = covered;
+        return true;
+    }
+
+    // Flush the journal and write a final snapshot
+    public void shutdown() {
+        if (snapshotTask != null) {
+            snapshotTask.cancel();
+        }
+        journal.shutdown();
+        if (writeSnapshot()) {
+            new File(plugin.getDataFolder(), "economy.journal").delete();
         }
     }
 
+    // Apply a new balance and journal it, caller must hold ledgerLock
+    private void applyBalance(UUID uuid, double balance) {
+        ledger.computeIfAbsent(uuid, k -> new Account(0.0)).balance = balance;
+        leaderboard.update(uuid, balance);
+        journal.appendBalance(++sequence, uuid, balance);
+    }
+
     // Get a player's balance
     public double getBalance(UUID uuid) {
-        return economyConfig.getDouble("players." + uuid.toString() + ".balance", 0.0);
+        Account account = ledger.get(uuid);
+        return account != null ? account.balance : 0.0;
     }
 
     // Set a player's balance
     public void setBalance(UUID uuid, double amount) {
         if (amount < 0) amount = 0;
-        double oldBalance = getBalance(uuid);
-        economyConfig.set("players." + uuid.toString() + ".balance", amount);
-        logTransaction(uuid, "SET", amount - oldBalance, "Balance set to " + amount);
-        saveEconomy();
+        synchronized (ledgerLock) {
+            double oldBalance = getBalance(uuid);
+            applyBalance(uuid, amount);
+            logTransaction(uuid, "SET", amount - oldBalance, "Balance set to " + amount);
+        }
     }
 
     // Add funds to a player's balance
     public void addBalance(UUID uuid, double amount) {
         if (amount < 0) return;
-        double current = getBalance(uuid);
-        setBalance(uuid, current + amount);
-        logTransaction(uuid, "DEPOSIT", amount, "Deposit");
-        
+        synchronized (ledgerLock) {
+            applyBalance(uuid, getBalance(uuid) + amount);
+            logTransaction(uuid, "DEPOSIT", amount, "Deposit");
+        }
+        afterDeposit(uuid, amount, "Deposit");
+    }
+
+    // Add funds to many balances as one batch, taking the ledger lock once
+    public void depositAll(Map<UUID, Double> amounts, String description) {
+        if (amounts.isEmpty()) return;
+        synchronized (ledgerLock) {
+            for (Map.Entry<UUID, Double> entry : amounts.entrySet()) {
+                double amount = entry.getValue();
+                if (amount <= 0) continue;
+                UUID uuid = entry.getKey();
+                applyBalance(uuid, getBalance(uuid) + amount);
+                logTransaction(uuid, "DEPOSIT", amount, description);
+            }
+        }
+        for (Map.Entry<UUID, Double> entry : amounts.entrySet()) {
+            if (entry.getValue() > 0) {
+                afterDeposit(entry.getKey(), entry.getValue(), description);
+            }
+        }
+    }
+
+    private void afterDeposit(UUID uuid, double amount, String description) {
         // Track money earned in statistics
         if (plugin.getStatisticsManager() != null) {
             plugin.getStatisticsManager().trackMoneyEarned(uuid, amount);
@@ -66,18 +251,30 @@ public class EconomyManager {
         if (plugin.getDiscordManager() != null && amount >= plugin.getConfigManager().getDiscordConfig().getDouble("discord.economy-transaction-threshold", 1000.0)) {
             Player player = Bukkit.getPlayer(uuid);
             String playerName = player != null ? player.getName() : uuid.toString();
-            plugin.getDiscordManager().sendEconomyTransaction(playerName, "DEPOSIT", amount, "Deposit");
+            plugin.getDiscordManager().sendEconomyTransaction(playerName, "DEPOSIT", amount, description);
         }
     }
 
     // Remove funds from a player's balance
     public boolean removeBalance(UUID uuid, double amount) {
         if (amount < 0) return false;
+        synchronized (ledgerLock) {
+            if (!withdraw(uuid, amount)) return false;
+        }
+        afterWithdraw(uuid, amount);
+        return true;
+    }
+
+    // Take funds from a balance if it covers them, caller must hold ledgerLock
+    private boolean withdraw(UUID uuid, double amount) {
         double current = getBalance(uuid);
         if (current < amount) return false;
-        setBalance(uuid, current - amount);
+        applyBalance(uuid, current - amount);
         logTransaction(uuid, "WITHDRAW", amount, "Withdrawal");
-        
+        return true;
+    }
+
+    private void afterWithdraw(UUID uuid, double amount) {
         // Track money spent in statistics
         if (plugin.getStatisticsManager() != null) {
             plugin.getStatisticsManager().trackMoneySpent(uuid, amount);
@@ -89,22 +286,31 @@ public class EconomyManager {
             String playerName = player != null ? player.getName() : uuid.toString();
             plugin.getDiscordManager().sendEconomyTransaction(playerName, "WITHDRAW", amount, "Withdrawal");
         }
-        
-        return true;
     }
 
     // Transfer funds between players
     public boolean transferBalance(UUID from, UUID to, double amount) {
         if (amount < 0 || from.equals(to)) return false;
-        if (removeBalance(from, amount)) {
-            addBalance(to, amount);
-            Player fromPlayer = Bukkit.getPlayer(from);
-            Player toPlayer = Bukkit.getPlayer(to);
-            String fromName = fromPlayer != null ? fromPlayer.getName() : from.toString();
-            String toName = toPlayer != null ? toPlayer.getName() : to.toString();
-            logTransaction(from, "TRANSFER_OUT", amount, "Transfer to " + toName);
-            logTransaction(to, "TRANSFER_IN", amount, "Transfer from " + fromName);
-            
+        Player fromPlayer = Bukkit.getPlayer(from);
+        Player toPlayer = Bukkit.getPlayer(to);
+        String fromName = fromPlayer != null ? fromPlayer.getName() : from.toString();
+        String toName = toPlayer != null ? toPlayer.getName() : to.toString();
+        boolean transferred;
+        // Hold the ledger lock so both sides of the transfer are applied together,
+        // statistics and Discord are only notified once it is released
+        synchronized (ledgerLock) {
+            transferred = withdraw(from, amount);
+            if (transferred) {
+                applyBalance(to, getBalance(to) + amount);
+                logTransaction(to, "DEPOSIT", amount, "Deposit");
+                logTransaction(from, "TRANSFER_OUT", amount, "Transfer to " + toName);
+                logTransaction(to, "TRANSFER_IN", amount, "Transfer from " + fromName);
+            }
+        }
+        if (transferred) {
+            afterWithdraw(from, amount);
+            afterDeposit(to, amount, "Deposit");
+
             // Log to Discord
             if (plugin.getDiscordManager() != null) {
                 plugin.getDiscordManager().sendEconomyTransaction(fromName, "TRANSFER_OUT", amount, "To: " + toName);
@@ -119,7 +325,7 @@ public class EconomyManager {
     // Initialize a new player with starting balance
     public void initializePlayer(Player player) {
         UUID uuid = player.getUniqueId();
-        if (!economyConfig.contains("players." + uuid.toString())) {
+        if (!ledger.containsKey(uuid)) {
             setBalance(uuid, plugin.getConfig().getDouble("economy.starting-balance", 100.0));
         }
     }
@@ -149,52 +355,35 @@ public class EconomyManager {
         }
     }
 
-    // Transaction logging
+    // Transaction logging, caller must hold ledgerLock
     private void logTransaction(UUID uuid, String type, double amount, String description) {
         Transaction transaction = new Transaction(uuid, type, amount, description, System.currentTimeMillis());
-        transactionHistory.add(transaction);
+        addToHistory(transaction);
+        journal.appendTransaction(++sequence, uuid, type, amount, description, transaction.getTimestamp());
+    }
+
+    private void addToHistory(Transaction transaction) {
+        transactionHistory.addLast(transaction);
         
         // Keep only last 1000 transactions
-        if (transactionHistory.size() > 1000) {
-            transactionHistory.remove(0);
-        }
-        
-        // Save to config
-        List<Map<String, Object>> transactions = new ArrayList<>();
-        for (Transaction t : transactionHistory) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("uuid", t.getUuid().toString());
-            map.put("type", t.getType());
-            map.put("amount", t.getAmount());
-            map.put("description", t.getDescription());
-            map.put("timestamp", t.getTimestamp());
-            transactions.add(map);
+        if (transactionHistory.size() > MAX_TRANSACTIONS) {
+            transactionHistory.removeFirst();
         }
-        economyConfig.set("transactions", transactions);
-        saveEconomy();
     }
 
     // Get economy leaderboard
     public List<Map.Entry<UUID, Double>> getLeaderboard(int limit) {
-        Map<UUID, Double> balances = new HashMap<>();
-        if (economyConfig.contains("players")) {
-            for (String uuidStr : economyConfig.getConfigurationSection("players").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidStr);
-                    double balance = getBalance(uuid);
-                    if (balance > 0) {
-                        balances.put(uuid, balance);
-                    }
-                } catch (IllegalArgumentException e) {
-                    // Invalid UUID, skip
-                }
-            }
-        }
-        
-        List<Map.Entry<UUID, Double>> sorted = new ArrayList<>(balances.entrySet());
-        sorted.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-        
-        return sorted.subList(0, Math.min(limit, sorted.size()));
+        return leaderboard.getTop(limit);
+    }
+
+    // Get a player's leaderboard rank (1 = richest), or 0 if they have no money
+    public int getBalanceRank(UUID uuid) {
+        return leaderboard.getRank(uuid);
+    }
+
+    // Get the leaderboard entry at a rank, or null if fewer players are ranked
+    public Map.Entry<UUID, Double> getLeaderboardEntry(int rank) {
+        return leaderboard.getEntry(rank);
     }
 
     // Format currency amount
@@ -210,19 +399,12 @@ public class EconomyManager {
         double averageBalance = 0;
         double maxBalance = 0;
         
-        if (economyConfig.contains("players")) {
-            for (String uuidStr : economyConfig.getConfigurationSection("players").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidStr);
-                    double balance = getBalance(uuid);
-                    totalMoney += balance;
-                    playerCount++;
-                    if (balance > maxBalance) {
-                        maxBalance = balance;
-                    }
-                } catch (IllegalArgumentException e) {
-                    // Invalid UUID, skip
-                }
+        for (Account account : ledger.values()) {
+            double balance = account.balance;
+            totalMoney += balance;
+            playerCount++;
+            if (balance > maxBalance) {
+                maxBalance = balance;
             }
         }
         
@@ -234,11 +416,22 @@ public class EconomyManager {
         stats.put("playerCount", playerCount);
         stats.put("averageBalance", averageBalance);
         stats.put("maxBalance", maxBalance);
-        stats.put("transactionCount", transactionHistory.size());
+        synchronized (ledgerLock) {
+            stats.put("transactionCount", transactionHistory.size());
+        }
         
         return stats;
     }
 
+    // A ledger entry; written under ledgerLock, read without locking
+    private static class Account {
+        volatile double balance;
+
+        Account(double balance) {
+            this.balance = balance;
+        }
+    }
+
     // Transaction class
     public static class Transaction {
         private final UUID uuid;
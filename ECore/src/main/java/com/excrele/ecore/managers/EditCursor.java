@@ -0,0 +1,42 @@
+package com.excrele.ecore.managers;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Walks the block positions of a WorldEdit operation one at a time,
+ * so operations never have to materialize every position up front.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public interface EditCursor {
+    /**
+     * Moves to the next position.
+     *
+     * @return false once every position has been visited
+     */
+    boolean next();
+
+    World getWorld();
+
+    int getX();
+
+    int getY();
+
+    int getZ();
+
+    /**
+     * Gets the block data to place at the current position.
+     *
+     * @return The block data, or null to use the operation's material
+     */
+    BlockData getBlockData();
+
+    /**
+     * Gets the total number of positions this cursor visits.
+     *
+     * @return The number of positions
+     */
+    long size();
+}
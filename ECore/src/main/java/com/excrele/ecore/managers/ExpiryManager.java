@@ -0,0 +1,270 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.Ecore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One scheduler for everything that runs out at a point in time: temporary bans,
+ * mutes, auctions, region rentals and claim inactivity.
+ * Deadlines sit in a hierarchical timing wheel of one second ticks, so scheduling,
+ * rescheduling and cancelling cost O(1) however many entries are pending, and each
+ * tick only touches the entries that are due.
+ * <p>
+ * Entries are keyed by a type and an id. Scheduling a key again replaces its deadline,
+ * and a key fires at most once. Owners persist their own deadlines and schedule them
+ * again when they load, so a deadline that passed while the server was down fires on
+ * the first tick after startup. Callbacks run on the main thread.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class ExpiryManager {
+    private static final long TICK_MILLIS = 1000L;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4; // 64^4 seconds, about 194 days, before an entry has to wait in the top level
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final Logger logger;
+    private final Map<String, Handler> handlers = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Entry[] wheel = new Entry[LEVELS * SLOTS]; // Heads of the slot lists
+    private long currentTick;
+    private int taskId = -1;
+
+    public ExpiryManager(Ecore plugin) {
+        this(plugin.getLogger(), System.currentTimeMillis());
+        taskId = plugin.getServer().getScheduler().runTaskTimer(plugin,
+            () -> advance(System.currentTimeMillis()), 20L, 20L).getTaskId();
+    }
+
+    ExpiryManager(Logger logger, long now) {
+        this.logger = logger;
+        this.currentTick = now / TICK_MILLIS;
+    }
+
+    /**
+     * Receives the entries of one type as they expire.
+     */
+    public interface Handler {
+        /**
+         * Called once when the entry's deadline has passed.
+         */
+        void expire(String id);
+
+        /**
+         * Called after a tick expired one or more entries of this type, to save once per batch.
+         */
+        default void afterExpiry() {
+        }
+    }
+
+    /**
+     * Registers the handler for a type. Owners register before scheduling anything.
+     */
+    public synchronized void registerHandler(String type, Handler handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * Schedules an entry, replacing any deadline it already had.
+     *
+     * @param type The entry type, such as "ban"
+     * @param id The entry id within its type
+     * @param deadline When the entry expires, in epoch milliseconds
+     */
+    public synchronized void schedule(String type, String id, long deadline) {
+        String key = type + ':' + id;
+        Entry old = entries.remove(key);
+        if (old != null) {
+            unlink(old);
+        }
+        Entry entry = new Entry(type, id, deadline);
+        entries.put(key, entry);
+        // The current tick has already been processed
+        insert(entry, currentTick + 1);
+    }
+
+    /**
+     * Cancels an entry.
+     *
+     * @return true if the entry was pending
+     */
+    public synchronized boolean cancel(String type, String id) {
+        Entry entry = entries.remove(type + ':' + id);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * Gets the deadline of an entry, or -1 if it is not pending.
+     */
+    public synchronized long getDeadline(String type, String id) {
+        Entry entry = entries.get(type + ':' + id);
+        return entry != null ? entry.deadline : -1L;
+    }
+
+    public synchronized int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the wheel up to the given time and runs the callbacks of every entry due by then.
+     */
+    void advance(long now) {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = now / TICK_MILLIS;
+            while (currentTick < targetTick) {
+                currentTick++;
+                // Higher levels first, so entries they hand down for this tick are collected below
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                    }
+                }
+                int slot = (int) (currentTick & SLOT_MASK);
+                Entry entry = wheel[slot];
+                wheel[slot] = null;
+                while (entry != null) {
+                    Entry next = entry.next;
+                    entry.prev = entry.next = null;
+                    entry.slot = -1;
+                    due.add(entry);
+                    entry = next;
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Set<Handler> fired = new LinkedHashSet<>();
+        for (Entry entry : due) {
+            Handler handler;
+            synchronized (this) {
+                // An earlier callback may have cancelled or rescheduled this entry
+                String key = entry.type + ':' + entry.id;
+                if (entries.get(key) != entry) {
+                    continue;
+                }
+                entries.remove(key);
+                handler = handlers.get(entry.type);
+            }
+            if (handler == null) {
+                logger.warning("No expiry handler for " + entry.type + ", dropped " + entry.id);
+                continue;
+            }
+            try {
+                handler.expire(entry.id);
+                fired.add(handler);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to expire " + entry.type + " " + entry.id, e);
+            }
+        }
+        for (Handler handler : fired) {
+            try {
+                handler.afterExpiry();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to finish expiry batch", e);
+            }
+        }
+    }
+
+    /**
+     * Re-inserts the entries of a higher level slot now that they are closer to their deadline.
+     */
+    private void cascade(int level, int index) {
+        int slot = level * SLOTS + index;
+        Entry entry = wheel[slot];
+        wheel[slot] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.prev = entry.next = null;
+            insert(entry, currentTick);
+            entry = next;
+        }
+    }
+
+    /**
+     * Links an entry into the slot for its deadline, never earlier than minTick.
+     */
+    private void insert(Entry entry, long minTick) {
+        // Rounded up, so an entry never fires before its deadline
+        long tick = Math.max(Math.floorDiv(entry.deadline + TICK_MILLIS - 1, TICK_MILLIS), minTick);
+        long delta = tick - currentTick;
+        if (delta >= MAX_SPAN) {
+            // Too far out for the wheel: park it in the top level and re-insert when that slot comes round
+            tick = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = wheel[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.slot < 0) {
+            return; // Already taken off the wheel to fire
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            wheel[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = entry.next = null;
+        entry.slot = -1;
+    }
+
+    /**
+     * Stops the wheel. Pending entries are dropped; their owners schedule them again on load.
+     */
+    public void shutdown() {
+        if (taskId != -1) {
+            org.bukkit.Bukkit.getScheduler().cancelTask(taskId);
+            taskId = -1;
+        }
+    }
+
+    /**
+     * A pending deadline, linked into one wheel slot.
+     */
+    private static class Entry {
+        final String type;
+        final String id;
+        final long deadline;
+        int slot = -1;
+        Entry prev;
+        Entry next;
+
+        Entry(String type, String id, long deadline) {
+            this.type = type;
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.placeholders.PlaceholderEngine;
+import com.excrele.ecore.utils.LongHashMap;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.ArmorStand;
-import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Display;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Interaction;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.TextDisplay;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,18 +27,36 @@ import java.util.logging.Level;
 /**
  * Hologram System Manager
  * Creates static, dynamic, and interactive holograms
+ *
+ * <p>Holograms only exist in the world while a player is within holograms.view-distance
+ * chunks of them. Their entities are not saved with the chunk and are only shown to the
+ * players in range, and only holograms with viewers are refreshed. In display mode a
+ * hologram is a single text display; lines with player placeholders get one text display
+ * per viewer, so every player sees their own values.
  */
 public class HologramManager implements Listener {
+    private static final double LINE_SPACING = 0.3;
+
     private final Ecore plugin;
     private File hologramsFile;
     private FileConfiguration hologramsConfig;
     private final Map<String, Hologram> holograms;
-    private final Map<String, List<ArmorStand>> hologramEntities;
+    private final Map<String, HologramView> views; // Spawned holograms, those with viewers
+    private final Map<UUID, String> entityHolograms; // Interactable entity -> hologram id
+    private final Map<String, LongHashMap<List<Hologram>>> chunkIndex; // World name -> chunk -> holograms
+    private final boolean displayMode;
+    private final int viewDistance;
+    private final List<Integer> taskIds = new ArrayList<>();
     
     public HologramManager(Ecore plugin) {
         this.plugin = plugin;
         this.holograms = new HashMap<>();
-        this.hologramEntities = new HashMap<>();
+        this.views = new HashMap<>();
+        this.entityHolograms = new HashMap<>();
+        this.chunkIndex = new HashMap<>();
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        this.displayMode = !"armorstand".equalsIgnoreCase(config.getString("holograms.mode", "display"));
+        this.viewDistance = Math.max(1, config.getInt("holograms.view-distance", 4));
         initializeConfig();
         loadHolograms();
         startUpdateTask();
@@ -63,37 +88,30 @@ public class HologramManager implements Listener {
                 
                 Hologram hologram = new Hologram(id, loc, lines, dynamic, interactive, permission, command);
                 holograms.put(id, hologram);
-                createHologramEntities(hologram);
+                index(hologram);
+                
+                // Chunks loaded later are cleaned up in onEntitiesLoad
+                Chunk chunk = loc != null && loc.getWorld() != null ? loc.getChunk() : null;
+                if (chunk != null && chunk.isLoaded() && chunk.isEntitiesLoaded()) {
+                    removeLegacyStands(chunk, Arrays.asList(chunk.getEntities()));
+                }
             }
         }
     }
     
-    private void createHologramEntities(Hologram hologram) {
-        List<ArmorStand> entities = new ArrayList<>();
-        Location loc = hologram.getLocation().clone();
-        
-        for (String line : hologram.getLines()) {
-            ArmorStand stand = (ArmorStand) loc.getWorld().spawnEntity(loc, EntityType.ARMOR_STAND);
-            stand.setVisible(false);
-            stand.setGravity(false);
-            stand.setCustomNameVisible(true);
-            stand.setCustomName(processPlaceholders(null, line));
-            stand.setInvulnerable(true);
-            stand.setMarker(true);
-            entities.add(stand);
-            loc.add(0, -0.3, 0); // Move down for next line
-        }
-        
-        hologramEntities.put(hologram.getId(), entities);
-    }
-    
     /**
      * Create a hologram
      */
     public void createHologram(String id, Location location, List<String> lines, boolean dynamic, boolean interactive, String permission, String command) {
+        // Replacing a hologram with the same id, take the old one out of the world first
+        Hologram old = holograms.remove(id);
+        if (old != null) {
+            unindex(old);
+            despawn(id);
+        }
         Hologram hologram = new Hologram(id, location, lines, dynamic, interactive, permission, command);
         holograms.put(id, hologram);
-        createHologramEntities(hologram);
+        index(hologram); // Shown to nearby players on the next scan
         saveHologram(hologram);
     }
     
@@ -103,75 +121,183 @@ public class HologramManager implements Listener {
     public void deleteHologram(String id) {
         Hologram hologram = holograms.remove(id);
         if (hologram != null) {
-            List<ArmorStand> entities = hologramEntities.remove(id);
-            if (entities != null) {
-                for (ArmorStand stand : entities) {
-                    stand.remove();
-                }
-            }
+            unindex(hologram);
+            despawn(id);
             hologramsConfig.set("holograms." + id, null);
             saveConfig();
         }
     }
     
+    private void index(Hologram hologram) {
+        Location loc = hologram.getLocation();
+        if (loc == null || loc.getWorld() == null) {
+            return; // World not loaded
+        }
+        long key = LongHashMap.pack(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        LongHashMap<List<Hologram>> chunks = chunkIndex.computeIfAbsent(loc.getWorld().getName(), name -> new LongHashMap<>());
+        List<Hologram> list = chunks.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            chunks.put(key, list);
+        }
+        list.add(hologram);
+    }
+
+    private void unindex(Hologram hologram) {
+        Location loc = hologram.getLocation();
+        if (loc == null || loc.getWorld() == null) {
+            return;
+        }
+        LongHashMap<List<Hologram>> chunks = chunkIndex.get(loc.getWorld().getName());
+        if (chunks == null) {
+            return;
+        }
+        long key = LongHashMap.pack(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        List<Hologram> list = chunks.get(key);
+        if (list != null) {
+            list.remove(hologram);
+            if (list.isEmpty()) {
+                chunks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the armor stands the old implementation saved with the chunk. Those were
+     * persistent, invisible marker stands stacked below a hologram's location; the stands
+     * spawned now are never persistent, so they are left alone.
+     */
+    private void removeLegacyStands(Chunk chunk, Collection<Entity> entities) {
+        LongHashMap<List<Hologram>> chunks = chunkIndex.get(chunk.getWorld().getName());
+        List<Hologram> list = chunks != null ? chunks.get(LongHashMap.pack(chunk.getX(), chunk.getZ())) : null;
+        if (list == null) {
+            return;
+        }
+        for (Entity entity : entities) {
+            if (!(entity instanceof ArmorStand)) {
+                continue;
+            }
+            ArmorStand stand = (ArmorStand) entity;
+            if (!stand.isPersistent() || !stand.isMarker() || stand.isVisible() || !stand.isCustomNameVisible()) {
+                continue;
+            }
+            Location standLoc = stand.getLocation();
+            for (Hologram hologram : list) {
+                Location loc = hologram.getLocation();
+                if (Math.abs(standLoc.getX() - loc.getX()) < 0.01 && Math.abs(standLoc.getZ() - loc.getZ()) < 0.01
+                        && standLoc.getY() <= loc.getY() + 0.01
+                        && standLoc.getY() >= loc.getY() - LINE_SPACING * hologram.getLines().size()) {
+                    stand.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    @EventHandler
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        removeLegacyStands(event.getChunk(), event.getEntities());
+    }
+
     private void startUpdateTask() {
-        // Update dynamic holograms every second
-        plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            for (Hologram hologram : holograms.values()) {
-                if (hologram.isDynamic()) {
-                    updateHologram(hologram);
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        long scanInterval = Math.max(1, config.getInt("holograms.scan-interval-ticks", 10));
+        long updateInterval = Math.max(1, config.getInt("holograms.update-interval-ticks", 20));
+
+        // Track who is in range of which hologram
+        taskIds.add(plugin.getServer().getScheduler().runTaskTimer(plugin, this::scanViewers, 0L, scanInterval).getTaskId());
+
+        // Update dynamic holograms, only those somebody can see
+        taskIds.add(plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
+            for (HologramView view : views.values()) {
+                if (view.hologram.isDynamic()) {
+                    view.refresh();
                 }
             }
-        }, 0L, 20L);
+        }, updateInterval, updateInterval).getTaskId());
     }
     
-    private void updateHologram(Hologram hologram) {
-        List<ArmorStand> entities = hologramEntities.get(hologram.getId());
-        if (entities == null) return;
+    /**
+     * Finds the players within view distance of each hologram through the chunk index,
+     * then spawns, shows, hides and removes hologram entities to match.
+     */
+    private void scanViewers() {
+        Map<Hologram, List<Player>> inRange = new HashMap<>();
+        if (!chunkIndex.isEmpty()) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                LongHashMap<List<Hologram>> chunks = chunkIndex.get(player.getWorld().getName());
+                if (chunks == null) {
+                    continue;
+                }
+                Location loc = player.getLocation();
+                int chunkX = loc.getBlockX() >> 4;
+                int chunkZ = loc.getBlockZ() >> 4;
+                for (int dx = -viewDistance; dx <= viewDistance; dx++) {
+                    for (int dz = -viewDistance; dz <= viewDistance; dz++) {
+                        List<Hologram> list = chunks.get(LongHashMap.pack(chunkX + dx, chunkZ + dz));
+                        if (list == null) {
+                            continue;
+                        }
+                        for (Hologram hologram : list) {
+                            inRange.computeIfAbsent(hologram, h -> new ArrayList<>()).add(player);
+                        }
+                    }
+                }
+            }
+        }
         
-        List<String> lines = hologram.getLines();
-        for (int i = 0; i < Math.min(entities.size(), lines.size()); i++) {
-            ArmorStand stand = entities.get(i);
-            String processedLine = processPlaceholders(null, lines.get(i));
-            stand.setCustomName(processedLine);
+        // Nobody left in range, or the chunk unloaded under it
+        Iterator<HologramView> iterator = views.values().iterator();
+        while (iterator.hasNext()) {
+            HologramView view = iterator.next();
+            if (!inRange.containsKey(view.hologram) || !view.isValid()) {
+                view.remove();
+                iterator.remove();
+            }
+        }
+
+        for (Map.Entry<Hologram, List<Player>> entry : inRange.entrySet()) {
+            Hologram hologram = entry.getKey();
+            HologramView view = views.get(hologram.getId());
+            if (view == null) {
+                Location loc = hologram.getLocation();
+                if (!loc.getWorld().isChunkLoaded(loc.getBlockX() >> 4, loc.getBlockZ() >> 4)) {
+                    continue; // Spawned once the chunk is loaded
+                }
+                view = new HologramView(hologram);
+                view.spawn();
+                views.put(hologram.getId(), view);
+            }
+            view.setViewers(entry.getValue());
+        }
+    }
+
+    private void despawn(String id) {
+        HologramView view = views.remove(id);
+        if (view != null) {
+            view.remove();
         }
     }
     
     private String processPlaceholders(Player player, String text) {
         if (text == null) return "";
-        
-        text = text.replace("%online%", String.valueOf(Bukkit.getOnlinePlayers().size()));
-        text = text.replace("%max%", String.valueOf(Bukkit.getMaxPlayers()));
-        text = text.replace("%tps%", String.format("%.2f", plugin.getServerInfoManager().getTPS()));
-        
-        if (player != null) {
-            text = text.replace("%player%", player.getName());
-            text = text.replace("%balance%", String.format("%.2f", plugin.getEconomyManager().getBalance(player.getUniqueId())));
-        }
-        
-        return org.bukkit.ChatColor.translateAlternateColorCodes('&', text);
+        return plugin.getPlaceholderEngine().render(text, player);
     }
     
     @EventHandler
     public void onEntityInteract(PlayerInteractEntityEvent event) {
-        if (!(event.getRightClicked() instanceof ArmorStand)) return;
-        ArmorStand stand = (ArmorStand) event.getRightClicked();
+        String id = entityHolograms.get(event.getRightClicked().getUniqueId());
+        if (id == null) return;
         
-        // Find which hologram this belongs to
-        for (Map.Entry<String, List<ArmorStand>> entry : hologramEntities.entrySet()) {
-            if (entry.getValue().contains(stand)) {
-                Hologram hologram = holograms.get(entry.getKey());
-                if (hologram != null && hologram.isInteractive()) {
-                    Player player = event.getPlayer();
-                    if (hologram.getPermission() != null && !player.hasPermission(hologram.getPermission())) {
-                        player.sendMessage(org.bukkit.ChatColor.RED + "You don't have permission!");
-                        return;
-                    }
-                    if (hologram.getCommand() != null) {
-                        plugin.getServer().dispatchCommand(player, hologram.getCommand());
-                    }
-                }
-                break;
+        Hologram hologram = holograms.get(id);
+        if (hologram != null && hologram.isInteractive()) {
+            Player player = event.getPlayer();
+            if (hologram.getPermission() != null && !player.hasPermission(hologram.getPermission())) {
+                player.sendMessage(org.bukkit.ChatColor.RED + "You don't have permission!");
+                return;
+            }
+            if (hologram.getCommand() != null) {
+                plugin.getServer().dispatchCommand(player, hologram.getCommand());
             }
         }
     }
@@ -217,6 +343,219 @@ public class HologramManager implements Listener {
         return holograms.values();
     }
     
+    /**
+     * Gets the number of holograms currently spawned because a player is in range.
+     */
+    public int getSpawnedCount() {
+        return views.size();
+    }
+
+    /**
+     * Removes every hologram entity and stops the update tasks.
+     */
+    public void shutdown() {
+        for (int taskId : taskIds) {
+            plugin.getServer().getScheduler().cancelTask(taskId);
+        }
+        taskIds.clear();
+        for (HologramView view : views.values()) {
+            view.remove();
+        }
+        views.clear();
+    }
+
+    /**
+     * The entities of one spawned hologram and the players it is shown to.
+     */
+    private class HologramView {
+        final Hologram hologram;
+        final boolean personal; // Text differs per viewer
+        final List<Entity> shared = new ArrayList<>(); // Text display or armor stands, seen by every viewer
+        final Map<UUID, TextDisplay> perViewer = new HashMap<>();
+        final Set<UUID> viewers = new HashSet<>();
+
+        HologramView(Hologram hologram) {
+            this.hologram = hologram;
+            boolean anyPersonal = false;
+            if (displayMode) {
+                PlaceholderEngine engine = plugin.getPlaceholderEngine();
+                for (String line : hologram.getLines()) {
+                    if (line != null && engine.compile(line).isPersonal()) {
+                        anyPersonal = true;
+                        break;
+                    }
+                }
+            }
+            this.personal = anyPersonal;
+        }
+
+        void spawn() {
+            Location loc = hologram.getLocation();
+            if (!displayMode) {
+                Location lineLoc = loc.clone();
+                for (String line : hologram.getLines()) {
+                    String text = processPlaceholders(null, line);
+                    ArmorStand stand = loc.getWorld().spawn(lineLoc, ArmorStand.class, s -> {
+                        s.setPersistent(false);
+                        s.setVisibleByDefault(false);
+                        s.setVisible(false);
+                        s.setGravity(false);
+                        s.setCustomNameVisible(true);
+                        s.setCustomName(text);
+                        s.setInvulnerable(true);
+                        s.setMarker(true);
+                    });
+                    shared.add(stand);
+                    entityHolograms.put(stand.getUniqueId(), hologram.getId());
+                    lineLoc.add(0, -LINE_SPACING, 0); // Move down for next line
+                }
+                return;
+            }
+
+            if (!personal) {
+                shared.add(spawnText(null));
+            }
+            if (hologram.isInteractive()) {
+                // Text displays have no hitbox, clicks land on an interaction entity covering the text
+                float height = (float) (LINE_SPACING * Math.max(1, hologram.getLines().size()));
+                Interaction interaction = loc.getWorld().spawn(getBottom(), Interaction.class, i -> {
+                    i.setPersistent(false);
+                    i.setVisibleByDefault(false);
+                    i.setInteractionWidth(1.0f);
+                    i.setInteractionHeight(height);
+                });
+                shared.add(interaction);
+                entityHolograms.put(interaction.getUniqueId(), hologram.getId());
+            }
+        }
+
+        private Location getBottom() {
+            // Bottom line sits where the last armor stand line would
+            return hologram.getLocation().clone().add(0, -LINE_SPACING * Math.max(0, hologram.getLines().size() - 1), 0);
+        }
+
+        private TextDisplay spawnText(Player viewer) {
+            String text = render(viewer);
+            return hologram.getLocation().getWorld().spawn(getBottom(), TextDisplay.class, d -> {
+                d.setPersistent(false);
+                d.setVisibleByDefault(false);
+                d.setBillboard(Display.Billboard.CENTER);
+                d.setLineWidth(Integer.MAX_VALUE);
+                d.setText(text);
+            });
+        }
+
+        private String render(Player viewer) {
+            StringBuilder text = new StringBuilder();
+            for (String line : hologram.getLines()) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(processPlaceholders(viewer, line));
+            }
+            return text.toString();
+        }
+
+        void setViewers(List<Player> players) {
+            Set<UUID> current = new HashSet<>();
+            for (Player player : players) {
+                current.add(player.getUniqueId());
+                if (viewers.add(player.getUniqueId())) {
+                    show(player);
+                }
+            }
+            Iterator<UUID> iterator = viewers.iterator();
+            while (iterator.hasNext()) {
+                UUID uuid = iterator.next();
+                if (!current.contains(uuid)) {
+                    iterator.remove();
+                    hide(uuid);
+                }
+            }
+        }
+
+        private void show(Player player) {
+            if (personal) {
+                TextDisplay display = spawnText(player);
+                perViewer.put(player.getUniqueId(), display);
+                player.showEntity(plugin, display);
+            }
+            for (Entity entity : shared) {
+                player.showEntity(plugin, entity);
+            }
+        }
+
+        private void hide(UUID uuid) {
+            TextDisplay display = perViewer.remove(uuid);
+            if (display != null) {
+                display.remove();
+            }
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                for (Entity entity : shared) {
+                    player.hideEntity(plugin, entity);
+                }
+            }
+        }
+
+        void refresh() {
+            if (!displayMode) {
+                List<String> lines = hologram.getLines();
+                for (int i = 0; i < Math.min(shared.size(), lines.size()); i++) {
+                    Entity stand = shared.get(i);
+                    String processedLine = processPlaceholders(null, lines.get(i));
+                    if (!processedLine.equals(stand.getCustomName())) {
+                        stand.setCustomName(processedLine);
+                    }
+                }
+                return;
+            }
+            if (personal) {
+                for (Map.Entry<UUID, TextDisplay> entry : perViewer.entrySet()) {
+                    Player viewer = Bukkit.getPlayer(entry.getKey());
+                    if (viewer != null) {
+                        setText(entry.getValue(), render(viewer));
+                    }
+                }
+            } else if (!shared.isEmpty() && shared.get(0) instanceof TextDisplay) {
+                setText((TextDisplay) shared.get(0), render(null));
+            }
+        }
+
+        private void setText(TextDisplay display, String text) {
+            if (!text.equals(display.getText())) {
+                display.setText(text);
+            }
+        }
+
+        boolean isValid() {
+            for (Entity entity : shared) {
+                if (!entity.isValid()) {
+                    return false;
+                }
+            }
+            for (TextDisplay display : perViewer.values()) {
+                if (!display.isValid()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void remove() {
+            for (Entity entity : shared) {
+                entityHolograms.remove(entity.getUniqueId());
+                entity.remove();
+            }
+            for (TextDisplay display : perViewer.values()) {
+                display.remove();
+            }
+            shared.clear();
+            perViewer.clear();
+            viewers.clear();
+        }
+    }
+
     public static class Hologram {
         private String id;
         private Location location;
@@ -245,4 +584,3 @@ public class HologramManager implements Listener {
         public String getCommand() { return command; }
     }
 }
-
@@ -0,0 +1,487 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.LongHashMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed backup store used by incremental backups.
+ * Files are cut into fixed-size chunks, each stored once under its SHA-256 in
+ * {@code objects/}, compressed. A snapshot is a manifest listing every file with its
+ * size, modification time and chunk hashes, so restoring any snapshot restores that
+ * point in time. Files whose size and modification time match the previous snapshot
+ * are not read at all, and changed files are hashed and compressed in parallel.
+ * Region files keep their 4 KiB sector layout when chunks change, so fixed-size chunks
+ * deduplicate them well.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class IncrementalBackupStore {
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String MANIFEST_HEADER = "# ECore snapshot 1";
+
+    private final File objectsFolder;
+    private final File snapshotsFolder;
+    private final int chunkSize;
+    private final int threads;
+    private final int compressionLevel;
+    private final Logger logger;
+
+    public IncrementalBackupStore(File storeFolder, int chunkSize, int threads, int compressionLevel, Logger logger) {
+        this.objectsFolder = new File(storeFolder, "objects");
+        this.snapshotsFolder = new File(storeFolder, "snapshots");
+        this.chunkSize = Math.max(4096, chunkSize);
+        this.threads = Math.max(1, threads);
+        this.compressionLevel = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        this.logger = logger;
+    }
+
+    /**
+     * Writes a new snapshot of the given files.
+     *
+     * @param name The snapshot name, without suffix
+     * @param files Files to back up, keyed by their path relative to the server folder
+     * @return What the snapshot took
+     * @throws IOException If the snapshot could not be written
+     */
+    public SnapshotResult createSnapshot(String name, Map<String, File> files) throws IOException {
+        objectsFolder.mkdirs();
+        snapshotsFolder.mkdirs();
+
+        // Entries of the newest snapshot let unchanged files skip reading and hashing
+        File previous = getLatestSnapshot();
+        Map<String, FileEntry> previousEntries = previous != null ? readManifest(previous) : Collections.emptyMap();
+
+        SnapshotResult result = new SnapshotResult(name);
+        List<String> paths = new ArrayList<>(files.keySet());
+        Collections.sort(paths);
+        List<Future<FileEntry>> futures = new ArrayList<>(paths.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ECore-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (String path : paths) {
+                File file = files.get(path);
+                long size = file.length();
+                long modified = file.lastModified();
+                FileEntry old = previousEntries.get(path);
+                // A file whose chunks are gone, e.g. removed by verify(), is read again
+                if (old != null && old.size == size && old.modified == modified && hasObjects(old)) {
+                    futures.add(CompletableFuture.completedFuture(old));
+                    continue;
+                }
+                futures.add(executor.submit(() -> storeFile(path, file, size, modified, result)));
+            }
+
+            List<FileEntry> entries = new ArrayList<>(futures.size());
+            for (Future<FileEntry> future : futures) {
+                FileEntry entry = future.get();
+                if (entry != null) {
+                    entries.add(entry);
+                    result.totalBytes += entry.size;
+                }
+            }
+            result.files = entries.size();
+            writeManifest(new File(snapshotsFolder, name + SNAPSHOT_SUFFIX), entries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Snapshot interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Chunks, hashes and stores one changed file.
+     *
+     * @return The manifest entry, or null if the file vanished meanwhile
+     */
+    private FileEntry storeFile(String path, File file, long size, long modified, SnapshotResult result) throws IOException {
+        MessageDigest digest = newDigest();
+        List<String> hashes = new ArrayList<>((int) (size / chunkSize) + 1);
+        byte[] buffer = new byte[chunkSize];
+        long read = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int length;
+            while ((length = in.readNBytes(buffer, 0, chunkSize)) > 0) {
+                digest.update(buffer, 0, length);
+                String hash = HexFormat.of().formatHex(digest.digest());
+                if (writeObject(hash, buffer, length)) {
+                    result.newObjects.incrementAndGet();
+                    result.newBytes.addAndGet(length);
+                }
+                hashes.add(hash);
+                read += length;
+                if (length < chunkSize) {
+                    break;
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return null; // Deleted since the walk, e.g. a temporary file
+        }
+        result.changedFiles.incrementAndGet();
+        // The file may have grown while it was read, record what was stored
+        return new FileEntry(path, read, modified, hashes.toArray(new String[0]));
+    }
+
+    /**
+     * Stores one chunk unless an identical chunk is already stored.
+     * Chunks are forced to disk before they are renamed into place, so a stored chunk is
+     * trusted without reading it back; {@link #verify()} checks their contents.
+     *
+     * @return true if the chunk was new
+     */
+    private boolean writeObject(String hash, byte[] data, int length) throws IOException {
+        File target = getObjectFile(hash);
+        long stored = target.length(); // 0 if missing
+        if (stored > 0) {
+            return false;
+        }
+        boolean damaged = target.exists(); // Empty, compressed chunks never are
+        File folder = target.getParentFile();
+        folder.mkdirs();
+        File temp = new File(folder, hash + ".tmp-" + Thread.currentThread().getId());
+        Deflater deflater = new Deflater(compressionLevel);
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DeflaterOutputStream out = new DeflaterOutputStream(fileOut, deflater, 65536)) {
+            out.write(data, 0, length);
+            out.finish();
+            // Make the chunk durable before it becomes visible under its hash
+            fileOut.getChannel().force(true);
+        } finally {
+            deflater.end();
+        }
+        try {
+            if (damaged) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Another thread stored the same chunk
+            Files.deleteIfExists(temp.toPath());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasObjects(FileEntry entry) {
+        for (String hash : entry.hashes) {
+            if (getObjectFile(hash).length() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a stored chunk inflates to the content its name is the hash of.
+     */
+    private boolean isIntact(File object, String hash) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new InflaterInputStream(new FileInputStream(object), new Inflater(), 65536)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return HexFormat.of().formatHex(digest.digest()).equals(hash);
+    }
+
+    private static boolean isObjectName(String name) {
+        if (name.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads back every stored chunk and deletes those whose content no longer matches
+     * their hash. The next snapshot stores the chunks of files that still have them again.
+     *
+     * @return The number of damaged chunks deleted
+     * @throws IOException If the store could not be listed
+     */
+    public int verify() throws IOException {
+        int damaged = 0;
+        File[] folders = objectsFolder.listFiles(File::isDirectory);
+        if (folders == null) {
+            return 0;
+        }
+        for (File folder : folders) {
+            try (DirectoryStream<Path> objects = Files.newDirectoryStream(folder.toPath())) {
+                for (Path object : objects) {
+                    String name = object.getFileName().toString();
+                    if (isObjectName(name) && !isIntact(object.toFile(), name)) {
+                        logger.warning("Backup chunk " + name + " is damaged, deleting it");
+                        Files.deleteIfExists(object);
+                        damaged++;
+                    }
+                }
+            }
+        }
+        return damaged;
+    }
+
+    private File getObjectFile(String hash) {
+        return new File(new File(objectsFolder, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * Restores a snapshot into a folder, files in parallel.
+     *
+     * @param snapshot The snapshot manifest
+     * @param target The folder to write the files to
+     * @throws IOException If a file could not be restored
+     */
+    public void restore(File snapshot, File target) throws IOException {
+        Map<String, FileEntry> entries = readManifest(snapshot);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(entries.size());
+            for (FileEntry entry : entries.values()) {
+                futures.add(executor.submit(() -> {
+                    restoreFile(entry, target);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Restore interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void restoreFile(FileEntry entry, File target) throws IOException {
+        File file = new File(target, entry.path);
+        if (!file.toPath().normalize().startsWith(target.toPath().normalize())) {
+            throw new IOException("Refusing to restore outside the target folder: " + entry.path);
+        }
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (String hash : entry.hashes) {
+                File object = getObjectFile(hash);
+                if (!object.exists()) {
+                    throw new IOException("Backup store is missing chunk " + hash + " of " + entry.path);
+                }
+                try (InputStream in = new InflaterInputStream(new FileInputStream(object), new Inflater(), 65536)) {
+                    in.transferTo(out);
+                }
+            }
+        }
+        file.setLastModified(entry.modified);
+    }
+
+    /**
+     * Gets all snapshots, newest first.
+     */
+    public List<File> listSnapshots() {
+        File[] snapshots = snapshotsFolder.listFiles((dir, name) -> name.endsWith(SNAPSHOT_SUFFIX));
+        if (snapshots == null) {
+            return new ArrayList<>();
+        }
+        // Names carry the timestamp, so they sort in time order
+        Arrays.sort(snapshots, (a, b) -> b.getName().compareTo(a.getName()));
+        return new ArrayList<>(Arrays.asList(snapshots));
+    }
+
+    private File getLatestSnapshot() {
+        List<File> snapshots = listSnapshots();
+        return snapshots.isEmpty() ? null : snapshots.get(0);
+    }
+
+    /**
+     * Deletes the oldest snapshots beyond a limit, then every chunk no remaining snapshot uses.
+     *
+     * @param maxSnapshots Snapshots to keep
+     * @return The number of chunks deleted
+     * @throws IOException If the remaining snapshots could not be read
+     */
+    public int prune(int maxSnapshots) throws IOException {
+        List<File> snapshots = listSnapshots();
+        if (snapshots.size() <= maxSnapshots) {
+            return 0;
+        }
+        for (File old : snapshots.subList(Math.max(0, maxSnapshots), snapshots.size())) {
+            if (old.delete()) {
+                logger.info("Deleted old backup snapshot: " + old.getName());
+            }
+        }
+
+        // Mark every chunk still referenced. Keyed by the first 64 bits of the hash, a
+        // collision only keeps an unused chunk around
+        LongHashMap<Boolean> referenced = new LongHashMap<>();
+        for (File snapshot : listSnapshots()) {
+            for (FileEntry entry : readManifest(snapshot).values()) {
+                for (String hash : entry.hashes) {
+                    referenced.put(Long.parseUnsignedLong(hash.substring(0, 16), 16), Boolean.TRUE);
+                }
+            }
+        }
+
+        // Sweep
+        int deleted = 0;
+        File[] folders = objectsFolder.listFiles(File::isDirectory);
+        if (folders == null) {
+            return 0;
+        }
+        for (File folder : folders) {
+            try (DirectoryStream<Path> objects = Files.newDirectoryStream(folder.toPath())) {
+                for (Path object : objects) {
+                    String name = object.getFileName().toString();
+                    if (name.contains(".tmp-")) {
+                        Files.deleteIfExists(object); // Left behind by an interrupted write
+                        deleted++;
+                    } else if (isObjectName(name)
+                        && !referenced.containsKey(Long.parseUnsignedLong(name.substring(0, 16), 16))) {
+                        Files.deleteIfExists(object);
+                        deleted++;
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private void writeManifest(File file, List<FileEntry> entries) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(temp)), StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            for (FileEntry entry : entries) {
+                writer.write(entry.path);
+                writer.write('\t');
+                writer.write(Long.toString(entry.size));
+                writer.write('\t');
+                writer.write(Long.toString(entry.modified));
+                writer.write('\t');
+                writer.write(String.join(",", entry.hashes));
+                writer.newLine();
+            }
+        }
+        // Only complete manifests are ever visible as snapshots
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, FileEntry> readManifest(File file) throws IOException {
+        Map<String, FileEntry> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (!MANIFEST_HEADER.equals(header)) {
+                throw new IOException("Not an ECore snapshot: " + file.getName());
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length < 4) {
+                    continue;
+                }
+                String[] hashes = parts[3].isEmpty() ? new String[0] : parts[3].split(",");
+                entries.put(parts[0], new FileEntry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), hashes));
+            }
+        }
+        return entries;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * One file of a snapshot.
+     */
+    private static class FileEntry {
+        final String path;
+        final long size;
+        final long modified;
+        final String[] hashes;
+
+        FileEntry(String path, long size, long modified, String[] hashes) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hashes = hashes;
+        }
+    }
+
+    /**
+     * What a snapshot took.
+     */
+    public static class SnapshotResult {
+        public final String name;
+        public int files;
+        public long totalBytes;
+        public final AtomicLong changedFiles = new AtomicLong();
+        public final AtomicLong newObjects = new AtomicLong();
+        public final AtomicLong newBytes = new AtomicLong();
+
+        SnapshotResult(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.utils.DirtySnapshotWriter;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,6 +17,9 @@ import java.util.logging.Level;
 
 /**
  * Manages the jobs system with multiple job types, levels, experience, and rewards.
+ * Each job's actions are compiled into lookup tables indexed by action type and by
+ * material or entity ordinal. Money earned is held per player and paid out in one
+ * economy batch every few seconds, and changed job data is written asynchronously.
  */
 public class JobManager {
     private final Ecore plugin;
@@ -26,6 +31,30 @@ public class JobManager {
     // Job data structures
     private final Map<String, JobType> jobTypes; // Job ID -> JobType
     private final Map<UUID, PlayerJobData> playerJobs; // Player UUID -> Job data
+    private final Set<UUID> unpaidPlayers; // Holding money not yet paid out, main thread only
+    private final DirtySnapshotWriter<PlayerJobData> writer;
+    private BukkitTask payoutTask;
+    
+    /**
+     * The events that reward jobs. An action fires for every job that defines an action
+     * with the matching id in jobs.yml.
+     */
+    public enum ActionType {
+        MINE("mine"),
+        BUILD("build"),
+        KILL("kill"),
+        HARVEST("harvest"),
+        BREED("breed"),
+        FISH("fish");
+        
+        private final String id;
+        
+        ActionType(String id) {
+            this.id = id;
+        }
+        
+        public String getId() { return id; }
+    }
     
     /**
      * Represents a job type configuration.
@@ -37,6 +66,7 @@ public class JobManager {
         private final Material icon;
         private final List<String> lore;
         private final Map<String, JobAction> actions; // Action ID -> JobAction
+        private final CompiledAction[] compiled; // By ActionType ordinal, null where the job has no such action
         
         public JobType(String id, String name, String description, Material icon, List<String> lore, Map<String, JobAction> actions) {
             this.id = id;
@@ -45,6 +75,13 @@ public class JobManager {
             this.icon = icon;
             this.lore = lore;
             this.actions = actions;
+            this.compiled = new CompiledAction[ActionType.values().length];
+            for (ActionType type : ActionType.values()) {
+                JobAction action = actions.get(type.getId());
+                if (action != null) {
+                    compiled[type.ordinal()] = new CompiledAction(action);
+                }
+            }
         }
         
         public String getId() { return id; }
@@ -94,6 +131,58 @@ public class JobManager {
         public Map<EntityType, Double> getEntityExp() { return entityExp; }
     }
     
+    /**
+     * A job action flattened for the event path: multipliers are read by ordinal
+     * instead of looked up in the action's maps.
+     */
+    private static class CompiledAction {
+        private final double baseExp;
+        private final double expMultiplier;
+        private final double baseMoney;
+        private final double moneyMultiplier;
+        private final ItemReward[] itemRewards;
+        private final double[] materialMultipliers; // By Material ordinal, null when the action lists no materials
+        private final double[] entityMultipliers; // By EntityType ordinal, null when the action lists no entities
+        
+        CompiledAction(JobAction action) {
+            this.baseExp = action.getBaseExp();
+            this.expMultiplier = action.getExpMultiplier();
+            this.baseMoney = action.getBaseMoney();
+            this.moneyMultiplier = action.getMoneyMultiplier();
+            this.itemRewards = action.getItemRewards().toArray(new ItemReward[0]);
+            
+            if (action.getMaterialExp().isEmpty()) {
+                this.materialMultipliers = null;
+            } else {
+                this.materialMultipliers = new double[Material.values().length];
+                Arrays.fill(materialMultipliers, 1.0);
+                for (Map.Entry<Material, Double> entry : action.getMaterialExp().entrySet()) {
+                    materialMultipliers[entry.getKey().ordinal()] = entry.getValue();
+                }
+            }
+            if (action.getEntityExp().isEmpty()) {
+                this.entityMultipliers = null;
+            } else {
+                this.entityMultipliers = new double[EntityType.values().length];
+                Arrays.fill(entityMultipliers, 1.0);
+                for (Map.Entry<EntityType, Double> entry : action.getEntityExp().entrySet()) {
+                    entityMultipliers[entry.getKey().ordinal()] = entry.getValue();
+                }
+            }
+        }
+        
+        double getMultiplier(Material material, EntityType entity) {
+            double multiplier = 1.0;
+            if (material != null && materialMultipliers != null) {
+                multiplier *= materialMultipliers[material.ordinal()];
+            }
+            if (entity != null && entityMultipliers != null) {
+                multiplier *= entityMultipliers[entity.ordinal()];
+            }
+            return multiplier;
+        }
+    }
+    
     /**
      * Represents an item reward.
      */
@@ -126,6 +215,8 @@ public class JobManager {
         private double totalExperience; // Total exp earned
         private double totalMoneyEarned;
         private int totalActions; // Total actions performed
+        private double unpaidMoney; // Earned since the last payout
+        private JobType job; // Resolved current job, cleared when the job changes
         
         public PlayerJobData() {
             this.currentJob = null;
@@ -136,8 +227,23 @@ public class JobManager {
             this.totalActions = 0;
         }
         
+        /**
+         * Copies the saved fields, for the asynchronous writer.
+         */
+        private PlayerJobData(PlayerJobData other) {
+            this.currentJob = other.currentJob;
+            this.level = other.level;
+            this.experience = other.experience;
+            this.totalExperience = other.totalExperience;
+            this.totalMoneyEarned = other.totalMoneyEarned;
+            this.totalActions = other.totalActions;
+        }
+        
         public String getCurrentJob() { return currentJob; }
-        public void setCurrentJob(String job) { this.currentJob = job; }
+        public void setCurrentJob(String job) {
+            this.currentJob = job;
+            this.job = null;
+        }
         public int getLevel() { return level; }
         public void setLevel(int level) { this.level = level; }
         public double getExperience() { return experience; }
@@ -149,6 +255,7 @@ public class JobManager {
         public int getTotalActions() { return totalActions; }
         public void incrementTotalActions() { this.totalActions++; }
         public void setTotalActions(int actions) { this.totalActions = actions; }
+        public double getUnpaidMoney() { return unpaidMoney; }
         
         public double getExpForNextLevel() {
             // Exponential leveling: 100 * level^1.5
@@ -160,9 +267,14 @@ public class JobManager {
         this.plugin = plugin;
         this.jobTypes = new HashMap<>();
         this.playerJobs = new HashMap<>();
+        this.unpaidPlayers = new HashSet<>();
+        this.writer = new DirtySnapshotWriter<>(this::snapshot, this::writeSnapshots);
         initializeConfigs();
         loadJobTypes();
         loadPlayerJobs();
+        
+        long interval = Math.max(1L, plugin.getConfigManager().getConfig().getLong("jobs.payout-interval-seconds", 10L)) * 20L;
+        payoutTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::payoutAndFlush, interval, interval);
     }
     
     private void initializeConfigs() {
@@ -290,25 +402,97 @@ public class JobManager {
         }
     }
     
+    /**
+     * Writes every player's job data on the calling thread.
+     */
     public void savePlayerJobs() {
+        for (UUID uuid : playerJobs.keySet()) {
+            writer.markDirty(uuid);
+        }
+        writer.flush();
+    }
+    
+    private void markDirty(UUID uuid) {
+        writer.markDirty(uuid);
+    }
+    
+    /**
+     * Copies a player's job data for the writer.
+     */
+    private PlayerJobData snapshot(UUID uuid) {
+        PlayerJobData data = playerJobs.get(uuid);
+        return data != null ? new PlayerJobData(data) : null;
+    }
+    
+    /**
+     * Pays out the money earned since the last run, then writes the players that changed asynchronously.
+     */
+    private void payoutAndFlush() {
+        payoutAll();
+        if (!writer.hasDirty()) return;
+        writer.snapshotDirty();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, writer::writePending);
+    }
+    
+    /**
+     * Writes snapshots into player-jobs.yml and saves it.
+     */
+    private Set<UUID> writeSnapshots(Map<UUID, PlayerJobData> snapshots) {
+        long profile = plugin.getProfilingManager().start();
+        for (Map.Entry<UUID, PlayerJobData> entry : snapshots.entrySet()) {
+            String path = "players." + entry.getKey().toString();
+            PlayerJobData data = entry.getValue();
+            playerJobsConfig.set(path + ".current-job", data.getCurrentJob());
+            playerJobsConfig.set(path + ".level", data.getLevel());
+            playerJobsConfig.set(path + ".experience", data.getExperience());
+            playerJobsConfig.set(path + ".total-experience", data.getTotalExperience() + data.getExperience());
+            playerJobsConfig.set(path + ".total-money-earned", data.getTotalMoneyEarned());
+            playerJobsConfig.set(path + ".total-actions", data.getTotalActions());
+        }
         try {
-            playerJobsConfig.set("players", null);
-            for (Map.Entry<UUID, PlayerJobData> entry : playerJobs.entrySet()) {
-                String path = "players." + entry.getKey().toString();
-                PlayerJobData data = entry.getValue();
-                playerJobsConfig.set(path + ".current-job", data.getCurrentJob());
-                playerJobsConfig.set(path + ".level", data.getLevel());
-                playerJobsConfig.set(path + ".experience", data.getExperience());
-                playerJobsConfig.set(path + ".total-experience", data.getTotalExperience() + data.getExperience());
-                playerJobsConfig.set(path + ".total-money-earned", data.getTotalMoneyEarned());
-                playerJobsConfig.set(path + ".total-actions", data.getTotalActions());
-            }
             playerJobsConfig.save(playerJobsFile);
+            return snapshots.keySet();
         } catch (IOException e) {
             plugin.getLogger().log(Level.WARNING, "Failed to save player-jobs.yml", e);
+            return Collections.emptySet();
+        } finally {
+            plugin.getProfilingManager().stop("JobManager.flush", profile);
         }
     }
     
+    /**
+     * Pays every player the money they earned since the last payout, in one economy batch.
+     */
+    public void payoutAll() {
+        if (unpaidPlayers.isEmpty()) return;
+        Map<UUID, Double> batch = new HashMap<>();
+        for (UUID uuid : unpaidPlayers) {
+            PlayerJobData data = playerJobs.get(uuid);
+            if (data != null && data.unpaidMoney > 0) {
+                batch.put(uuid, data.unpaidMoney);
+                data.addTotalMoneyEarned(data.unpaidMoney);
+                data.unpaidMoney = 0.0;
+                markDirty(uuid);
+            }
+        }
+        unpaidPlayers.clear();
+        plugin.getEconomyManager().depositAll(batch, "Job earnings");
+    }
+    
+    /**
+     * Pays one player the money they earned since the last payout, such as when they leave.
+     */
+    public void payout(UUID uuid) {
+        if (!unpaidPlayers.remove(uuid)) return;
+        PlayerJobData data = playerJobs.get(uuid);
+        if (data == null || data.unpaidMoney <= 0) return;
+        double money = data.unpaidMoney;
+        data.unpaidMoney = 0.0;
+        data.addTotalMoneyEarned(money);
+        markDirty(uuid);
+        plugin.getEconomyManager().depositAll(Collections.singletonMap(uuid, money), "Job earnings");
+    }
+    
     /**
      * Gets or creates player job data.
      */
@@ -332,7 +516,7 @@ public class JobManager {
         data.setCurrentJob(jobId);
         data.setLevel(1);
         data.setExperience(0.0);
-        savePlayerJobs();
+        markDirty(player.getUniqueId());
         
         JobType job = jobTypes.get(jobId);
         player.sendMessage("§aYou joined the " + job.getName() + " job!");
@@ -350,7 +534,7 @@ public class JobManager {
         
         String jobName = jobTypes.get(data.getCurrentJob()).getName();
         data.setCurrentJob(null);
-        savePlayerJobs();
+        markDirty(player.getUniqueId());
         
         player.sendMessage("§cYou left the " + jobName + " job.");
         return true;
@@ -358,32 +542,27 @@ public class JobManager {
     
     /**
      * Processes a job action and gives rewards.
+     * Experience, levels and item rewards apply at once; money is paid out with the next batch.
      */
-    public void processJobAction(Player player, String actionId, Material material, EntityType entity) {
-        PlayerJobData data = getPlayerJobData(player.getUniqueId());
-        if (data.getCurrentJob() == null) return;
+    public void processJobAction(Player player, ActionType type, Material material, EntityType entity) {
+        PlayerJobData data = playerJobs.get(player.getUniqueId());
+        if (data == null || data.getCurrentJob() == null) return;
         
-        JobType job = jobTypes.get(data.getCurrentJob());
-        JobAction action = job.getActions().get(actionId);
+        JobType job = data.job;
+        if (job == null) {
+            job = jobTypes.get(data.getCurrentJob());
+            if (job == null) return;
+            data.job = job;
+        }
+        CompiledAction action = job.compiled[type.ordinal()];
         if (action == null) return;
         
         // Calculate experience with multipliers
-        double exp = action.getBaseExp();
-        double materialMultiplier = 1.0;
-        double entityMultiplier = 1.0;
-        
-        if (material != null && action.getMaterialExp().containsKey(material)) {
-            materialMultiplier = action.getMaterialExp().get(material);
-        }
-        if (entity != null && action.getEntityExp().containsKey(entity)) {
-            entityMultiplier = action.getEntityExp().get(entity);
-        }
-        
-        exp *= materialMultiplier * entityMultiplier;
-        exp += action.getExpMultiplier() * data.getLevel();
+        double exp = action.baseExp * action.getMultiplier(material, entity);
+        exp += action.expMultiplier * data.getLevel();
         
         // Calculate money
-        double money = action.getBaseMoney() + (action.getMoneyMultiplier() * data.getLevel());
+        double money = action.baseMoney + (action.moneyMultiplier * data.getLevel());
         
         // Add experience
         data.setExperience(data.getExperience() + exp);
@@ -398,21 +577,21 @@ public class JobManager {
             leveledUp = true;
         }
         
-        // Give money
+        // Hold money for the next payout
         if (money > 0) {
-            plugin.getEconomyManager().addBalance(player.getUniqueId(), money);
-            data.addTotalMoneyEarned(money);
+            data.unpaidMoney += money;
+            unpaidPlayers.add(player.getUniqueId());
         }
         
         // Give item rewards
-        for (ItemReward reward : action.getItemRewards()) {
+        for (ItemReward reward : action.itemRewards) {
             if (data.getLevel() >= reward.getLevel() && Math.random() < reward.getChance()) {
                 ItemStack item = new ItemStack(reward.getMaterial(), reward.getAmount());
                 player.getInventory().addItem(item);
             }
         }
         
-        savePlayerJobs();
+        markDirty(player.getUniqueId());
         
         // Send messages
         if (leveledUp) {
@@ -458,7 +637,12 @@ public class JobManager {
      * Shutdown and save data.
      */
     public void shutdown() {
-        savePlayerJobs();
+        if (payoutTask != null) {
+            payoutTask.cancel();
+            payoutTask = null;
+        }
+        payoutAll();
+        writer.flush();
     }
 }
 
@@ -270,6 +270,9 @@ public class PerformanceManager {
         
         ServerInfoManager serverInfo = plugin.getServerInfoManager();
         stats.currentTPS = serverInfo.getTPS();
+        for (TickTimeSampler.Window window : TickTimeSampler.Window.values()) {
+            stats.tickTimes.put(window, serverInfo.getTickSampler().summarize(window));
+        }
         stats.memoryInfo = serverInfo.getMemoryInfo();
         stats.totalChunks = serverInfo.getTotalChunks();
         stats.totalEntities = serverInfo.getTotalEntities();
@@ -356,6 +359,7 @@ public class PerformanceManager {
      */
     public static class PerformanceStats {
         public double currentTPS = 20.0;
+        public final Map<TickTimeSampler.Window, TickTimeSampler.Summary> tickTimes = new EnumMap<>(TickTimeSampler.Window.class);
         public ServerInfoManager.MemoryInfo memoryInfo;
         public int totalEntities = 0;
         public int items = 0;
@@ -0,0 +1,153 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.LongHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Chunk grid of online player positions, for finding the players within a range
+ * without measuring the distance to everyone on the server.
+ * Positions are updated from the main thread as players move, and may be queried from
+ * any thread, such as the async chat thread, without touching the players themselves.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class PlayerPositionIndex {
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<Long, Set<UUID>>> worlds = new ConcurrentHashMap<>(); // World UUID -> Chunk key -> Players
+
+    /**
+     * The last indexed position of a player.
+     */
+    public static final class Position {
+        private final Player player;
+        private final UUID world;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final long cell;
+
+        Position(Player player, UUID world, double x, double y, double z) {
+            this.player = player;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.cell = LongHashMap.pack((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4);
+        }
+
+        public Player getPlayer() { return player; }
+        public UUID getWorld() { return world; }
+        public double getX() { return x; }
+        public double getY() { return y; }
+        public double getZ() { return z; }
+    }
+
+    /**
+     * Records where a player is. Main thread only.
+     */
+    public void update(Player player, Location location) {
+        World world = location.getWorld();
+        if (world == null) {
+            return;
+        }
+        UUID uuid = player.getUniqueId();
+        Position position = new Position(player, world.getUID(), location.getX(), location.getY(), location.getZ());
+        Position old = positions.put(uuid, position);
+        if (old != null && old.world.equals(position.world) && old.cell == position.cell) {
+            return;
+        }
+        if (old != null) {
+            removeFromCell(uuid, old);
+        }
+        worlds.computeIfAbsent(position.world, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(position.cell, k -> ConcurrentHashMap.newKeySet())
+            .add(uuid);
+    }
+
+    /**
+     * Forgets a player. Main thread only.
+     */
+    public void remove(UUID uuid) {
+        Position old = positions.remove(uuid);
+        if (old != null) {
+            removeFromCell(uuid, old);
+        }
+    }
+
+    private void removeFromCell(UUID uuid, Position old) {
+        Map<Long, Set<UUID>> cells = worlds.get(old.world);
+        if (cells != null) {
+            cells.computeIfPresent(old.cell, (key, players) -> {
+                players.remove(uuid);
+                return players.isEmpty() ? null : players;
+            });
+        }
+    }
+
+    /**
+     * Gets the last indexed position of a player, or null if they are not indexed.
+     */
+    public Position getPosition(UUID uuid) {
+        return positions.get(uuid);
+    }
+
+    /**
+     * Visits every indexed player within range of a point, including one standing on it.
+     * Only the chunks the range covers are searched, or the world's occupied chunks
+     * when there are fewer of those.
+     */
+    public void forEachNear(UUID world, double x, double y, double z, double range, Consumer<Position> action) {
+        Map<Long, Set<UUID>> cells = worlds.get(world);
+        if (cells == null) {
+            return;
+        }
+        double rangeSquared = range * range;
+        int minCellX = (int) Math.floor(x - range) >> 4;
+        int maxCellX = (int) Math.floor(x + range) >> 4;
+        int minCellZ = (int) Math.floor(z - range) >> 4;
+        int maxCellZ = (int) Math.floor(z + range) >> 4;
+        long covered = ((long) maxCellX - minCellX + 1) * ((long) maxCellZ - minCellZ + 1);
+
+        if (covered > cells.size()) {
+            for (Map.Entry<Long, Set<UUID>> cell : cells.entrySet()) {
+                visit(cell.getValue(), cell.getKey(), world, x, y, z, rangeSquared, action);
+            }
+            return;
+        }
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                long cell = LongHashMap.pack(cellX, cellZ);
+                Set<UUID> players = cells.get(cell);
+                if (players != null) {
+                    visit(players, cell, world, x, y, z, rangeSquared, action);
+                }
+            }
+        }
+    }
+
+    private void visit(Set<UUID> players, long cell, UUID world, double x, double y, double z, double rangeSquared,
+                       Consumer<Position> action) {
+        for (UUID uuid : players) {
+            Position position = positions.get(uuid);
+            // A player moving between chunks is visited from the cell of their current position only
+            if (position == null || position.cell != cell || !position.world.equals(world)) {
+                continue;
+            }
+            double dx = position.x - x;
+            double dy = position.y - y;
+            double dz = position.z - z;
+            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                action.accept(position);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.excrele.ecore.managers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory statistics of one player.
+ * The built-in statistics live in a primitive array indexed by {@link #indexOf(String)};
+ * any other statistic (e.g. one referenced by an achievement) goes into a small map.
+ * Every change bumps a version so writers can tell whether a snapshot is stale.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class PlayerStatistics {
+    /** Built-in statistics, in array order */
+    public static final String[] KEYS = {
+        "joins", "blocks-broken", "blocks-placed", "distance-traveled", "items-crafted",
+        "experience-gained", "damage-taken", "damage-dealt", "deaths", "kills",
+        "money-earned", "money-spent", "playtime-seconds"
+    };
+
+    public static final int JOINS = 0;
+    public static final int BLOCKS_BROKEN = 1;
+    public static final int BLOCKS_PLACED = 2;
+    public static final int DISTANCE_TRAVELED = 3;
+    public static final int ITEMS_CRAFTED = 4;
+    public static final int EXPERIENCE_GAINED = 5;
+    public static final int DAMAGE_TAKEN = 6;
+    public static final int DAMAGE_DEALT = 7;
+    public static final int DEATHS = 8;
+    public static final int KILLS = 9;
+    public static final int MONEY_EARNED = 10;
+    public static final int MONEY_SPENT = 11;
+
+    private static final Map<String, Integer> INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            INDEX.put(KEYS[i], i);
+        }
+    }
+
+    private final UUID uuid;
+    private final double[] values = new double[KEYS.length];
+    private final Map<String, Double> extra = new HashMap<>();
+    private final Object writeLock = new Object();
+    private long version;
+    private long savedVersion;
+
+    public PlayerStatistics(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    /**
+     * Gets the array index of a built-in statistic.
+     *
+     * @param stat The statistic name
+     * @return The index, or -1 if it is not built in
+     */
+    public static int indexOf(String stat) {
+        Integer index = INDEX.get(stat);
+        return index != null ? index : -1;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public synchronized double get(int index) {
+        return values[index];
+    }
+
+    public synchronized double get(String stat) {
+        int index = indexOf(stat);
+        if (index >= 0) {
+            return values[index];
+        }
+        Double value = extra.get(stat);
+        return value != null ? value : 0.0;
+    }
+
+    public synchronized void add(int index, double amount) {
+        values[index] += amount;
+        version++;
+    }
+
+    public synchronized void set(String stat, double value) {
+        int index = indexOf(stat);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            extra.put(stat, value);
+        }
+        version++;
+    }
+
+    /**
+     * Checks whether there are changes that have not been saved yet.
+     */
+    public synchronized boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    /**
+     * Copies every non-zero statistic.
+     *
+     * @param into The map to fill
+     * @return The version the copy reflects
+     */
+    public synchronized long snapshot(Map<String, Double> into) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0.0) {
+                into.put(KEYS[i], values[i]);
+            }
+        }
+        into.putAll(extra);
+        return version;
+    }
+
+    /**
+     * Marks a snapshot as saved. Changes made after the snapshot stay dirty.
+     *
+     * @param snapshotVersion The version returned by {@link #snapshot(Map)}
+     */
+    public synchronized void markSaved(long snapshotVersion) {
+        if (snapshotVersion > savedVersion) {
+            savedVersion = snapshotVersion;
+        }
+    }
+
+    /**
+     * Gets the newest version written to disk.
+     */
+    public synchronized long getSavedVersion() {
+        return savedVersion;
+    }
+
+    /**
+     * Gets the lock held while this record's file is written.
+     */
+    Object getWriteLock() {
+        return writeLock;
+    }
+
+    /**
+     * Loads saved values without marking the record dirty.
+     */
+    synchronized void load(String stat, double value) {
+        int index = indexOf(stat);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            extra.put(stat, value);
+        }
+    }
+}
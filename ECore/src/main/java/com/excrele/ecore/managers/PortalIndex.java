@@ -0,0 +1,181 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.LongHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+
+/**
+ * Block-level spatial index for portals.
+ * Every 16x16x16 section a portal overlaps maps to the portals there, and each portal
+ * is tested by its bounding box first and then, unless it fills that box, by the packed
+ * key of the block. A lookup is a bounds check and one hash probe, and never allocates.
+ *
+ * <p>Each world is indexed in an immutable snapshot that is rebuilt when portals change,
+ * so lookups may run off the main thread.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class PortalIndex {
+    /**
+     * Portals overlapping more sections than this are kept in a separate list
+     * instead of being copied into every section cell.
+     */
+    private static final int MAX_INDEXED_SECTIONS = 4096;
+    private static final Footprint[] EMPTY = new Footprint[0];
+
+    private volatile Map<UUID, WorldIndex> worlds = Collections.emptyMap();
+
+    /**
+     * Packs a block or section position into one key: 26 bits of X and Z, 12 bits of Y.
+     */
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Rebuilds the whole index from the given portals.
+     */
+    public void rebuild(Collection<PortalManager.Portal> portals) {
+        Map<UUID, List<Footprint>> byWorld = new HashMap<>();
+        for (PortalManager.Portal portal : portals) {
+            if (portal.getBlocks() == null) {
+                continue;
+            }
+            // A portal's blocks are normally in one world, but nothing enforces it
+            Map<UUID, List<Location>> blocksByWorld = new HashMap<>();
+            for (Location block : portal.getBlocks()) {
+                World world = block.getWorld();
+                if (world != null) {
+                    blocksByWorld.computeIfAbsent(world.getUID(), k -> new ArrayList<>()).add(block);
+                }
+            }
+            for (Map.Entry<UUID, List<Location>> entry : blocksByWorld.entrySet()) {
+                byWorld.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(new Footprint(portal, entry.getValue()));
+            }
+        }
+
+        Map<UUID, WorldIndex> rebuilt = new HashMap<>();
+        for (Map.Entry<UUID, List<Footprint>> entry : byWorld.entrySet()) {
+            rebuilt.put(entry.getKey(), new WorldIndex(entry.getValue()));
+        }
+        worlds = rebuilt;
+    }
+
+    /**
+     * Gets the portal containing a block position.
+     *
+     * @return The portal, or null if the block is not part of any portal
+     */
+    public PortalManager.Portal getPortalAt(World world, int x, int y, int z) {
+        WorldIndex index = worlds.get(world.getUID());
+        if (index == null || !index.inBounds(x, y, z)) {
+            return null;
+        }
+
+        Footprint[] cell = index.sections.get(pack(x >> 4, y >> 4, z >> 4));
+        if (cell != null) {
+            for (Footprint footprint : cell) {
+                if (footprint.contains(x, y, z)) {
+                    return footprint.portal;
+                }
+            }
+        }
+        for (Footprint footprint : index.large) {
+            if (footprint.contains(x, y, z)) {
+                return footprint.portal;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The blocks of one portal in one world.
+     */
+    private static class Footprint {
+        final PortalManager.Portal portal;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        final LongHashMap<Boolean> blocks; // Null when the portal fills its bounding box
+
+        Footprint(PortalManager.Portal portal, List<Location> locations) {
+            this.portal = portal;
+            LongHashMap<Boolean> keys = new LongHashMap<>(locations.size());
+            for (Location location : locations) {
+                int x = location.getBlockX();
+                int y = location.getBlockY();
+                int z = location.getBlockZ();
+                keys.put(pack(x, y, z), Boolean.TRUE);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                maxZ = Math.max(maxZ, z);
+            }
+            long volume = ((long) maxX - minX + 1) * ((long) maxY - minY + 1) * ((long) maxZ - minZ + 1);
+            // Portals made from a selection fill their box, so the box alone answers
+            this.blocks = keys.size() == volume ? null : keys;
+        }
+
+        boolean inBounds(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        boolean contains(int x, int y, int z) {
+            return inBounds(x, y, z) && (blocks == null || blocks.containsKey(pack(x, y, z)));
+        }
+
+        long sectionCount() {
+            return ((long) (maxX >> 4) - (minX >> 4) + 1) * ((long) (maxY >> 4) - (minY >> 4) + 1)
+                * ((long) (maxZ >> 4) - (minZ >> 4) + 1);
+        }
+    }
+
+    /**
+     * Immutable index of one world.
+     */
+    private static class WorldIndex {
+        final LongHashMap<Footprint[]> sections;
+        final Footprint[] large;
+        // Union of every portal's box, rejects most moves before hashing
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        WorldIndex(List<Footprint> footprints) {
+            Map<Long, List<Footprint>> building = new HashMap<>();
+            List<Footprint> largeFootprints = new ArrayList<>();
+            for (Footprint footprint : footprints) {
+                minX = Math.min(minX, footprint.minX);
+                minY = Math.min(minY, footprint.minY);
+                minZ = Math.min(minZ, footprint.minZ);
+                maxX = Math.max(maxX, footprint.maxX);
+                maxY = Math.max(maxY, footprint.maxY);
+                maxZ = Math.max(maxZ, footprint.maxZ);
+                if (footprint.sectionCount() > MAX_INDEXED_SECTIONS) {
+                    largeFootprints.add(footprint);
+                    continue;
+                }
+                for (int sx = footprint.minX >> 4; sx <= footprint.maxX >> 4; sx++) {
+                    for (int sy = footprint.minY >> 4; sy <= footprint.maxY >> 4; sy++) {
+                        for (int sz = footprint.minZ >> 4; sz <= footprint.maxZ >> 4; sz++) {
+                            building.computeIfAbsent(pack(sx, sy, sz), k -> new ArrayList<>(1)).add(footprint);
+                        }
+                    }
+                }
+            }
+
+            this.sections = new LongHashMap<>(building.size());
+            for (Map.Entry<Long, List<Footprint>> entry : building.entrySet()) {
+                sections.put(entry.getKey(), entry.getValue().toArray(EMPTY));
+            }
+            this.large = largeFootprints.toArray(EMPTY);
+        }
+
+        boolean inBounds(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+    }
+}
@@ -23,7 +23,7 @@ public class PortalManager {
     private File portalsFile;
     private FileConfiguration portalsConfig;
     private final Map<String, Portal> portals;
-    private final Map<Location, Portal> portalBlocks; // Block location -> Portal
+    private final PortalIndex portalIndex; // Block position -> Portal
 
     /**
      * Creates a new PortalManager instance.
@@ -33,7 +33,7 @@ public class PortalManager {
     public PortalManager(Ecore plugin) {
         this.plugin = plugin;
         this.portals = new HashMap<>();
-        this.portalBlocks = new HashMap<>();
+        this.portalIndex = new PortalIndex();
         initializePortalsFile();
         loadPortals();
     }
@@ -58,9 +58,9 @@ public class PortalManager {
      */
     public void loadPortals() {
         portals.clear();
-        portalBlocks.clear();
         
         if (!portalsConfig.contains("portals")) {
+            portalIndex.rebuild(portals.values());
             return;
         }
 
@@ -107,13 +107,11 @@ public class PortalManager {
             portal.setSound(portalsConfig.getString(path + ".sound", null));
             
             portals.put(portalName.toLowerCase(), portal);
-            
-            // Register portal blocks
-            for (Location blockLoc : blocks) {
-                portalBlocks.put(blockLoc, portal);
-            }
         }
         
+        // Register portal blocks
+        portalIndex.rebuild(portals.values());
+        
         plugin.getLogger().info("Loaded " + portals.size() + " portal(s)!");
     }
 
@@ -162,9 +160,7 @@ public class PortalManager {
         portals.put(name.toLowerCase(), portal);
         
         // Register portal blocks
-        for (Location blockLoc : blocks) {
-            portalBlocks.put(blockLoc, portal);
-        }
+        portalIndex.rebuild(portals.values());
         
         savePortal(portal);
         plugin.getLogger().info("Created portal '" + name + "' with " + blocks.size() + " block(s)!");
@@ -222,9 +218,7 @@ public class PortalManager {
         }
 
         // Remove portal blocks
-        for (Location blockLoc : portal.getBlocks()) {
-            portalBlocks.remove(blockLoc);
-        }
+        portalIndex.rebuild(portals.values());
 
         portalsConfig.set("portals." + name, null);
         savePortals();
@@ -244,30 +238,17 @@ public class PortalManager {
 
     /**
      * Gets a portal by block location.
+     * Only the block position counts, not the exact coordinates or direction.
      * 
      * @param location The block location
      * @return The Portal, or null if not found
      */
     public Portal getPortalByBlock(Location location) {
-        // Check exact match first
-        Portal portal = portalBlocks.get(location);
-        if (portal != null) {
-            return portal;
-        }
-
-        // Check if location is within any portal's blocks
-        for (Portal p : portals.values()) {
-            for (Location blockLoc : p.getBlocks()) {
-                if (blockLoc.getWorld().equals(location.getWorld()) &&
-                    blockLoc.getBlockX() == location.getBlockX() &&
-                    blockLoc.getBlockY() == location.getBlockY() &&
-                    blockLoc.getBlockZ() == location.getBlockZ()) {
-                    return p;
-                }
-            }
+        World world = location.getWorld();
+        if (world == null) {
+            return null;
         }
-
-        return null;
+        return portalIndex.getPortalAt(world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
     /**
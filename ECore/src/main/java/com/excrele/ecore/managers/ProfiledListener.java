@@ -0,0 +1,61 @@
+package com.excrele.ecore.managers;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.RegisteredListener;
+
+/**
+ * Stands in for one of ECore's registered event handlers while profiling is on
+ * and records how long each call takes.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+class ProfiledListener extends RegisteredListener {
+    private final ProfilingManager profiler;
+    private final HandlerList handlerList;
+    private final RegisteredListener original;
+    private final String listenerName;
+
+    // Last event class seen, almost always the only one
+    private volatile Class<?> lastEventClass;
+    private volatile ProfilingManager.Timing lastTiming;
+
+    ProfiledListener(ProfilingManager profiler, HandlerList handlerList, RegisteredListener original) {
+        super(original.getListener(), (listener, event) -> { }, original.getPriority(), original.getPlugin(),
+            original.isIgnoringCancelled());
+        this.profiler = profiler;
+        this.handlerList = handlerList;
+        this.original = original;
+        this.listenerName = original.getListener().getClass().getSimpleName();
+    }
+
+    @Override
+    public void callEvent(Event event) throws EventException {
+        long start = System.nanoTime();
+        try {
+            original.callEvent(event);
+        } finally {
+            timingFor(event).record(System.nanoTime() - start);
+        }
+    }
+
+    private ProfilingManager.Timing timingFor(Event event) {
+        ProfilingManager.Timing timing = lastTiming;
+        if (event.getClass() != lastEventClass || timing == null) {
+            timing = profiler.getTiming(listenerName + "#" + event.getEventName());
+            lastTiming = timing;
+            lastEventClass = event.getClass();
+        }
+        return timing;
+    }
+
+    HandlerList getHandlerList() {
+        return handlerList;
+    }
+
+    RegisteredListener getOriginal() {
+        return original;
+    }
+}
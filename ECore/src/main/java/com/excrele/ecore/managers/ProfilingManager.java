@@ -0,0 +1,252 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.Ecore;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how much time ECore's event handlers and hot manager operations take.
+ * While profiling is on, every ECore event handler is swapped for a timing wrapper;
+ * turning it off puts the original handlers back, so there is no cost at all while
+ * it is off. Manager operations are timed with {@link #start()} and
+ * {@link #stop(String, long)}, which cost a single volatile read when profiling is off.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class ProfilingManager {
+    private final Ecore plugin;
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+    private final List<ProfiledListener> installed = new ArrayList<>();
+    private volatile boolean enabled;
+    private long startedAt;
+    private long profiledMillis; // Time profiled before the current run
+
+    public ProfilingManager(Ecore plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts profiling if profiling.enabled-on-startup is set.
+     * Called once all listeners are registered.
+     */
+    public void startIfConfigured() {
+        if (plugin.getConfigManager().getConfig().getBoolean("profiling.enabled-on-startup", false)) {
+            enable();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns profiling on and wraps every ECore event handler.
+     * Must be called on the main thread.
+     */
+    public void enable() {
+        if (enabled) {
+            return;
+        }
+        for (HandlerList handlers : HandlerList.getHandlerLists()) {
+            Map<RegisteredListener, RegisteredListener> replacements = new HashMap<>();
+            for (RegisteredListener listener : handlers.getRegisteredListeners()) {
+                if (listener.getPlugin() == plugin && !(listener instanceof ProfiledListener)) {
+                    ProfiledListener profiled = new ProfiledListener(this, handlers, listener);
+                    replacements.put(listener, profiled);
+                    installed.add(profiled);
+                }
+            }
+            swap(handlers, replacements);
+        }
+        startedAt = System.currentTimeMillis();
+        enabled = true;
+    }
+
+    /**
+     * Turns profiling off and restores the original event handlers. Collected timings are kept.
+     * Must be called on the main thread.
+     */
+    public void disable() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        profiledMillis += System.currentTimeMillis() - startedAt;
+        Map<HandlerList, Map<RegisteredListener, RegisteredListener>> restores = new HashMap<>();
+        for (ProfiledListener profiled : installed) {
+            restores.computeIfAbsent(profiled.getHandlerList(), key -> new HashMap<>()).put(profiled, profiled.getOriginal());
+        }
+        for (Map.Entry<HandlerList, Map<RegisteredListener, RegisteredListener>> entry : restores.entrySet()) {
+            swap(entry.getKey(), entry.getValue());
+        }
+        installed.clear();
+    }
+
+    /**
+     * Replaces listeners in a handler list, keeping every handler's position.
+     * Runs under the list's lock so async events never see a handler missing or twice.
+     */
+    private static void swap(HandlerList handlers, Map<RegisteredListener, RegisteredListener> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        synchronized (handlers) {
+            // Handlers of equal priority run in registration order, so re-register all of them in order
+            RegisteredListener[] current = handlers.getRegisteredListeners();
+            for (RegisteredListener listener : current) {
+                handlers.unregister(listener);
+            }
+            for (RegisteredListener listener : current) {
+                handlers.register(replacements.getOrDefault(listener, listener));
+            }
+        }
+    }
+
+    /**
+     * Clears all collected timings.
+     */
+    public void reset() {
+        timings.clear();
+        profiledMillis = 0L;
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts timing a manager operation.
+     *
+     * @return The start time to pass to {@link #stop(String, long)}, or 0 if profiling is off
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records a manager operation started with {@link #start()}.
+     *
+     * @param section The operation name, e.g. "RegionManager.canPerformAction"
+     * @param start The value returned by {@link #start()}
+     */
+    public void stop(String section, long start) {
+        if (start != 0L) {
+            getTiming(section).record(System.nanoTime() - start);
+        }
+    }
+
+    Timing getTiming(String section) {
+        return timings.computeIfAbsent(section, key -> new Timing());
+    }
+
+    /**
+     * Gets the recorded sections, slowest total first.
+     *
+     * @param limit The maximum number of sections, or 0 for all
+     * @return The sections
+     */
+    public List<Section> getSections(int limit) {
+        List<Section> sections = new ArrayList<>(timings.size());
+        for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+            Timing timing = entry.getValue();
+            sections.add(new Section(entry.getKey(), timing.count.sum(), timing.total.sum(), timing.max.get()));
+        }
+        sections.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        return limit > 0 && sections.size() > limit ? sections.subList(0, limit) : sections;
+    }
+
+    /**
+     * Gets how long profiling has been on since the last reset, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        long running = enabled ? System.currentTimeMillis() - startedAt : 0L;
+        return Math.max(1L, profiledMillis + running);
+    }
+
+    /**
+     * Builds a plain-text table of every section, sorted by total time.
+     *
+     * @return The report lines
+     */
+    public List<String> buildReport() {
+        long elapsedMillis = getElapsedMillis();
+        double ticks = elapsedMillis / 50.0;
+        List<String> lines = new ArrayList<>();
+        lines.add("ECore profile - " + new Date());
+        lines.add(String.format("Profiled %.1fs (%s)", elapsedMillis / 1000.0, enabled ? "running" : "stopped"));
+        lines.add("");
+        lines.add(String.format("%-60s %10s %11s %10s %10s %9s", "Section", "Calls", "Total ms", "Avg us", "Max ms", "ms/tick"));
+        for (Section section : getSections(0)) {
+            lines.add(String.format("%-60s %10d %11.2f %10.1f %10.2f %9.3f", section.name, section.calls,
+                section.totalNanos / 1_000_000.0, section.getAverageMicros(), section.maxNanos / 1_000_000.0,
+                section.totalNanos / 1_000_000.0 / ticks));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the full report to the profiles folder.
+     *
+     * @return The report file
+     * @throws IOException If the file could not be written
+     */
+    public File exportReport() throws IOException {
+        File folder = new File(plugin.getDataFolder(), "profiles");
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        File file = new File(folder, "profile-" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) + ".txt");
+        Files.write(file.toPath(), buildReport(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * A snapshot of one section's timings.
+     */
+    public static class Section {
+        public final String name;
+        public final long calls;
+        public final long totalNanos;
+        public final long maxNanos;
+
+        public Section(String name, long calls, long totalNanos, long maxNanos) {
+            this.name = name;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public double getAverageMicros() {
+            return calls > 0 ? totalNanos / 1000.0 / calls : 0.0;
+        }
+    }
+
+    /**
+     * Invocation count, total and max time of one section.
+     */
+    static class Timing {
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            if (nanos > max.get()) {
+                max.accumulateAndGet(nanos, Math::max);
+            }
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.utils.DirtySnapshotWriter;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,6 +17,9 @@ import java.util.logging.Level;
 
 /**
  * Manages the quests system with multiple quest types, chains, and rewards.
+ * Each player's active quests are indexed by quest type and target, so an event only
+ * touches the quests it can advance. Progress is written to player-quests.yml in
+ * periodic async flushes of the players that changed.
  */
 public class QuestManager {
     private final Ecore plugin;
@@ -26,6 +31,11 @@ public class QuestManager {
     // Quest data structures
     private final Map<String, Quest> quests; // Quest ID -> Quest
     private final Map<UUID, Map<String, QuestProgress>> playerQuests; // Player UUID -> Map<QuestID, Progress>
+    private final Map<UUID, ActiveQuestIndex> activeIndexes; // Built on demand, dropped when a player's quests change
+    
+    // Persistence
+    private final DirtySnapshotWriter<Map<String, QuestProgress>> writer;
+    private BukkitTask flushTask;
     
     /**
      * Represents a quest configuration.
@@ -183,12 +193,17 @@ public class QuestManager {
         this.plugin = plugin;
         this.quests = new HashMap<>();
         this.playerQuests = new HashMap<>();
+        this.activeIndexes = new HashMap<>();
+        this.writer = new DirtySnapshotWriter<>(this::snapshot, this::writeSnapshots);
         initializeConfigs();
         loadQuests();
         loadPlayerQuests();
         
         // Schedule daily/weekly quest resets
         scheduleQuestResets();
+        
+        long interval = Math.max(1L, plugin.getConfigManager().getConfig().getLong("quests.flush-interval-seconds", 30L)) * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flushDirty, interval, interval);
     }
     
     private void initializeConfigs() {
@@ -306,23 +321,74 @@ public class QuestManager {
         }
     }
     
+    /**
+     * Writes every player's progress on the calling thread.
+     */
     public void savePlayerQuests() {
-        try {
-            playerQuestsConfig.set("players", null);
-            for (Map.Entry<UUID, Map<String, QuestProgress>> entry : playerQuests.entrySet()) {
-                String path = "players." + entry.getKey().toString() + ".quests";
-                for (Map.Entry<String, QuestProgress> questEntry : entry.getValue().entrySet()) {
-                    String questPath = path + "." + questEntry.getKey();
-                    QuestProgress progress = questEntry.getValue();
-                    playerQuestsConfig.set(questPath + ".progress", progress.getProgress());
-                    playerQuestsConfig.set(questPath + ".completed", progress.isCompleted());
-                    playerQuestsConfig.set(questPath + ".completed-time", progress.getCompletedTime());
-                    playerQuestsConfig.set(questPath + ".last-reset-time", progress.getLastResetTime());
-                }
+        for (UUID uuid : playerQuests.keySet()) {
+            writer.markDirty(uuid);
+        }
+        writer.flush();
+    }
+    
+    private void markDirty(UUID uuid) {
+        writer.markDirty(uuid);
+    }
+    
+    /**
+     * Copies a player's progress for the writer.
+     */
+    private Map<String, QuestProgress> snapshot(UUID uuid) {
+        Map<String, QuestProgress> copy = new HashMap<>();
+        Map<String, QuestProgress> playerQuestMap = playerQuests.get(uuid);
+        if (playerQuestMap != null) {
+            for (Map.Entry<String, QuestProgress> entry : playerQuestMap.entrySet()) {
+                QuestProgress progress = entry.getValue();
+                QuestProgress saved = new QuestProgress();
+                saved.setProgress(progress.getProgress());
+                saved.setCompleted(progress.isCompleted());
+                saved.setCompletedTime(progress.getCompletedTime());
+                saved.setLastResetTime(progress.getLastResetTime());
+                copy.put(entry.getKey(), saved);
+            }
+        }
+        return copy;
+    }
+    
+    /**
+     * Snapshots the players changed since the last flush and writes them asynchronously.
+     */
+    private void flushDirty() {
+        if (!writer.hasDirty()) return;
+        writer.snapshotDirty();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, writer::writePending);
+    }
+    
+    /**
+     * Writes snapshots into player-quests.yml and saves it.
+     */
+    private Set<UUID> writeSnapshots(Map<UUID, Map<String, QuestProgress>> snapshots) {
+        long profile = plugin.getProfilingManager().start();
+        for (Map.Entry<UUID, Map<String, QuestProgress>> entry : snapshots.entrySet()) {
+            String path = "players." + entry.getKey().toString();
+            playerQuestsConfig.set(path, null);
+            for (Map.Entry<String, QuestProgress> questEntry : entry.getValue().entrySet()) {
+                String questPath = path + ".quests." + questEntry.getKey();
+                QuestProgress progress = questEntry.getValue();
+                playerQuestsConfig.set(questPath + ".progress", progress.getProgress());
+                playerQuestsConfig.set(questPath + ".completed", progress.isCompleted());
+                playerQuestsConfig.set(questPath + ".completed-time", progress.getCompletedTime());
+                playerQuestsConfig.set(questPath + ".last-reset-time", progress.getLastResetTime());
             }
+        }
+        try {
             playerQuestsConfig.save(playerQuestsFile);
+            return snapshots.keySet();
         } catch (IOException e) {
             plugin.getLogger().log(Level.WARNING, "Failed to save player-quests.yml", e);
+            return Collections.emptySet();
+        } finally {
+            plugin.getProfilingManager().stop("QuestManager.flush", profile);
         }
     }
     
@@ -330,8 +396,15 @@ public class QuestManager {
      * Gets or creates quest progress for a player.
      */
     public QuestProgress getQuestProgress(UUID uuid, String questId) {
-        return playerQuests.computeIfAbsent(uuid, k -> new HashMap<>())
-                          .computeIfAbsent(questId, k -> new QuestProgress());
+        Map<String, QuestProgress> playerQuestMap = playerQuests.computeIfAbsent(uuid, k -> new HashMap<>());
+        QuestProgress progress = playerQuestMap.get(questId);
+        if (progress == null) {
+            progress = new QuestProgress();
+            playerQuestMap.put(questId, progress);
+            // New progress makes the quest active
+            activeIndexes.remove(uuid);
+        }
+        return progress;
     }
     
     /**
@@ -393,9 +466,10 @@ public class QuestManager {
             progress.setProgress(0);
             progress.setCompleted(false);
             progress.setLastResetTime(System.currentTimeMillis());
+            activeIndexes.remove(uuid);
         }
         
-        savePlayerQuests();
+        markDirty(uuid);
         player.sendMessage("§aQuest started: §e" + quest.getName());
         return true;
     }
@@ -404,46 +478,122 @@ public class QuestManager {
      * Updates quest progress.
      */
     public void updateQuestProgress(Player player, QuestType type, Material material, EntityType entity) {
+        // Only the target that matters for this quest type is looked up
+        Object target = null;
+        if (type == QuestType.KILL) {
+            if (entity == null) return;
+            target = entity;
+        } else if (isMaterialType(type)) {
+            if (material == null) return;
+            target = material;
+        } else if (type != QuestType.FISH && type != QuestType.BREED && type != QuestType.TRAVEL) {
+            return; // No other quest type is advanced by events
+        }
+        
         UUID uuid = player.getUniqueId();
-        Map<String, QuestProgress> playerQuestMap = playerQuests.get(uuid);
-        if (playerQuestMap == null) return;
+        ActiveQuestIndex index = getActiveIndex(uuid);
+        if (index == null) return;
         
-        for (Map.Entry<String, Quest> entry : quests.entrySet()) {
-            String questId = entry.getKey();
-            Quest quest = entry.getValue();
-            
-            if (quest.getType() != type) continue;
-            
-            QuestProgress progress = playerQuestMap.get(questId);
-            if (progress == null || progress.isCompleted()) continue;
+        if (target != null) {
+            Map<Object, ActiveQuest[]> byTarget = index.byTarget.get(type);
+            if (byTarget != null) {
+                advance(player, byTarget.get(target));
+            }
+        }
+        advance(player, index.anyTarget.get(type));
+    }
+    
+    private void advance(Player player, ActiveQuest[] candidates) {
+        if (candidates == null) return;
+        
+        for (ActiveQuest active : candidates) {
+            QuestProgress progress = active.progress;
+            if (progress.isCompleted()) continue;
             
-            // Check if quest matches target
-            boolean matches = false;
-            if (type == QuestType.KILL && entity != null) {
-                matches = quest.getTargetEntity() == null || quest.getTargetEntity() == entity;
-            } else if ((type == QuestType.COLLECT || type == QuestType.CRAFT || 
-                       type == QuestType.BREAK || type == QuestType.PLACE || 
-                       type == QuestType.MINE || type == QuestType.HARVEST) && material != null) {
-                matches = quest.getTargetMaterial() == null || quest.getTargetMaterial() == material;
-            } else if (type == QuestType.FISH || type == QuestType.BREED || type == QuestType.TRAVEL) {
-                matches = true; // These don't require specific targets
+            Quest quest = active.quest;
+            progress.addProgress(1);
+            markDirty(player.getUniqueId());
+            if (progress.getProgress() >= quest.getRequiredAmount()) {
+                completeQuest(player, quest.getId());
+            } else {
+                // Send progress update
+                int remaining = quest.getRequiredAmount() - progress.getProgress();
+                player.sendMessage("§7[Quest] §e" + quest.getName() + " §7- Progress: §a" + 
+                                 progress.getProgress() + "/" + quest.getRequiredAmount() + 
+                                 " §7(" + remaining + " remaining)");
             }
+        }
+    }
+    
+    private static boolean isMaterialType(QuestType type) {
+        return type == QuestType.COLLECT || type == QuestType.CRAFT || type == QuestType.BREAK
+            || type == QuestType.PLACE || type == QuestType.MINE || type == QuestType.HARVEST;
+    }
+    
+    /**
+     * Gets the index of a player's active quests, building it if their quests changed.
+     */
+    private ActiveQuestIndex getActiveIndex(UUID uuid) {
+        ActiveQuestIndex index = activeIndexes.get(uuid);
+        if (index != null) return index;
+        
+        Map<String, QuestProgress> playerQuestMap = playerQuests.get(uuid);
+        if (playerQuestMap == null) return null;
+        
+        Map<QuestType, Map<Object, List<ActiveQuest>>> byTarget = new EnumMap<>(QuestType.class);
+        Map<QuestType, List<ActiveQuest>> anyTarget = new EnumMap<>(QuestType.class);
+        for (Map.Entry<String, QuestProgress> entry : playerQuestMap.entrySet()) {
+            Quest quest = quests.get(entry.getKey());
+            if (quest == null || entry.getValue().isCompleted()) continue;
             
-            if (matches) {
-                progress.addProgress(1);
-                if (progress.getProgress() >= quest.getRequiredAmount()) {
-                    completeQuest(player, questId);
-                } else {
-                    // Send progress update
-                    int remaining = quest.getRequiredAmount() - progress.getProgress();
-                    player.sendMessage("§7[Quest] §e" + quest.getName() + " §7- Progress: §a" + 
-                                     progress.getProgress() + "/" + quest.getRequiredAmount() + 
-                                     " §7(" + remaining + " remaining)");
-                }
+            ActiveQuest active = new ActiveQuest(quest, entry.getValue());
+            QuestType type = quest.getType();
+            Object target = null;
+            if (type == QuestType.KILL) {
+                target = quest.getTargetEntity();
+            } else if (isMaterialType(type)) {
+                target = quest.getTargetMaterial();
             }
+            // Quests without a target, and types that ignore it, match every event of their type
+            if (target != null) {
+                byTarget.computeIfAbsent(type, k -> new HashMap<>())
+                        .computeIfAbsent(target, k -> new ArrayList<>(1)).add(active);
+            } else {
+                anyTarget.computeIfAbsent(type, k -> new ArrayList<>(1)).add(active);
+            }
+        }
+        
+        index = new ActiveQuestIndex();
+        for (Map.Entry<QuestType, Map<Object, List<ActiveQuest>>> entry : byTarget.entrySet()) {
+            Map<Object, ActiveQuest[]> targets = new HashMap<>();
+            for (Map.Entry<Object, List<ActiveQuest>> targetEntry : entry.getValue().entrySet()) {
+                targets.put(targetEntry.getKey(), targetEntry.getValue().toArray(new ActiveQuest[0]));
+            }
+            index.byTarget.put(entry.getKey(), targets);
         }
+        for (Map.Entry<QuestType, List<ActiveQuest>> entry : anyTarget.entrySet()) {
+            index.anyTarget.put(entry.getKey(), entry.getValue().toArray(new ActiveQuest[0]));
+        }
+        activeIndexes.put(uuid, index);
+        return index;
+    }
+    
+    /**
+     * A player's active quests by type and target. Never changed once built.
+     */
+    private static class ActiveQuestIndex {
+        final Map<QuestType, Map<Object, ActiveQuest[]>> byTarget = new EnumMap<>(QuestType.class);
+        final Map<QuestType, ActiveQuest[]> anyTarget = new EnumMap<>(QuestType.class);
+    }
+    
+    private static class ActiveQuest {
+        final Quest quest;
+        final QuestProgress progress;
         
-        savePlayerQuests();
+        ActiveQuest(Quest quest, QuestProgress progress) {
+            this.quest = quest;
+            this.progress = progress;
+        }
     }
     
     /**
@@ -462,6 +612,7 @@ public class QuestManager {
         
         progress.setCompleted(true);
         progress.setCompletedTime(System.currentTimeMillis());
+        activeIndexes.remove(uuid);
         
         // Give rewards
         if (quest.getRewardMoney() > 0) {
@@ -482,7 +633,7 @@ public class QuestManager {
             }
         }
         
-        savePlayerQuests();
+        markDirty(uuid);
         
         // Send completion message
         player.sendMessage("§6§l[QUEST COMPLETED]");
@@ -563,18 +714,15 @@ public class QuestManager {
                     long lastReset = progress.getLastResetTime();
                     long hoursSinceReset = (now - lastReset) / (1000 * 60 * 60);
                     
-                    if (quest.isDaily() && hoursSinceReset >= 24) {
-                        progress.setProgress(0);
-                        progress.setCompleted(false);
-                        progress.setLastResetTime(now);
-                    } else if (quest.isWeekly() && hoursSinceReset >= 168) {
+                    if ((quest.isDaily() && hoursSinceReset >= 24) || (quest.isWeekly() && hoursSinceReset >= 168)) {
                         progress.setProgress(0);
                         progress.setCompleted(false);
                         progress.setLastResetTime(now);
+                        activeIndexes.remove(playerEntry.getKey());
+                        markDirty(playerEntry.getKey());
                     }
                 }
             }
-            savePlayerQuests();
         }, 0L, 72000L); // Every hour (72000 ticks)
     }
     
@@ -582,7 +730,11 @@ public class QuestManager {
      * Shutdown and save data.
      */
     public void shutdown() {
-        savePlayerQuests();
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        writer.flush();
     }
 }
 
@@ -17,6 +17,8 @@ public class Region {
     private final World world;
     private final Location min;
     private final Location max;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
     private final Map<RegionFlag, Boolean> flags;
     private final Set<UUID> owners;
     private final Set<UUID> members;
@@ -51,6 +53,12 @@ public class Region {
         this.world = world;
         this.min = min.clone();
         this.max = max.clone();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
         this.flags = new HashMap<>(flags);
         this.owners = new HashSet<>(owners);
         this.members = new HashSet<>(members);
@@ -77,13 +85,22 @@ public class Region {
             return false;
         }
         
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
-        
-        return x >= min.getBlockX() && x <= max.getBlockX() &&
-               y >= min.getBlockY() && y <= max.getBlockY() &&
-               z >= min.getBlockZ() && z <= max.getBlockZ();
+        return contains(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    /**
+     * Checks if a block position is within this region.
+     * The world is not checked.
+     * 
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return true if the position is within the region
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX &&
+               y >= minY && y <= maxY &&
+               z >= minZ && z <= maxZ;
     }
     
     /**
@@ -128,12 +145,48 @@ public class Region {
      * @return The volume
      */
     public int getVolume() {
-        int width = max.getBlockX() - min.getBlockX() + 1;
-        int height = max.getBlockY() - min.getBlockY() + 1;
-        int length = max.getBlockZ() - min.getBlockZ() + 1;
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        int length = maxZ - minZ + 1;
         return width * height * length;
     }
     
+    /**
+     * Gets the X coordinate of the lowest chunk the region overlaps.
+     * 
+     * @return The chunk coordinate
+     */
+    public int getMinChunkX() {
+        return minX >> 4;
+    }
+    
+    /**
+     * Gets the Z coordinate of the lowest chunk the region overlaps.
+     * 
+     * @return The chunk coordinate
+     */
+    public int getMinChunkZ() {
+        return minZ >> 4;
+    }
+    
+    /**
+     * Gets the X coordinate of the highest chunk the region overlaps.
+     * 
+     * @return The chunk coordinate
+     */
+    public int getMaxChunkX() {
+        return maxX >> 4;
+    }
+    
+    /**
+     * Gets the Z coordinate of the highest chunk the region overlaps.
+     * 
+     * @return The chunk coordinate
+     */
+    public int getMaxChunkZ() {
+        return maxZ >> 4;
+    }
+    
     /**
      * Gets a flag value.
      * 
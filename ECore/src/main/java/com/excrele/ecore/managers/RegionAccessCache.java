@@ -0,0 +1,150 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.LongHashMap;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches region protection decisions per player and chunk.
+ * For every chunk a player acts in, the regions overlapping it are resolved once
+ * and reduced to a bit mask of the flags the player may use in each of them.
+ * Flags allowed everywhere in the chunk (e.g. a player inside their own build)
+ * are answered without resolving a region at all.
+ *
+ * <p>A player's entries are dropped when they cross a chunk boundary or their
+ * permissions are recalculated. Region changes bump the manager's version, which
+ * lazily invalidates every entry on its next use.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class RegionAccessCache {
+    private static final RegionFlag[] FLAGS = RegionFlag.values();
+    private static final long ALL_FLAGS = (1L << FLAGS.length) - 1;
+
+    private final RegionManager regionManager;
+    private final Map<UUID, PlayerEntry> players = new ConcurrentHashMap<>();
+
+    public RegionAccessCache(RegionManager regionManager) {
+        this.regionManager = regionManager;
+    }
+
+    /**
+     * Checks if a player can perform an action at a location.
+     *
+     * @see RegionManager#canPerformAction(Player, Location, RegionFlag)
+     */
+    public boolean canPerformAction(Player player, Location location, RegionFlag flag) {
+        String worldName = location.getWorld().getName();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        long bit = 1L << flag.ordinal();
+
+        PlayerEntry entry = players.computeIfAbsent(player.getUniqueId(), k -> new PlayerEntry());
+        ChunkDecision decision;
+        synchronized (entry) {
+            int version = regionManager.getVersion();
+            if (entry.version != version || !worldName.equals(entry.worldName)) {
+                entry.reset(worldName, version, player.hasPermission("ecore.region.bypass"));
+            }
+            if (entry.bypass) {
+                return true;
+            }
+
+            long key = LongHashMap.pack(x >> 4, z >> 4);
+            decision = entry.chunks.get(key);
+            if (decision == null) {
+                decision = new ChunkDecision(player.getUniqueId(),
+                        regionManager.getRegionIndex().getRegionsInChunk(worldName, x >> 4, z >> 4));
+                entry.chunks.put(key, decision);
+            }
+        }
+        return decision.allows(x, y, z, bit);
+    }
+
+    /**
+     * Drops all cached decisions of a player.
+     */
+    public void invalidate(UUID uuid) {
+        players.remove(uuid);
+    }
+
+    /**
+     * Drops all cached decisions.
+     */
+    public void clear() {
+        players.clear();
+    }
+
+    /**
+     * Cached decisions of one player.
+     */
+    private static class PlayerEntry {
+        final LongHashMap<ChunkDecision> chunks = new LongHashMap<>(4);
+        String worldName;
+        int version = -1;
+        boolean bypass;
+
+        void reset(String worldName, int version, boolean bypass) {
+            this.worldName = worldName;
+            this.version = version;
+            this.bypass = bypass;
+            chunks.clear();
+        }
+    }
+
+    /**
+     * Flags a player may use in each region overlapping one chunk.
+     */
+    private static class ChunkDecision {
+        final Region[] regions;
+        final long[] allowed;
+        final long allowedEverywhere;
+
+        ChunkDecision(UUID uuid, Region[] regions) {
+            this.regions = regions;
+            this.allowed = new long[regions.length];
+
+            // Blocks outside every region allow all actions
+            long everywhere = ALL_FLAGS;
+            for (int i = 0; i < regions.length; i++) {
+                allowed[i] = allowedFlags(regions[i], uuid);
+                everywhere &= allowed[i];
+            }
+            this.allowedEverywhere = everywhere;
+        }
+
+        boolean allows(int x, int y, int z, long bit) {
+            if ((allowedEverywhere & bit) != 0) {
+                return true;
+            }
+            // Regions are sorted by priority, the first one containing the block decides
+            for (int i = 0; i < regions.length; i++) {
+                if (regions[i].contains(x, y, z)) {
+                    return (allowed[i] & bit) != 0;
+                }
+            }
+            return true;
+        }
+
+        private static long allowedFlags(Region region, UUID uuid) {
+            // Owners and members can always perform actions in their regions
+            if (region.isMember(uuid)) {
+                return ALL_FLAGS;
+            }
+            long mask = 0L;
+            for (RegionFlag flag : FLAGS) {
+                Boolean value = region.getFlag(flag);
+                if (value == null || value) {
+                    mask |= 1L << flag.ordinal();
+                }
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.excrele.ecore.managers;
+
+import com.excrele.ecore.utils.LongHashMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunk-keyed spatial index for regions.
+ * Every chunk a region overlaps maps to the regions covering it, pre-sorted by
+ * priority (smallest volume first), so a lookup only tests the regions overlapping
+ * that chunk and finds the most specific one without allocating.
+ *
+ * <p>Each world is indexed in an immutable snapshot that is rebuilt when a region in
+ * that world is added or removed. Lookups may therefore run off the main thread
+ * (e.g. from async chat events).
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class RegionIndex {
+    /**
+     * Regions overlapping more chunks than this are kept in a separate list
+     * instead of being copied into every chunk cell.
+     */
+    private static final int MAX_INDEXED_CHUNKS = 4096;
+    private static final Region[] EMPTY = new Region[0];
+    private static final Comparator<Region> PRIORITY = Comparator.comparingInt(Region::getVolume);
+
+    private final Map<String, WorldIndex> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Rebuilds the index for a world.
+     *
+     * @param worldName The world name
+     * @param regions All regions in the world
+     */
+    public void rebuild(String worldName, Collection<Region> regions) {
+        if (regions == null || regions.isEmpty()) {
+            worlds.remove(worldName);
+        } else {
+            worlds.put(worldName, new WorldIndex(regions));
+        }
+    }
+
+    /**
+     * Removes every indexed world.
+     */
+    public void clear() {
+        worlds.clear();
+    }
+
+    /**
+     * Gets the most specific (smallest) region containing a block position.
+     *
+     * @return The region, or null if none contains the position
+     */
+    public Region getRegionAt(String worldName, int x, int y, int z) {
+        WorldIndex index = worlds.get(worldName);
+        if (index == null) {
+            return null;
+        }
+
+        Region best = null;
+        Region[] cell = index.cells.get(LongHashMap.pack(x >> 4, z >> 4));
+        if (cell != null) {
+            for (Region region : cell) {
+                if (region.contains(x, y, z)) {
+                    best = region;
+                    break;
+                }
+            }
+        }
+
+        // Large regions are sorted as well, so only one can beat the cell result
+        for (Region region : index.large) {
+            if (best != null && region.getVolume() >= best.getVolume()) {
+                break;
+            }
+            if (region.contains(x, y, z)) {
+                best = region;
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets all regions containing a block position, smallest first.
+     */
+    public List<Region> getRegionsAt(String worldName, int x, int y, int z) {
+        WorldIndex index = worlds.get(worldName);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+
+        List<Region> regions = new ArrayList<>();
+        Region[] cell = index.cells.get(LongHashMap.pack(x >> 4, z >> 4));
+        if (cell != null) {
+            for (Region region : cell) {
+                if (region.contains(x, y, z)) {
+                    regions.add(region);
+                }
+            }
+        }
+
+        int indexed = regions.size();
+        for (Region region : index.large) {
+            if (region.contains(x, y, z)) {
+                regions.add(region);
+            }
+        }
+        if (indexed > 0 && regions.size() > indexed) {
+            regions.sort(PRIORITY);
+        }
+        return regions;
+    }
+
+    /**
+     * Gets every region overlapping a chunk, smallest first.
+     * Used to precompute per-chunk decisions; the regions still have to be
+     * tested against the exact block position.
+     */
+    public Region[] getRegionsInChunk(String worldName, int chunkX, int chunkZ) {
+        WorldIndex index = worlds.get(worldName);
+        if (index == null) {
+            return EMPTY;
+        }
+
+        Region[] cell = index.cells.get(LongHashMap.pack(chunkX, chunkZ));
+        List<Region> regions = new ArrayList<>();
+        if (cell != null) {
+            Collections.addAll(regions, cell);
+        }
+        for (Region region : index.large) {
+            if (chunkX >= region.getMinChunkX() && chunkX <= region.getMaxChunkX()
+                    && chunkZ >= region.getMinChunkZ() && chunkZ <= region.getMaxChunkZ()) {
+                regions.add(region);
+            }
+        }
+        if (cell != null && regions.size() > cell.length) {
+            regions.sort(PRIORITY);
+        }
+        return regions.toArray(EMPTY);
+    }
+
+    /**
+     * Immutable index of one world.
+     */
+    private static class WorldIndex {
+        final LongHashMap<Region[]> cells;
+        final Region[] large;
+
+        WorldIndex(Collection<Region> regions) {
+            List<Region> sorted = new ArrayList<>(regions);
+            sorted.sort(PRIORITY);
+
+            Map<Long, List<Region>> building = new HashMap<>();
+            List<Region> largeRegions = new ArrayList<>();
+            for (Region region : sorted) {
+                long width = (long) region.getMaxChunkX() - region.getMinChunkX() + 1;
+                long length = (long) region.getMaxChunkZ() - region.getMinChunkZ() + 1;
+                if (width <= 0 || length <= 0) {
+                    continue;
+                }
+                if (width * length > MAX_INDEXED_CHUNKS) {
+                    largeRegions.add(region);
+                    continue;
+                }
+                for (int cx = region.getMinChunkX(); cx <= region.getMaxChunkX(); cx++) {
+                    for (int cz = region.getMinChunkZ(); cz <= region.getMaxChunkZ(); cz++) {
+                        building.computeIfAbsent(LongHashMap.pack(cx, cz), k -> new ArrayList<>(2)).add(region);
+                    }
+                }
+            }
+
+            // Regions were added in priority order, so every cell is already sorted
+            this.cells = new LongHashMap<>(building.size());
+            for (Map.Entry<Long, List<Region>> entry : building.entrySet()) {
+                cells.put(entry.getKey(), entry.getValue().toArray(EMPTY));
+            }
+            this.large = largeRegions.toArray(EMPTY);
+        }
+    }
+}
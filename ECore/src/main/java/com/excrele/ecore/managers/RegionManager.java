@@ -23,6 +23,9 @@ public class RegionManager {
     private final Ecore plugin;
     private final Map<String, Map<String, Region>> regionsByWorld; // world name -> region name -> region
     private final Map<String, RegionType> regionTypes;
+    private final RegionIndex regionIndex;
+    private final RegionAccessCache accessCache;
+    private volatile int version; // bumped whenever regions, owners, members or flags change
     private File regionsFile;
     private FileConfiguration regionsConfig;
     
@@ -35,7 +38,25 @@ public class RegionManager {
         this.plugin = plugin;
         this.regionsByWorld = new HashMap<>();
         this.regionTypes = RegionType.createDefaultTypes();
+        this.regionIndex = new RegionIndex();
+        this.accessCache = new RegionAccessCache(this);
         initializeRegionsFile();
+        plugin.getExpiryManager().registerHandler("rent", new ExpiryManager.Handler() {
+            @Override
+            public void expire(String id) {
+                int separator = id.indexOf('/');
+                Map<String, Region> worldRegions = regionsByWorld.get(id.substring(0, separator));
+                Region region = worldRegions != null ? worldRegions.get(id.substring(separator + 1)) : null;
+                if (region != null) {
+                    endRent(region);
+                }
+            }
+
+            @Override
+            public void afterExpiry() {
+                saveRegions();
+            }
+        });
         loadRegions();
     }
     
@@ -59,6 +80,8 @@ public class RegionManager {
      */
     public void loadRegions() {
         regionsByWorld.clear();
+        regionIndex.clear();
+        version++;
         
         if (!regionsConfig.contains("regions")) {
             return;
@@ -150,6 +173,7 @@ public class RegionManager {
                             UUID renter = UUID.fromString(regionsConfig.getString(path + ".renter"));
                             region.setRenter(renter);
                             region.setRentExpires(regionsConfig.getLong(path + ".rent-expires", 0L));
+                            scheduleRentExpiry(region);
                         } catch (IllegalArgumentException e) {
                             plugin.getLogger().warning("Invalid renter UUID in region '" + regionName + "'");
                         }
@@ -162,6 +186,7 @@ public class RegionManager {
             }
             
             regionsByWorld.put(worldName, worldRegions);
+            regionIndex.rebuild(worldName, worldRegions.values());
         }
         
         plugin.getLogger().info("Loaded " + getTotalRegionCount() + " regions from " + regionsByWorld.size() + " worlds.");
@@ -171,6 +196,8 @@ public class RegionManager {
      * Saves all regions to the configuration file.
      */
     public void saveRegions() {
+        // Every change to a region is followed by a save, so cached decisions are invalidated here
+        version++;
         regionsConfig.set("regions", null);
         
         for (Map.Entry<String, Map<String, Region>> worldEntry : regionsByWorld.entrySet()) {
@@ -262,6 +289,7 @@ public class RegionManager {
         
         Region region = new Region(name, world, min, max, flags, new HashSet<>(), new HashSet<>(), regionType, creator);
         worldRegions.put(name, region);
+        regionIndex.rebuild(world.getName(), worldRegions.values());
         saveRegions();
         
         return region;
@@ -281,9 +309,11 @@ public class RegionManager {
         }
         
         if (worldRegions.remove(name) != null) {
+            plugin.getExpiryManager().cancel("rent", world.getName() + "/" + name);
             if (worldRegions.isEmpty()) {
                 regionsByWorld.remove(world.getName());
             }
+            regionIndex.rebuild(world.getName(), worldRegions.values());
             saveRegions();
             return true;
         }
@@ -327,18 +357,8 @@ public class RegionManager {
      * @return A list of regions containing the location (ordered by priority)
      */
     public List<Region> getRegionsAt(Location location) {
-        List<Region> regions = new ArrayList<>();
-        Map<String, Region> worldRegions = regionsByWorld.get(location.getWorld().getName());
-        
-        if (worldRegions != null) {
-            for (Region region : worldRegions.values()) {
-                if (region.contains(location)) {
-                    regions.add(region);
-                }
-            }
-        }
-        
-        return regions;
+        return regionIndex.getRegionsAt(location.getWorld().getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
     
     /**
@@ -348,14 +368,8 @@ public class RegionManager {
      * @return The most specific region, or null if none found
      */
     public Region getRegionAt(Location location) {
-        List<Region> regions = getRegionsAt(location);
-        if (regions.isEmpty()) {
-            return null;
-        }
-        
-        // Return the smallest region (most specific)
-        regions.sort(Comparator.comparingInt(Region::getVolume));
-        return regions.get(0);
+        return regionIndex.getRegionAt(location.getWorld().getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
     
     /**
@@ -367,24 +381,38 @@ public class RegionManager {
      * @return true if the action is allowed
      */
     public boolean canPerformAction(Player player, Location location, RegionFlag flag) {
-        // Staff with bypass permission can always perform actions
-        if (player.hasPermission("ecore.region.bypass")) {
-            return true;
-        }
-        
-        Region region = getRegionAt(location);
-        if (region == null) {
-            return true; // No region, allow action
-        }
-        
-        // Owners and members can always perform actions in their regions
-        if (region.isOwner(player.getUniqueId()) || region.isMember(player.getUniqueId())) {
-            return true;
-        }
-        
-        // Check the flag
-        Boolean flagValue = region.getFlag(flag);
-        return flagValue == null || flagValue; // Default to allow if not set
+        long profile = plugin.getProfilingManager().start();
+        boolean allowed = accessCache.canPerformAction(player, location, flag);
+        plugin.getProfilingManager().stop("RegionManager.canPerformAction", profile);
+        return allowed;
+    }
+    
+    /**
+     * Drops the cached protection decisions of a player.
+     * Called when the player crosses a chunk boundary or their permissions change.
+     * 
+     * @param uuid The player's UUID
+     */
+    public void invalidateAccessCache(UUID uuid) {
+        accessCache.invalidate(uuid);
+    }
+    
+    /**
+     * Gets the current region version, which changes whenever any region is modified.
+     * 
+     * @return The region version
+     */
+    int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Gets the spatial index of all regions.
+     * 
+     * @return The region index
+     */
+    RegionIndex getRegionIndex() {
+        return regionIndex;
     }
     
     /**
@@ -571,11 +599,37 @@ public class RegionManager {
         plugin.getEconomyManager().removeBalance(player.getUniqueId(), price);
         
         region.setRenter(player.getUniqueId());
+        scheduleRentExpiry(region);
         saveRegions();
         
         player.sendMessage("§aYou rented the region '" + region.getName() + "' for " + 
                 String.format("%.2f", price));
         return true;
     }
+    
+    /**
+     * Schedules the end of a region's rent with the expiry manager.
+     * 
+     * @param region The rented region
+     */
+    private void scheduleRentExpiry(Region region) {
+        plugin.getExpiryManager().schedule("rent", region.getWorld().getName() + "/" + region.getName(), region.getRentExpires());
+    }
+    
+    /**
+     * Ends a rent whose time is up, freeing the region for the next renter.
+     * 
+     * @param region The rented region
+     */
+    private void endRent(Region region) {
+        UUID renter = region.getRenter();
+        if (renter == null || region.isRented()) {
+            return; // Already ended, or rented again since
+        }
+        region.setRenter(null);
+        Player player = plugin.getServer().getPlayer(renter);
+        if (player != null) {
+            player.sendMessage("§eYour rent of the region '" + region.getName() + "' has expired.");
+        }
+    }
 }
-
@@ -1,7 +1,7 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
-import me.clip.placeholderapi.PlaceholderAPI;
+import com.excrele.ecore.placeholders.PlaceholderEngine;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -15,17 +15,21 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages custom scoreboards for players.
+ * Each player's last rendered frame is cached, so a refresh only sends the title
+ * and lines whose text actually changed.
  */
 public class ScoreboardManager {
     private final Ecore plugin;
     private File scoreboardFile;
     private FileConfiguration scoreboardConfig;
     private final java.util.Map<UUID, Scoreboard> playerScoreboards;
+    private final java.util.Map<UUID, RenderState> renderStates; // Last frame sent to each player
     private int updateTaskId;
 
     public ScoreboardManager(Ecore plugin) {
         this.plugin = plugin;
         this.playerScoreboards = new ConcurrentHashMap<>();
+        this.renderStates = new ConcurrentHashMap<>();
         initializeScoreboardConfig();
         startScoreboardUpdates();
     }
@@ -49,59 +53,80 @@ public class ScoreboardManager {
         Objective objective = scoreboard.registerNewObjective("ecore", Criteria.DUMMY, getTitle(player));
         objective.setDisplaySlot(DisplaySlot.SIDEBAR);
 
+        // New scoreboard, so nothing has been rendered to it yet
+        renderStates.put(player.getUniqueId(), new RenderState());
         updateScoreboard(player, scoreboard, objective);
         player.setScoreboard(scoreboard);
         playerScoreboards.put(player.getUniqueId(), scoreboard);
     }
 
     /**
-     * Updates a player's scoreboard.
+     * Updates a player's scoreboard, sending only what differs from the last frame.
      */
     public void updateScoreboard(Player player, Scoreboard scoreboard, Objective objective) {
         if (objective == null) return;
+        RenderState state = renderStates.computeIfAbsent(player.getUniqueId(), uuid -> new RenderState());
 
         // Update title in case player changed world or group
-        String newTitle = getTitle(player);
-        objective.setDisplayName(newTitle);
+        PlaceholderEngine placeholders = plugin.getPlaceholderEngine();
+        String newTitle = placeholders.render(getTitle(player), player);
+        if (!newTitle.equals(state.title)) {
+            objective.setDisplayName(newTitle);
+            state.title = newTitle;
+        }
 
         List<String> lines = getScoreboardLines(player);
-        
-        // Clear existing lines
-        for (String entry : scoreboard.getEntries()) {
-            scoreboard.resetScores(entry);
-        }
 
         // Check if scores should be displayed
         boolean showScores = scoreboardConfig.getBoolean("show-scores", true);
-        
-        // Add new lines (in reverse order for scoreboard)
+
+        // Render lines (in reverse order for scoreboard)
+        java.util.Map<Integer, String> frame = new java.util.HashMap<>();
         int score = lines.size();
         for (String line : lines) {
             if (line == null || line.isEmpty()) continue;
-            
-            String processedLine = processPlaceholders(player, line);
+
+            String processedLine = placeholders.render(line, player);
             if (processedLine.length() > 40) {
                 processedLine = processedLine.substring(0, 40);
             }
-            
-            Team team = scoreboard.getTeam("line" + score);
+            frame.put(score, processedLine);
+            score--;
+        }
+
+        // Send lines that are new or changed
+        for (java.util.Map.Entry<Integer, String> line : frame.entrySet()) {
+            int lineScore = line.getKey();
+            String previous = state.lines.get(lineScore);
+            if (line.getValue().equals(previous)) {
+                continue;
+            }
+
+            Team team = scoreboard.getTeam("line" + lineScore);
             if (team == null) {
-                team = scoreboard.registerNewTeam("line" + score);
+                team = scoreboard.registerNewTeam("line" + lineScore);
             }
-            
-            String entry = getEntryForScore(score);
-            team.addEntry(entry);
-            team.setPrefix(processedLine);
-            
-            // Set score based on configuration
-            if (showScores) {
-                objective.getScore(entry).setScore(score);
-            } else {
-                // Set all scores to 0 to make them less noticeable
-                objective.getScore(entry).setScore(0);
+            String entry = getEntryForScore(lineScore);
+            if (previous == null) {
+                team.addEntry(entry);
+                // Set score based on configuration
+                if (showScores) {
+                    objective.getScore(entry).setScore(lineScore);
+                } else {
+                    // Set all scores to 0 to make them less noticeable
+                    objective.getScore(entry).setScore(0);
+                }
             }
-            score--;
+            team.setPrefix(line.getValue());
         }
+
+        // Remove lines that are no longer shown
+        for (Integer oldScore : state.lines.keySet()) {
+            if (!frame.containsKey(oldScore)) {
+                scoreboard.resetScores(getEntryForScore(oldScore));
+            }
+        }
+        state.lines = frame;
     }
 
     /**
@@ -109,6 +134,7 @@ public class ScoreboardManager {
      */
     public void removeScoreboard(Player player) {
         playerScoreboards.remove(player.getUniqueId());
+        renderStates.remove(player.getUniqueId());
         player.setScoreboard(Bukkit.getScoreboardManager().getMainScoreboard());
     }
 
@@ -141,20 +167,27 @@ public class ScoreboardManager {
         int interval = scoreboardConfig.getInt("update-interval", 20); // Default: 1 second
         
         updateTaskId = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (!playerScoreboards.containsKey(player.getUniqueId())) continue;
+            java.util.Iterator<java.util.Map.Entry<UUID, Scoreboard>> iterator = playerScoreboards.entrySet().iterator();
+            while (iterator.hasNext()) {
+                java.util.Map.Entry<UUID, Scoreboard> entry = iterator.next();
+                Player player = Bukkit.getPlayer(entry.getKey());
+                if (player == null) {
+                    // Player left, drop their scoreboard and cached frame
+                    iterator.remove();
+                    renderStates.remove(entry.getKey());
+                    continue;
+                }
                 
-                Scoreboard scoreboard = playerScoreboards.get(player.getUniqueId());
-                Objective objective = scoreboard.getObjective("ecore");
+                Objective objective = entry.getValue().getObjective("ecore");
                 if (objective != null) {
-                    updateScoreboard(player, scoreboard, objective);
+                    updateScoreboard(player, entry.getValue(), objective);
                 }
             }
         }, 0L, interval).getTaskId();
     }
 
     /**
-     * Gets the scoreboard title for a player.
+     * Gets the raw scoreboard title for a player.
      */
     private String getTitle(Player player) {
         // Check per-group first (higher priority)
@@ -162,7 +195,7 @@ public class ScoreboardManager {
             String group = plugin.getLuckPermsIntegration().getPrimaryGroup(player);
             String groupTitle = scoreboardConfig.getString("per-group.groups." + group + ".title");
             if (groupTitle != null && !groupTitle.isEmpty()) {
-                return processColorCodes(groupTitle);
+                return groupTitle;
             }
         }
         
@@ -171,13 +204,12 @@ public class ScoreboardManager {
             String worldName = player.getWorld().getName();
             String worldTitle = scoreboardConfig.getString("per-world.worlds." + worldName + ".title");
             if (worldTitle != null && !worldTitle.isEmpty()) {
-                return processColorCodes(worldTitle);
+                return worldTitle;
             }
         }
         
         // Default global title
-        String title = scoreboardConfig.getString("title", "§6§lYour Server");
-        return processColorCodes(title);
+        return scoreboardConfig.getString("title", "§6§lYour Server");
     }
 
     /**
@@ -229,81 +261,13 @@ public class ScoreboardManager {
     }
 
     /**
-     * Processes placeholders in a string.
+     * The title and line texts last sent to a player, keyed by score.
      */
-    private String processPlaceholders(Player player, String text) {
-        text = processColorCodes(text);
-        
-        // Get values once
-        double balance = plugin.getEconomyManager().getBalance(player.getUniqueId());
-        int homes = plugin.getHomeManager().getPlayerHomes(player).size();
-        int maxHomes = plugin.getConfigManager().getMaxHomes();
-        int kills = plugin.getStatisticsManager().getStatistic(player, "kills");
-        int deaths = plugin.getStatisticsManager().getStatistic(player, "deaths");
-        double kdr = deaths > 0 ? (double) kills / deaths : (kills > 0 ? kills : 0.0);
-        int online = Bukkit.getOnlinePlayers().size();
-        int maxPlayers = Bukkit.getMaxPlayers();
-        
-        // Replace basic ECore placeholders (backwards compatibility)
-        text = text.replace("%player%", player.getName());
-        text = text.replace("%balance%", String.format("%.2f", balance));
-        text = text.replace("%homes%", String.valueOf(homes));
-        text = text.replace("%kills%", String.valueOf(kills));
-        text = text.replace("%deaths%", String.valueOf(deaths));
-        text = text.replace("%online%", String.valueOf(online));
-        text = text.replace("%max%", String.valueOf(maxPlayers));
-        
-        // Replace PlaceholderAPI format placeholders (fallback if PlaceholderAPI not available)
-        text = text.replace("%ecore_balance%", String.format("%.2f", balance));
-        text = text.replace("%ecore_homes%", String.valueOf(homes));
-        text = text.replace("%ecore_max_homes%", String.valueOf(maxHomes));
-        text = text.replace("%ecore_kills%", String.valueOf(kills));
-        text = text.replace("%ecore_deaths%", String.valueOf(deaths));
-        text = text.replace("%ecore_kdr%", String.format("%.2f", kdr));
-        text = text.replace("%ecore_playtime%", formatPlaytime(plugin.getStatisticsManager().getStatistic(player, "playtime-seconds")));
-        text = text.replace("%ecore_achievements%", plugin.getAchievementManager() != null ? 
-            String.valueOf(plugin.getAchievementManager().getPlayerAchievements(player).size()) : "0");
-        text = text.replace("%ecore_distance%", formatDistance(plugin.getStatisticsManager().getStatisticDouble(player, "distance-traveled")));
-        text = text.replace("%ecore_items_crafted%", String.valueOf(plugin.getStatisticsManager().getStatistic(player, "items-crafted")));
-        text = text.replace("%ecore_mail_count%", String.valueOf(plugin.getMailManager().getMailCount(player)));
-        
-        // PlaceholderAPI support (will override any %ecore_* placeholders if PlaceholderAPI is installed)
-        if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            text = PlaceholderAPI.setPlaceholders(player, text);
-        }
-        
-        return text;
-    }
-    
-    /**
-     * Formats playtime in seconds to a readable format.
-     */
-    private String formatPlaytime(long seconds) {
-        if (seconds == 0) {
-            return "0h 0m";
-        }
-        long hours = seconds / 3600;
-        long minutes = (seconds % 3600) / 60;
-        return hours + "h " + minutes + "m";
+    private static class RenderState {
+        String title;
+        java.util.Map<Integer, String> lines = new java.util.HashMap<>();
     }
     
-    /**
-     * Formats distance to a readable format.
-     */
-    private String formatDistance(double distance) {
-        if (distance >= 1000) {
-            return String.format("%.2f", distance / 1000) + "km";
-        }
-        return String.format("%.2f", distance) + "m";
-    }
-
-    /**
-     * Processes color codes.
-     */
-    private String processColorCodes(String text) {
-        return text.replace("&", "§");
-    }
-
     /**
      * Gets a unique entry for a score.
      */
@@ -13,6 +13,7 @@ import java.util.List;
 /**
  * Manages server information and performance metrics including:
  * - TPS (Ticks Per Second) monitoring
+ * - Tick duration percentiles over 1, 5 and 15 minutes
  * - Memory usage tracking
  * - Server uptime calculation
  * - Performance statistics
@@ -22,15 +23,14 @@ import java.util.List;
  */
 public class ServerInfoManager {
     private final Ecore plugin;
-    private final List<Long> tickTimes;
-    private final int maxSamples = 100; // Track last 100 ticks for TPS calculation
+    private final TickTimeSampler tickSampler;
     private long lastTickTime;
     private final DecimalFormat df = new DecimalFormat("#.##");
 
     public ServerInfoManager(Ecore plugin) {
         this.plugin = plugin;
-        this.tickTimes = new ArrayList<>();
-        this.lastTickTime = System.currentTimeMillis();
+        this.tickSampler = new TickTimeSampler();
+        this.lastTickTime = System.nanoTime();
         
         // Start TPS monitoring task
         startTPSMonitoring();
@@ -39,14 +39,9 @@ public class ServerInfoManager {
     private void startTPSMonitoring() {
         // Run every tick to monitor TPS
         Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            long currentTime = System.currentTimeMillis();
-            long tickTime = currentTime - lastTickTime;
+            long currentTime = System.nanoTime();
+            tickSampler.record(currentTime - lastTickTime);
             lastTickTime = currentTime;
-            
-            tickTimes.add(tickTime);
-            if (tickTimes.size() > maxSamples) {
-                tickTimes.remove(0);
-            }
         }, 0L, 1L);
     }
 
@@ -56,24 +51,52 @@ public class ServerInfoManager {
      * @return Current TPS value (should be around 20.0 for a healthy server)
      */
     public double getTPS() {
-        if (tickTimes.isEmpty()) {
-            return 20.0; // Default TPS
-        }
-        
-        long totalTime = 0;
-        for (Long tickTime : tickTimes) {
-            totalTime += tickTime;
-        }
-        
-        if (totalTime == 0) {
-            return 20.0;
+        return tickSampler.getTPS();
+    }
+
+    /**
+     * Gets the tick duration sampler.
+     * 
+     * @return The sampler holding tick duration percentiles
+     */
+    public TickTimeSampler getTickSampler() {
+        return tickSampler;
+    }
+
+    /**
+     * Gets tick duration percentiles for a window formatted with color coding.
+     * A tick takes 50ms on a healthy server; longer ticks lower the TPS.
+     * 
+     * @param window The window
+     * @return Formatted string (e.g., "p50 50.1ms p95 51.2ms p99 55ms max 120ms")
+     */
+    public String getTickTimesFormatted(TickTimeSampler.Window window) {
+        return getTickTimesFormatted(tickSampler.summarize(window));
+    }
+
+    /**
+     * Formats tick duration percentiles with color coding.
+     * 
+     * @param summary The percentiles to format
+     * @return Formatted string
+     */
+    public String getTickTimesFormatted(TickTimeSampler.Summary summary) {
+        return "§7p50 " + formatTickTime(summary.p50) + " §7p95 " + formatTickTime(summary.p95)
+            + " §7p99 " + formatTickTime(summary.p99) + " §7max " + formatTickTime(summary.max);
+    }
+
+    private String formatTickTime(double millis) {
+        String color;
+        if (millis <= 55.0) {
+            color = "§a"; // Green - On time
+        } else if (millis <= 75.0) {
+            color = "§e"; // Yellow - Slightly late
+        } else if (millis <= 150.0) {
+            color = "§6"; // Orange - Lag spike
+        } else {
+            color = "§c"; // Red - Severe spike
         }
-        
-        double averageTickTime = (double) totalTime / tickTimes.size();
-        double tps = 1000.0 / averageTickTime;
-        
-        // Cap TPS at 20 (Minecraft's max)
-        return Math.min(20.0, tps);
+        return color + df.format(millis) + "ms";
     }
 
     /**
@@ -2,16 +2,24 @@ package com.excrele.ecore.managers;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
@@ -19,79 +27,232 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.inventory.CraftItemEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerExpChangeEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
 
 import com.excrele.ecore.Ecore;
 
 public class StatisticsManager implements Listener {
     private final Ecore plugin;
-    private File statsFile;
-    private FileConfiguration statsConfig;
+    private final File statsFolder; // One <uuid>.yml per player
+    private final Map<UUID, PlayerStatistics> records; // Loaded players, plus offline players with pending changes
+    private final Set<UUID> onlinePlayers;
     private final Map<UUID, Location> lastLocations; // For distance tracking
-    private final Map<UUID, Double> totalDistance; // Cached distance per player
+    private BukkitTask flushTask;
 
     public StatisticsManager(Ecore plugin) {
         this.plugin = plugin;
-        this.lastLocations = new HashMap<>();
-        this.totalDistance = new HashMap<>();
-        initializeStatsConfig();
+        this.statsFolder = new File(plugin.getDataFolder(), "statistics");
+        this.records = new ConcurrentHashMap<>();
+        this.onlinePlayers = ConcurrentHashMap.newKeySet();
+        this.lastLocations = new ConcurrentHashMap<>();
+        if (!statsFolder.exists()) {
+            statsFolder.mkdirs();
+        }
+        migrateLegacyFile();
+
+        // Players already online after a reload
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            onlinePlayers.add(player.getUniqueId());
+            getRecord(player.getUniqueId());
+            lastLocations.put(player.getUniqueId(), player.getLocation());
+        }
+
+        long interval = Math.max(1L, plugin.getConfigManager().getConfig().getLong("statistics.flush-interval-seconds", 60L)) * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flushDirty, interval, interval);
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
-    private void initializeStatsConfig() {
-        statsFile = new File(plugin.getDataFolder(), "statistics.yml");
-        if (!statsFile.exists()) {
+    /**
+     * Splits the old single statistics.yml into per-player files.
+     */
+    private void migrateLegacyFile() {
+        File legacyFile = new File(plugin.getDataFolder(), "statistics.yml");
+        if (!legacyFile.exists()) {
+            return;
+        }
+        FileConfiguration legacy = YamlConfiguration.loadConfiguration(legacyFile);
+        ConfigurationSection players = legacy.getConfigurationSection("players");
+        int migrated = 0;
+        if (players != null) {
+            for (String key : players.getKeys(false)) {
+                ConfigurationSection section = players.getConfigurationSection(key);
+                if (section == null) {
+                    continue;
+                }
+                try {
+                    PlayerStatistics record = new PlayerStatistics(UUID.fromString(key));
+                    for (String stat : section.getKeys(false)) {
+                        record.set(stat, section.getDouble(stat));
+                    }
+                    save(record);
+                    migrated++;
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Skipping statistics for invalid UUID: " + key);
+                }
+            }
+        }
+        if (legacyFile.renameTo(new File(plugin.getDataFolder(), "statistics.yml.migrated"))) {
+            plugin.getLogger().info("Migrated statistics of " + migrated + " players to the statistics folder");
+        }
+    }
+
+    /**
+     * Gets a player's record, loading it from disk if needed.
+     *
+     * @param uuid The player's UUID
+     * @return The record
+     */
+    private PlayerStatistics getRecord(UUID uuid) {
+        return records.computeIfAbsent(uuid, this::loadRecord);
+    }
+
+    /**
+     * Applies a change to a player's record, loading it if needed. The change is made
+     * inside the map's compute, so the async flush can never evict the record between
+     * the lookup and the change.
+     */
+    private void update(UUID uuid, Consumer<PlayerStatistics> change) {
+        records.compute(uuid, (key, record) -> {
+            PlayerStatistics target = record != null ? record : loadRecord(key);
+            change.accept(target);
+            return target;
+        });
+    }
+
+    /**
+     * Applies a change to the record of a player who may be offline. A record that is not
+     * loaded is read and changed off the main thread instead of blocking it on the file.
+     */
+    private void updateOffline(UUID uuid, Consumer<PlayerStatistics> change) {
+        if (records.containsKey(uuid) || !plugin.getServer().isPrimaryThread() || !plugin.isEnabled()) {
+            update(uuid, change);
+        } else {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> update(uuid, change));
+        }
+    }
+
+    private PlayerStatistics loadRecord(UUID uuid) {
+        PlayerStatistics record = new PlayerStatistics(uuid);
+        File file = new File(statsFolder, uuid.toString() + ".yml");
+        if (file.exists()) {
+            FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+            for (String stat : config.getKeys(false)) {
+                record.load(stat, config.getDouble(stat));
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Writes a record to its file if it has unsaved changes.
+     * Safe to call from any thread.
+     */
+    private void save(PlayerStatistics record) {
+        synchronized (record.getWriteLock()) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            long version = record.snapshot(values);
+            if (version <= record.getSavedVersion()) {
+                return; // A newer snapshot was already written
+            }
+
+            YamlConfiguration config = new YamlConfiguration();
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                config.set(entry.getKey(), entry.getValue());
+            }
+            File file = new File(statsFolder, record.getUuid().toString() + ".yml");
+            File tmp = new File(statsFolder, record.getUuid().toString() + ".yml.tmp");
             try {
-                statsFile.createNewFile();
+                Files.write(tmp.toPath(), config.saveToString().getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                record.markSaved(version);
             } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to create statistics.yml", e);
+                plugin.getLogger().log(Level.WARNING, "Failed to save statistics for " + record.getUuid() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Saves every dirty record and drops records of players who are no longer online.
+     * Runs on an async timer.
+     */
+    private void flushDirty() {
+        long profile = plugin.getProfilingManager().start();
+        for (PlayerStatistics record : records.values()) {
+            if (record.isDirty()) {
+                save(record);
+            }
+            evictIfOffline(record.getUuid());
+        }
+        plugin.getProfilingManager().stop("StatisticsManager.flush", profile);
+    }
+
+    private void evictIfOffline(UUID uuid) {
+        records.computeIfPresent(uuid, (key, record) ->
+            onlinePlayers.contains(key) || record.isDirty() ? record : null);
+    }
+
+    /**
+     * Saves all dirty records on the calling thread. Called on plugin disable.
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        for (PlayerStatistics record : records.values()) {
+            if (record.isDirty()) {
+                save(record);
             }
         }
-        statsConfig = YamlConfiguration.loadConfiguration(statsFile);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        // Load off the main thread so the join does not wait on disk
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            getRecord(event.getUniqueId());
+        }
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
-        String path = "players." + uuid.toString();
-        if (!statsConfig.contains(path + ".joins")) {
-            statsConfig.set(path + ".joins", 0);
-        }
-        statsConfig.set(path + ".joins", statsConfig.getInt(path + ".joins") + 1);
-        
+        onlinePlayers.add(uuid);
+        update(uuid, record -> record.add(PlayerStatistics.JOINS, 1));
+
         // Initialize last location for distance tracking
         lastLocations.put(uuid, player.getLocation());
-        
-        // Initialize distance if not set
-        if (!statsConfig.contains(path + ".distance-traveled")) {
-            statsConfig.set(path + ".distance-traveled", 0.0);
-        }
-        
-        saveStats();
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         // Send Discord leave notification
         plugin.getDiscordManager().sendPlayerLeaveNotification(event.getPlayer());
-        // Save distance on quit
         UUID uuid = event.getPlayer().getUniqueId();
+        onlinePlayers.remove(uuid);
         lastLocations.remove(uuid);
-        totalDistance.remove(uuid);
+
+        // Save in the background, then drop the record unless the player came back
+        PlayerStatistics record = records.get(uuid);
+        if (record != null) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                save(record);
+                evictIfOffline(uuid);
+            });
+        }
     }
 
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
         Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
-        String path = "players." + uuid.toString() + ".blocks-broken";
-        statsConfig.set(path, statsConfig.getInt(path, 0) + 1);
-        saveStats();
-        
+        update(player.getUniqueId(), record -> record.add(PlayerStatistics.BLOCKS_BROKEN, 1));
+
         // Check achievements
         if (plugin.getAchievementManager() != null) {
             plugin.getAchievementManager().checkAchievements(player);
@@ -100,11 +261,7 @@ public class StatisticsManager implements Listener {
 
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent event) {
-        Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
-        String path = "players." + uuid.toString() + ".blocks-placed";
-        statsConfig.set(path, statsConfig.getInt(path, 0) + 1);
-        saveStats();
+        update(event.getPlayer().getUniqueId(), record -> record.add(PlayerStatistics.BLOCKS_PLACED, 1));
     }
 
     @EventHandler
@@ -113,28 +270,17 @@ public class StatisticsManager implements Listener {
         UUID uuid = player.getUniqueId();
         Location currentLoc = event.getTo();
         Location lastLoc = lastLocations.get(uuid);
-        
+
         if (lastLoc != null && currentLoc != null && currentLoc.getWorld() == lastLoc.getWorld()) {
             // Only track if player actually moved (not just looked around)
-            if (currentLoc.getBlockX() != lastLoc.getBlockX() || 
-                currentLoc.getBlockY() != lastLoc.getBlockY() || 
-                currentLoc.getBlockZ() != lastLoc.getBlockZ()) {
-                
-                double distance = lastLoc.distance(currentLoc);
-                String path = "players." + uuid.toString() + ".distance-traveled";
-                double totalDist = statsConfig.getDouble(path, 0.0) + distance;
-                statsConfig.set(path, totalDist);
-                
-                // Update cached distance
-                totalDistance.put(uuid, totalDist);
-                
-                // Save periodically (every 100 blocks to reduce file writes)
-                if (totalDist % 100 < distance) {
-                    saveStats();
-                }
+            if (currentLoc.getBlockX() == lastLoc.getBlockX() &&
+                currentLoc.getBlockY() == lastLoc.getBlockY() &&
+                currentLoc.getBlockZ() == lastLoc.getBlockZ()) {
+                return;
             }
+            update(uuid, record -> record.add(PlayerStatistics.DISTANCE_TRAVELED, lastLoc.distance(currentLoc)));
         }
-        
+
         lastLocations.put(uuid, currentLoc);
     }
 
@@ -142,23 +288,16 @@ public class StatisticsManager implements Listener {
     public void onCraftItem(CraftItemEvent event) {
         if (event.getWhoClicked() instanceof Player) {
             Player player = (Player) event.getWhoClicked();
-            UUID uuid = player.getUniqueId();
-            String path = "players." + uuid.toString() + ".items-crafted";
             int amount = event.getRecipe().getResult().getAmount();
-            statsConfig.set(path, statsConfig.getInt(path, 0) + amount);
-            saveStats();
+            update(player.getUniqueId(), record -> record.add(PlayerStatistics.ITEMS_CRAFTED, amount));
         }
     }
 
     @EventHandler
     public void onPlayerExpChange(PlayerExpChangeEvent event) {
-        Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
         int expGained = event.getAmount();
         if (expGained > 0) {
-            String path = "players." + uuid.toString() + ".experience-gained";
-            statsConfig.set(path, statsConfig.getInt(path, 0) + expGained);
-            saveStats();
+            update(event.getPlayer().getUniqueId(), record -> record.add(PlayerStatistics.EXPERIENCE_GAINED, expGained));
         }
     }
 
@@ -166,12 +305,7 @@ public class StatisticsManager implements Listener {
     public void onEntityDamage(EntityDamageEvent event) {
         if (event.getEntity() instanceof Player) {
             Player player = (Player) event.getEntity();
-            UUID uuid = player.getUniqueId();
-            double damage = event.getFinalDamage();
-            
-            String path = "players." + uuid.toString() + ".damage-taken";
-            statsConfig.set(path, statsConfig.getDouble(path, 0.0) + damage);
-            saveStats();
+            update(player.getUniqueId(), record -> record.add(PlayerStatistics.DAMAGE_TAKEN, event.getFinalDamage()));
         }
     }
 
@@ -179,82 +313,52 @@ public class StatisticsManager implements Listener {
     public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
         if (event.getDamager() instanceof Player && event.getEntity() instanceof Player) {
             Player attacker = (Player) event.getDamager();
-            UUID uuid = attacker.getUniqueId();
-            double damage = event.getFinalDamage();
-            
-            String path = "players." + uuid.toString() + ".damage-dealt";
-            statsConfig.set(path, statsConfig.getDouble(path, 0.0) + damage);
-            saveStats();
+            update(attacker.getUniqueId(), record -> record.add(PlayerStatistics.DAMAGE_DEALT, event.getFinalDamage()));
         }
     }
 
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player player = event.getEntity();
-        UUID uuid = player.getUniqueId();
-        String path = "players." + uuid.toString() + ".deaths";
-        statsConfig.set(path, statsConfig.getInt(path, 0) + 1);
-        
+        update(player.getUniqueId(), record -> record.add(PlayerStatistics.DEATHS, 1));
+
         // Save death location for /back command
         plugin.getTeleportManager().saveDeathLocation(player);
-        
+
         Player killer = event.getEntity().getKiller();
         if (killer != null) {
-            UUID killerUuid = killer.getUniqueId();
-            String killPath = "players." + killerUuid.toString() + ".kills";
-            statsConfig.set(killPath, statsConfig.getInt(killPath, 0) + 1);
-            
+            update(killer.getUniqueId(), record -> record.add(PlayerStatistics.KILLS, 1));
+
             // Check achievements for killer
             if (plugin.getAchievementManager() != null) {
                 plugin.getAchievementManager().checkAchievements(killer);
             }
         }
-        
-        saveStats();
     }
 
     public int getStatistic(Player player, String stat) {
-        String path = "players." + player.getUniqueId().toString() + "." + stat;
-        return statsConfig.getInt(path, 0);
+        return (int) getRecord(player.getUniqueId()).get(stat);
     }
 
     public double getStatisticDouble(Player player, String stat) {
-        String path = "players." + player.getUniqueId().toString() + "." + stat;
-        return statsConfig.getDouble(path, 0.0);
+        return getRecord(player.getUniqueId()).get(stat);
     }
 
     public void setStatistic(Player player, String stat, int value) {
-        String path = "players." + player.getUniqueId().toString() + "." + stat;
-        statsConfig.set(path, value);
-        saveStats();
+        update(player.getUniqueId(), record -> record.set(stat, value));
     }
 
     public void setStatistic(Player player, String stat, double value) {
-        String path = "players." + player.getUniqueId().toString() + "." + stat;
-        statsConfig.set(path, value);
-        saveStats();
+        update(player.getUniqueId(), record -> record.set(stat, value));
     }
 
     // Track money earned (called from EconomyManager)
     public void trackMoneyEarned(UUID uuid, double amount) {
-        String path = "players." + uuid.toString() + ".money-earned";
-        statsConfig.set(path, statsConfig.getDouble(path, 0.0) + amount);
-        saveStats();
+        updateOffline(uuid, record -> record.add(PlayerStatistics.MONEY_EARNED, amount));
     }
 
     // Track money spent (called from EconomyManager)
     public void trackMoneySpent(UUID uuid, double amount) {
-        String path = "players." + uuid.toString() + ".money-spent";
-        statsConfig.set(path, statsConfig.getDouble(path, 0.0) + amount);
-        saveStats();
-    }
-
-    private void saveStats() {
-        try {
-            statsConfig.save(statsFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to save statistics.yml: " + e.getMessage());
-        }
+        updateOffline(uuid, record -> record.add(PlayerStatistics.MONEY_SPENT, amount));
     }
 }
-
@@ -1,7 +1,6 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
-import me.clip.placeholderapi.PlaceholderAPI;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -11,6 +10,7 @@ import java.io.File;
 
 /**
  * Manages custom tab list header and footer for players.
+ * Placeholders are resolved through the shared {@link com.excrele.ecore.placeholders.PlaceholderEngine}.
  */
 public class TabListManager {
     private final Ecore plugin;
@@ -126,7 +126,7 @@ public class TabListManager {
             header = String.join("\n", headerLines);
         }
         
-        return processPlaceholders(player, header);
+        return plugin.getPlaceholderEngine().render(header, player);
     }
 
     /**
@@ -181,35 +181,7 @@ public class TabListManager {
             footer = String.join("\n", footerLines);
         }
         
-        return processPlaceholders(player, footer);
-    }
-
-    /**
-     * Processes placeholders in a string.
-     */
-    private String processPlaceholders(Player player, String text) {
-        text = processColorCodes(text);
-        
-        // Replace ECore placeholders
-        text = text.replace("%player%", player.getName());
-        text = text.replace("%online%", String.valueOf(Bukkit.getOnlinePlayers().size()));
-        text = text.replace("%max%", String.valueOf(Bukkit.getMaxPlayers()));
-        text = text.replace("%balance%", String.format("%.2f", plugin.getEconomyManager().getBalance(player.getUniqueId())));
-        text = text.replace("%tps%", String.format("%.2f", plugin.getServerInfoManager().getTPS()));
-        
-        // PlaceholderAPI support
-        if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            text = PlaceholderAPI.setPlaceholders(player, text);
-        }
-        
-        return text;
-    }
-
-    /**
-     * Processes color codes.
-     */
-    private String processColorCodes(String text) {
-        return text.replace("&", "§");
+        return plugin.getPlaceholderEngine().render(footer, player);
     }
 
     /**
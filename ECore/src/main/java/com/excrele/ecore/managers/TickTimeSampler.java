@@ -0,0 +1,282 @@
+package com.excrele.ecore.managers;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records tick durations for TPS and latency percentiles.
+ * The last 100 durations are kept in a primitive ring buffer with a running sum,
+ * so the mean TPS costs O(1). Durations are also counted in log-linear histograms
+ * (exact below 32 microseconds, then 16 buckets per power of two, ~6% precision)
+ * over rolling 1, 5 and 15 minute windows. The windows are built from 10-second slices; each tick
+ * adds to the current slice and the three window totals, and a slice leaving a window
+ * is subtracted from it, so recording never scans the histograms.
+ *
+ * <p>Only the main thread records. Readers on other threads see per-bucket counts
+ * without locking; a reading taken mid-update can be off by the latest tick.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class TickTimeSampler {
+
+    /**
+     * Rolling windows percentiles are reported over.
+     */
+    public enum Window {
+        ONE_MINUTE("1m", 6),
+        FIVE_MINUTES("5m", 30),
+        FIFTEEN_MINUTES("15m", 90);
+
+        private final String label;
+        private final int slices;
+
+        Window(String label, int slices) {
+            this.label = label;
+            this.slices = slices;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Gets a window by its label (1m, 5m or 15m).
+         *
+         * @return The window, or null if there is none with that label
+         */
+        public static Window fromLabel(String label) {
+            for (Window window : values()) {
+                if (window.label.equalsIgnoreCase(label)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int RECENT_SAMPLES = 100; // Ticks averaged for TPS
+    private static final long SLICE_NANOS = 10_000_000_000L;
+    private static final int SLICES = 90; // 15 minutes of 10-second slices
+    private static final int EXACT_LIMIT = 32; // Values below this (microseconds) get their own bucket
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 25; // 2^26 microseconds ~ 67s, longer ticks share the last bucket
+    private static final int BUCKETS = EXACT_LIMIT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Recent ticks for TPS
+    private final long[] recent = new long[RECENT_SAMPLES];
+    private int recentIndex;
+    private volatile int recentCount;
+    private volatile long recentSum;
+
+    // Histogram slices, only touched by the recording thread except for the max values
+    private final int[][] sliceCounts = new int[SLICES][BUCKETS];
+    private final long[] sliceTotals = new long[SLICES];
+    private final AtomicLongArray sliceMax = new AtomicLongArray(SLICES);
+    private volatile int currentSlice;
+    private volatile int filledSlices = 1;
+    private long sliceStart = System.nanoTime();
+
+    // Running sums of the slices in each window
+    private final AtomicLongArray[] windowCounts = new AtomicLongArray[Window.values().length];
+    private final AtomicLong[] windowTotals = new AtomicLong[Window.values().length];
+
+    public TickTimeSampler() {
+        for (int i = 0; i < windowCounts.length; i++) {
+            windowCounts[i] = new AtomicLongArray(BUCKETS);
+            windowTotals[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Records one tick. Must always be called from the same thread.
+     *
+     * @param nanos The tick duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long now = System.nanoTime();
+        int rotations = 0;
+        while (now - sliceStart >= SLICE_NANOS && rotations++ < SLICES) {
+            rotate();
+            sliceStart += SLICE_NANOS;
+        }
+        if (rotations > SLICES) {
+            sliceStart = now; // Stalled for longer than the whole history
+        }
+
+        recentSum += nanos - recent[recentIndex];
+        recent[recentIndex] = nanos;
+        recentIndex = (recentIndex + 1) % RECENT_SAMPLES;
+        if (recentCount < RECENT_SAMPLES) {
+            recentCount++;
+        }
+
+        long micros = nanos / 1000L;
+        int bucket = bucketOf(micros);
+        int slice = currentSlice;
+        sliceCounts[slice][bucket]++;
+        sliceTotals[slice]++;
+        if (micros > sliceMax.get(slice)) {
+            sliceMax.set(slice, micros);
+        }
+        for (int w = 0; w < windowCounts.length; w++) {
+            windowCounts[w].incrementAndGet(bucket);
+            windowTotals[w].incrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a new slice, dropping slices that fell out of each window.
+     */
+    private void rotate() {
+        int next = (currentSlice + 1) % SLICES;
+        Window[] windows = Window.values();
+        for (int w = 0; w < windows.length; w++) {
+            if (filledSlices < windows[w].slices) {
+                continue;
+            }
+            int leaving = Math.floorMod(next - windows[w].slices, SLICES);
+            subtract(w, leaving);
+        }
+
+        int[] counts = sliceCounts[next];
+        Arrays.fill(counts, 0);
+        sliceTotals[next] = 0;
+        sliceMax.set(next, 0L);
+        currentSlice = next;
+        if (filledSlices < SLICES) {
+            filledSlices++;
+        }
+    }
+
+    private void subtract(int window, int slice) {
+        if (sliceTotals[slice] == 0) {
+            return;
+        }
+        int[] counts = sliceCounts[slice];
+        for (int b = 0; b < BUCKETS; b++) {
+            if (counts[b] != 0) {
+                windowCounts[window].addAndGet(b, -counts[b]);
+            }
+        }
+        windowTotals[window].addAndGet(-sliceTotals[slice]);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < EXACT_LIMIT) {
+            return (int) Math.max(0L, micros);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT_LIMIT + (magnitude - 5) * SUB_BUCKETS + sub;
+    }
+
+    // Highest value (microseconds) that falls into a bucket
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int magnitude = 5 + (bucket - EXACT_LIMIT) / SUB_BUCKETS;
+        int sub = (bucket - EXACT_LIMIT) % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the mean TPS over the last 100 ticks, capped at 20.
+     */
+    public double getTPS() {
+        int count = recentCount;
+        long sum = recentSum;
+        if (count == 0 || sum <= 0) {
+            return 20.0;
+        }
+        double averageTickMillis = sum / 1_000_000.0 / count;
+        return Math.min(20.0, 1000.0 / averageTickMillis);
+    }
+
+    /**
+     * Gets a tick duration percentile.
+     *
+     * @param window The window
+     * @param percentile The percentile, between 0 and 100
+     * @return The duration in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentile(Window window, double percentile) {
+        AtomicLongArray counts = windowCounts[window.ordinal()];
+        long total = windowTotals[window.ordinal()].get();
+        if (total <= 0) {
+            return 0.0;
+        }
+        long target = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= target) {
+                // Never report more than the largest tick actually seen
+                return Math.min(bucketUpperBound(b), getMaxMicros(window)) / 1000.0;
+            }
+        }
+        return getMaxMicros(window) / 1000.0;
+    }
+
+    /**
+     * Gets the longest tick in a window.
+     *
+     * @return The duration in milliseconds
+     */
+    public double getMax(Window window) {
+        return getMaxMicros(window) / 1000.0;
+    }
+
+    private long getMaxMicros(Window window) {
+        int current = currentSlice;
+        int slices = Math.min(window.slices, filledSlices);
+        long max = 0;
+        for (int i = 0; i < slices; i++) {
+            max = Math.max(max, sliceMax.get(Math.floorMod(current - i, SLICES)));
+        }
+        return max;
+    }
+
+    /**
+     * Gets the number of ticks recorded in a window.
+     */
+    public long getSampleCount(Window window) {
+        return windowTotals[window.ordinal()].get();
+    }
+
+    /**
+     * Gets p50, p95, p99 and max for a window.
+     */
+    public Summary summarize(Window window) {
+        return new Summary(window, getPercentile(window, 50), getPercentile(window, 95),
+            getPercentile(window, 99), getMax(window), getSampleCount(window));
+    }
+
+    /**
+     * Tick duration percentiles of one window, in milliseconds.
+     */
+    public static class Summary {
+        public final Window window;
+        public final double p50;
+        public final double p95;
+        public final double p99;
+        public final double max;
+        public final long samples;
+
+        public Summary(Window window, double p50, double p95, double p99, double max, long samples) {
+            this.window = window;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+            this.samples = samples;
+        }
+    }
+}
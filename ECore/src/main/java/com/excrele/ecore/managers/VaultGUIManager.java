@@ -77,6 +77,10 @@ public class VaultGUIManager implements Listener {
         }
         
         ItemStack[] items = vaultManager.getVaultItems(player, vaultNumber);
+        if (items == null) {
+            player.sendMessage(ChatColor.RED + "This vault could not be loaded. Please contact an administrator.");
+            return;
+        }
         String vaultName = vaultManager.getVaultName(player, vaultNumber);
         
         Inventory vault = Bukkit.createInventory(null, 54, ChatColor.DARK_PURPLE + vaultName);
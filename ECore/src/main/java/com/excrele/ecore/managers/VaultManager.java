@@ -1,11 +1,13 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.utils.DirtySnapshotWriter;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,18 +16,55 @@ import java.util.logging.Level;
 
 /**
  * Manages player vaults (extra storage).
+ * Vault contents live in one binary file per player under vaults/ and are loaded when
+ * first used. Changed vaults are written asynchronously every few seconds, and players
+ * whose vaults have not been used for a while are unloaded. Names and trusted players
+ * stay in vaults.yml.
  */
 public class VaultManager {
+    private static final int VAULT_SIZE = 54; // 6 rows = 54 slots
+
     private final Ecore plugin;
     private File vaultsFile;
     private FileConfiguration vaultsConfig;
-    private final Map<UUID, Map<Integer, ItemStack[]>> playerVaults; // Player UUID -> Vault Number -> Items
+    private final VaultStore store;
+    private final Map<UUID, PlayerVaults> loadedVaults; // Player UUID -> loaded vaults, main thread only
+    private final DirtySnapshotWriter<Map<Integer, byte[]>> writer; // Writes encoded pages
+    private final long idleUnloadMillis;
+    private BukkitTask flushTask;
+
+    /**
+     * One vault's contents, decoded when opened and encoded again only after it changes.
+     */
+    private static class VaultPage {
+        private ItemStack[] items; // Null until decoded
+        private byte[] encoded; // Null after a change until the next flush
+
+        VaultPage(ItemStack[] items, byte[] encoded) {
+            this.items = items;
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * The loaded vaults of one player.
+     */
+    private static class PlayerVaults {
+        private final Map<Integer, VaultPage> pages = new TreeMap<>(); // Vault Number -> Page
+        private long lastAccess;
+    }
 
     public VaultManager(Ecore plugin) {
         this.plugin = plugin;
-        this.playerVaults = new HashMap<>();
+        this.store = new VaultStore(new File(plugin.getDataFolder(), "vaults"));
+        this.loadedVaults = new HashMap<>();
+        this.writer = new DirtySnapshotWriter<>(this::snapshot, this::writeSnapshots);
+        this.idleUnloadMillis = Math.max(1L, plugin.getConfigManager().getConfig().getLong("vaults.idle-unload-seconds", 300L)) * 1000L;
         initializeVaultsConfig();
-        loadVaults();
+        migrateLegacyVaults();
+
+        long interval = Math.max(1L, plugin.getConfigManager().getConfig().getLong("vaults.flush-interval-seconds", 30L)) * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flushDirty, interval, interval);
     }
 
     private void initializeVaultsConfig() {
@@ -40,13 +79,26 @@ public class VaultManager {
         vaultsConfig = YamlConfiguration.loadConfiguration(vaultsFile);
     }
 
-    private void loadVaults() {
+    /**
+     * Moves vault contents saved in vaults.yml by older versions into the per-player files.
+     */
+    private void migrateLegacyVaults() {
         if (vaultsConfig.getConfigurationSection("vaults") == null) return;
 
+        int migrated = 0;
+        boolean failed = false;
         for (String uuidStr : vaultsConfig.getConfigurationSection("vaults").getKeys(false)) {
-            UUID uuid = UUID.fromString(uuidStr);
-            Map<Integer, ItemStack[]> vaults = new HashMap<>();
-            
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(uuidStr);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid vault owner UUID: " + uuidStr);
+                continue;
+            }
+            if (store.exists(uuid)) continue; // Migrated before an earlier failure
+
+            Map<Integer, byte[]> pages = new TreeMap<>();
+            boolean complete = true;
             String path = "vaults." + uuidStr;
             if (vaultsConfig.getConfigurationSection(path) != null) {
                 for (String vaultNumStr : vaultsConfig.getConfigurationSection(path).getKeys(false)) {
@@ -54,42 +106,153 @@ public class VaultManager {
                         int vaultNum = Integer.parseInt(vaultNumStr);
                         List<?> itemsList = vaultsConfig.getList(path + "." + vaultNumStr);
                         if (itemsList != null) {
-                            ItemStack[] items = new ItemStack[54]; // 6 rows = 54 slots
-                            for (int i = 0; i < itemsList.size() && i < 54; i++) {
+                            ItemStack[] items = new ItemStack[VAULT_SIZE];
+                            for (int i = 0; i < itemsList.size() && i < VAULT_SIZE; i++) {
                                 Object itemObj = itemsList.get(i);
                                 if (itemObj instanceof ItemStack) {
                                     items[i] = (ItemStack) itemObj;
                                 }
                             }
-                            vaults.put(vaultNum, items);
+                            pages.put(vaultNum, VaultStore.encode(items));
                         }
                     } catch (NumberFormatException e) {
                         plugin.getLogger().warning("Invalid vault number: " + vaultNumStr);
+                    } catch (IOException e) {
+                        plugin.getLogger().log(Level.WARNING, "Failed to encode vault " + vaultNumStr + " of " + uuidStr, e);
+                        complete = false;
                     }
                 }
             }
-            
-            playerVaults.put(uuid, vaults);
+            if (!complete) {
+                // Writing the other pages would make the next start skip this player for good
+                failed = true;
+                continue;
+            }
+
+            try {
+                store.write(uuid, pages);
+                migrated++;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to migrate vaults of " + uuidStr, e);
+                failed = true;
+            }
         }
+
+        if (failed) {
+            plugin.getLogger().warning("Some vaults could not be migrated and were kept in vaults.yml");
+            return;
+        }
+        vaultsConfig.set("vaults", null);
+        try {
+            vaultsConfig.save(vaultsFile);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save vaults.yml", e);
+        }
+        plugin.getLogger().info("Migrated vaults of " + migrated + " players from vaults.yml");
     }
 
-    private void saveVaults() {
+    /**
+     * Gets a player's vaults, loading them on first use.
+     */
+    private PlayerVaults getVaults(UUID uuid) {
+        PlayerVaults vaults = loadedVaults.get(uuid);
+        if (vaults == null) {
+            vaults = new PlayerVaults();
+            // A snapshot still waiting for the writer is newer than the file
+            Map<Integer, byte[]> pages = writer.getPending(uuid);
+            if (pages == null) {
+                try {
+                    pages = store.read(uuid);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to read vaults of " + uuid + ", moved the file aside", e);
+                    store.moveAside(uuid);
+                    pages = Collections.emptyMap();
+                }
+            }
+            for (Map.Entry<Integer, byte[]> entry : pages.entrySet()) {
+                vaults.pages.put(entry.getKey(), new VaultPage(null, entry.getValue()));
+            }
+            loadedVaults.put(uuid, vaults);
+        }
+        vaults.lastAccess = System.currentTimeMillis();
+        return vaults;
+    }
+
+    /**
+     * Decodes a page on first use. A page that cannot be decoded keeps its encoded bytes,
+     * so it is written back unchanged, and null is returned so it is never opened.
+     */
+    private ItemStack[] getItems(UUID uuid, int vaultNumber, VaultPage page) {
+        if (page.items == null) {
+            try {
+                page.items = VaultStore.decode(page.encoded, VAULT_SIZE);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to read vault " + vaultNumber + " of " + uuid
+                    + ", it stays locked and unchanged until it can be read", e);
+                return null;
+            }
+        }
+        return page.items;
+    }
+
+    /**
+     * Encodes the changed vaults of a player for the writer.
+     */
+    private Map<Integer, byte[]> snapshot(UUID uuid) {
+        PlayerVaults vaults = loadedVaults.get(uuid);
+        if (vaults == null) {
+            return null;
+        }
+        Map<Integer, byte[]> pages = new TreeMap<>();
         try {
-            vaultsConfig.set("vaults", null);
-            for (Map.Entry<UUID, Map<Integer, ItemStack[]>> playerEntry : playerVaults.entrySet()) {
-                String uuidPath = "vaults." + playerEntry.getKey().toString();
-                for (Map.Entry<Integer, ItemStack[]> vaultEntry : playerEntry.getValue().entrySet()) {
-                    List<ItemStack> itemsList = new ArrayList<>();
-                    for (ItemStack item : vaultEntry.getValue()) {
-                        itemsList.add(item);
-                    }
-                    vaultsConfig.set(uuidPath + "." + vaultEntry.getKey(), itemsList);
+            for (Map.Entry<Integer, VaultPage> entry : vaults.pages.entrySet()) {
+                VaultPage page = entry.getValue();
+                if (page.encoded == null) {
+                    page.encoded = VaultStore.encode(page.items);
                 }
+                pages.put(entry.getKey(), page.encoded);
             }
-            vaultsConfig.save(vaultsFile);
         } catch (IOException e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to save vaults.yml", e);
+            // Stays dirty and loaded, so the next flush tries again
+            plugin.getLogger().log(Level.WARNING, "Failed to encode vaults of " + uuid, e);
+            writer.markDirty(uuid);
+            return null;
         }
+        return pages;
+    }
+
+    /**
+     * Snapshots the players changed since the last flush, writes them asynchronously and
+     * unloads the vaults that have not been used for a while.
+     */
+    private void flushDirty() {
+        if (writer.hasDirty()) {
+            writer.snapshotDirty();
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, writer::writePending);
+        }
+
+        long cutoff = System.currentTimeMillis() - idleUnloadMillis;
+        loadedVaults.entrySet().removeIf(entry ->
+            entry.getValue().lastAccess < cutoff && !writer.isDirty(entry.getKey()));
+    }
+
+    /**
+     * Writes snapshots to the players' files. A snapshot that fails stays pending, so a
+     * reload still sees it and the next write retries.
+     */
+    private Set<UUID> writeSnapshots(Map<UUID, Map<Integer, byte[]>> snapshots) {
+        long profile = plugin.getProfilingManager().start();
+        Set<UUID> written = new HashSet<>();
+        for (Map.Entry<UUID, Map<Integer, byte[]>> entry : snapshots.entrySet()) {
+            try {
+                store.write(entry.getKey(), entry.getValue());
+                written.add(entry.getKey());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save vaults of " + entry.getKey(), e);
+            }
+        }
+        plugin.getProfilingManager().stop("VaultManager.flush", profile);
+        return written;
     }
 
     /**
@@ -112,25 +275,36 @@ public class VaultManager {
      * Gets all vault numbers for a player.
      */
     public List<Integer> getPlayerVaults(Player player) {
-        Map<Integer, ItemStack[]> vaults = playerVaults.getOrDefault(player.getUniqueId(), new HashMap<>());
-        return new ArrayList<>(vaults.keySet());
+        return new ArrayList<>(getVaults(player.getUniqueId()).pages.keySet());
     }
 
     /**
-     * Gets the items in a specific vault.
+     * Gets the items in a specific vault, or null if the vault cannot be read.
      */
     public ItemStack[] getVaultItems(Player player, int vaultNumber) {
-        Map<Integer, ItemStack[]> vaults = playerVaults.computeIfAbsent(player.getUniqueId(), k -> new HashMap<>());
-        return vaults.computeIfAbsent(vaultNumber, k -> new ItemStack[54]);
+        UUID uuid = player.getUniqueId();
+        PlayerVaults vaults = getVaults(uuid);
+        VaultPage page = vaults.pages.get(vaultNumber);
+        if (page == null) {
+            page = new VaultPage(new ItemStack[VAULT_SIZE], null);
+            vaults.pages.put(vaultNumber, page);
+            writer.markDirty(uuid);
+        }
+        return getItems(uuid, vaultNumber, page);
     }
 
     /**
      * Sets the items in a specific vault.
      */
     public void setVaultItems(Player player, int vaultNumber, ItemStack[] items) {
-        Map<Integer, ItemStack[]> vaults = playerVaults.computeIfAbsent(player.getUniqueId(), k -> new HashMap<>());
-        vaults.put(vaultNumber, items);
-        saveVaults();
+        UUID uuid = player.getUniqueId();
+        PlayerVaults vaults = getVaults(uuid);
+        VaultPage page = vaults.pages.get(vaultNumber);
+        if (page != null && getItems(uuid, vaultNumber, page) == null) {
+            return; // Never replace a vault that could not be read
+        }
+        vaults.pages.put(vaultNumber, new VaultPage(items, null));
+        writer.markDirty(uuid);
     }
 
     /**
@@ -138,18 +312,19 @@ public class VaultManager {
      */
     public boolean createVault(Player player, int vaultNumber) {
         int maxVaults = getMaxVaults(player);
-        Map<Integer, ItemStack[]> vaults = playerVaults.computeIfAbsent(player.getUniqueId(), k -> new HashMap<>());
+        UUID uuid = player.getUniqueId();
+        PlayerVaults vaults = getVaults(uuid);
         
-        if (vaults.size() >= maxVaults) {
+        if (vaults.pages.size() >= maxVaults) {
             return false; // Already at max vaults
         }
         
-        if (vaults.containsKey(vaultNumber)) {
+        if (vaults.pages.containsKey(vaultNumber)) {
             return false; // Vault already exists
         }
         
-        vaults.put(vaultNumber, new ItemStack[54]);
-        saveVaults();
+        vaults.pages.put(vaultNumber, new VaultPage(new ItemStack[VAULT_SIZE], null));
+        writer.markDirty(uuid);
         return true;
     }
 
@@ -157,16 +332,14 @@ public class VaultManager {
      * Checks if a player has access to a vault.
      */
     public boolean hasVault(Player player, int vaultNumber) {
-        Map<Integer, ItemStack[]> vaults = playerVaults.getOrDefault(player.getUniqueId(), new HashMap<>());
-        return vaults.containsKey(vaultNumber);
+        return getVaults(player.getUniqueId()).pages.containsKey(vaultNumber);
     }
 
     /**
      * Gets the number of vaults a player has.
      */
     public int getVaultCount(Player player) {
-        Map<Integer, ItemStack[]> vaults = playerVaults.getOrDefault(player.getUniqueId(), new HashMap<>());
-        return vaults.size();
+        return getVaults(player.getUniqueId()).pages.size();
     }
 
     /**
@@ -265,7 +438,11 @@ public class VaultManager {
      * Shutdown and save all vaults.
      */
     public void shutdown() {
-        saveVaults();
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        writer.flush();
     }
 }
 
@@ -0,0 +1,197 @@
+package com.excrele.ecore.managers;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary per-player storage for vault contents.
+ * Each player has one compressed file holding their vault pages, and every page is
+ * encoded on its own, so a save re-encodes only the pages that changed and copies the
+ * bytes of the rest. Items without meta are written as their material and amount;
+ * only items carrying meta fall back to Bukkit's object serialization.
+ *
+ * <p>File layout (deflated): magic, version, page count, then per page the vault
+ * number, the encoded length and the encoded bytes.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class VaultStore {
+    private static final int MAGIC = 0x45435654; // "ECVT"
+    private static final int VERSION = 1;
+    private static final byte PLAIN = 0;
+    private static final byte SERIALIZED = 1;
+
+    private final File folder;
+
+    public VaultStore(File folder) {
+        this.folder = folder;
+    }
+
+    private File getFile(UUID uuid) {
+        return new File(folder, uuid.toString() + ".dat");
+    }
+
+    /**
+     * Checks whether a player has a vault file.
+     */
+    public boolean exists(UUID uuid) {
+        return getFile(uuid).exists();
+    }
+
+    /**
+     * Reads a player's encoded pages by vault number, empty if the player has no file.
+     */
+    public Map<Integer, byte[]> read(UUID uuid) throws IOException {
+        Map<Integer, byte[]> pages = new TreeMap<>();
+        File file = getFile(uuid);
+        if (!file.exists()) {
+            return pages;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a vault file: " + file.getName());
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported vault file version " + version + ": " + file.getName());
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int vaultNumber = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                pages.put(vaultNumber, data);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Writes a player's encoded pages, replacing their file atomically.
+     */
+    public void write(UUID uuid, Map<Integer, byte[]> pages) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder.getPath());
+        }
+        File file = getFile(uuid);
+        File temp = new File(folder, uuid.toString() + ".dat.tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(fileOut)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(pages.size());
+            for (Map.Entry<Integer, byte[]> entry : pages.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Renames an unreadable file out of the way so it is never overwritten.
+     */
+    public void moveAside(UUID uuid) {
+        File file = getFile(uuid);
+        file.renameTo(new File(folder, uuid.toString() + ".dat.corrupt-" + System.currentTimeMillis()));
+    }
+
+    /**
+     * Encodes the contents of one vault.
+     */
+    public static byte[] encode(ItemStack[] items) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        for (ItemStack item : items) {
+            if (item != null && item.getType() != Material.AIR) {
+                count++;
+            }
+        }
+        out.writeShort(count);
+        for (int slot = 0; slot < items.length; slot++) {
+            ItemStack item = items[slot];
+            if (item == null || item.getType() == Material.AIR) {
+                continue;
+            }
+            out.writeShort(slot);
+            if (!item.hasItemMeta()) {
+                out.writeByte(PLAIN);
+                out.writeUTF(item.getType().name());
+                out.writeShort(item.getAmount());
+            } else {
+                ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                try (BukkitObjectOutputStream objectOut = new BukkitObjectOutputStream(serialized)) {
+                    objectOut.writeObject(item);
+                }
+                out.writeByte(SERIALIZED);
+                out.writeInt(serialized.size());
+                serialized.writeTo(out);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the contents of one vault. A material this server does not know fails the whole
+     * vault, rather than losing the item on the next save.
+     */
+    public static ItemStack[] decode(byte[] data, int size) throws IOException {
+        ItemStack[] items = new ItemStack[size];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int slot = in.readUnsignedShort();
+            ItemStack item;
+            byte kind = in.readByte();
+            if (kind == PLAIN) {
+                String name = in.readUTF();
+                Material material = Material.getMaterial(name);
+                int amount = in.readUnsignedShort();
+                if (material == null) {
+                    throw new IOException("Unknown material " + name + " in slot " + slot);
+                }
+                item = new ItemStack(material, amount);
+            } else if (kind == SERIALIZED) {
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                try (BukkitObjectInputStream objectIn = new BukkitObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    item = (ItemStack) objectIn.readObject();
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Invalid item in slot " + slot, e);
+                }
+            } else {
+                throw new IOException("Unknown item encoding " + kind + " in slot " + slot);
+            }
+            if (slot < size) {
+                items[slot] = item;
+            }
+        }
+        return items;
+    }
+}
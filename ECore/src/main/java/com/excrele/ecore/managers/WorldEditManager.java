@@ -1,6 +1,7 @@
 package com.excrele.ecore.managers;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.utils.PackedIntArray;
 import org.bukkit.*;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
@@ -13,6 +14,7 @@ import org.bukkit.scheduler.BukkitTask;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
@@ -37,20 +39,26 @@ public class WorldEditManager {
     private final Map<UUID, List<HistoryEntry>> history;
     private final Map<UUID, Integer> historyIndex;
     private final Map<UUID, BukkitTask> activeOperations;
+    private final Set<UUID> loadingHistory; // Players waiting for a history entry to be read from disk
     private File schematicsDir;
     private File historyFile;
     private FileConfiguration historyConfig;
     
     // Configuration values
     private int maxBlockChanges;
-    private int blocksPerTick;
+    private long tickBudgetNanos;
     private int maxHistorySize;
+    private int historyInMemory;
+    private File historySpillDir;
     
     /**
-     * Represents a clipboard containing copied blocks
+     * Represents a clipboard containing copied blocks.
+     * Blocks are stored as bit-packed palette ids in a dense volume, so a copy
+     * takes a few bits per block plus one BlockData per distinct state.
      */
     public static class Clipboard {
-        private final List<ClipboardBlock> blocks;
+        private final BlockPalette palette;
+        private final PackedIntArray blocks;
         private final Location origin;
         private final int width, height, length;
         
@@ -59,21 +67,68 @@ public class WorldEditManager {
             this.width = width;
             this.height = height;
             this.length = length;
-            this.blocks = new ArrayList<>();
+            this.palette = new BlockPalette();
+            int volume = width * height * length;
+            this.blocks = new PackedIntArray(volume, volume);
         }
         
-        public void addBlock(Location location, Block block) {
-            blocks.add(new ClipboardBlock(
-                location.getBlockX() - origin.getBlockX(),
-                location.getBlockY() - origin.getBlockY(),
-                location.getBlockZ() - origin.getBlockZ(),
-                block.getType(),
-                block.getBlockData()
-            ));
+        /**
+         * Stores a block, relative to the clipboard origin.
+         */
+        public void setBlock(int x, int y, int z, BlockData data) {
+            blocks.set(index(x, y, z), palette.idFor(data));
         }
         
-        public List<ClipboardBlock> getBlocks() {
-            return blocks;
+        /**
+         * Gets a block, relative to the clipboard origin.
+         */
+        public BlockData getBlock(int x, int y, int z) {
+            return palette.get(blocks.get(index(x, y, z)));
+        }
+        
+        private int index(int x, int y, int z) {
+            return (y * length + z) * width + x;
+        }
+        
+        /**
+         * Creates a cursor that pastes this clipboard with its origin at the given location.
+         */
+        public EditCursor cursor(Location pasteLocation) {
+            World world = pasteLocation.getWorld();
+            int baseX = pasteLocation.getBlockX();
+            int baseY = pasteLocation.getBlockY();
+            int baseZ = pasteLocation.getBlockZ();
+            return new EditCursor() {
+                private int x = -1, y = 0, z = 0;
+                
+                @Override
+                public boolean next() {
+                    if (++x < width) return true;
+                    x = 0;
+                    if (++z < length) return true;
+                    z = 0;
+                    return ++y < height;
+                }
+                
+                @Override
+                public World getWorld() { return world; }
+                @Override
+                public int getX() { return baseX + x; }
+                @Override
+                public int getY() { return baseY + y; }
+                @Override
+                public int getZ() { return baseZ + z; }
+                
+                @Override
+                public BlockData getBlockData() {
+                    return getBlock(x, y, z);
+                }
+                
+                @Override
+                public long size() {
+                    return getVolume();
+                }
+            };
         }
         
         public Location getOrigin() {
@@ -83,75 +138,111 @@ public class WorldEditManager {
         public int getWidth() { return width; }
         public int getHeight() { return height; }
         public int getLength() { return length; }
+        public int getVolume() { return width * height * length; }
+        public int getPaletteSize() { return palette.size(); }
     }
     
     /**
-     * Represents a block in the clipboard
-     */
-    public static class ClipboardBlock {
-        private final int x, y, z;
-        private final Material type;
-        private final BlockData blockData;
-        
-        public ClipboardBlock(int x, int y, int z, Material type, BlockData blockData) {
-            this.x = x;
-            this.y = y;
-            this.z = z;
-            this.type = type;
-            this.blockData = blockData;
-        }
-        
-        public int getX() { return x; }
-        public int getY() { return y; }
-        public int getZ() { return z; }
-        public Material getType() { return type; }
-        public BlockData getBlockData() { return blockData; }
-    }
-    
-    /**
-     * Represents a history entry for undo/redo
+     * Represents a history entry for undo/redo.
+     * Older entries can be spilled to disk and are read back when needed.
      */
     public static class HistoryEntry {
-        private final List<BlockChange> changes;
+        private final World world;
+        private final int size;
         private final long timestamp;
-        
-        public HistoryEntry(List<BlockChange> changes) {
-            this.changes = new ArrayList<>(changes);
+        private BlockChangeSet changes;
+        private File spillFile;
+        private boolean discarded;
+        
+        public HistoryEntry(BlockChangeSet changes) {
+            this.world = changes.getWorld();
+            this.size = changes.size();
+            this.changes = changes;
             this.timestamp = System.currentTimeMillis();
         }
         
-        public List<BlockChange> getChanges() {
+        /**
+         * Gets the changes if they are in memory, or null if they have to be read from disk.
+         */
+        public synchronized BlockChangeSet getLoadedChanges() {
             return changes;
         }
         
-        public long getTimestamp() {
-            return timestamp;
+        /**
+         * Gets the changes, reading them back from disk if they were spilled.
+         * Reads the disk, so call it off the main thread.
+         */
+        public BlockChangeSet getChanges() throws IOException {
+            File file;
+            synchronized (this) {
+                if (changes != null || spillFile == null) {
+                    return changes;
+                }
+                file = spillFile;
+            }
+            // Read without holding the lock, so the main thread never waits on the disk
+            BlockChangeSet read;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                read = BlockChangeSet.read(in, world);
+            }
+            synchronized (this) {
+                if (changes == null) {
+                    changes = read;
+                }
+                return changes;
+            }
         }
-    }
-    
-    /**
-     * Represents a single block change
-     */
-    public static class BlockChange {
-        private final Location location;
-        private final Material oldType;
-        private final BlockData oldData;
-        private final Material newType;
-        private final BlockData newData;
         
-        public BlockChange(Location location, Material oldType, BlockData oldData, Material newType, BlockData newData) {
-            this.location = location;
-            this.oldType = oldType;
-            this.oldData = oldData;
-            this.newType = newType;
-            this.newData = newData;
+        /**
+         * Writes the changes to disk and releases them from memory.
+         * Safe to call off the main thread.
+         */
+        public void spill(File file) throws IOException {
+            BlockChangeSet current;
+            synchronized (this) {
+                if (changes == null || discarded) return;
+                if (spillFile != null) {
+                    // Already on disk from an earlier spill, just release it again
+                    changes = null;
+                    return;
+                }
+                current = changes;
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                current.write(out);
+            }
+            synchronized (this) {
+                if (discarded) {
+                    // Dropped from the history while it was being written
+                    file.delete();
+                    return;
+                }
+                spillFile = file;
+                changes = null;
+            }
         }
         
-        public Location getLocation() { return location; }
-        public Material getOldType() { return oldType; }
-        public BlockData getOldData() { return oldData; }
-        public Material getNewType() { return newType; }
-        public BlockData getNewData() { return newData; }
+        /**
+         * Deletes the spill file, if any, including one a spill still in progress is writing.
+         */
+        public synchronized void discard() {
+            discarded = true;
+            if (spillFile != null) {
+                spillFile.delete();
+            }
+        }
+        
+        public synchronized boolean isSpilled() {
+            return changes == null;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
     }
     
     public WorldEditManager(Ecore plugin) {
@@ -162,6 +253,7 @@ public class WorldEditManager {
         this.history = new ConcurrentHashMap<>();
         this.historyIndex = new ConcurrentHashMap<>();
         this.activeOperations = new ConcurrentHashMap<>();
+        this.loadingHistory = new HashSet<>();
         
         initializeConfig();
         initializeDirectories();
@@ -171,8 +263,9 @@ public class WorldEditManager {
     private void initializeConfig() {
         FileConfiguration config = plugin.getConfigManager().getConfig();
         maxBlockChanges = config.getInt("worldedit.max-block-changes", 100000);
-        blocksPerTick = config.getInt("worldedit.blocks-per-tick", 1000);
+        tickBudgetNanos = (long) (config.getDouble("worldedit.tick-budget-ms", 8.0) * 1_000_000L);
         maxHistorySize = config.getInt("worldedit.max-history-size", 20);
+        historyInMemory = config.getInt("worldedit.history-in-memory", 3);
     }
     
     private void initializeDirectories() {
@@ -181,6 +274,16 @@ public class WorldEditManager {
             schematicsDir.mkdirs();
         }
         
+        // Spilled history only lives for one session
+        historySpillDir = new File(plugin.getDataFolder(), "worldedit-history");
+        File[] stale = historySpillDir.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        historySpillDir.mkdirs();
+        
         historyFile = new File(plugin.getDataFolder(), "worldedit-history.yml");
         if (!historyFile.exists()) {
             try {
@@ -294,17 +397,18 @@ public class WorldEditManager {
             return;
         }
         
-        if (selection.getVolume() > maxBlockChanges) {
+        CuboidCursor cursor = new CuboidCursor(selection, CuboidCursor.Shape.FILL);
+        if (cursor.size() > maxBlockChanges) {
             player.sendMessage(ChatColor.RED + "Selection is too large! Maximum: " + maxBlockChanges + " blocks");
             return;
         }
         
-        List<Location> blocks = selection.getAllBlocks();
-        performAsyncOperation(player, blocks, material, null, true);
+        performAsyncOperation(player, cursor, material, null, true);
     }
     
     /**
-     * Replaces blocks in selection
+     * Replaces blocks in selection.
+     * Blocks are matched while the operation runs, so the selection is never scanned up front.
      */
     public void replaceBlocks(Player player, Material from, Material to) {
         Selection selection = getSelection(player);
@@ -313,20 +417,13 @@ public class WorldEditManager {
             return;
         }
         
-        List<Location> blocksToReplace = new ArrayList<>();
-        for (Location loc : selection.getAllBlocks()) {
-            Block block = loc.getBlock();
-            if (block.getType() == from) {
-                blocksToReplace.add(loc);
-            }
-        }
-        
-        if (blocksToReplace.size() > maxBlockChanges) {
-            player.sendMessage(ChatColor.RED + "Too many blocks to replace! Maximum: " + maxBlockChanges + " blocks");
+        CuboidCursor cursor = new CuboidCursor(selection, CuboidCursor.Shape.FILL);
+        if (cursor.size() > maxBlockChanges) {
+            player.sendMessage(ChatColor.RED + "Selection is too large! Maximum: " + maxBlockChanges + " blocks");
             return;
         }
         
-        performAsyncOperation(player, blocksToReplace, to, null, true);
+        performAsyncOperation(player, cursor, to, from, true);
     }
     
     /**
@@ -346,32 +443,14 @@ public class WorldEditManager {
             return;
         }
         
-        List<Location> blocks = new ArrayList<>();
-        Location min = selection.getMin();
-        Location max = selection.getMax();
-        World world = selection.getWorld();
-        
         // Create walls (all faces except top and bottom)
-        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
-                blocks.add(new Location(world, x, y, min.getBlockZ()));
-                blocks.add(new Location(world, x, y, max.getBlockZ()));
-            }
-        }
-        
-        for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
-                blocks.add(new Location(world, min.getBlockX(), y, z));
-                blocks.add(new Location(world, max.getBlockX(), y, z));
-            }
-        }
-        
-        if (blocks.size() > maxBlockChanges) {
+        CuboidCursor cursor = new CuboidCursor(selection, CuboidCursor.Shape.WALLS);
+        if (cursor.size() > maxBlockChanges) {
             player.sendMessage(ChatColor.RED + "Selection is too large! Maximum: " + maxBlockChanges + " blocks");
             return;
         }
         
-        performAsyncOperation(player, blocks, material, null, true);
+        performAsyncOperation(player, cursor, material, null, true);
     }
     
     /**
@@ -384,39 +463,14 @@ public class WorldEditManager {
             return;
         }
         
-        List<Location> blocks = new ArrayList<>();
-        Location min = selection.getMin();
-        Location max = selection.getMax();
-        World world = selection.getWorld();
-        
         // Create all faces
-        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
-                blocks.add(new Location(world, x, y, min.getBlockZ()));
-                blocks.add(new Location(world, x, y, max.getBlockZ()));
-            }
-        }
-        
-        for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
-                blocks.add(new Location(world, min.getBlockX(), y, z));
-                blocks.add(new Location(world, max.getBlockX(), y, z));
-            }
-        }
-        
-        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
-            for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
-                blocks.add(new Location(world, x, min.getBlockY(), z));
-                blocks.add(new Location(world, x, max.getBlockY(), z));
-            }
-        }
-        
-        if (blocks.size() > maxBlockChanges) {
+        CuboidCursor cursor = new CuboidCursor(selection, CuboidCursor.Shape.HOLLOW);
+        if (cursor.size() > maxBlockChanges) {
             player.sendMessage(ChatColor.RED + "Selection is too large! Maximum: " + maxBlockChanges + " blocks");
             return;
         }
         
-        performAsyncOperation(player, blocks, material, null, true);
+        performAsyncOperation(player, cursor, material, null, true);
     }
     
     /**
@@ -430,10 +484,14 @@ public class WorldEditManager {
         }
         
         Clipboard clipboard = new Clipboard(selection.getMin(), selection.getWidth(), selection.getHeight(), selection.getLength());
+        int minX = selection.getMin().getBlockX();
+        int minY = selection.getMin().getBlockY();
+        int minZ = selection.getMin().getBlockZ();
         
-        for (Location loc : selection.getAllBlocks()) {
-            Block block = loc.getBlock();
-            clipboard.addBlock(loc, block);
+        CuboidCursor cursor = new CuboidCursor(selection, CuboidCursor.Shape.FILL);
+        while (cursor.next()) {
+            BlockData data = selection.getWorld().getBlockAt(cursor.getX(), cursor.getY(), cursor.getZ()).getBlockData();
+            clipboard.setBlock(cursor.getX() - minX, cursor.getY() - minY, cursor.getZ() - minZ, data);
         }
         
         clipboards.put(player.getUniqueId(), clipboard);
@@ -459,23 +517,13 @@ public class WorldEditManager {
             return;
         }
         
-        Location pasteLocation = player.getLocation();
-        List<Location> blocksToChange = new ArrayList<>();
-        List<BlockData> blockDataList = new ArrayList<>();
-        
-        for (ClipboardBlock cb : clipboard.getBlocks()) {
-            Location loc = pasteLocation.clone().add(cb.getX(), cb.getY(), cb.getZ());
-            blocksToChange.add(loc);
-            blockDataList.add(cb.getBlockData());
-        }
-        
-        if (blocksToChange.size() > maxBlockChanges) {
+        if (clipboard.getVolume() > maxBlockChanges) {
             player.sendMessage(ChatColor.RED + "Clipboard is too large! Maximum: " + maxBlockChanges + " blocks");
             return;
         }
         
-        performAsyncOperation(player, blocksToChange, null, blockDataList, true);
-        player.sendMessage(ChatColor.GREEN + "Pasted " + blocksToChange.size() + " blocks!");
+        performAsyncOperation(player, clipboard.cursor(player.getLocation()), null, null, true);
+        player.sendMessage(ChatColor.GREEN + "Pasted " + clipboard.getVolume() + " blocks!");
     }
     
     /**
@@ -503,7 +551,7 @@ public class WorldEditManager {
             return;
         }
         
-        performAsyncOperation(player, blocks, material, null, true);
+        performAsyncOperation(player, new ListCursor(blocks, null), material, null, true);
     }
     
     /**
@@ -531,7 +579,7 @@ public class WorldEditManager {
             return;
         }
         
-        performAsyncOperation(player, blocks, material, null, true);
+        performAsyncOperation(player, new ListCursor(blocks, null), material, null, true);
     }
     
     /**
@@ -620,7 +668,7 @@ public class WorldEditManager {
                 return false;
             }
             
-            performAsyncOperation(player, blocksToChange, null, blockDataList, true);
+            performAsyncOperation(player, new ListCursor(blocksToChange, blockDataList), null, null, true);
             player.sendMessage(ChatColor.GREEN + "Loaded schematic '" + name + "' with " + blocksToChange.size() + " blocks!");
             return true;
         } catch (Exception e) {
@@ -647,10 +695,56 @@ public class WorldEditManager {
     }
     
     /**
-     * Performs an async block operation with progress tracking
+     * Visits a list of positions, optionally with a block data per position.
+     */
+    private static class ListCursor implements EditCursor {
+        private final List<Location> blocks;
+        private final List<BlockData> blockDataList;
+        private int index = -1;
+        
+        ListCursor(List<Location> blocks, List<BlockData> blockDataList) {
+            this.blocks = blocks;
+            this.blockDataList = blockDataList;
+        }
+        
+        @Override
+        public boolean next() {
+            return ++index < blocks.size();
+        }
+        
+        @Override
+        public World getWorld() { return blocks.get(index).getWorld(); }
+        @Override
+        public int getX() { return blocks.get(index).getBlockX(); }
+        @Override
+        public int getY() { return blocks.get(index).getBlockY(); }
+        @Override
+        public int getZ() { return blocks.get(index).getBlockZ(); }
+        
+        @Override
+        public BlockData getBlockData() {
+            return blockDataList != null && index < blockDataList.size() ? blockDataList.get(index) : null;
+        }
+        
+        @Override
+        public long size() {
+            return blocks.size();
+        }
+    }
+    
+    /**
+     * Performs a block operation spread over ticks with progress tracking.
+     * Each tick applies blocks until its time budget is used up; when the server
+     * is already lagging, the budget is reduced so the operation yields more.
+     * Previous block states are captured as blocks are changed.
+     * 
+     * @param cursor The positions to change
+     * @param material The material to place where the cursor has no block data
+     * @param replaceFrom Only change blocks of this type, or null to change all
+     * @param saveHistory Whether to record the operation for undo
      */
-    private void performAsyncOperation(Player player, List<Location> blocks, Material material, 
-                                       List<BlockData> blockDataList, boolean saveHistory) {
+    private void performAsyncOperation(Player player, EditCursor cursor, Material material,
+                                       Material replaceFrom, boolean saveHistory) {
         UUID uuid = player.getUniqueId();
         
         // Cancel any existing operation
@@ -658,73 +752,77 @@ public class WorldEditManager {
             activeOperations.get(uuid).cancel();
         }
         
-        // Record changes for history
-        List<BlockChange> changes = new ArrayList<>();
-        if (saveHistory) {
-            for (int i = 0; i < blocks.size(); i++) {
-                Location loc = blocks.get(i);
-                Block block = loc.getBlock();
-                Material newType = material;
-                BlockData newData = blockDataList != null && i < blockDataList.size() ? 
-                    blockDataList.get(i) : (material != null ? Bukkit.createBlockData(material) : null);
-                
-                if (newData != null) {
-                    newType = newData.getMaterial();
-                }
-                
-                changes.add(new BlockChange(
-                    loc.clone(),
-                    block.getType(),
-                    block.getBlockData().clone(),
-                    newType != null ? newType : block.getType(),
-                    newData != null ? newData : block.getBlockData()
-                ));
-            }
-        }
+        BlockData materialData = material != null ? Bukkit.createBlockData(material) : null;
         
-        // Create async task
         BukkitTask task = new BukkitRunnable() {
-            private int index = 0;
-            private final int total = blocks.size();
+            private BlockChangeSet changes;
+            private final long total = cursor.size();
+            private long visited = 0;
+            private long changed = 0;
+            private int reportedPercent = 0;
+            private long lastRun = 0;
             
             @Override
             public void run() {
-                int processed = 0;
-                while (index < total && processed < blocksPerTick) {
-                    Location loc = blocks.get(index);
-                    Block block = loc.getBlock();
+                long start = System.nanoTime();
+                long profile = plugin.getProfilingManager().start();
+                // A long gap since the last run means the server is behind, so back off
+                long budget = lastRun != 0 && start - lastRun > 60_000_000L ? tickBudgetNanos / 4 : tickBudgetNanos;
+                long deadline = start + budget;
+                lastRun = start;
+                
+                boolean finished = false;
+                int sinceClockCheck = 0;
+                while (true) {
+                    if (++sinceClockCheck >= 64) {
+                        sinceClockCheck = 0;
+                        if (System.nanoTime() >= deadline) break;
+                    }
+                    if (!cursor.next()) {
+                        finished = true;
+                        break;
+                    }
+                    visited++;
                     
-                    if (blockDataList != null && index < blockDataList.size()) {
-                        block.setBlockData(blockDataList.get(index));
-                    } else if (material != null) {
-                        block.setType(material);
+                    Block block = cursor.getWorld().getBlockAt(cursor.getX(), cursor.getY(), cursor.getZ());
+                    if (replaceFrom != null && block.getType() != replaceFrom) {
+                        continue;
+                    }
+                    BlockData newData = cursor.getBlockData() != null ? cursor.getBlockData() : materialData;
+                    if (newData == null) {
+                        continue;
                     }
                     
-                    index++;
-                    processed++;
+                    if (saveHistory) {
+                        if (changes == null) {
+                            changes = new BlockChangeSet(cursor.getWorld());
+                        }
+                        changes.add(cursor.getX(), cursor.getY(), cursor.getZ(), block.getBlockData(), newData);
+                    }
+                    block.setBlockData(newData);
+                    changed++;
                 }
                 
-                // Send progress update every 10%
-                if (total > 0 && (index % Math.max(1, total / 10) == 0 || index == total)) {
-                    int percent = (int) ((index / (double) total) * 100);
-                    // Send progress message (less frequent to avoid spam)
-                    if (index == total || index % (total / 5) == 0) {
-                        player.sendMessage(ChatColor.GREEN + "Progress: " + percent + "% (" + index + "/" + total + ")");
-                    }
+                // Send progress update every 20%
+                int percent = total > 0 ? (int) (visited * 100 / total) : 100;
+                if (!finished && percent >= reportedPercent + 20) {
+                    reportedPercent = percent - percent % 20;
+                    player.sendMessage(ChatColor.GREEN + "Progress: " + percent + "% (" + visited + "/" + total + ")");
                 }
                 
-                if (index >= total) {
+                if (finished) {
                     // Operation complete
-                    player.sendMessage(ChatColor.GREEN + "Operation complete! Changed " + total + " blocks.");
+                    player.sendMessage(ChatColor.GREEN + "Operation complete! Changed " + changed + " blocks.");
                     
                     // Save to history
-                    if (saveHistory && !changes.isEmpty()) {
+                    if (saveHistory && changes != null && !changes.isEmpty()) {
                         addToHistory(player, changes);
                     }
                     
                     activeOperations.remove(uuid);
                     cancel();
                 }
+                plugin.getProfilingManager().stop("WorldEditManager.operation", profile);
             }
         }.runTaskTimer(plugin, 0L, 1L);
         
@@ -734,14 +832,16 @@ public class WorldEditManager {
     /**
      * Adds operation to history
      */
-    private void addToHistory(Player player, List<BlockChange> changes) {
+    private void addToHistory(Player player, BlockChangeSet changes) {
         UUID uuid = player.getUniqueId();
         List<HistoryEntry> playerHistory = history.computeIfAbsent(uuid, k -> new ArrayList<>());
         int currentIndex = historyIndex.getOrDefault(uuid, -1);
         
         // Remove any entries after current index (for redo)
         if (currentIndex < playerHistory.size() - 1) {
-            playerHistory.subList(currentIndex + 1, playerHistory.size()).clear();
+            List<HistoryEntry> discarded = playerHistory.subList(currentIndex + 1, playerHistory.size());
+            discarded.forEach(HistoryEntry::discard);
+            discarded.clear();
         }
         
         // Add new entry
@@ -749,12 +849,82 @@ public class WorldEditManager {
         
         // Limit history size
         if (playerHistory.size() > maxHistorySize) {
-            playerHistory.remove(0);
+            playerHistory.remove(0).discard();
         } else {
             currentIndex++;
         }
         
         historyIndex.put(uuid, currentIndex);
+        spillOldHistory(uuid, playerHistory);
+    }
+    
+    /**
+     * Moves every history entry but the newest few to disk, off the main thread.
+     */
+    private void spillOldHistory(UUID uuid, List<HistoryEntry> playerHistory) {
+        if (historyInMemory < 0) {
+            return;
+        }
+        for (int i = 0; i < playerHistory.size() - historyInMemory; i++) {
+            HistoryEntry entry = playerHistory.get(i);
+            if (entry.isSpilled()) {
+                continue;
+            }
+            File file = new File(historySpillDir, uuid + "-" + entry.getTimestamp() + "-" + System.identityHashCode(entry) + ".bin");
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    entry.spill(file);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to write WorldEdit history to disk", e);
+                    file.delete();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Runs an action with the changes of a history entry on the main thread. Changes that
+     * were spilled to disk are read asynchronously and applied on a later tick, as long as
+     * the entry is still at the same place in the player's history.
+     */
+    private void withHistoryEntry(Player player, int index, HistoryEntry entry, Consumer<BlockChangeSet> action) {
+        BlockChangeSet loaded = entry.getLoadedChanges();
+        if (loaded != null) {
+            action.accept(loaded);
+            return;
+        }
+        
+        UUID uuid = player.getUniqueId();
+        Integer indexBefore = historyIndex.get(uuid);
+        loadingHistory.add(uuid);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            BlockChangeSet changes = null;
+            IOException error = null;
+            try {
+                changes = entry.getChanges();
+            } catch (IOException e) {
+                error = e;
+            }
+            BlockChangeSet result = changes;
+            IOException failure = error;
+            if (!plugin.isEnabled()) return;
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                loadingHistory.remove(uuid);
+                if (!player.isOnline()) return;
+                List<HistoryEntry> playerHistory = history.get(uuid);
+                if (failure != null || result == null) {
+                    if (failure != null) {
+                        plugin.getLogger().log(Level.WARNING, "Failed to read WorldEdit history from disk", failure);
+                    }
+                    player.sendMessage(ChatColor.RED + "Failed to load this history entry!");
+                } else if (playerHistory == null || index >= playerHistory.size() || playerHistory.get(index) != entry
+                    || !Objects.equals(historyIndex.get(uuid), indexBefore)) {
+                    player.sendMessage(ChatColor.RED + "Your history changed while it was loading, try again.");
+                } else {
+                    action.accept(result);
+                }
+            });
+        });
     }
     
     /**
@@ -767,6 +937,10 @@ public class WorldEditManager {
             player.sendMessage(ChatColor.RED + "Nothing to undo!");
             return false;
         }
+        if (loadingHistory.contains(uuid)) {
+            player.sendMessage(ChatColor.RED + "Your history is still loading, please wait.");
+            return false;
+        }
         
         int currentIndex = historyIndex.getOrDefault(uuid, playerHistory.size() - 1);
         if (currentIndex < 0) {
@@ -775,19 +949,13 @@ public class WorldEditManager {
         }
         
         HistoryEntry entry = playerHistory.get(currentIndex);
-        List<Location> blocksToChange = new ArrayList<>();
-        List<BlockData> blockDataList = new ArrayList<>();
-        
-        for (BlockChange change : entry.getChanges()) {
-            blocksToChange.add(change.getLocation());
-            blockDataList.add(change.getOldData());
-        }
-        
-        // Perform undo operation (without saving to history)
-        performAsyncOperation(player, blocksToChange, null, blockDataList, false);
-        
-        historyIndex.put(uuid, currentIndex - 1);
-        player.sendMessage(ChatColor.GREEN + "Undone " + entry.getChanges().size() + " blocks!");
+        withHistoryEntry(player, currentIndex, entry, changes -> {
+            // Perform undo operation (without saving to history)
+            performAsyncOperation(player, changes.cursor(true), null, null, false);
+            
+            historyIndex.put(uuid, currentIndex - 1);
+            player.sendMessage(ChatColor.GREEN + "Undone " + entry.size() + " blocks!");
+        });
         return true;
     }
     
@@ -801,6 +969,10 @@ public class WorldEditManager {
             player.sendMessage(ChatColor.RED + "Nothing to redo!");
             return false;
         }
+        if (loadingHistory.contains(uuid)) {
+            player.sendMessage(ChatColor.RED + "Your history is still loading, please wait.");
+            return false;
+        }
         
         int currentIndex = historyIndex.getOrDefault(uuid, -1);
         if (currentIndex >= playerHistory.size() - 1) {
@@ -808,21 +980,15 @@ public class WorldEditManager {
             return false;
         }
         
-        currentIndex++;
-        HistoryEntry entry = playerHistory.get(currentIndex);
-        List<Location> blocksToChange = new ArrayList<>();
-        List<BlockData> blockDataList = new ArrayList<>();
-        
-        for (BlockChange change : entry.getChanges()) {
-            blocksToChange.add(change.getLocation());
-            blockDataList.add(change.getNewData());
-        }
-        
-        // Perform redo operation (without saving to history)
-        performAsyncOperation(player, blocksToChange, null, blockDataList, false);
-        
-        historyIndex.put(uuid, currentIndex);
-        player.sendMessage(ChatColor.GREEN + "Redone " + entry.getChanges().size() + " blocks!");
+        int redoIndex = currentIndex + 1;
+        HistoryEntry entry = playerHistory.get(redoIndex);
+        withHistoryEntry(player, redoIndex, entry, changes -> {
+            // Perform redo operation (without saving to history)
+            performAsyncOperation(player, changes.cursor(false), null, null, false);
+            
+            historyIndex.put(uuid, redoIndex);
+            player.sendMessage(ChatColor.GREEN + "Redone " + entry.size() + " blocks!");
+        });
         return true;
     }
     
@@ -1,12 +1,15 @@
 package com.excrele.ecore.placeholders;
 
 import com.excrele.ecore.Ecore;
+import com.excrele.ecore.managers.TickTimeSampler;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
+import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import java.text.DecimalFormat;
-import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class EcorePlaceholders extends PlaceholderExpansion {
     private final Ecore plugin;
@@ -38,6 +41,33 @@ public class EcorePlaceholders extends PlaceholderExpansion {
 
     @Override
     public String onRequest(OfflinePlayer player, String params) {
+        // Fixed placeholders (%ecore_tps%, %ecore_balance%, %ecore_kills%, ...) come from the
+        // placeholder engine, which shares its caches with the scoreboard and tab list
+        PlaceholderEngine engine = plugin.getPlaceholderEngine();
+        String key = "ecore_" + params;
+
+        // Server-wide placeholders, available without a player
+        if (engine.isGlobal(key)) {
+            return engine.resolve(null, key);
+        }
+
+        // %ecore_tick_<p50|p95|p99|max>_<1m|5m|15m>% - Tick duration in milliseconds
+        if (params.toLowerCase().startsWith("tick_")) {
+            String[] parts = params.toLowerCase().split("_");
+            TickTimeSampler.Window window = parts.length == 3 ? TickTimeSampler.Window.fromLabel(parts[2]) : null;
+            if (window == null) {
+                return null;
+            }
+            TickTimeSampler sampler = plugin.getServerInfoManager().getTickSampler();
+            switch (parts[1]) {
+                case "p50": return df.format(sampler.getPercentile(window, 50));
+                case "p95": return df.format(sampler.getPercentile(window, 95));
+                case "p99": return df.format(sampler.getPercentile(window, 99));
+                case "max": return df.format(sampler.getMax(window));
+                default: return null;
+            }
+        }
+
         if (player == null || !player.isOnline()) {
             return ""; // Return empty if player is offline
         }
@@ -47,104 +77,28 @@ public class EcorePlaceholders extends PlaceholderExpansion {
             return "";
         }
 
-        // %ecore_homes% - Number of homes
-        if (params.equalsIgnoreCase("homes")) {
-            List<String> homes = plugin.getHomeManager().getHomes(p);
-            return String.valueOf(homes.size());
+        if (engine.isRegistered(key)) {
+            return engine.resolve(p, key);
         }
 
-        // %ecore_balance% - Player balance
-        if (params.equalsIgnoreCase("balance")) {
-            double balance = plugin.getEconomyManager().getBalance(p.getUniqueId());
-            return df.format(balance);
-        }
-
-        // %ecore_playtime% - Playtime formatted
-        if (params.equalsIgnoreCase("playtime")) {
-            // Calculate playtime from first join (if tracked)
-            // For now, return a placeholder - you can enhance this with actual playtime tracking
-            long playtime = plugin.getStatisticsManager().getStatistic(p, "playtime-seconds");
-            if (playtime == 0) {
-                return "0h 0m";
+        // %ecore_baltop_name_<rank>% / %ecore_baltop_balance_<rank>% - Balance leaderboard entries
+        if (params.toLowerCase().startsWith("baltop_name_") || params.toLowerCase().startsWith("baltop_balance_")) {
+            boolean name = params.toLowerCase().startsWith("baltop_name_");
+            int rank;
+            try {
+                rank = Integer.parseInt(params.substring(name ? 12 : 15));
+            } catch (NumberFormatException e) {
+                return null;
             }
-            long hours = playtime / 3600;
-            long minutes = (playtime % 3600) / 60;
-            return hours + "h " + minutes + "m";
-        }
-
-        // %ecore_kills% - Number of kills
-        if (params.equalsIgnoreCase("kills")) {
-            return String.valueOf(plugin.getStatisticsManager().getStatistic(p, "kills"));
-        }
-
-        // %ecore_deaths% - Number of deaths
-        if (params.equalsIgnoreCase("deaths")) {
-            return String.valueOf(plugin.getStatisticsManager().getStatistic(p, "deaths"));
-        }
-
-        // %ecore_achievements% - Achievement count
-        if (params.equalsIgnoreCase("achievements")) {
-            if (plugin.getAchievementManager() != null) {
-                return String.valueOf(plugin.getAchievementManager().getPlayerAchievements(p).size());
+            Map.Entry<UUID, Double> entry = plugin.getEconomyManager().getLeaderboardEntry(rank);
+            if (entry == null) {
+                return "";
             }
-            return "0";
-        }
-
-        // %ecore_max_homes% - Maximum homes allowed
-        if (params.equalsIgnoreCase("max_homes")) {
-            return String.valueOf(plugin.getConfigManager().getMaxHomes());
-        }
-
-        // %ecore_kdr% - Kill/Death ratio
-        if (params.equalsIgnoreCase("kdr")) {
-            int kills = plugin.getStatisticsManager().getStatistic(p, "kills");
-            int deaths = plugin.getStatisticsManager().getStatistic(p, "deaths");
-            if (deaths == 0) {
-                return kills > 0 ? String.valueOf(kills) : "0.00";
+            if (!name) {
+                return df.format(entry.getValue());
             }
-            double kdr = (double) kills / deaths;
-            return df.format(kdr);
-        }
-
-        // %ecore_distance% - Distance traveled
-        if (params.equalsIgnoreCase("distance")) {
-            double distance = plugin.getStatisticsManager().getStatisticDouble(p, "distance-traveled");
-            if (distance >= 1000) {
-                return df.format(distance / 1000) + "km";
-            }
-            return df.format(distance) + "m";
-        }
-
-        // %ecore_items_crafted% - Items crafted
-        if (params.equalsIgnoreCase("items_crafted")) {
-            return String.valueOf(plugin.getStatisticsManager().getStatistic(p, "items-crafted"));
-        }
-
-        // %ecore_experience_gained% - Experience gained
-        if (params.equalsIgnoreCase("experience_gained")) {
-            return String.valueOf(plugin.getStatisticsManager().getStatistic(p, "experience-gained"));
-        }
-
-        // %ecore_damage_taken% - Damage taken
-        if (params.equalsIgnoreCase("damage_taken")) {
-            double damage = plugin.getStatisticsManager().getStatisticDouble(p, "damage-taken");
-            return df.format(damage);
-        }
-
-        // %ecore_damage_dealt% - Damage dealt
-        if (params.equalsIgnoreCase("damage_dealt")) {
-            double damage = plugin.getStatisticsManager().getStatisticDouble(p, "damage-dealt");
-            return df.format(damage);
-        }
-
-        // %ecore_joins% - Number of joins
-        if (params.equalsIgnoreCase("joins")) {
-            return String.valueOf(plugin.getStatisticsManager().getStatistic(p, "joins"));
-        }
-
-        // %ecore_mail_count% - Unread mail count
-        if (params.equalsIgnoreCase("mail_count")) {
-            return String.valueOf(plugin.getMailManager().getMailCount(p));
+            String entryName = Bukkit.getOfflinePlayer(entry.getKey()).getName();
+            return entryName != null ? entryName : entry.getKey().toString();
         }
 
         return null; // PlaceholderAPI will return null if placeholder is unknown
@@ -0,0 +1,433 @@
+package com.excrele.ecore.placeholders;
+
+import com.excrele.ecore.Ecore;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves ECore placeholders for the scoreboard, tab list, holograms and the
+ * PlaceholderAPI expansion from one shared set of caches.
+ *
+ * <p>Text is compiled once into a {@link Template}: colour codes are translated and
+ * the text is split into literals and placeholder slots. Server-wide values are
+ * resolved at most once per tick and player values at most once per
+ * placeholders.player-cache-ms, however many lines, players or features use them.
+ * Rendering appends straight into a reused buffer, so the only String created is the result.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class PlaceholderEngine implements Listener {
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final int MAX_TEMPLATES = 2048;
+
+    private final Ecore plugin;
+    private final Map<String, Key> keys = new ConcurrentHashMap<>();
+    private final List<Key> keyList = new ArrayList<>();
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayerCache> playerCaches = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(128));
+    private final DecimalFormat df = new DecimalFormat("#.##");
+    private final long playerTtlNanos;
+
+    // Server-wide values, indexed by key id, each valid for the tick it was resolved in
+    private volatile String[] globalValues = new String[0];
+    private volatile long[] globalTicks = new long[0];
+
+    public PlaceholderEngine(Ecore plugin) {
+        this.plugin = plugin;
+        this.playerTtlNanos = Math.max(0L,
+            plugin.getConfigManager().getConfig().getLong("placeholders.player-cache-ms", 1000L)) * 1_000_000L;
+        registerDefaults();
+    }
+
+    /**
+     * A placeholder value lookup. Server-wide placeholders are passed a null player.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        String resolve(Player player);
+    }
+
+    private void registerDefaults() {
+        // Server-wide
+        registerGlobal("online", p -> String.valueOf(Bukkit.getOnlinePlayers().size()));
+        registerGlobal("max", p -> String.valueOf(Bukkit.getMaxPlayers()));
+        registerGlobal("tps", p -> String.format("%.2f", plugin.getServerInfoManager().getTPS()));
+        registerGlobal("ecore_tps", p -> format(plugin.getServerInfoManager().getTPS()));
+        registerGlobal("ecore_max_homes", p -> String.valueOf(plugin.getConfigManager().getMaxHomes()));
+
+        // Per player, legacy names used by the scoreboard, tab list and holograms
+        register("player", true, 0L, Player::getName);
+        registerPlayer("balance", p -> String.format("%.2f", plugin.getEconomyManager().getBalance(p.getUniqueId())));
+        registerPlayer("homes", p -> String.valueOf(plugin.getHomeManager().getHomes(p).size()));
+        registerPlayer("kills", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "kills")));
+        registerPlayer("deaths", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "deaths")));
+
+        // Per player, the %ecore_*% names also served through PlaceholderAPI
+        registerPlayer("ecore_balance", p -> String.format("%.2f", plugin.getEconomyManager().getBalance(p.getUniqueId())));
+        registerPlayer("ecore_balance_rank", p -> {
+            int rank = plugin.getEconomyManager().getBalanceRank(p.getUniqueId());
+            return rank > 0 ? String.valueOf(rank) : "-";
+        });
+        registerPlayer("ecore_homes", p -> String.valueOf(plugin.getHomeManager().getHomes(p).size()));
+        registerPlayer("ecore_kills", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "kills")));
+        registerPlayer("ecore_deaths", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "deaths")));
+        registerPlayer("ecore_kdr", p -> {
+            int kills = plugin.getStatisticsManager().getStatistic(p, "kills");
+            int deaths = plugin.getStatisticsManager().getStatistic(p, "deaths");
+            double kdr = deaths > 0 ? (double) kills / deaths : kills;
+            return String.format("%.2f", kdr);
+        });
+        registerPlayer("ecore_playtime", p -> {
+            long playtime = plugin.getStatisticsManager().getStatistic(p, "playtime-seconds");
+            return (playtime / 3600) + "h " + ((playtime % 3600) / 60) + "m";
+        });
+        registerPlayer("ecore_achievements", p -> plugin.getAchievementManager() != null
+            ? String.valueOf(plugin.getAchievementManager().getPlayerAchievements(p).size()) : "0");
+        registerPlayer("ecore_distance", p -> {
+            double distance = plugin.getStatisticsManager().getStatisticDouble(p, "distance-traveled");
+            return distance >= 1000 ? format(distance / 1000) + "km" : format(distance) + "m";
+        });
+        registerPlayer("ecore_items_crafted", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "items-crafted")));
+        registerPlayer("ecore_experience_gained", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "experience-gained")));
+        registerPlayer("ecore_damage_taken", p -> format(plugin.getStatisticsManager().getStatisticDouble(p, "damage-taken")));
+        registerPlayer("ecore_damage_dealt", p -> format(plugin.getStatisticsManager().getStatisticDouble(p, "damage-dealt")));
+        registerPlayer("ecore_joins", p -> String.valueOf(plugin.getStatisticsManager().getStatistic(p, "joins")));
+        registerPlayer("ecore_mail_count", p -> String.valueOf(plugin.getMailManager().getMailCount(p)));
+    }
+
+    private String format(double value) {
+        synchronized (df) { // DecimalFormat is not thread-safe and PlaceholderAPI may call in async
+            return df.format(value);
+        }
+    }
+
+    /**
+     * Registers a server-wide placeholder, resolved at most once per tick.
+     *
+     * @param name The placeholder name without percent signs, e.g. "online"
+     * @param resolver The lookup, passed a null player
+     */
+    public void registerGlobal(String name, Resolver resolver) {
+        register(name, false, 0L, resolver);
+    }
+
+    /**
+     * Registers a player placeholder, resolved at most once per player cache period.
+     *
+     * @param name The placeholder name without percent signs, e.g. "ecore_kills"
+     * @param resolver The lookup
+     */
+    public void registerPlayer(String name, Resolver resolver) {
+        register(name, true, playerTtlNanos, resolver);
+    }
+
+    private synchronized void register(String name, boolean perPlayer, long ttlNanos, Resolver resolver) {
+        String lower = name.toLowerCase();
+        Key existing = keys.get(lower);
+        Key key = new Key(lower, existing != null ? existing.id : keyList.size(), perPlayer, ttlNanos, resolver);
+        if (existing != null) {
+            keyList.set(key.id, key);
+        } else {
+            keyList.add(key);
+            globalValues = Arrays.copyOf(globalValues, keyList.size());
+            long[] ticks = Arrays.copyOf(globalTicks, keyList.size());
+            Arrays.fill(ticks, key.id, ticks.length, Long.MIN_VALUE);
+            globalTicks = ticks;
+        }
+        keys.put(lower, key);
+        // Templates compiled earlier may have treated this name as unknown
+        templates.clear();
+    }
+
+    /**
+     * Checks whether a placeholder is handled by the engine.
+     *
+     * @param name The placeholder name without percent signs
+     */
+    public boolean isRegistered(String name) {
+        return keys.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * Checks whether a placeholder is handled by the engine and needs no player.
+     *
+     * @param name The placeholder name without percent signs
+     */
+    public boolean isGlobal(String name) {
+        Key key = keys.get(name.toLowerCase());
+        return key != null && !key.perPlayer;
+    }
+
+    /**
+     * Gets the compiled form of a text, compiling it on first use.
+     *
+     * @param text The raw text with &amp; colour codes and %placeholders%
+     * @return The template
+     */
+    public Template compile(String text) {
+        if (text == null) {
+            text = "";
+        }
+        Template template = templates.get(text);
+        if (template == null) {
+            if (templates.size() >= MAX_TEMPLATES) {
+                templates.clear(); // Only reached if texts are generated on the fly, start over
+            }
+            template = parse(text);
+            templates.put(text, template);
+        }
+        return template;
+    }
+
+    private Template parse(String raw) {
+        String text = ChatColor.translateAlternateColorCodes('&', raw);
+        List<String> literals = new ArrayList<>();
+        List<Key> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean external = false;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int end = c == '%' ? text.indexOf('%', i + 1) : -1;
+            if (end < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            String name = text.substring(i + 1, end);
+            if (name.isEmpty() || name.indexOf(' ') >= 0) {
+                // Not a placeholder, the closing % may open the next one
+                literal.append(c);
+                i++;
+                continue;
+            }
+            Key key = keys.get(name.toLowerCase());
+            if (key == null) {
+                // Left in place for PlaceholderAPI
+                literal.append(text, i, end + 1);
+                external = true;
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(key);
+            }
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+        return new Template(literals.toArray(new String[0]), slots.toArray(new Key[0]), external);
+    }
+
+    /**
+     * Renders a text for a player.
+     *
+     * @param text The raw text, compiled on first use
+     * @param player The player, or null for server-wide text
+     * @return The rendered text
+     */
+    public String render(String text, Player player) {
+        return render(compile(text), player);
+    }
+
+    /**
+     * Renders a template for a player. Player placeholders are left as they are
+     * when rendering without a player.
+     *
+     * @param template The compiled template
+     * @param player The player, or null for server-wide text
+     * @return The rendered text
+     */
+    public String render(Template template, Player player) {
+        String result;
+        if (template.slots.length == 0) {
+            result = template.literals[0]; // Nothing to resolve, no allocation at all
+        } else {
+            StringBuilder out = buffers.get();
+            out.setLength(0);
+            PlayerCache cache = player != null ? cacheFor(player) : null;
+            long tick = System.nanoTime() / TICK_NANOS;
+            for (int i = 0; i < template.slots.length; i++) {
+                out.append(template.literals[i]);
+                Key key = template.slots[i];
+                if (!key.perPlayer) {
+                    out.append(global(key, tick));
+                } else if (player != null) {
+                    out.append(cache.get(key, player));
+                } else {
+                    out.append('%').append(key.name).append('%');
+                }
+            }
+            out.append(template.literals[template.slots.length]);
+            result = out.toString();
+        }
+
+        if (template.external && isPlaceholderApiEnabled()) {
+            result = PlaceholderAPI.setPlaceholders(player, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a single placeholder through the shared caches.
+     *
+     * @param player The player, may be null for server-wide placeholders
+     * @param name The placeholder name without percent signs
+     * @return The value, or null if the name is unknown or needs a player
+     */
+    public String resolve(Player player, String name) {
+        Key key = keys.get(name.toLowerCase());
+        if (key == null) {
+            return null;
+        }
+        if (!key.perPlayer) {
+            return global(key, System.nanoTime() / TICK_NANOS);
+        }
+        return player != null ? cacheFor(player).get(key, player) : null;
+    }
+
+    private String global(Key key, long tick) {
+        String[] values = globalValues;
+        long[] ticks = globalTicks;
+        if (key.id < values.length && ticks[key.id] == tick && values[key.id] != null) {
+            return values[key.id];
+        }
+        String value = safeResolve(key, null);
+        if (key.id < values.length) {
+            values[key.id] = value;
+            ticks[key.id] = tick;
+        }
+        return value;
+    }
+
+    private PlayerCache cacheFor(Player player) {
+        return playerCaches.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerCache());
+    }
+
+    private String safeResolve(Key key, Player player) {
+        try {
+            String value = key.resolver.resolve(player);
+            return value != null ? value : "";
+        } catch (RuntimeException e) {
+            // A manager that is not loaded yet should not break the whole line
+            return "";
+        }
+    }
+
+    private boolean isPlaceholderApiEnabled() {
+        return Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null;
+    }
+
+    /**
+     * Drops every cached player value, e.g. after a change that affects many players.
+     */
+    public void invalidatePlayers() {
+        playerCaches.clear();
+    }
+
+    /**
+     * Drops the cached values of one player.
+     */
+    public void invalidate(UUID uuid) {
+        playerCaches.remove(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        playerCaches.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * A text split into literals and placeholder slots. Literal i comes before slot i
+     * and the last literal after the last slot.
+     */
+    public static final class Template {
+        private final String[] literals;
+        private final Key[] slots;
+        private final boolean external; // Holds placeholders only PlaceholderAPI knows
+
+        private Template(String[] literals, Key[] slots, boolean external) {
+            this.literals = literals;
+            this.slots = slots;
+            this.external = external;
+        }
+
+        /**
+         * Checks whether rendering can give a different result each time.
+         */
+        public boolean isDynamic() {
+            return slots.length > 0 || external;
+        }
+
+        /**
+         * Checks whether the template holds placeholders that differ per player.
+         */
+        public boolean isPersonal() {
+            for (Key slot : slots) {
+                if (slot.perPlayer) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Key {
+        final String name;
+        final int id;
+        final boolean perPlayer;
+        final long ttlNanos;
+        final Resolver resolver;
+
+        Key(String name, int id, boolean perPlayer, long ttlNanos, Resolver resolver) {
+            this.name = name;
+            this.id = id;
+            this.perPlayer = perPlayer;
+            this.ttlNanos = ttlNanos;
+            this.resolver = resolver;
+        }
+    }
+
+    /**
+     * One player's resolved values, indexed by key id.
+     */
+    private final class PlayerCache {
+        private String[] values = new String[keyList.size()];
+        private long[] expires = new long[keyList.size()];
+
+        String get(Key key, Player player) {
+            if (key.ttlNanos <= 0L) {
+                return safeResolve(key, player);
+            }
+            String[] currentValues = values;
+            long[] currentExpires = expires;
+            if (key.id >= currentValues.length) {
+                // Registered after this cache was created
+                currentValues = values = Arrays.copyOf(currentValues, key.id + 1);
+                currentExpires = expires = Arrays.copyOf(currentExpires, key.id + 1);
+            }
+            long now = System.nanoTime();
+            String value = currentValues[key.id];
+            if (value == null || now - currentExpires[key.id] >= 0L) {
+                value = safeResolve(key, player);
+                currentValues[key.id] = value;
+                currentExpires[key.id] = now + key.ttlNanos;
+            }
+            return value;
+        }
+    }
+}
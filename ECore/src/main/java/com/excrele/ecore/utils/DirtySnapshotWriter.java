@@ -0,0 +1,126 @@
+package com.excrele.ecore.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saves changed per-player data off the main thread.
+ * The main thread marks players dirty and periodically copies their data into
+ * snapshots; a writer, usually an async task, then stores the pending snapshots.
+ *
+ * <p>Writers take turns, and a snapshot is only dropped once it has been stored and
+ * no newer snapshot for the same player has replaced it meanwhile. A snapshot that
+ * fails to store stays pending for the next writer, and a newer snapshot is never
+ * lost or overwritten by an older one.
+ *
+ * @param <T> The snapshot type
+ * @author Excrele
+ * @version 1.0
+ */
+public class DirtySnapshotWriter<T> {
+    private final Snapshotter<T> snapshotter;
+    private final Store<T> store;
+    private final Object writeLock = new Object();
+    private Set<UUID> dirtyPlayers = new HashSet<>(); // Changed since the last snapshot, main thread only
+    private final Map<UUID, T> pendingWrites = new ConcurrentHashMap<>(); // Snapshots waiting for the writer
+
+    /**
+     * Copies one player's data. Runs on the main thread.
+     */
+    @FunctionalInterface
+    public interface Snapshotter<T> {
+        /**
+         * @return The snapshot, or null if there is nothing to store. A snapshotter that
+         *         cannot take a snapshot yet may mark the player dirty again.
+         */
+        T snapshot(UUID uuid);
+    }
+
+    /**
+     * Stores snapshots. Runs on the writer's thread.
+     */
+    @FunctionalInterface
+    public interface Store<T> {
+        /**
+         * @param snapshots The pending snapshots, by player
+         * @return The players whose snapshots were stored; the others stay pending
+         */
+        Set<UUID> store(Map<UUID, T> snapshots);
+    }
+
+    public DirtySnapshotWriter(Snapshotter<T> snapshotter, Store<T> store) {
+        this.snapshotter = snapshotter;
+        this.store = store;
+    }
+
+    /**
+     * Marks a player's data as changed. Main thread only.
+     */
+    public void markDirty(UUID uuid) {
+        dirtyPlayers.add(uuid);
+    }
+
+    /**
+     * Checks whether a player has changes that were not snapshotted yet. Main thread only.
+     */
+    public boolean isDirty(UUID uuid) {
+        return dirtyPlayers.contains(uuid);
+    }
+
+    /**
+     * Checks whether any player has changes that were not snapshotted yet. Main thread only.
+     */
+    public boolean hasDirty() {
+        return !dirtyPlayers.isEmpty();
+    }
+
+    /**
+     * Gets a player's snapshot that is still waiting for the writer, which is newer
+     * than what was stored, or null if there is none.
+     */
+    public T getPending(UUID uuid) {
+        return pendingWrites.get(uuid);
+    }
+
+    /**
+     * Snapshots every dirty player for the writer. Main thread only, so the writer
+     * never reads data that is being changed.
+     */
+    public void snapshotDirty() {
+        Set<UUID> players = dirtyPlayers;
+        dirtyPlayers = new HashSet<>();
+        for (UUID uuid : players) {
+            T snapshot = snapshotter.snapshot(uuid);
+            if (snapshot != null) {
+                // A newer snapshot replaces one the writer has not reached yet
+                pendingWrites.put(uuid, snapshot);
+            }
+        }
+    }
+
+    /**
+     * Stores the pending snapshots. Safe to call from any thread.
+     */
+    public void writePending() {
+        synchronized (writeLock) {
+            if (pendingWrites.isEmpty()) return;
+            Map<UUID, T> snapshots = new HashMap<>(pendingWrites);
+            for (UUID uuid : store.store(snapshots)) {
+                pendingWrites.remove(uuid, snapshots.get(uuid));
+            }
+        }
+    }
+
+    /**
+     * Snapshots and stores everything on the calling thread, waiting for a writer that
+     * is still storing. Main thread only, e.g. on shutdown.
+     */
+    public void flush() {
+        snapshotDirty();
+        writePending();
+    }
+}
@@ -0,0 +1,130 @@
+package com.excrele.ecore.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Growable array of small non-negative ints packed into longs.
+ * Each value uses only as many bits as the largest value stored so far;
+ * storing a larger value widens every entry. Values never straddle two longs,
+ * which keeps lookups to a shift and a mask.
+ *
+ * @author Excrele
+ * @version 1.0
+ */
+public class PackedIntArray {
+    private long[] data;
+    private int bits;
+    private int valuesPerLong;
+    private long mask;
+    private int size;
+
+    /**
+     * @param capacity The initial number of values
+     * @param size The initial size; values start as 0
+     */
+    public PackedIntArray(int capacity, int size) {
+        this.bits = 1;
+        this.valuesPerLong = 64;
+        this.mask = 1L;
+        this.data = new long[longsFor(Math.max(capacity, size), valuesPerLong)];
+        this.size = size;
+    }
+
+    public PackedIntArray() {
+        this(64, 0);
+    }
+
+    private static int longsFor(int values, int valuesPerLong) {
+        return Math.max(1, (values + valuesPerLong - 1) / valuesPerLong);
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int shift = (index % valuesPerLong) * bits;
+        return (int) ((data[index / valuesPerLong] >>> shift) & mask);
+    }
+
+    public void set(int index, int value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        ensureBits(value);
+        int slot = index / valuesPerLong;
+        int shift = (index % valuesPerLong) * bits;
+        data[slot] = (data[slot] & ~(mask << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * Appends a value.
+     */
+    public void add(int value) {
+        if (size == data.length * valuesPerLong) {
+            long[] grown = new long[data.length + Math.max(1, data.length >> 1)];
+            System.arraycopy(data, 0, grown, 0, data.length);
+            data = grown;
+        }
+        size++;
+        set(size - 1, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the approximate heap used by the packed values, in bytes.
+     */
+    public long getMemoryUsage() {
+        return data.length * 8L;
+    }
+
+    private void ensureBits(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int needed = 32 - Integer.numberOfLeadingZeros(value);
+        if (needed <= bits) {
+            return;
+        }
+
+        int newBits = needed;
+        int newValuesPerLong = 64 / newBits;
+        long newMask = (1L << newBits) - 1;
+        long[] newData = new long[longsFor(data.length * valuesPerLong, newValuesPerLong)];
+        for (int i = 0; i < size; i++) {
+            long old = (data[i / valuesPerLong] >>> ((i % valuesPerLong) * bits)) & mask;
+            newData[i / newValuesPerLong] |= old << ((i % newValuesPerLong) * newBits);
+        }
+        data = newData;
+        bits = newBits;
+        valuesPerLong = newValuesPerLong;
+        mask = newMask;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeByte(bits);
+        int used = longsFor(size, valuesPerLong);
+        out.writeInt(used);
+        for (int i = 0; i < used; i++) {
+            out.writeLong(data[i]);
+        }
+    }
+
+    public static PackedIntArray read(DataInput in) throws IOException {
+        PackedIntArray array = new PackedIntArray(0, 0);
+        array.size = in.readInt();
+        array.bits = in.readByte();
+        array.valuesPerLong = 64 / array.bits;
+        array.mask = (1L << array.bits) - 1;
+        array.data = new long[in.readInt()];
+        for (int i = 0; i < array.data.length; i++) {
+            array.data[i] = in.readLong();
+        }
+        return array;
+    }
+}